@@ -8,7 +8,8 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.flow.*;
 import thesiscode.common.tree.NFVPerSourceTree;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 public class BidirectionalNfvTreeFlowPusher extends NfvTreeFlowPusher {
@@ -20,10 +21,17 @@ public class BidirectionalNfvTreeFlowPusher extends NfvTreeFlowPusher {
     }
 
     @Override
-    public void pushTree(NFVPerSourceTree tree) {
-        this.tree = Objects.requireNonNull(tree);
-        forwardPusher.pushTree(tree); // push forwards
-        super.pushTree(tree); // push backwards (calls installFlows() as template method)
+    protected List<FlowRule> buildRules(NFVPerSourceTree tree) {
+        List<FlowRule> rules = new ArrayList<>(forwardPusher.buildRules(tree)); // forwards
+        rules.addAll(super.buildRules(tree)); // backwards (calls installFlows() as template method)
+        getBuiltIngress().addAll(forwardPusher.getBuiltIngress());
+        return rules;
+    }
+
+    @Override
+    protected void setVersion(int version) {
+        super.setVersion(version);
+        forwardPusher.setVersion(version);
     }
 
     @Override
@@ -14,6 +14,12 @@ import java.util.Objects;
 import java.util.Set;
 
 public class DefaultNfvTreeFlowPusher extends NfvTreeFlowPusher {
+    /*
+     * the tag of the first logical edge, set by the ingress. Its last two bytes are incremented by the version of the
+     * tree, so the first version is tagged 11:11:11:11:11:11
+     */
+    private static final long FIRST_LOGICAL_EDGE_TAG = 0x11_11_11_11_11_11L;
+
     private Logger log = LoggerFactory.getLogger(getClass());
 
 
@@ -54,7 +60,7 @@ public class DefaultNfvTreeFlowPusher extends NfvTreeFlowPusher {
 
         TrafficTreatment.Builder treatBuild = DefaultTrafficTreatment.builder();
         if (isSourceSwitch && (logicalEdge == 0)) {
-            treatBuild.setEthDst(MacAddress.valueOf("11:11:11:11:11:11"));
+            treatBuild.setEthDst(MacAddress.valueOf(macString(0)));
         }
         if (receiver != null) {
             treatBuild.transition(1).deferred().setEthDst(receiver.getMacAddress());
@@ -65,7 +71,11 @@ public class DefaultNfvTreeFlowPusher extends NfvTreeFlowPusher {
         }
         TrafficTreatment treat = treatBuild.build();
 
-        install(sel, treat, currentSwitch, 0);
+        if (isSourceSwitch && (logicalEdge == 0)) {
+            installIngress(sel, treat, currentSwitch, 0);
+        } else {
+            install(sel, treat, currentSwitch, 0);
+        }
     }
 
     private void secondRule(DeviceId currentSwitch, IGroupMember receiver) {
@@ -93,7 +103,8 @@ public class DefaultNfvTreeFlowPusher extends NfvTreeFlowPusher {
     }
 
     /**
-     * Calculates the MAC to use to mark the logical edge in packets ("tagging" to allow loops)
+     * Calculates the MAC to use to mark the logical edge in packets ("tagging" to allow loops). The tags of the other
+     * logical edges are set by the VNFs, so only the tag of the first one carries the version of the tree.
      *
      * @param logicalEdge the logical edge to compute the mac string for
      * @return the mac string
@@ -101,7 +112,8 @@ public class DefaultNfvTreeFlowPusher extends NfvTreeFlowPusher {
     private String macString(int logicalEdge) {
         String macString = "";
         if (logicalEdge == 0) {
-            macString = "11:11:11:11:11:11";
+            long tag = (FIRST_LOGICAL_EDGE_TAG & ~0xFFFFL) | ((FIRST_LOGICAL_EDGE_TAG + getVersion()) & 0xFFFFL);
+            macString = MacAddress.valueOf(tag).toString();
         } else if (logicalEdge == 1) {
             macString = "22:22:22:22:22:22";
         } else if (logicalEdge == 2) {
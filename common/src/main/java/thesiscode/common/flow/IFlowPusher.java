@@ -1,5 +1,13 @@
 package thesiscode.common.flow;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IFlowPusher {
-    void deleteFlows();
+    /**
+     * Removes the pushed flow rules.
+     *
+     * @return a future which completes with true once all devices confirmed the removal, with false if a device
+     * failed to remove them
+     */
+    CompletableFuture<Boolean> deleteFlows();
 }
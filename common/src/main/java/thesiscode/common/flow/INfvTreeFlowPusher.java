@@ -2,6 +2,26 @@ package thesiscode.common.flow;
 
 import thesiscode.common.tree.NFVPerSourceTree;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface INfvTreeFlowPusher extends IFlowPusher {
-    void pushTree(NFVPerSourceTree tree);
+    /**
+     * Pushes the flow rules of the tree. The rules of all devices are applied in parallel.
+     *
+     * @param tree the tree
+     * @return a future which completes with true once all devices confirmed their rules, with false if a device failed
+     * to install them
+     */
+    CompletableFuture<Boolean> pushTree(NFVPerSourceTree tree);
+
+    /**
+     * Replaces the pushed trees by the given tree make-before-break: the packets are switched over to the new tree
+     * once it is installed, then the stale flow rules are removed. Only the flow rules which differ are applied and
+     * removed, the flow rules the trees have in common stay untouched. If the new tree can not be installed, the
+     * pushed trees stay installed, see {@link TreeUpdate#isSwitchedOver()}.
+     *
+     * @param tree the new tree
+     * @return the outcome of the update
+     */
+    TreeUpdate updateTree(NFVPerSourceTree tree);
 }
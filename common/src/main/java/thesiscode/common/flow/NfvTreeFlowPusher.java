@@ -11,18 +11,32 @@ import thesiscode.common.group.IGroupMember;
 import thesiscode.common.tree.NFVPerSourceTree;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
  * Base class for all classes that push NFV trees.
  */
 public abstract class NfvTreeFlowPusher implements INfvTreeFlowPusher {
+    private static final long CONFIRMATION_TIMEOUT_MS = 5 * 1000;
+    private static final int MAX_ATTEMPTS = 3;
     private final Logger log = LoggerFactory.getLogger(getClass());
     protected ApplicationId appId;
     protected FlowRuleService flowRuleService;
 
     protected NFVPerSourceTree tree;
     protected List<FlowRule> installed = new ArrayList<>();
+    // the rules of the installed tree which let the packets enter it, see installIngress()
+    private Set<FlowRule> installedIngress = new HashSet<>();
+    // the rules of the tree which is currently built
+    private List<FlowRule> built;
+    private Set<FlowRule> builtIngress;
+    // the version of the trees which are built, see setVersion()
+    private int version;
 
     public NfvTreeFlowPusher(ApplicationId appId, FlowRuleService flowRuleService) {
         this.appId = appId;
@@ -30,13 +44,260 @@ public abstract class NfvTreeFlowPusher implements INfvTreeFlowPusher {
     }
 
     @Override
-    public void deleteFlows() {
-        flowRuleService.removeFlowRules(installed.toArray(new FlowRule[0]));
+    public CompletableFuture<Boolean> deleteFlows() {
+        CompletableFuture<Boolean> confirmed = applyPerDevice(installed, FlowRuleOperations.Builder::remove,
+                "removing");
+        installed = new ArrayList<>();
+        installedIngress = new HashSet<>();
+        return confirmed;
     }
 
     @Override
-    public void pushTree(NFVPerSourceTree tree) {
+    public CompletableFuture<Boolean> pushTree(NFVPerSourceTree tree) {
+        List<FlowRule> rules = buildRules(tree);
+        installed.addAll(rules);
+        installedIngress.addAll(builtIngress);
+        return applyPerDevice(rules, FlowRuleOperations.Builder::add, "adding");
+    }
+
+    /**
+     * Updates the pushed tree make-before-break. The new tree is built with the next version, so that the rules of the
+     * logical edges the packets are tagged for by the ingress differ from the installed ones in their match. Then
+     * <ol>
+     * <li>the rules with a new match are added</li>
+     * <li>the rules whose match is installed, but with other instructions, are modified. This includes the rules of
+     * the ingress, which switch the packets over to the new tree</li>
+     * <li>the stale rules are removed</li>
+     * </ol>
+     * Every step is applied per device, see {@link #applyPerDevice(Collection, BiFunction, String)}, and waits until all
+     * devices confirmed its operations, at most {@value #CONFIRMATION_TIMEOUT_MS} ms. The
+     * rules of logical edges whose packets are tagged by a VNF can not be versioned, they are modified in place in the
+     * second step.
+     * <p>
+     * If the first or second step fails or is not confirmed in time, the update is given up: the modified rules are
+     * restored, the added ones removed, and the installed tree and its version stay. Stale rules whose removal failed
+     * are kept as installed rules, so that the next update or {@link #deleteFlows()} removes them.
+     */
+    @Override
+    public TreeUpdate updateTree(NFVPerSourceTree tree) {
+        long before = System.nanoTime();
+        int newVersion = version + 1;
+        setVersion(newVersion);
+        List<FlowRule> rules = buildRules(tree);
+
+        // hash sets, so that the diff takes time linear in the number of rules of both trees
+        Set<FlowRule> installedMatches = new HashSet<>(installed);
+        Set<ExactRule> installedExact = installed.stream().map(ExactRule::new).collect(Collectors.toSet());
+        Set<FlowRule> ruleMatches = new HashSet<>(rules);
+        List<FlowRule> toAdd = new ArrayList<>();
+        List<FlowRule> toModify = new ArrayList<>();
+        int kept = 0;
+        for (FlowRule rule : rules) {
+            if (installedExact.contains(new ExactRule(rule))) {
+                kept++;
+            } else if (installedMatches.contains(rule)) {
+                toModify.add(rule);
+            } else {
+                toAdd.add(rule);
+            }
+        }
+        List<FlowRule> toRemove = new ArrayList<>();
+        for (FlowRule rule : installed) {
+            if (!ruleMatches.contains(rule)) {
+                toRemove.add(rule);
+            }
+        }
+        log.info("updating tree to version {}: adding {}, modifying {}, removing {} and keeping {} flow rules",
+                version, toAdd.size(), toModify.size(), toRemove.size(), kept);
+
+        // an estimate from the average rate of the old ingress rules, the loss of the switch-over is not measured
+        double packetRate = ingressPacketRate();
+        if (!applyAndConfirm(toAdd, FlowRuleOperations.Builder::add, "adding")) {
+            // the packets still use the installed tree only, it stays
+            abortUpdate(toAdd, Collections.emptyList());
+            return new TreeUpdate(newVersion, toAdd.size(), toModify.size(), toRemove.size(), kept,
+                    (System.nanoTime() - before) / 1e6, 0, 0, false, false);
+        }
+        long switchOverStart = System.nanoTime();
+        boolean switchedOver = applyAndConfirm(toModify, FlowRuleOperations.Builder::modify, "modifying");
+        double switchOverMs = (System.nanoTime() - switchOverStart) / 1e6;
+        double estimatedMaxPacketLoss = packetRate * switchOverMs / 1000;
+        if (!switchedOver) {
+            abortUpdate(toAdd, toModify);
+            return new TreeUpdate(newVersion, toAdd.size(), toModify.size(), toRemove.size(), kept,
+                    (System.nanoTime() - before) / 1e6, switchOverMs, estimatedMaxPacketLoss, false, false);
+        }
+        boolean removed = applyAndConfirm(toRemove, FlowRuleOperations.Builder::remove, "removing");
+
+        installed = new ArrayList<>(rules);
+        if (!removed) {
+            installed.addAll(toRemove);
+        }
+        installedIngress = builtIngress;
+        return new TreeUpdate(newVersion, toAdd.size(), toModify.size(), toRemove.size(), kept,
+                (System.nanoTime() - before) / 1e6, switchOverMs, estimatedMaxPacketLoss, removed, true);
+    }
+
+    /**
+     * Restores the installed tree after its update failed: the modified rules get their installed instructions back,
+     * the added rules are removed and the version of the installed tree is used again.
+     *
+     * @param added    the rules the update added
+     * @param modified the rules the update modified, possibly only at some devices
+     */
+    private void abortUpdate(List<FlowRule> added, List<FlowRule> modified) {
+        log.warn("updating tree to version {} failed, restoring version {}", version, version - 1);
+        List<FlowRule> restored = installed.stream().filter(modified::contains).collect(Collectors.toList());
+        boolean restoredAll = applyAndConfirm(restored, FlowRuleOperations.Builder::modify, "restoring");
+        restoredAll &= applyAndConfirm(added, FlowRuleOperations.Builder::remove, "removing added");
+        if (!restoredAll) {
+            log.warn("could not restore all flow rules of version {}", version - 1);
+        }
+        setVersion(version - 1);
+    }
+
+    /**
+     * Applies the operations on the rules as one batch per device and waits until all devices confirmed them.
+     *
+     * @return true if every device confirmed its batch in time
+     */
+    private boolean applyAndConfirm(List<FlowRule> rules, BiFunction<FlowRuleOperations.Builder, FlowRule,
+            FlowRuleOperations.Builder> operation, String name) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        try {
+            if (applyPerDevice(rules, operation, name).get(CONFIRMATION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (TimeoutException e) {
+            log.warn("{} {} flow rules was not confirmed within {} ms", name, rules.size(), CONFIRMATION_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("{} {} flow rules failed", name, rules.size(), e.getCause());
+        }
+        return false;
+    }
+
+    /**
+     * Applies the operations on the rules as one batch per device. The batches of all devices are submitted at once,
+     * so the rules are installed in the time of the slowest device instead of the sum over all rules. The batch of a
+     * device which reports an error is applied again, at most {@value #MAX_ATTEMPTS} times in total. Adding, modifying
+     * and removing rules is idempotent, so the operations of the batch which succeeded before do no harm.
+     *
+     * @return a future which completes with true once every device confirmed its batch, with false if the batch of a
+     * device failed in all attempts
+     */
+    protected CompletableFuture<Boolean> applyPerDevice(Collection<FlowRule> rules, BiFunction<FlowRuleOperations
+            .Builder, FlowRule, FlowRuleOperations.Builder> operation, String name) {
+        Map<DeviceId, List<FlowRule>> perDevice = rules.stream().collect(Collectors.groupingBy(FlowRule::deviceId));
+        List<CompletableFuture<Boolean>> devices = new ArrayList<>();
+        for (Map.Entry<DeviceId, List<FlowRule>> entry : perDevice.entrySet()) {
+            CompletableFuture<Boolean> confirmed = new CompletableFuture<>();
+            applyToDevice(entry.getKey(), entry.getValue(), operation, name, 1, confirmed);
+            devices.add(confirmed);
+        }
+        log.info("{} {} flow rules at {} devices", name, rules.size(), devices.size());
+        return CompletableFuture.allOf(devices.toArray(new CompletableFuture[0]))
+                                .thenApply(v -> devices.stream().allMatch(CompletableFuture::join));
+    }
+
+    private void applyToDevice(DeviceId device, List<FlowRule> rules, BiFunction<FlowRuleOperations.Builder,
+            FlowRule, FlowRuleOperations.Builder> operation, String name, int attempt,
+                               CompletableFuture<Boolean> confirmed) {
+        FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+        for (FlowRule rule : rules) {
+            operation.apply(ops, rule);
+        }
+        flowRuleService.apply(ops.build(new FlowRuleOperationsContext() {
+            @Override
+            public void onSuccess(FlowRuleOperations ops) {
+                confirmed.complete(true);
+            }
+
+            @Override
+            public void onError(FlowRuleOperations ops) {
+                if (attempt < MAX_ATTEMPTS) {
+                    log.info("{} {} flow rules at {} failed, retrying", name, rules.size(), device);
+                    applyToDevice(device, rules, operation, name, attempt + 1, confirmed);
+                } else {
+                    log.warn("{} {} flow rules at {} failed {} times", name, rules.size(), device, attempt);
+                    confirmed.complete(false);
+                }
+            }
+        }));
+    }
+
+    /**
+     * @return the packets per second matched by the installed ingress rules since they were installed, NaN if their
+     * statistics are not available
+     */
+    private double ingressPacketRate() {
+        double rate = 0;
+        for (FlowRule ingress : installedIngress) {
+            FlowEntry entry = null;
+            for (FlowEntry candidate : flowRuleService.getFlowEntries(ingress.deviceId())) {
+                if (candidate.equals(ingress)) {
+                    entry = candidate;
+                }
+            }
+            if (entry == null || entry.life() == 0) {
+                return Double.NaN;
+            }
+            rate += (double) entry.packets() / entry.life();
+        }
+        return rate;
+    }
+
+    /**
+     * A flow rule which equals another one only if they match exactly (see {@link FlowRule#exactMatch(FlowRule)}),
+     * i.e. also in their instructions, unlike the rules themselves, which are equal if their matches are.
+     */
+    private static final class ExactRule {
+        private final FlowRule rule;
+
+        private ExactRule(FlowRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ExactRule && rule.exactMatch(((ExactRule) o).rule);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rule, rule.treatment());
+        }
+    }
+
+    /**
+     * Sets the version of the trees which are built from now on. Pushers which tag the packets at the ingress include
+     * the version in the tag, see {@link #updateTree(NFVPerSourceTree)}.
+     *
+     * @param version the version
+     */
+    protected void setVersion(int version) {
+        this.version = version;
+    }
+
+    protected int getVersion() {
+        return version;
+    }
+
+    /**
+     * Computes the flow rules of the tree without applying them. Each rule is built by
+     * {@link #install(TrafficSelector, TrafficTreatment, DeviceId, int)} or
+     * {@link #installIngress(TrafficSelector, TrafficTreatment, DeviceId, int)}.
+     *
+     * @param tree the tree
+     * @return the flow rules of the tree
+     */
+    protected List<FlowRule> buildRules(NFVPerSourceTree tree) {
         this.tree = Objects.requireNonNull(tree);
+        this.built = new ArrayList<>();
+        this.builtIngress = new HashSet<>();
         log.info("pushing tree {}", tree);
         log.info("tree.getSource {}", tree.getSource());
         log.info("tree.getLinks {}", tree.getLinks());
@@ -69,6 +330,7 @@ public abstract class NfvTreeFlowPusher implements INfvTreeFlowPusher {
                 installFlows(device, logicalEdge, inCp, outCps);
             }
         }
+        return built;
     }
 
     protected abstract void installFlows(DeviceId device, int logicalEdge, ConnectPoint inCp, Set<ConnectPoint> outCps);
@@ -177,7 +439,22 @@ public abstract class NfvTreeFlowPusher implements INfvTreeFlowPusher {
 
 
         log.info("adding VNF flow rule in table {}: {}", table, fr);
-        flowRuleService.applyFlowRules(fr);
-        installed.add(fr);
+        built.add(fr);
+    }
+
+    /**
+     * Like {@link #install(TrafficSelector, TrafficTreatment, DeviceId, int)}, for a rule which lets the packets of
+     * the source enter the tree. When a tree is updated, the ingress rules switch the packets over to the new tree.
+     */
+    protected void installIngress(TrafficSelector sel, TrafficTreatment treat, DeviceId deviceId, int table) {
+        install(sel, treat, deviceId, table);
+        builtIngress.add(built.get(built.size() - 1));
+    }
+
+    /**
+     * @return the rules of the tree built last which let the packets of the source enter the tree
+     */
+    protected Set<FlowRule> getBuiltIngress() {
+        return builtIngress;
     }
 }
@@ -0,0 +1,105 @@
+package thesiscode.common.flow;
+
+/**
+ * The outcome of a make-before-break update of a pushed tree, see {@link INfvTreeFlowPusher#updateTree}.
+ */
+public class TreeUpdate {
+    private final int version;
+    private final int rulesAdded;
+    private final int rulesModified;
+    private final int rulesRemoved;
+    private final int rulesKept;
+    private final double updateMs;
+    private final double switchOverMs;
+    private final double estimatedMaxPacketLoss;
+    private final boolean confirmed;
+    private final boolean switchedOver;
+
+    /**
+     * @param version                the version the tree was tagged with
+     * @param rulesAdded             the number of rules with a new match
+     * @param rulesModified          the number of rules whose match was installed before, but with other instructions
+     * @param rulesRemoved           the number of stale rules
+     * @param rulesKept              the number of rules which were installed already
+     * @param updateMs               the time of the whole update in ms
+     * @param switchOverMs           the time from applying the modified rules, e.g. of the ingress, until they were
+     *                               confirmed
+     * @param estimatedMaxPacketLoss the estimated upper bound of the packets lost by the switch-over, see
+     *                               {@link #getEstimatedMaxPacketLoss()}
+     * @param confirmed              whether the devices confirmed all operations in time
+     * @param switchedOver           whether the new tree replaced the installed one
+     */
+    public TreeUpdate(int version, int rulesAdded, int rulesModified, int rulesRemoved, int rulesKept,
+                      double updateMs, double switchOverMs, double estimatedMaxPacketLoss, boolean confirmed,
+                      boolean switchedOver) {
+        this.version = version;
+        this.rulesAdded = rulesAdded;
+        this.rulesModified = rulesModified;
+        this.rulesRemoved = rulesRemoved;
+        this.rulesKept = rulesKept;
+        this.updateMs = updateMs;
+        this.switchOverMs = switchOverMs;
+        this.estimatedMaxPacketLoss = estimatedMaxPacketLoss;
+        this.confirmed = confirmed;
+        this.switchedOver = switchedOver;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getRulesAdded() {
+        return rulesAdded;
+    }
+
+    public int getRulesModified() {
+        return rulesModified;
+    }
+
+    public int getRulesRemoved() {
+        return rulesRemoved;
+    }
+
+    public int getRulesKept() {
+        return rulesKept;
+    }
+
+    public double getUpdateMs() {
+        return updateMs;
+    }
+
+    public double getSwitchOverMs() {
+        return switchOverMs;
+    }
+
+    /**
+     * @return an estimate, not a measurement: the average packet rate of the old ingress rules since they were
+     * installed times the switch-over time. Packets of the old tree are only lost if they reach a modified rule whose
+     * new next hop was not confirmed yet, so this estimates an upper bound of the packet loss of the switch-over, the
+     * actual loss is usually far lower. NaN if the rate of the ingress rules could not be read
+     */
+    public double getEstimatedMaxPacketLoss() {
+        return estimatedMaxPacketLoss;
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    /**
+     * @return true if the packets were switched over to the new tree. False if its rules could not be added or
+     * modified, the installed tree was restored then. The switch-over may succeed without the update being confirmed,
+     * if stale rules could not be removed
+     */
+    public boolean isSwitchedOver() {
+        return switchedOver;
+    }
+
+    @Override
+    public String toString() {
+        return "TreeUpdate{version=" + version + ", added=" + rulesAdded + ", modified=" + rulesModified +
+                ", removed=" + rulesRemoved + ", kept=" + rulesKept + ", updateMs=" + updateMs + ", switchOverMs=" +
+                switchOverMs + ", estimatedMaxPacketLoss=" + estimatedMaxPacketLoss + ", confirmed=" + confirmed +
+                ", switchedOver=" + switchedOver + "}";
+    }
+}
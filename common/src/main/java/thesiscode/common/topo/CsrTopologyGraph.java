@@ -0,0 +1,267 @@
+package thesiscode.common.topo;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable compressed sparse row (CSR) representation of a topology. Vertices and edges get dense ids in the iteration
+ * order of the collections passed to the constructor, so that id i of this graph always refers to the i-th vertex (edge)
+ * of the request. The outgoing and incoming edges of every vertex are stored in contiguous slices of one array each,
+ * which allows iterating over the neighbourhood of a vertex in time linear to its degree instead of scanning all edges.
+ */
+public final class CsrTopologyGraph {
+    private final TopologyVertex[] vertices;
+    private final TopologyEdge[] edges;
+    private final Map<TopologyVertex, Integer> vertexIds;
+    private final Map<TopologyEdge, Integer> edgeIds;
+    private final Map<DeviceId, Integer> deviceIds;
+
+    private final int[] edgeSrc;
+    private final int[] edgeDst;
+
+    // edges leaving vertex v are outEdges[outOffsets[v]] .. outEdges[outOffsets[v + 1] - 1], same for incoming edges
+    private final int[] outOffsets;
+    private final int[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    private final BitSet pops;
+    private final int[] delay;
+    private final int[] bandwidth;
+
+    /**
+     * Builds the graph.
+     *
+     * @param vertices    the vertices of the topology
+     * @param edges       the edges of the topology, each edge has to connect two vertices of the vertices collection
+     * @param linkWeigher the link weigher used to fill the per-edge delay and bandwidth arrays
+     */
+    public CsrTopologyGraph(Collection<TopologyVertex> vertices, Collection<TopologyEdge> edges, ILinkWeigher linkWeigher) {
+        int numVertices = vertices.size();
+        int numEdges = edges.size();
+
+        this.vertices = new TopologyVertex[numVertices];
+        this.vertexIds = new HashMap<>(2 * numVertices);
+        this.deviceIds = new HashMap<>(2 * numVertices);
+        this.pops = new BitSet(numVertices);
+        int v = 0;
+        for (TopologyVertex vertex : vertices) {
+            this.vertices[v] = vertex;
+            vertexIds.put(vertex, v);
+            deviceIds.put(vertex.deviceId(), v);
+            if (vertex instanceof WrappedPoPVertex) {
+                pops.set(v);
+            }
+            v++;
+        }
+
+        this.edges = new TopologyEdge[numEdges];
+        this.edgeIds = new HashMap<>(2 * numEdges);
+        this.edgeSrc = new int[numEdges];
+        this.edgeDst = new int[numEdges];
+        this.delay = new int[numEdges];
+        this.bandwidth = new int[numEdges];
+        this.outOffsets = new int[numVertices + 1];
+        this.inOffsets = new int[numVertices + 1];
+        int e = 0;
+        for (TopologyEdge edge : edges) {
+            Integer src = vertexIds.get(edge.src());
+            Integer dst = vertexIds.get(edge.dst());
+            if (src == null || dst == null) {
+                throw new IllegalArgumentException("edge " + edge + " connects a vertex which is not part of the graph");
+            }
+            this.edges[e] = edge;
+            edgeIds.put(edge, e);
+            edgeSrc[e] = src;
+            edgeDst[e] = dst;
+            delay[e] = linkWeigher.getDelay(edge);
+            bandwidth[e] = linkWeigher.getBandwidth(edge);
+            outOffsets[src + 1]++;
+            inOffsets[dst + 1]++;
+            e++;
+        }
+
+        // prefix sums over the degrees give the slice offsets
+        for (int i = 0; i < numVertices; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        this.outEdges = new int[numEdges];
+        this.inEdges = new int[numEdges];
+        int[] outFill = new int[numVertices];
+        int[] inFill = new int[numVertices];
+        for (int i = 0; i < numEdges; i++) {
+            outEdges[outOffsets[edgeSrc[i]] + outFill[edgeSrc[i]]++] = i;
+            inEdges[inOffsets[edgeDst[i]] + inFill[edgeDst[i]]++] = i;
+        }
+    }
+
+    public int getNumVertices() {
+        return vertices.length;
+    }
+
+    public int getNumEdges() {
+        return edges.length;
+    }
+
+    public TopologyVertex getVertex(int vertexId) {
+        return vertices[vertexId];
+    }
+
+    public TopologyEdge getEdge(int edgeId) {
+        return edges[edgeId];
+    }
+
+    /**
+     * @param vertex the vertex to look up
+     * @return the dense id of the vertex or -1 if the vertex is not part of this graph
+     */
+    public int getVertexId(TopologyVertex vertex) {
+        Integer id = vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up a vertex by its device. Useful to map vertices of another request (which are different wrapper
+     * instances) onto this graph.
+     *
+     * @param deviceId the device of the vertex
+     * @return the dense id of the vertex or -1 if no vertex of this graph has the device
+     */
+    public int getVertexId(DeviceId deviceId) {
+        Integer id = deviceIds.get(deviceId);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param edge the edge to look up
+     * @return the dense id of the edge or -1 if the edge is not part of this graph
+     */
+    public int getEdgeId(TopologyEdge edge) {
+        Integer id = edgeIds.get(edge);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up an edge by the devices it connects, see {@link #getVertexId(DeviceId)}.
+     *
+     * @param src the device of the source vertex
+     * @param dst the device of the destination vertex
+     * @return the dense id of the first edge from src to dst or -1 if there is no such edge
+     */
+    public int getEdgeId(DeviceId src, DeviceId dst) {
+        int srcId = getVertexId(src);
+        int dstId = getVertexId(dst);
+        if (srcId < 0 || dstId < 0) {
+            return -1;
+        }
+        for (int k = outOffsets[srcId]; k < outOffsets[srcId + 1]; k++) {
+            if (edgeDst[outEdges[k]] == dstId) {
+                return outEdges[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps vertices of another request onto this graph by their devices.
+     *
+     * @param vertices the vertices to map
+     * @return the dense ids of the vertices or null if vertices is null or a vertex is not part of this graph
+     */
+    public int[] mapVertices(Collection<TopologyVertex> vertices) {
+        if (vertices == null) {
+            return null;
+        }
+        int[] ids = new int[vertices.size()];
+        int i = 0;
+        for (TopologyVertex vertex : vertices) {
+            ids[i] = getVertexId(vertex.deviceId());
+            if (ids[i++] < 0) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Maps edges of another request onto this graph by the devices they connect.
+     *
+     * @param edges the edges to map
+     * @return the dense ids of the edges or null if edges is null or an edge is not part of this graph
+     */
+    public int[] mapEdges(Collection<TopologyEdge> edges) {
+        if (edges == null) {
+            return null;
+        }
+        int[] ids = new int[edges.size()];
+        int i = 0;
+        for (TopologyEdge edge : edges) {
+            ids[i] = getEdgeId(edge.src().deviceId(), edge.dst().deviceId());
+            if (ids[i++] < 0) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    public int getSrc(int edgeId) {
+        return edgeSrc[edgeId];
+    }
+
+    public int getDst(int edgeId) {
+        return edgeDst[edgeId];
+    }
+
+    public int getOutDegree(int vertexId) {
+        return outOffsets[vertexId + 1] - outOffsets[vertexId];
+    }
+
+    /**
+     * @param vertexId the vertex
+     * @param i        index between 0 (inclusive) and the out degree of the vertex (exclusive)
+     * @return the id of the i-th edge leaving the vertex
+     */
+    public int getOutEdge(int vertexId, int i) {
+        return outEdges[outOffsets[vertexId] + i];
+    }
+
+    public int getInDegree(int vertexId) {
+        return inOffsets[vertexId + 1] - inOffsets[vertexId];
+    }
+
+    /**
+     * @param vertexId the vertex
+     * @param i        index between 0 (inclusive) and the in degree of the vertex (exclusive)
+     * @return the id of the i-th edge entering the vertex
+     */
+    public int getInEdge(int vertexId, int i) {
+        return inEdges[inOffsets[vertexId] + i];
+    }
+
+    public boolean isPoP(int vertexId) {
+        return pops.get(vertexId);
+    }
+
+    /**
+     * @return a copy of the set of PoP vertex ids
+     */
+    public BitSet getPoPs() {
+        return (BitSet) pops.clone();
+    }
+
+    public int getDelay(int edgeId) {
+        return delay[edgeId];
+    }
+
+    public int getBandwidth(int edgeId) {
+        return bandwidth[edgeId];
+    }
+}
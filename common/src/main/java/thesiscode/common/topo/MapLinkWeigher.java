@@ -0,0 +1,40 @@
+package thesiscode.common.topo;
+
+import org.onosproject.net.Link;
+import org.onosproject.net.topology.TopologyEdge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Link weigher with a bandwidth and a delay per link.
+ */
+public class MapLinkWeigher implements ILinkWeigher {
+    private Map<Link, Integer> bandwidthValues;
+    private Map<Link, Integer> delayValues;
+
+    /**
+     * @param bandwidthValues the bandwidth of every link
+     * @param delayValues     the delay of every link
+     */
+    public MapLinkWeigher(Map<Link, Integer> bandwidthValues, Map<Link, Integer> delayValues) {
+        this.bandwidthValues = new HashMap<>(bandwidthValues);
+        this.delayValues = new HashMap<>(delayValues);
+    }
+
+    public int getBandwidth(TopologyEdge edge) {
+        return get(bandwidthValues, edge);
+    }
+
+    public int getDelay(TopologyEdge edge) {
+        return get(delayValues, edge);
+    }
+
+    private static int get(Map<Link, Integer> values, TopologyEdge edge) {
+        Integer value = values.get(edge.link());
+        if (value == null) {
+            throw new IllegalArgumentException("no value for link " + edge.link());
+        }
+        return value;
+    }
+}
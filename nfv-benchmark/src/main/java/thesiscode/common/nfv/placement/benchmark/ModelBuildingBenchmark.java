@@ -0,0 +1,155 @@
+package thesiscode.common.nfv.placement.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import thesiscode.common.nfv.placement.generator.SyntheticRequestGenerator;
+import thesiscode.common.nfv.placement.generator.TopologyShapes;
+import thesiscode.common.nfv.placement.solver.AbstractNfvIlpPlacementSolver;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.SolverPhases;
+import thesiscode.common.nfv.placement.solver.heuristic.SfcHeuristicPlacementSolver;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+import thesiscode.common.nfv.placement.solver.mfcp.used.RefSfcPlacementSolver;
+import thesiscode.common.nfv.placement.solver.mfcp.used.TopoSyncPlacementSolver;
+import thesiscode.common.nfv.placement.solver.mfcp.used.TopoSyncSFCPlacementSolver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building the models of the ILP solvers (init, addVariables, addObjective and addConstraints),
+ * of extracting a solution from an optimization result and of a whole solve whose optimization is stubbed, over random
+ * Waxman topologies of different sizes with random multicast flows (see {@link SyntheticRequestGenerator}). The links
+ * have enough bandwidth and the PoPs enough resources for all flows, so that every request is feasible.
+ * <p>
+ * No solver license is needed: the solvers optimize with a {@link StubBackend}, which returns values recorded in the
+ * setup. The values are the start values which the solver derives from the solution of the
+ * {@link SfcHeuristicPlacementSolver}, variables without start value are at their lower bound. They are not a complete
+ * solution of the model, but extracting them visits the same variables. Run with the GC profiler (as
+ * {@link BenchmarkMain} does) to get the allocation rate next to the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBuildingBenchmark {
+    private static final long SEED = 42;
+    private static final double WAXMAN_ALPHA = 0.4;
+    private static final double WAXMAN_BETA = 0.15;
+    private static final int DEMAND = 4;
+
+    /**
+     * TOPOSYNC_SFC: {@link TopoSyncSFCPlacementSolver}, REF_SFC: {@link RefSfcPlacementSolver}, TOPOSYNC:
+     * {@link TopoSyncPlacementSolver}, which does not accept SFCs, so its flows have none regardless of sfcLength.
+     */
+    @Param({"TOPOSYNC_SFC", "REF_SFC", "TOPOSYNC"})
+    public String formulation;
+
+    @Param({"20", "50"})
+    public int vertices;
+
+    @Param({"0.25"})
+    public double popDensity;
+
+    @Param({"1", "4"})
+    public int flows;
+
+    @Param({"3"})
+    public int destinations;
+
+    @Param({"1", "3"})
+    public int sfcLength;
+
+    private NfvPlacementRequest request;
+    private AbstractNfvIlpPlacementSolver solver;
+    private IlpResult recorded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean sfc = !formulation.equals("TOPOSYNC");
+        int length = sfc ? sfcLength : 0;
+        SyntheticRequestGenerator generator = new SyntheticRequestGenerator(
+                TopologyShapes.waxman(vertices, WAXMAN_ALPHA, WAXMAN_BETA));
+        generator.setPoPDensity(popDensity);
+        int vnfsPerPoP = Math.max(1, length);
+        generator.setCpuCores(6 * vnfsPerPoP, 6 * vnfsPerPoP);
+        generator.setRamInGb(2 * vnfsPerPoP, 2 * vnfsPerPoP);
+        int linkBandwidth = Math.max(1, flows) * DEMAND * (length + 1);
+        generator.setBandwidth(linkBandwidth, linkBandwidth);
+        generator.setNumFlows(flows);
+        generator.setNumDestinations(destinations, destinations);
+        generator.setSfcLength(length, length);
+        generator.setDemand(DEMAND, DEMAND);
+        request = generator.generate(SEED);
+        switch (formulation) {
+            case "TOPOSYNC_SFC":
+                solver = new TopoSyncSFCPlacementSolver(OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, false, null,
+                        1.0);
+                break;
+            case "REF_SFC":
+                solver = new RefSfcPlacementSolver(false, null, 1.0);
+                break;
+            case "TOPOSYNC":
+                solver = new TopoSyncPlacementSolver(OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, false, null);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown formulation " + formulation);
+        }
+
+        // record the start values derived from the heuristic solution, to extract them in the benchmarks
+        OptimizationGoal goal = formulation.equals("REF_SFC") ? OptimizationGoal.SPT :
+                OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION;
+        NfvPlacementSolution start = new SfcHeuristicPlacementSolver(goal, 1.0).solve(request);
+        IlpModel model = SolverPhases.buildModel(solver, request);
+        if (start != null) {
+            SolverPhases.addStart(solver, start, model);
+        }
+        double[] values = new double[model.getNumVars()];
+        for (int i = 0; i < values.length; i++) {
+            double value = model.getStart(i);
+            values[i] = Double.isNaN(value) ? model.getLowerBound(i) : value;
+        }
+        recorded = IlpResult.of(model, IlpStatus.OPTIMAL, values, 0);
+
+        StubBackend backend = new StubBackend();
+        backend.setValues(recorded.getValues());
+        solver.setBackend(backend);
+    }
+
+    @Benchmark
+    public IlpModel buildModel() {
+        return SolverPhases.buildModel(solver, request);
+    }
+
+    /**
+     * Extracts the recorded result. The variables of the solver are the ones of the last model it built, which are the
+     * same for every model of the request.
+     */
+    @Benchmark
+    public NfvPlacementSolution extractSolution() {
+        return SolverPhases.extractSolution(solver, recorded);
+    }
+
+    /**
+     * A whole solve, i.e. building the model, the stubbed optimization and extracting the solution.
+     */
+    @Benchmark
+    public NfvPlacementSolution solveStubbed() {
+        return solver.solve(request);
+    }
+}
@@ -0,0 +1,40 @@
+package thesiscode.common.nfv.placement.benchmark;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpBackend;
+import thesiscode.common.nfv.placement.solver.ilp.IlpException;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+
+/**
+ * Backend which does not optimize at all, so that the cost of building models and extracting solutions can be measured
+ * without a solver (and without a license). Every model is "solved" with the recorded values, which must have been
+ * computed for a model with the same variables, or without a solution if no values were recorded.
+ */
+public class StubBackend implements IlpBackend {
+    private double[] values;
+
+    /**
+     * @param values the values returned for every model, indexed by variable index, null to return no solution
+     */
+    public void setValues(double[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public IlpResult optimize(IlpModel model, boolean verbose) throws IlpException {
+        if (values == null) {
+            return IlpResult.of(model, IlpStatus.LIMIT_REACHED, null, 0);
+        }
+        if (values.length != model.getNumVars()) {
+            throw new IlpException("recorded values are for " + values.length + " variables, the model has " +
+                                   model.getNumVars());
+        }
+        return IlpResult.of(model, IlpStatus.OPTIMAL, values, 0);
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+}
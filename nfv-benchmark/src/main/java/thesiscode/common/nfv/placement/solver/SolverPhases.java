@@ -0,0 +1,53 @@
+package thesiscode.common.nfv.placement.solver;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+
+/**
+ * Runs the single phases of {@link AbstractNfvIlpPlacementSolver#solve(NfvPlacementRequest)} on their own, so that the
+ * benchmarks can measure them separately. The phases are template methods which are only visible in this package, so
+ * this class lives in the package of the solvers.
+ */
+public final class SolverPhases {
+
+    private SolverPhases() {
+    }
+
+    /**
+     * Builds a new model for the request like the solve does, without presolve and without a start.
+     *
+     * @param solver the solver which builds the model, it keeps the variables to extract solutions afterwards
+     * @param req    the request
+     * @return the model
+     */
+    public static IlpModel buildModel(AbstractNfvIlpPlacementSolver solver, NfvPlacementRequest req) {
+        IlpModel model = new IlpModel();
+        solver.init(req, model);
+        solver.addVariables(model);
+        solver.addObjective(model);
+        solver.addConstraints(model);
+        return model;
+    }
+
+    /**
+     * Sets the start values of a model built by {@link #buildModel(AbstractNfvIlpPlacementSolver, NfvPlacementRequest)}.
+     *
+     * @param solver the solver which built the model
+     * @param start  the solution to start from
+     * @param model  the model
+     */
+    public static void addStart(AbstractNfvIlpPlacementSolver solver, NfvPlacementSolution start, IlpModel model) {
+        solver.addStart(start, model);
+    }
+
+    /**
+     * Extracts the solution from the result of a model built by the solver.
+     *
+     * @param solver the solver which built the model of the result last
+     * @param result the result
+     * @return the solution
+     */
+    public static NfvPlacementSolution extractSolution(AbstractNfvIlpPlacementSolver solver, IlpResult result) {
+        return solver.extractSolution(result);
+    }
+}
@@ -1,79 +1,307 @@
 package thesiscode.common.nfv.placement.deploy;
 
 import org.onosproject.net.ConnectPoint;
-import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.topology.TopologyVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.topo.WrappedPoPVertex;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
+/**
+ * Instantiates and removes VNFs with PUT and DELETE requests to the VNF manager, see mn/cn_rest.py. The requests are
+ * issued concurrently, at most a configured number at a time, each with a connect and read timeout. The connections
+ * are kept alive and reused by the requests which follow, as every response is read completely.
+ * <p>
+ * A request which fails is sent again, up to a configured number of attempts. A PUT is only sent again if the
+ * VNF manager could not be reached, as a PUT which failed later may have instantiated its VNF nevertheless.
+ */
 public class NfvInstantiator {
-    private static final String URL_FORMAT = "http://localhost:9000/%s/%s";
+    public static final String DEFAULT_BASE_URL = "http://localhost:9000";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 2 * 1000;
+    // instantiating a VNF starts a container, which takes a while
+    private static final int DEFAULT_READ_TIMEOUT_MS = 60 * 1000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 200;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
+    private final String baseUrl;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final int maxAttempts;
+    private final ExecutorService executor;
+    // connections of the instantiations in flight, see abortInstantiations(). Removals are not tracked, as they must
+    // not be aborted: they roll back or clean up after aborted instantiations
+    private final Set<HttpURLConnection> instantiationConnections = ConcurrentHashMap.newKeySet();
+    // instantiations which are queued or in flight, see abortInstantiations()
+    private final Set<CompletableFuture<ConnectPoint>> pendingInstantiations = ConcurrentHashMap.newKeySet();
 
-    public void remove(NprNfvTypes.Type vnfType, Device switchToAttach, boolean hwAccelerated) throws InstantiationException {
-        int respCode = 0;
-        try {
-            URL url = requestUrl(vnfType, switchToAttach, hwAccelerated);
-            log.info("sending request to {}", url);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("DELETE");
-            respCode = con.getResponseCode();
-            log.info("response code: {}", respCode);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public NfvInstantiator() {
+        this(DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl the URL of the VNF manager, e.g. of a stand-in for it
+     */
+    public NfvInstantiator(String baseUrl) {
+        this(baseUrl, DEFAULT_MAX_IN_FLIGHT, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * @param baseUrl          the URL of the VNF manager, e.g. of a stand-in for it
+     * @param maxInFlight      the maximum number of concurrent requests
+     * @param connectTimeoutMs the timeout for connecting to the VNF manager
+     * @param readTimeoutMs    the timeout for the response of the VNF manager
+     * @param maxAttempts      the maximum number of times a request is sent
+     */
+    public NfvInstantiator(String baseUrl, int maxInFlight, int connectTimeoutMs, int readTimeoutMs,
+                           int maxAttempts) {
+        this.baseUrl = baseUrl;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "vnf-instantiator-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Aborts the instantiations in flight by closing their connections and the queued ones, they fail with an
+     * {@link InstantiationException} and are not sent again. The VNF of an aborted instantiation may have been
+     * instantiated nevertheless. Removals in flight are not affected. May be called from any thread.
+     */
+    public void abortInstantiations() {
+        for (CompletableFuture<ConnectPoint> instantiation : pendingInstantiations) {
+            instantiation.completeExceptionally(new InstantiationException("Instantiation aborted"));
         }
+        for (HttpURLConnection con : instantiationConnections) {
+            log.info("aborting request to {}", con.getURL());
+            con.disconnect();
+        }
+    }
 
-        if (respCode == HttpURLConnection.HTTP_OK) {
-            log.info("VNF removed");
-        } else {
-            throw new InstantiationException("Could not remove VNF");
+    /**
+     * Instantiates the VNFs at their PoPs concurrently.
+     *
+     * @param placements the PoPs per VNF type, all of them {@link WrappedPoPVertex}s
+     * @return a future of the connect points of the VNFs per type. It fails with an {@link InstantiationException} if
+     * any of the VNFs could not be instantiated, then the others may have been instantiated nevertheless
+     */
+    public CompletableFuture<Map<NprNfvTypes.Type, Set<ConnectPoint>>> instantiateAll(Map<NprNfvTypes.Type,
+            Set<TopologyVertex>> placements) {
+        Map<NprNfvTypes.Type, List<CompletableFuture<ConnectPoint>>> instantiations = new HashMap<>();
+        for (Map.Entry<NprNfvTypes.Type, Set<TopologyVertex>> entry : placements.entrySet()) {
+            List<CompletableFuture<ConnectPoint>> forType = new ArrayList<>();
+            for (TopologyVertex vert : entry.getValue()) {
+                forType.add(instantiate(entry.getKey(), vert.deviceId(), hwAccelerated(entry.getKey(), vert)));
+            }
+            instantiations.put(entry.getKey(), forType);
         }
+        List<CompletableFuture<ConnectPoint>> all = new ArrayList<>();
+        instantiations.values().forEach(all::addAll);
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfCps = new HashMap<>();
+            instantiations.forEach((type, forType) -> vnfCps.put(type, forType.stream()
+                                                                            .map(CompletableFuture::join)
+                                                                            .collect(Collectors.toSet())));
+            return vnfCps;
+        });
     }
 
-    private URL requestUrl(NprNfvTypes.Type vnfType, Device switchToAttach, boolean hwAccelerated) throws MalformedURLException {
-        final String dpid = switchToAttach.id().uri().getSchemeSpecificPart();
-        String urlString = String.format(URL_FORMAT, dpid, vnfType.toString());
-        if (hwAccelerated) {
-            urlString += "_accelerated";
+    /**
+     * Removes the VNFs from their PoPs concurrently.
+     *
+     * @param placements the PoPs per VNF type, all of them {@link WrappedPoPVertex}s
+     * @return a future which completes once all removals finished. It fails with an {@link InstantiationException} if
+     * any of the VNFs could not be removed
+     */
+    public CompletableFuture<Void> removeAll(Map<NprNfvTypes.Type, Set<TopologyVertex>> placements) {
+        List<CompletableFuture<Void>> removals = new ArrayList<>();
+        for (Map.Entry<NprNfvTypes.Type, Set<TopologyVertex>> entry : placements.entrySet()) {
+            for (TopologyVertex vert : entry.getValue()) {
+                removals.add(remove(entry.getKey(), vert.deviceId(), hwAccelerated(entry.getKey(), vert)));
+            }
         }
-        return new URL(urlString);
+        return CompletableFuture.allOf(removals.toArray(new CompletableFuture[0]));
+    }
+
+    private static boolean hwAccelerated(NprNfvTypes.Type vnfType, TopologyVertex vert) {
+        if (!(vert instanceof WrappedPoPVertex)) {
+            throw new IllegalStateException("VNF placed at vert which is not a PoP (" + vnfType.name() + "@" +
+                    vert.deviceId() + ")");
+        }
+        return ((WrappedPoPVertex) vert).hwAccelerationOffered(vnfType);
+    }
+
+    /**
+     * @return a future of the connect point of the instantiated VNF, which fails with an
+     * {@link InstantiationException} if the VNF could not be instantiated or the instantiation was aborted
+     */
+    public CompletableFuture<ConnectPoint> instantiate(NprNfvTypes.Type vnfType, DeviceId switchToAttach,
+                                                      boolean hwAccelerated) {
+        CompletableFuture<ConnectPoint> instantiation = new CompletableFuture<>();
+        pendingInstantiations.add(instantiation);
+        instantiation.whenComplete((cp, e) -> pendingInstantiations.remove(instantiation));
+        executor.execute(() -> {
+            if (instantiation.isDone()) {
+                // aborted while queued
+                return;
+            }
+            try {
+                String port = send("PUT", vnfType, switchToAttach, hwAccelerated, instantiation::isDone);
+                ConnectPoint cp = new ConnectPoint(switchToAttach, PortNumber.portNumber(Integer.parseInt(port)));
+                log.info("VNF {} instantiated at cp: {}", vnfType, cp);
+                instantiation.complete(cp);
+            } catch (InstantiationException | RuntimeException e) {
+                instantiation.completeExceptionally(e);
+            }
+        });
+        return instantiation;
     }
 
+    /**
+     * @return a future which completes once the VNF was removed, it fails with an {@link InstantiationException} if
+     * the VNF could not be removed
+     */
+    public CompletableFuture<Void> remove(NprNfvTypes.Type vnfType, DeviceId switchToAttach, boolean hwAccelerated) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                send("DELETE", vnfType, switchToAttach, hwAccelerated, () -> false);
+                log.info("VNF {} removed from {}", vnfType, switchToAttach);
+            } catch (InstantiationException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 
-    public ConnectPoint instantiate(NprNfvTypes.Type vnfType, Device switchToAttach, boolean hwAccelerated) throws InstantiationException {
-        String instantiatedAtPort = null;
-        int respCode = 0;
+    /**
+     * Sends the request until it succeeds, at most maxAttempts times.
+     *
+     * @param aborted whether the request was aborted, it is not sent again then
+     * @return the body of the response
+     */
+    private String send(String method, NprNfvTypes.Type vnfType, DeviceId switchToAttach, boolean hwAccelerated,
+                        BooleanSupplier aborted) throws InstantiationException {
+        URL url = requestUrl(vnfType, switchToAttach, hwAccelerated);
+        for (int attempt = 1; ; attempt++) {
+            if (aborted.getAsBoolean()) {
+                throw new InstantiationException(method + " " + url + " aborted");
+            }
+            boolean retry;
+            try {
+                return sendOnce(method, url);
+            } catch (ConnectException e) {
+                retry = attempt < maxAttempts;
+                log.info("could not connect to {} in attempt {}: {}", url, attempt, e.getMessage());
+            } catch (IOException e) {
+                retry = attempt < maxAttempts && !method.equals("PUT");
+                log.info("{} {} failed in attempt {}: {}", method, url, attempt, e.getMessage());
+            }
+            if (!retry) {
+                throw new InstantiationException("Could not " + (method.equals("PUT") ? "instantiate" : "remove") +
+                        " VNF " + vnfType + "@" + switchToAttach + ".");
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InstantiationException("Interrupted while sending " + method + " " + url);
+            }
+        }
+    }
+
+    private String sendOnce(String method, URL url) throws IOException {
+        log.info("sending {} request to {}", method, url);
+        HttpURLConnection con = openConnection(url);
+        con.setRequestMethod(method);
+        con.setConnectTimeout(connectTimeoutMs);
+        con.setReadTimeout(readTimeoutMs);
+        boolean instantiation = method.equals("PUT");
+        if (instantiation) {
+            instantiationConnections.add(con);
+        }
         try {
-            URL url = requestUrl(vnfType, switchToAttach, hwAccelerated);
-            log.info("sending request to {}", url);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("PUT");
-            instantiatedAtPort = new BufferedReader(new InputStreamReader(con.getInputStream())).lines()
-                                                                                                .collect(Collectors.joining());
-            respCode = con.getResponseCode();
+            int respCode = con.getResponseCode();
             log.info("response code: {}", respCode);
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (respCode != HttpURLConnection.HTTP_OK) {
+                // the body is read nevertheless, so that the connection can be reused
+                readBody(con.getErrorStream());
+                throw new IOException("Response code " + respCode);
+            }
+            return readBody(con.getInputStream());
+        } finally {
+            if (instantiation) {
+                instantiationConnections.remove(con);
+            }
         }
+    }
 
-        if (respCode == HttpURLConnection.HTTP_OK) {
-            log.info("instated at port: {}", instantiatedAtPort);
-            ConnectPoint cp = new ConnectPoint(switchToAttach.id(),
-                    PortNumber.portNumber(Integer.parseInt(instantiatedAtPort)));
-            log.info("VNF {} instantiated at cp: {}", vnfType, cp);
-            return cp;
-        } else {
-            throw new InstantiationException("Could not instantiate VNF.");
+    /**
+     * Opens the connection of one attempt of a request, tests count the attempts by overriding it.
+     */
+    HttpURLConnection openConnection(URL url) throws IOException {
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    /**
+     * Reads the body completely and closes the stream, which returns the connection to the keep-alive cache.
+     */
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            return reader.lines().collect(Collectors.joining());
         }
     }
 
+    private URL requestUrl(NprNfvTypes.Type vnfType, DeviceId switchToAttach, boolean hwAccelerated)
+            throws InstantiationException {
+        final String dpid = switchToAttach.uri().getSchemeSpecificPart();
+        String urlString = String.format("%s/%s/%s", baseUrl, dpid, vnfType.toString());
+        if (hwAccelerated) {
+            urlString += "_accelerated";
+        }
+        try {
+            return new URL(urlString);
+        } catch (IOException e) {
+            throw new InstantiationException("Invalid URL " + urlString);
+        }
+    }
+
+    /**
+     * Stops the threads sending the requests, the queued requests are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
 }
@@ -0,0 +1,283 @@
+package thesiscode.common.nfv.placement.generator;
+
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultLink;
+import org.onosproject.net.Link;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.provider.ProviderId;
+import org.onosproject.net.topology.DefaultTopologyEdge;
+import org.onosproject.net.topology.DefaultTopologyVertex;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.ConstantLinkWeigher;
+import thesiscode.common.topo.ILinkWeigher;
+import thesiscode.common.topo.MapLinkWeigher;
+import thesiscode.common.topo.WrappedPoPVertex;
+import thesiscode.common.topo.WrappedVertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates placement requests without ONOS, for benchmarks and regression runs of the solvers. The topology is built
+ * from a {@link TopologyShape}, a share of its PoP candidates become PoPs with random resources, deployment costs and
+ * hardware acceleration, the links get random bandwidths and delays and the multicast flows with SFCs run between
+ * random access switches. All random values are drawn uniformly from configurable ranges. The defaults are the values
+ * of the RequestGenerator of the app.
+ * <p>
+ * A request only depends on the settings and the seed: generating it again with the same settings and seed gives an
+ * equal request (same devices, links, PoP attributes and flows, all in the same order).
+ */
+public class SyntheticRequestGenerator {
+    private static final ProviderId PROVIDER_ID = new ProviderId("of", "thesiscode.generator");
+
+    private final TopologyShape shape;
+    private double popDensity = 1.0;
+    private int[] cpuCores = {6, 6};
+    private int[] ramInGb = {2, 2};
+    private int[] deploymentCost = {40, 40};
+    private double hwAccelProbability = 0;
+    private double hwAccelFactor = 0.5;
+    private int[] bandwidth = {10, 10};
+    private int[] delay = {5, 5};
+    private int numFlows = 1;
+    private int[] numDestinations = {2, 2};
+    private int[] sfcLength = {1, 1};
+    private int[] demand = {4, 4};
+
+    /**
+     * @param shape the shape of the topologies
+     */
+    public SyntheticRequestGenerator(TopologyShape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * @param popDensity the share of the PoP candidates of the topology which become PoPs, at least one candidate
+     *                   becomes a PoP
+     */
+    public void setPoPDensity(double popDensity) {
+        if (popDensity < 0 || popDensity > 1) {
+            throw new IllegalArgumentException("PoP density must be in [0, 1], was " + popDensity);
+        }
+        this.popDensity = popDensity;
+    }
+
+    public void setCpuCores(int min, int max) {
+        this.cpuCores = range(min, max, 0);
+    }
+
+    public void setRamInGb(int min, int max) {
+        this.ramInGb = range(min, max, 0);
+    }
+
+    /**
+     * Sets the range of the deployment cost of every VNF type on every PoP.
+     */
+    public void setDeploymentCost(int min, int max) {
+        this.deploymentCost = range(min, max, 0);
+    }
+
+    /**
+     * @param probability the probability that a PoP offers hardware acceleration for a VNF type
+     * @param factor      the factor of the base delay of accelerated VNFs
+     */
+    public void setHwAcceleration(double probability, double factor) {
+        if (probability < 0 || probability > 1 || factor <= 0) {
+            throw new IllegalArgumentException("invalid hardware acceleration " + probability + ", " + factor);
+        }
+        this.hwAccelProbability = probability;
+        this.hwAccelFactor = factor;
+    }
+
+    /**
+     * Sets the range of the bandwidth of the links. Both directions of a link have the same bandwidth.
+     */
+    public void setBandwidth(int min, int max) {
+        this.bandwidth = range(min, max, 0);
+    }
+
+    /**
+     * Sets the range of the delay of the links. Both directions of a link have the same delay.
+     */
+    public void setDelay(int min, int max) {
+        this.delay = range(min, max, 0);
+    }
+
+    public void setNumFlows(int numFlows) {
+        this.numFlows = range(numFlows, numFlows, 0)[0];
+    }
+
+    /**
+     * Sets the range of the number of egress nodes per flow. It is limited by the number of access switches besides the
+     * ingress node.
+     */
+    public void setNumDestinations(int min, int max) {
+        this.numDestinations = range(min, max, 1);
+    }
+
+    /**
+     * Sets the range of the SFC length. The VNF types of an SFC are distinct as far as possible, longer SFCs repeat
+     * them.
+     */
+    public void setSfcLength(int min, int max) {
+        this.sfcLength = range(min, max, 0);
+    }
+
+    public void setDemand(int min, int max) {
+        this.demand = range(min, max, 1);
+    }
+
+    /**
+     * @param seed the seed of the random choices
+     * @return a request
+     */
+    public NfvPlacementRequest generate(long seed) {
+        Random random = new Random(seed);
+        TopologyBlueprint topo = shape.create(random);
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < topo.getNumSwitches(); i++) {
+            if (topo.isPoPCandidate(i)) {
+                candidates.add(i);
+            }
+        }
+        Collections.shuffle(candidates, random);
+        Set<Integer> pops = new LinkedHashSet<>(
+                candidates.subList(0, Math.min(candidates.size(),
+                        Math.max(1, (int) Math.round(popDensity * candidates.size())))));
+
+        List<TopologyVertex> vertices = new ArrayList<>(topo.getNumSwitches());
+        List<TopologyVertex> accessSwitches = new ArrayList<>();
+        for (int i = 0; i < topo.getNumSwitches(); i++) {
+            TopologyVertex vertex = new DefaultTopologyVertex(topo.getDeviceId(i));
+            vertices.add(pops.contains(i) ? pop(vertex, random) : new WrappedVertex(vertex));
+            if (topo.isAccessSwitch(i)) {
+                accessSwitches.add(vertices.get(i));
+            }
+        }
+
+        Set<TopologyEdge> edges = new LinkedHashSet<>();
+        Map<Link, Integer> bandwidths = new HashMap<>();
+        Map<Link, Integer> delays = new HashMap<>();
+        int[] nextPort = new int[topo.getNumSwitches()];
+        for (int[] pair : topo.getLinks()) {
+            // like Mininet, the ports of a switch are numbered in the order of its links
+            long portA = ++nextPort[pair[0]];
+            long portB = ++nextPort[pair[1]];
+            int linkBandwidth = draw(bandwidth, random);
+            int linkDelay = draw(delay, random);
+            for (boolean forward : new boolean[]{true, false}) {
+                TopologyVertex src = vertices.get(forward ? pair[0] : pair[1]);
+                TopologyVertex dst = vertices.get(forward ? pair[1] : pair[0]);
+                Link link = DefaultLink.builder()
+                                       .providerId(PROVIDER_ID)
+                                       .src(new ConnectPoint(src.deviceId(),
+                                               PortNumber.portNumber(forward ? portA : portB)))
+                                       .dst(new ConnectPoint(dst.deviceId(),
+                                               PortNumber.portNumber(forward ? portB : portA)))
+                                       .type(Link.Type.DIRECT)
+                                       .build();
+                edges.add(new DefaultTopologyEdge(src, dst, link));
+                bandwidths.put(link, linkBandwidth);
+                delays.put(link, linkDelay);
+            }
+        }
+        ILinkWeigher linkWeigher = bandwidth[0] == bandwidth[1] && delay[0] == delay[1] ?
+                new ConstantLinkWeigher(bandwidth[0], delay[0]) : new MapLinkWeigher(bandwidths, delays);
+
+        return new NfvPlacementRequest(new LinkedHashSet<>(vertices), edges, traffic(accessSwitches, topo, random),
+                linkWeigher);
+    }
+
+    /**
+     * Generates requests lazily, so that thousands of them can be run without keeping them in memory. The i-th request
+     * is the one of {@link #generate(long)} with {@link #instanceSeed(long, int) instanceSeed(seed, i)}, so single
+     * requests can be reproduced.
+     *
+     * @param seed  the seed of the whole sequence
+     * @param count the number of requests
+     * @return the requests
+     */
+    public Stream<NfvPlacementRequest> generate(long seed, int count) {
+        return IntStream.range(0, count).mapToObj(i -> generate(instanceSeed(seed, i)));
+    }
+
+    /**
+     * @return the seed of the i-th request of a sequence, scrambled so that the requests of neighbouring seeds and
+     * indexes are unrelated
+     */
+    public static long instanceSeed(long seed, int index) {
+        // finalizer of SplitMix64
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private List<NprTraffic> traffic(List<TopologyVertex> accessSwitches, TopologyBlueprint topo, Random random) {
+        if (numFlows > 0 && accessSwitches.size() < 2) {
+            throw new IllegalStateException(topo + " has less than two access switches");
+        }
+        List<NprNfvTypes.Type> types = new ArrayList<>(Arrays.asList(NprNfvTypes.Type.values()));
+        List<NprTraffic> traffic = new ArrayList<>(numFlows);
+        for (int f = 0; f < numFlows; f++) {
+            TopologyVertex ingress = accessSwitches.get(random.nextInt(accessSwitches.size()));
+            int destinations = Math.min(draw(numDestinations, random), accessSwitches.size() - 1);
+            Set<TopologyVertex> egressNodes = new LinkedHashSet<>();
+            while (egressNodes.size() < destinations) {
+                TopologyVertex egress = accessSwitches.get(random.nextInt(accessSwitches.size()));
+                if (egress != ingress) {
+                    egressNodes.add(egress);
+                }
+            }
+
+            int length = draw(sfcLength, random);
+            Collections.shuffle(types, random);
+            List<NprNfvTypes.Type> sfc = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                sfc.add(types.get(i % types.size()));
+            }
+            traffic.add(new NprTraffic(sfc, ingress, egressNodes, draw(demand, random)));
+        }
+        return traffic;
+    }
+
+    private TopologyVertex pop(TopologyVertex vertex, Random random) {
+        Map<NprNfvTypes.Type, Integer> vnfDeploymentCost = new HashMap<>();
+        Map<NprNfvTypes.Type, Double> hwAccelFactors = new HashMap<>();
+        for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+            vnfDeploymentCost.put(type, draw(deploymentCost, random));
+            hwAccelFactors.put(type, random.nextDouble() < hwAccelProbability ? hwAccelFactor : 1.0);
+        }
+        Map<NprResources, Integer> resourceCapacity = new HashMap<>();
+        resourceCapacity.put(NprResources.CPU_CORES, draw(cpuCores, random));
+        resourceCapacity.put(NprResources.RAM_IN_GB, draw(ramInGb, random));
+        return new WrappedPoPVertex(vertex, vnfDeploymentCost, hwAccelFactors, resourceCapacity);
+    }
+
+    private static int draw(int[] range, Random random) {
+        return range[0] + random.nextInt(range[1] - range[0] + 1);
+    }
+
+    private static int[] range(int min, int max, int lowest) {
+        if (min < lowest || max < min) {
+            throw new IllegalArgumentException("invalid range [" + min + ", " + max + "], must start at " + lowest +
+                                               " or above");
+        }
+        return new int[]{min, max};
+    }
+}
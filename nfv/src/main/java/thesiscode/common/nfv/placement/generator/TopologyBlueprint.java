@@ -0,0 +1,75 @@
+package thesiscode.common.nfv.placement.generator;
+
+import org.onosproject.net.DeviceId;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The structure of a topology without any attributes: switches, the (bidirectional) links between them, the switches
+ * which may be PoPs and the access switches, i.e. the ones hosts are attached to. The switches are referred to by their
+ * index. Built by the {@link TopologyShapes}, turned into requests by the {@link SyntheticRequestGenerator}.
+ */
+public final class TopologyBlueprint {
+    private final String name;
+    private final List<DeviceId> devices = new ArrayList<>();
+    private final List<int[]> links = new ArrayList<>();
+    private final BitSet popCandidates = new BitSet();
+    private final BitSet accessSwitches = new BitSet();
+
+    TopologyBlueprint(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the index of the added switch
+     */
+    int addSwitch(DeviceId deviceId, boolean popCandidate, boolean access) {
+        int index = devices.size();
+        devices.add(deviceId);
+        popCandidates.set(index, popCandidate);
+        accessSwitches.set(index, access);
+        return index;
+    }
+
+    void addLink(int a, int b) {
+        if (a == b || a < 0 || b < 0 || a >= devices.size() || b >= devices.size()) {
+            throw new IllegalArgumentException("invalid link " + a + "<->" + b);
+        }
+        links.add(new int[]{a, b});
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumSwitches() {
+        return devices.size();
+    }
+
+    public DeviceId getDeviceId(int index) {
+        return devices.get(index);
+    }
+
+    /**
+     * @return the links as pairs of switch indexes, every link is contained once and used in both directions
+     */
+    public List<int[]> getLinks() {
+        return Collections.unmodifiableList(links);
+    }
+
+    public boolean isPoPCandidate(int index) {
+        return popCandidates.get(index);
+    }
+
+    public boolean isAccessSwitch(int index) {
+        return accessSwitches.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return name + "(switches=" + devices.size() + ",links=" + links.size() + ")";
+    }
+}
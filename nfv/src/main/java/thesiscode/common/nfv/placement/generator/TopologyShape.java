@@ -0,0 +1,16 @@
+package thesiscode.common.nfv.placement.generator;
+
+import java.util.Random;
+
+/**
+ * A family of topologies, see {@link TopologyShapes}.
+ */
+@FunctionalInterface
+public interface TopologyShape {
+
+    /**
+     * @param random the source of the random choices of random shapes, fixed shapes ignore it
+     * @return a topology of this shape
+     */
+    TopologyBlueprint create(Random random);
+}
@@ -0,0 +1,268 @@
+package thesiscode.common.nfv.placement.generator;
+
+import org.onosproject.net.DeviceId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The topology shapes of the {@link SyntheticRequestGenerator}: the PaperTopo and TetraTopo of mn/topo/Topos.py with
+ * the device IDs Mininet gives their switches, and the scalable fat-tree, Waxman and ring-of-rings families. The
+ * switches of the scalable shapes are numbered from of:0000000000000001 on.
+ */
+public final class TopologyShapes {
+
+    private TopologyShapes() {
+    }
+
+    /**
+     * The topology of the paper (PaperTopo in Topos.py): switches s1 to s9, the server is attached to s1 and the
+     * clients to s8 and s9. Like the RequestGenerator of the app, every switch may be a PoP, as all of their DPIDs
+     * start with 1.
+     */
+    public static TopologyShape paper() {
+        return random -> {
+            TopologyBlueprint topo = new TopologyBlueprint("paper");
+            for (int i = 1; i <= 9; i++) {
+                topo.addSwitch(mininetDeviceId("1", i), true, i == 1 || i == 8 || i == 9);
+            }
+            int[][] links = {{1, 2}, {2, 3}, {3, 4}, {5, 6}, {6, 7}, {7, 8}, {2, 5}, {3, 6}, {4, 7}, {9, 5}};
+            for (int[] link : links) {
+                topo.addLink(link[0] - 1, link[1] - 1);
+            }
+            return topo;
+        };
+    }
+
+    /**
+     * The TetraTopo of Topos.py: four fully meshed DXTTs, ten DXTs with two DXTTs each and 24 TBSs, which are attached
+     * to the DXTs in stars or rings. Hosts are attached to the TBSs. Like the RequestGenerator of the app, the DXTTs
+     * and DXTs may be PoPs.
+     */
+    public static TopologyShape tetra() {
+        return random -> {
+            TopologyBlueprint topo = new TopologyBlueprint("tetra");
+            int[] dxtt = new int[4];
+            for (int i = 0; i < dxtt.length; i++) {
+                // the DPID of a DXTT is its number, which Mininet pads with zeros
+                dxtt[i] = topo.addSwitch(mininetDeviceId("0", i + 1), true, false);
+            }
+            int[] dxt = new int[10];
+            for (int i = 0; i < dxt.length; i++) {
+                dxt[i] = topo.addSwitch(mininetDeviceId("1", i + 1), true, false);
+            }
+            int[] tbs = new int[24];
+            for (int i = 0; i < tbs.length; i++) {
+                tbs[i] = topo.addSwitch(mininetDeviceId("2", i + 1), false, true);
+            }
+
+            for (int i = 0; i < dxtt.length; i++) {
+                for (int j = i + 1; j < dxtt.length; j++) {
+                    topo.addLink(dxtt[i], dxtt[j]);
+                }
+            }
+            int[][] dxtToDxtt = {{0, 1}, {0, 1}, {1, 3}, {1, 3}, {1, 3}, {2, 3}, {2, 3}, {0, 2}, {2, 0}, {0, 2}};
+            for (int i = 0; i < dxt.length; i++) {
+                for (int j : dxtToDxtt[i]) {
+                    topo.addLink(dxt[i], dxtt[j]);
+                }
+            }
+            int[][] tbsToDxt = {{0, 0}, {1, 0}, {2, 1}, {3, 1}, {4, 1}, {5, 2}, {6, 2}, {7, 3}, {8, 3}, {9, 4}, {10, 4},
+                    {12, 5}, {11, 5}, {13, 6}, {15, 6}, {16, 7}, {17, 7}, {18, 8}, {19, 8}, {20, 8}, {21, 9}, {23, 9}};
+            for (int[] link : tbsToDxt) {
+                topo.addLink(tbs[link[0]], dxt[link[1]]);
+            }
+            int[][] tbsRings = {{6, 5}, {12, 11}, {15, 14}, {14, 13}, {17, 16}, {21, 22}, {22, 23}};
+            for (int[] link : tbsRings) {
+                topo.addLink(tbs[link[0]], tbs[link[1]]);
+            }
+            return topo;
+        };
+    }
+
+    /**
+     * A fat-tree of k-port switches: (k/2)^2 core switches and k pods of k/2 aggregation and k/2 edge switches. Every
+     * edge switch is linked to all aggregation switches of its pod, the i-th aggregation switch of every pod to the
+     * i-th group of k/2 core switches. Hosts are attached to the edge switches, every switch may be a PoP.
+     *
+     * @param k the number of ports per switch, even and at least 2
+     */
+    public static TopologyShape fatTree(int k) {
+        if (k < 2 || k % 2 != 0) {
+            throw new IllegalArgumentException("k must be even and at least 2, was " + k);
+        }
+        return random -> {
+            TopologyBlueprint topo = new TopologyBlueprint("fat-tree(k=" + k + ")");
+            int half = k / 2;
+            int[] core = new int[half * half];
+            for (int i = 0; i < core.length; i++) {
+                core[i] = topo.addSwitch(numberedDeviceId(topo.getNumSwitches()), true, false);
+            }
+            for (int pod = 0; pod < k; pod++) {
+                int[] aggregation = new int[half];
+                for (int i = 0; i < half; i++) {
+                    aggregation[i] = topo.addSwitch(numberedDeviceId(topo.getNumSwitches()), true, false);
+                    for (int j = 0; j < half; j++) {
+                        topo.addLink(aggregation[i], core[i * half + j]);
+                    }
+                }
+                for (int i = 0; i < half; i++) {
+                    int edge = topo.addSwitch(numberedDeviceId(topo.getNumSwitches()), true, true);
+                    for (int agg : aggregation) {
+                        topo.addLink(edge, agg);
+                    }
+                }
+            }
+            return topo;
+        };
+    }
+
+    /**
+     * A Waxman graph: the switches are placed uniformly at random in the unit square and every pair of switches at
+     * distance d is linked with probability {@code alpha * exp(-d / (beta * L))}, where L is the largest distance
+     * between two switches. Larger alphas give more links, larger betas more long links. Afterwards, every component is
+     * linked to the component of the first switch by the shortest possible link, so the graph is connected. Hosts may
+     * be attached to every switch and every switch may be a PoP.
+     *
+     * @param numSwitches the number of switches, at least 1
+     * @param alpha       the link density, in (0, 1]
+     * @param beta        the share of long links, positive
+     */
+    public static TopologyShape waxman(int numSwitches, double alpha, double beta) {
+        if (numSwitches < 1 || alpha <= 0 || alpha > 1 || beta <= 0) {
+            throw new IllegalArgumentException(
+                    "invalid Waxman parameters n=" + numSwitches + ", alpha=" + alpha + ", beta=" + beta);
+        }
+        return random -> {
+            TopologyBlueprint topo = new TopologyBlueprint(
+                    "waxman(n=" + numSwitches + ",alpha=" + alpha + ",beta=" + beta + ")");
+            double[] x = new double[numSwitches];
+            double[] y = new double[numSwitches];
+            for (int i = 0; i < numSwitches; i++) {
+                topo.addSwitch(numberedDeviceId(i), true, true);
+                x[i] = random.nextDouble();
+                y[i] = random.nextDouble();
+            }
+            double maxDistance = 0;
+            for (int i = 0; i < numSwitches; i++) {
+                for (int j = i + 1; j < numSwitches; j++) {
+                    maxDistance = Math.max(maxDistance, Math.hypot(x[i] - x[j], y[i] - y[j]));
+                }
+            }
+
+            int[] component = new int[numSwitches];
+            for (int i = 0; i < numSwitches; i++) {
+                component[i] = i;
+            }
+            for (int i = 0; i < numSwitches; i++) {
+                for (int j = i + 1; j < numSwitches; j++) {
+                    double distance = Math.hypot(x[i] - x[j], y[i] - y[j]);
+                    if (random.nextDouble() < alpha * Math.exp(-distance / (beta * maxDistance))) {
+                        topo.addLink(i, j);
+                        merge(component, i, j);
+                    }
+                }
+            }
+
+            for (int i = 1; i < numSwitches; i++) {
+                if (find(component, i) == find(component, 0)) {
+                    continue;
+                }
+                // shortest link between the component of i and the one of the first switch
+                int bestInner = -1;
+                int bestOuter = -1;
+                double bestDistance = Double.POSITIVE_INFINITY;
+                for (int inner = 0; inner < numSwitches; inner++) {
+                    if (find(component, inner) != find(component, 0)) {
+                        continue;
+                    }
+                    for (int outer = i; outer < numSwitches; outer++) {
+                        double distance = Math.hypot(x[inner] - x[outer], y[inner] - y[outer]);
+                        if (find(component, outer) == find(component, i) && distance < bestDistance) {
+                            bestDistance = distance;
+                            bestInner = inner;
+                            bestOuter = outer;
+                        }
+                    }
+                }
+                topo.addLink(bestInner, bestOuter);
+                merge(component, bestInner, bestOuter);
+            }
+            return topo;
+        };
+    }
+
+    /**
+     * Rings of switches whose first switches (the gateways) form a backbone ring. Hosts are attached to the switches
+     * which are no gateways (to all switches if the rings consist of their gateways only), every switch may be a PoP.
+     *
+     * @param numRings the number of rings, at least 1
+     * @param ringSize the number of switches per ring including the gateway, at least 1
+     */
+    public static TopologyShape ringOfRings(int numRings, int ringSize) {
+        if (numRings < 1 || ringSize < 1) {
+            throw new IllegalArgumentException("invalid rings " + numRings + "x" + ringSize);
+        }
+        return random -> {
+            TopologyBlueprint topo = new TopologyBlueprint("ring-of-rings(" + numRings + "x" + ringSize + ")");
+            int[] gateways = new int[numRings];
+            for (int r = 0; r < numRings; r++) {
+                int[] ring = new int[ringSize];
+                for (int i = 0; i < ringSize; i++) {
+                    ring[i] = topo.addSwitch(numberedDeviceId(topo.getNumSwitches()), true, i > 0 || ringSize == 1);
+                }
+                gateways[r] = ring[0];
+                linkRing(topo, ring);
+            }
+            linkRing(topo, gateways);
+            return topo;
+        };
+    }
+
+    /**
+     * @return all shapes with fixed parameters of about the given number of switches (at least 10), in the order
+     * paper, tetra, fat-tree, Waxman, ring-of-rings; for regression runs over every shape
+     */
+    public static List<TopologyShape> all(int numSwitches) {
+        int n = Math.max(10, numSwitches);
+        // a fat-tree with k ports has 5k^2/4 switches
+        int k = Math.max(2, 2 * (int) Math.round(Math.sqrt(n / 5.0)));
+        int ringSize = Math.max(2, (int) Math.round(Math.sqrt(n)));
+        return new ArrayList<>(Arrays.asList(paper(), tetra(), fatTree(k), waxman(n, 0.4, 0.15),
+                ringOfRings(Math.max(1, n / ringSize), ringSize)));
+    }
+
+    private static void linkRing(TopologyBlueprint topo, int[] ring) {
+        if (ring.length == 2) {
+            topo.addLink(ring[0], ring[1]);
+        } else if (ring.length > 2) {
+            for (int i = 0; i < ring.length; i++) {
+                topo.addLink(ring[i], ring[(i + 1) % ring.length]);
+            }
+        }
+    }
+
+    private static int find(int[] component, int i) {
+        while (component[i] != i) {
+            component[i] = component[component[i]];
+            i = component[i];
+        }
+        return i;
+    }
+
+    private static void merge(int[] component, int a, int b) {
+        component[find(component, a)] = find(component, b);
+    }
+
+    private static DeviceId numberedDeviceId(int index) {
+        return DeviceId.deviceId(String.format("of:%016x", index + 1));
+    }
+
+    /**
+     * @return the device ID of a switch created by create_dpid_from_id(msb, id) of Topos.py
+     */
+    private static DeviceId mininetDeviceId(String msb, int id) {
+        return DeviceId.deviceId(String.format("of:%s%015d", msb, id));
+    }
+}
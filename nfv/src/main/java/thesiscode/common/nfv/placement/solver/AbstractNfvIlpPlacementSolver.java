@@ -1,72 +1,122 @@
 package thesiscode.common.nfv.placement.solver;
 
-import gurobi.GRB;
-import gurobi.GRBEnv;
-import gurobi.GRBException;
-import gurobi.GRBModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.ilp.IlpBackend;
+import thesiscode.common.nfv.placement.solver.ilp.IlpException;
+import thesiscode.common.nfv.placement.solver.ilp.IlpIncumbentListener;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+import thesiscode.common.nfv.placement.solver.presolve.ReducedRequest;
+import thesiscode.common.nfv.traffic.NprTraffic;
 
 /**
  * Abstract superclass for all ILP implementations which implements the solve method. Template methods are called to add
- * the variables, constraints and call the actual optimization process.
+ * the variables and constraints to a solver-neutral {@link IlpModel}, which is then optimized by the configured
+ * {@link IlpBackend}.
+ * <p>
+ * If presolve is enabled, the topology of the request is reduced before the model is built (see
+ * {@link ReducedRequest}). The template methods then see the reduced request; solutions and incumbents are mapped back
+ * onto the original request before they are returned.
+ * <p>
+ * Every solve is recorded in a {@link SolveTelemetry}, see {@link #getLastTelemetry()}.
  */
 public abstract class AbstractNfvIlpPlacementSolver implements INfvPlacementSolver {
-    private final static String ILP_FILE_PATH = "/home/felix/gurobi.ilp";
     private Logger log = LoggerFactory.getLogger(getClass());
-    protected GRBEnv env;
+    protected IlpBackend backend;
     protected boolean verbose; // flag to indicate whether verbose output is wanted
-    protected double runtime = 0; // stores the last runtime (i.e. the runtime of model.optimize();)
+    protected boolean debugNames; // flag to indicate whether variable and constraint names are passed to the solver
+    protected double runtime = 0; // stores the last runtime (i.e. the runtime of the backend's optimization)
     protected double modelTime = 0;
+    protected NfvPlacementSolution startSolution; // previous solution used as MIP start, may be null
+    protected boolean keepModel; // flag to indicate whether the model is kept and updated for the next request
+    protected long timeLimitMs = Long.MAX_VALUE; // time after which the backend stops and returns its incumbent
+    protected double mipGap = Double.NaN; // relative MIP gap passed to the backend, NaN keeps the backend's default
+    protected NfvIncumbentListener incumbentListener; // notified about every incumbent, may be null
+    protected IlpStatus lastStatus; // status of the last optimization, null if it failed
+    protected boolean presolve; // flag to indicate whether the topology of a request is reduced before modelling
+    private volatile SolveTelemetry lastTelemetry; // record of the last solve, null before the first one
+
+    // the kept model and the request it currently represents, only set if keepModel is set
+    private IlpModel keptModel;
+    private NfvPlacementRequest keptRequest;
 
     @Override
-    public NfvPlacementSolution solve(NfvPlacementRequest req) {
+    public NfvPlacementSolution solve(NfvPlacementRequest originalReq) {
         NfvPlacementSolution sol = null;
-        GRBModel model = null;
+        lastStatus = null;
         try {
-            // create a new model
-            model = new GRBModel(env);
-            log.debug("finished creating model");
-
-            // let the solver initialize itself and add all variables to the model
             double beforeModeling = System.currentTimeMillis();
-            init(req, model);
-            addVariables(model);
-            log.debug("finished init and adding variables");
-
-            // add the objective(s) to the model
-            addObjective(model);
-            log.debug("finished adding objective");
-
-            // add all constraints to the model
-            print("start adding constraints");
-            addConstraints(model);
-            print("finished adding constraints");
-            modelTime = System.currentTimeMillis() - beforeModeling;
+            final ReducedRequest reduction = presolve ? ReducedRequest.of(originalReq, canContractChains()) : null;
+            NfvPlacementRequest req = originalReq;
+            if (reduction != null) {
+                req = reduction.getReduced();
+                log.debug("finished presolve: {}", reduction);
+            }
+            final SolveTelemetry telemetry = new SolveTelemetry(originalReq, req);
+            lastTelemetry = telemetry;
 
-            // adapt verbosity of Gurobi
-            if (!verbose) {
-                model.set(GRB.IntParam.OutputFlag, 0);
+            IlpModel model;
+            boolean reused = false;
+            if (keepModel && keptModel != null && req.hasSameStructure(keptRequest) && updateModel(req, keptModel)) {
+                // only coefficients changed, the kept model was updated in place
+                model = keptModel;
+                model.clearStart();
+                reused = true;
+                log.debug("finished updating kept model");
+            } else {
+                // create a new model
+                model = new IlpModel();
+                model.setDebugNames(debugNames);
+                log.debug("finished creating model");
+
+                // let the solver initialize itself and add all variables to the model
+                init(req, model);
+                addVariables(model);
+                log.debug("finished init and adding variables");
+
+                // add the objective(s) to the model
+                addObjective(model);
+                log.debug("finished adding objective");
+
+                // add all constraints to the model
+                print("start adding constraints");
+                addConstraints(model);
+                print("finished adding constraints");
+            }
+            if (keepModel) {
+                keptModel = model;
+                keptRequest = req;
             }
 
-            print("start optimizing");
+            // map the previous solution onto start values of the new model
+            if (startSolution != null) {
+                addStart(reduction == null ? startSolution : reduction.reduce(startSolution), model);
+                log.debug("finished adding start");
+            }
+            modelTime = System.currentTimeMillis() - beforeModeling;
+            telemetry.setModel(model, reused, modelTime);
+
+            final NfvIncumbentListener listener = incumbentListener;
+            backend.setIncumbentListener(listener == null ? null : incumbent -> reportIncumbent(listener, incumbent,
+                    reduction));
+
+            print("start optimizing with backend " + backend.getName());
             // this is the actual optimization. the runtime of it is stored
-            double beforeOptimizing = System.currentTimeMillis();
-            model.optimize();
-            runtime = System.currentTimeMillis() - beforeOptimizing;
+            IlpResult result = backend.optimize(model, verbose);
+            runtime = result.getRuntime();
+            lastStatus = result.getStatus();
+            telemetry.setResult(backend.getName(), result);
             print("finished optimizing");
+            log.debug("{}", telemetry);
 
-            /*
-             * if during optimization the model was found to be infeasible, an Irreducible Infeasible Set (IIS) is
-             * computed which contains the minimum set of variables and constraints which lead to the infeasibility.
-             * the IIS is then written to a file.
-             * great tool for debugging the model.
-             */
-            if (model.get(GRB.IntAttr.Status) == GRB.Status.INFEASIBLE) {
-                model.computeIIS();
-                model.write(ILP_FILE_PATH);
-                System.err.println("Model was infeasible, IIS written to " + ILP_FILE_PATH + ". Returning null");
-                //System.err.println("Model was infeasible. Returning null");
+            if (result.getStatus() == IlpStatus.INFEASIBLE) {
+                System.err.println("Model was infeasible. Returning null");
+                return null;
+            }
+            if (!result.hasSolution()) {
+                System.err.println("No solution found (" + result.getStatus() + "). Returning null");
                 return null;
             }
             log.debug("successfully finished optimizing, now extracting solution");
@@ -75,29 +125,230 @@ public abstract class AbstractNfvIlpPlacementSolver implements INfvPlacementSolv
              * extract the solution from the variables and create a better-understandable representation of the solution
              * by using the NfvPlacementSolution class.
              */
-            sol = extractSolution(model);
-            log.debug("finished extracting solution");
-
-            // finished, throw the model away.
-            model.dispose();
-        } catch (GRBException e) {
-            for (StackTraceElement ste : e.getStackTrace()) {
-                log.error(ste.toString());
+            sol = extractSolution(result);
+            if (reduction != null) {
+                sol = reduction.expand(sol);
             }
+            log.debug("finished extracting solution");
+        } catch (IlpException e) {
+            log.error("optimization failed", e);
             e.printStackTrace();
         }
         return sol;
     }
 
+    /**
+     * Decodes an incumbent of the backend and passes it on to the listener.
+     */
+    private void reportIncumbent(NfvIncumbentListener listener, IlpResult incumbent, ReducedRequest reduction) {
+        try {
+            NfvPlacementSolution solution = extractSolution(incumbent);
+            if (reduction != null) {
+                solution = reduction.expand(solution);
+            }
+            log.debug("incumbent with objective {} after {} ms", incumbent.getObjVal(), incumbent.getRuntime());
+            listener.incumbentFound(solution);
+        } catch (RuntimeException e) {
+            // the optimization must not fail because of the listener
+            log.warn("could not report incumbent", e);
+        }
+    }
+
     @Override
     public double getLastRuntime() {
         return runtime;
     }
 
+    /**
+     * @return the record of the last solve, null if nothing was solved yet; its optimization part is unset if the
+     * optimization failed
+     */
+    public SolveTelemetry getLastTelemetry() {
+        return lastTelemetry;
+    }
+
+    /**
+     * @return the status of the last optimization, e.g. whether the returned solution is proven optimal, or null if the
+     * optimization failed
+     */
+    public IlpStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Asks the backend to stop the running solve as soon as possible, see {@link IlpBackend#terminate()}. May be called
+     * from another thread, the solve then returns the best solution found so far or null. The request is ignored while
+     * no optimization is in progress, e.g. while the model is built, so it has to be repeated until the solve returned.
+     */
+    public void terminate() {
+        backend.terminate();
+    }
+
+    public boolean isPresolve() {
+        return presolve;
+    }
+
+    /**
+     * Enables or disables the reduction of the topology of the requests before the model is built, see
+     * {@link ReducedRequest}.
+     *
+     * @param presolve whether the topology is reduced
+     */
+    public void setPresolve(boolean presolve) {
+        this.presolve = presolve;
+    }
+
+    /**
+     * Whether the presolve may contract chains of switches into single edges, i.e. whether the objective does not
+     * depend on the number of edges used by a flow. True by default.
+     *
+     * @return true if chains may be contracted
+     */
+    protected boolean canContractChains() {
+        return true;
+    }
+
     public double getModelTime() {
         return modelTime;
     }
 
+    public IlpBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Sets the backend which optimizes the models built by this solver, e.g. to compare the time-to-solution of
+     * different backends for the same {@link NfvPlacementRequest}.
+     *
+     * @param backend the backend to use
+     */
+    public void setBackend(IlpBackend backend) {
+        if (this.backend != null) {
+            this.backend.dispose();
+        }
+        this.backend = backend;
+        backend.setKeepModel(keepModel);
+        backend.setTimeLimit(timeLimitMs);
+        if (!Double.isNaN(mipGap)) {
+            backend.setMipGap(mipGap);
+        }
+    }
+
+    public boolean isDebugNames() {
+        return debugNames;
+    }
+
+    /**
+     * Sets whether the names of all variables and constraints are built and passed to the solver, e.g. to inspect
+     * the model written by the solver. Without this flag, names are only built if the model is infeasible and an IIS
+     * is written.
+     *
+     * @param debugNames true if names should always be built
+     */
+    public void setDebugNames(boolean debugNames) {
+        this.debugNames = debugNames;
+    }
+
+    public NfvPlacementSolution getStartSolution() {
+        return startSolution;
+    }
+
+    /**
+     * Sets a previous solution, e.g. the currently installed one, which is used as MIP start of the next solves. The
+     * request of the previous solution may differ from the solved one; flows, vertices and edges which no longer exist
+     * are dropped and the backend completes the remaining start values.
+     *
+     * @param startSolution the previous solution or null to solve from scratch
+     */
+    public void setStartSolution(NfvPlacementSolution startSolution) {
+        this.startSolution = startSolution;
+    }
+
+    public boolean isKeepModel() {
+        return keepModel;
+    }
+
+    /**
+     * Sets whether the model is kept across solves. If the next request has the same structure (see
+     * {@link NfvPlacementRequest#hasSameStructure(NfvPlacementRequest)}), the kept model is updated by
+     * {@link #updateModel(NfvPlacementRequest, IlpModel)} instead of being rebuilt and the backend re-optimizes its
+     * kept translation in place. Otherwise, e.g. if a link or an egress node was added or removed, the model is
+     * rebuilt. The solver then holds resources of the backend until this flag is unset again.
+     *
+     * @param keepModel true if the model should be kept
+     */
+    public void setKeepModel(boolean keepModel) {
+        this.keepModel = keepModel;
+        backend.setKeepModel(keepModel);
+        if (!keepModel) {
+            keptModel = null;
+            keptRequest = null;
+        }
+    }
+
+    public long getTimeLimit() {
+        return timeLimitMs;
+    }
+
+    /**
+     * Sets the time after which the backend stops optimizing. The solver then returns the best solution found so far
+     * or null if there is none.
+     *
+     * @param timeLimitMs the time limit in ms, Long.MAX_VALUE for no limit
+     */
+    public void setTimeLimit(long timeLimitMs) {
+        this.timeLimitMs = timeLimitMs;
+        backend.setTimeLimit(timeLimitMs);
+    }
+
+    public double getMipGap() {
+        return mipGap;
+    }
+
+    /**
+     * Sets the relative gap between the incumbent and the best bound at which the backend stops optimizing and
+     * returns the incumbent.
+     *
+     * @param mipGap the relative gap, e.g. 0.01 for 1%
+     */
+    public void setMipGap(double mipGap) {
+        this.mipGap = mipGap;
+        backend.setMipGap(mipGap);
+    }
+
+    public NfvIncumbentListener getIncumbentListener() {
+        return incumbentListener;
+    }
+
+    /**
+     * Sets a listener which is notified about every incumbent found during the next solves, so that a caller can use
+     * the best solution found so far while the solver is still improving it (anytime solving). Incumbents are decoded
+     * into {@link NfvPlacementSolution}s on the solving thread.
+     *
+     * @param incumbentListener the listener, null to remove it
+     */
+    public void setIncumbentListener(NfvIncumbentListener incumbentListener) {
+        this.incumbentListener = incumbentListener;
+    }
+
+    /**
+     * Finds the flow of a previous solution which corresponds to a flow of the current request. Flows are matched by
+     * their ingress device and their SFC, as the request wraps vertices and flows anew.
+     *
+     * @param previous the previous solution
+     * @param flow     the flow of the current request
+     * @return the corresponding flow of the previous solution or null if there is none
+     */
+    protected static NprTraffic findPreviousFlow(NfvPlacementSolution previous, NprTraffic flow) {
+        for (NprTraffic candidate : previous.getRequest().getTraffic()) {
+            if (candidate.getIngressNode().deviceId().equals(flow.getIngressNode().deviceId()) &&
+                    candidate.getSfc().equals(flow.getSfc())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
     /**
      * Convenience method to print a String if the verbose flag is set.
      *
@@ -110,13 +361,37 @@ public abstract class AbstractNfvIlpPlacementSolver implements INfvPlacementSolv
     }
 
     // template methods
-    protected abstract void init(NfvPlacementRequest req, GRBModel model) throws GRBException;
+    protected abstract void init(NfvPlacementRequest req, IlpModel model);
 
-    protected abstract void addVariables(GRBModel model) throws GRBException;
+    protected abstract void addVariables(IlpModel model);
 
-    protected abstract void addObjective(GRBModel model) throws GRBException;
+    protected abstract void addObjective(IlpModel model);
 
-    protected abstract void addConstraints(GRBModel model) throws GRBException;
+    protected abstract void addConstraints(IlpModel model);
+
+    protected abstract NfvPlacementSolution extractSolution(IlpResult result);
+
+    /**
+     * Updates a model built for a request with the same structure to the given request, i.e. re-initializes the solver
+     * with the request and updates all coefficients and right hand sides which depend on link or PoP attributes.
+     * Implementations must not modify the model or the solver if they return false. Returns false by default, i.e.
+     * the model is always rebuilt.
+     *
+     * @param req   the new request, see {@link NfvPlacementRequest#hasSameStructure(NfvPlacementRequest)}
+     * @param model the model built for the previous request
+     * @return true if the model was updated, false if it has to be rebuilt
+     */
+    protected boolean updateModel(NfvPlacementRequest req, IlpModel model) {
+        return false;
+    }
 
-    protected abstract NfvPlacementSolution extractSolution(GRBModel model) throws GRBException;
+    /**
+     * Sets start values for the variables of the model from a previous solution. Called after the constraints were
+     * added, does nothing by default.
+     *
+     * @param start the previous solution
+     * @param model the model to set the start values on
+     */
+    protected void addStart(NfvPlacementSolution start, IlpModel model) {
+    }
 }
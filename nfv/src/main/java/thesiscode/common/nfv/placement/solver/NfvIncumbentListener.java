@@ -0,0 +1,16 @@
+package thesiscode.common.nfv.placement.solver;
+
+/**
+ * Listener which is notified about the solutions an {@link AbstractNfvIlpPlacementSolver} finds before the
+ * optimization finished, e.g. to use the best solution found so far once a deadline passed.
+ */
+public interface NfvIncumbentListener {
+
+    /**
+     * Called by the solving thread whenever the backend found a new incumbent. Later incumbents are better than
+     * earlier ones w.r.t. the (hierarchical) objectives of the solver.
+     *
+     * @param solution the incumbent, decoded like a final solution
+     */
+    void incumbentFound(NfvPlacementSolution solution);
+}
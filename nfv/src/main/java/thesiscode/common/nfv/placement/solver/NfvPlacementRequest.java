@@ -3,8 +3,10 @@ package thesiscode.common.nfv.placement.solver;
 import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyVertex;
 import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
 import thesiscode.common.topo.ILinkWeigher;
 
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -14,6 +16,7 @@ public class NfvPlacementRequest {
     private Set<TopologyEdge> edges;
     private List<NprTraffic> traffic;
     private ILinkWeigher linkWeigher;
+    private CsrTopologyGraph graph;
 
 
     public NfvPlacementRequest(final Set<TopologyVertex> vertexes, final Set<TopologyEdge> edges, final List<NprTraffic> traffic, ILinkWeigher linkWeigher) {
@@ -21,6 +24,22 @@ public class NfvPlacementRequest {
         this.linkWeigher = linkWeigher;
         this.vertexes = new LinkedHashSet<>(vertexes);
         this.edges = new LinkedHashSet<>(edges);
+        this.graph = new CsrTopologyGraph(this.vertexes, this.edges, linkWeigher);
+    }
+
+    /**
+     * Creates a request for the same topology as the given request, but with other traffic. The compact graph of the
+     * given request is reused.
+     *
+     * @param topology the request to take the topology from
+     * @param traffic  the traffic of the new request
+     */
+    public NfvPlacementRequest(NfvPlacementRequest topology, final List<NprTraffic> traffic) {
+        this.traffic = traffic;
+        this.linkWeigher = topology.linkWeigher;
+        this.vertexes = topology.vertexes;
+        this.edges = topology.edges;
+        this.graph = topology.graph;
     }
 
 
@@ -39,4 +58,57 @@ public class NfvPlacementRequest {
     public ILinkWeigher getLinkWeigher() {
         return linkWeigher;
     }
+
+    /**
+     * Checks whether this request has the same structure as another one, i.e. whether a model built for the other
+     * request only differs in coefficients and right hand sides from a model built for this one. This is the case if
+     * both requests have the same vertices (including which of them are PoPs) and edges, identified by their devices,
+     * and the same flows (ingress node, SFC, egress nodes and demand), all in the same order. Link delays and
+     * bandwidths as well as the attributes of the PoPs may differ.
+     *
+     * @param other the other request
+     * @return true if both requests have the same structure
+     */
+    public boolean hasSameStructure(NfvPlacementRequest other) {
+        CsrTopologyGraph otherGraph = other.graph;
+        if (graph.getNumVertices() != otherGraph.getNumVertices() || graph.getNumEdges() != otherGraph.getNumEdges() ||
+                traffic.size() != other.traffic.size()) {
+            return false;
+        }
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            if (!graph.getVertex(v).deviceId().equals(otherGraph.getVertex(v).deviceId()) ||
+                    graph.isPoP(v) != otherGraph.isPoP(v)) {
+                return false;
+            }
+        }
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            if (graph.getSrc(e) != otherGraph.getSrc(e) || graph.getDst(e) != otherGraph.getDst(e)) {
+                return false;
+            }
+        }
+        for (int t = 0; t < traffic.size(); t++) {
+            NprTraffic flow = traffic.get(t);
+            NprTraffic otherFlow = other.traffic.get(t);
+            if (!flow.getIngressNode().deviceId().equals(otherFlow.getIngressNode().deviceId()) ||
+                    !flow.getSfc().equals(otherFlow.getSfc()) || flow.getDemand() != otherFlow.getDemand() ||
+                    flow.getEgressNodes().size() != otherFlow.getEgressNodes().size()) {
+                return false;
+            }
+            Iterator<TopologyVertex> otherEgress = otherFlow.getEgressNodes().iterator();
+            for (TopologyVertex egress : flow.getEgressNodes()) {
+                if (!egress.deviceId().equals(otherEgress.next().deviceId())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the compact graph of this request. Its vertex and edge ids follow the iteration order of
+     * {@link #getVertices()} and {@link #getEdges()}.
+     */
+    public CsrTopologyGraph getGraph() {
+        return graph;
+    }
 }
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.function.Function;
 
 public class NfvPlacementSolution {
     private Map<NprTraffic, Set<TopologyEdge>> edgesPerTraffic;
@@ -99,6 +100,108 @@ public class NfvPlacementSolution {
         this.maxDelayPerFlow = maxDelayPerTraffic;
     }
 
+    /**
+     * Creates a copy of this solution for another request whose edges are mapped by the given function, e.g. to map a
+     * solution of a reduced request back onto the edges of the original request. Placements, delays and objective
+     * values are kept, the network load is adapted to the number of mapped edges.
+     *
+     * @param request     the request of the copy
+     * @param edgeMapping maps an edge of this solution onto the edges of the copy, may map it onto no edge
+     * @return the copy
+     */
+    public NfvPlacementSolution mapEdges(NfvPlacementRequest request,
+                                        Function<TopologyEdge, Collection<TopologyEdge>> edgeMapping) {
+        double mappedLoad = networkLoad;
+        Map<NprTraffic, List<Set<TopologyEdge>>> mappedLogicalEdges = new HashMap<>();
+        for (Map.Entry<NprTraffic, List<Set<TopologyEdge>>> entry : logicalEdgesPerTraffic.entrySet()) {
+            List<Set<TopologyEdge>> mapped = new ArrayList<>(entry.getValue().size());
+            for (Set<TopologyEdge> logicalEdge : entry.getValue()) {
+                Set<TopologyEdge> mappedLogicalEdge = mapEdges(logicalEdge, edgeMapping);
+                mapped.add(mappedLogicalEdge);
+                // the load of a flow with SFC counts every edge once per logical edge
+                mappedLoad += entry.getKey().getDemand() * (mappedLogicalEdge.size() - logicalEdge.size());
+            }
+            mappedLogicalEdges.put(entry.getKey(), mapped);
+        }
+        Map<NprTraffic, Set<TopologyEdge>> mappedEdges = new HashMap<>();
+        for (Map.Entry<NprTraffic, Set<TopologyEdge>> entry : edgesPerTraffic.entrySet()) {
+            Set<TopologyEdge> mapped = mapEdges(entry.getValue(), edgeMapping);
+            mappedEdges.put(entry.getKey(), mapped);
+            if (!logicalEdgesPerTraffic.containsKey(entry.getKey())) {
+                mappedLoad += entry.getKey().getDemand() * (mapped.size() - entry.getValue().size());
+            }
+        }
+
+        NfvPlacementSolution copy = new NfvPlacementSolution(mappedEdges, placements, request, goal, value,
+                deviationSum, delaySum, mappedLoad, delayDeviationPerFlow, maxDelayPerFlow, solutionType);
+        for (Map.Entry<NprTraffic, List<Set<TopologyEdge>>> entry : mappedLogicalEdges.entrySet()) {
+            copy.setLogicalEdgesForTraffic(entry.getKey(), entry.getValue());
+        }
+        copy.setDelays(delays);
+        return copy;
+    }
+
+    /**
+     * Creates a copy of this solution in which the logical edges of some flows are replaced, e.g. by a repair after a
+     * link failure. Request, placements and the objective value are kept, the edges, delays and delay deviations of
+     * the flows and the network load are adapted.
+     *
+     * @param replacedLogicalEdges the new logical edges per flow
+     * @param replacedDelays       the delays of the egress nodes of these flows
+     * @return the copy
+     */
+    public NfvPlacementSolution replaceLogicalEdges(Map<NprTraffic, List<Set<TopologyEdge>>> replacedLogicalEdges,
+                                                    Map<NprTraffic, Map<TopologyVertex, Double>> replacedDelays) {
+        Map<NprTraffic, Set<TopologyEdge>> newEdges = new HashMap<>(edgesPerTraffic);
+        Map<NprTraffic, Map<TopologyVertex, Double>> newDelays = delays == null ? new HashMap<>() :
+                new HashMap<>(delays);
+        Map<NprTraffic, Double> newMaxDelays = maxDelayPerFlow == null ? new HashMap<>() :
+                new HashMap<>(maxDelayPerFlow);
+        Map<NprTraffic, Double> newDeviations = delayDeviationPerFlow == null ? new HashMap<>() :
+                new HashMap<>(delayDeviationPerFlow);
+        double newLoad = networkLoad;
+        double newDelaySum = delaySum;
+        double newDeviationSum = deviationSum;
+
+        for (Map.Entry<NprTraffic, List<Set<TopologyEdge>>> entry : replacedLogicalEdges.entrySet()) {
+            NprTraffic flow = entry.getKey();
+            Set<TopologyEdge> edgesOfFlow = new HashSet<>();
+            for (Set<TopologyEdge> logicalEdge : entry.getValue()) {
+                edgesOfFlow.addAll(logicalEdge);
+                newLoad += flow.getDemand() * logicalEdge.size();
+            }
+            for (Set<TopologyEdge> logicalEdge : logicalEdgesPerTraffic.get(flow)) {
+                newLoad -= flow.getDemand() * logicalEdge.size();
+            }
+            newEdges.put(flow, edgesOfFlow);
+
+            Map<TopologyVertex, Double> delaysOfFlow = replacedDelays.get(flow);
+            double maxDelay = Math.round(Collections.max(delaysOfFlow.values()));
+            double deviation = maxDelay - Math.round(Collections.min(delaysOfFlow.values()));
+            newDelaySum += maxDelay - newMaxDelays.getOrDefault(flow, 0.0);
+            newDeviationSum += deviation - newDeviations.getOrDefault(flow, 0.0);
+            newDelays.put(flow, delaysOfFlow);
+            newMaxDelays.put(flow, maxDelay);
+            newDeviations.put(flow, deviation);
+        }
+
+        NfvPlacementSolution copy = new NfvPlacementSolution(newEdges, placements, request, goal, value,
+                newDeviationSum, newDelaySum, newLoad, newDeviations, newMaxDelays, solutionType);
+        copy.logicalEdgesPerTraffic.putAll(logicalEdgesPerTraffic);
+        copy.logicalEdgesPerTraffic.putAll(replacedLogicalEdges);
+        copy.setDelays(newDelays);
+        return copy;
+    }
+
+    private static Set<TopologyEdge> mapEdges(Set<TopologyEdge> edges,
+                                              Function<TopologyEdge, Collection<TopologyEdge>> edgeMapping) {
+        Set<TopologyEdge> mapped = new HashSet<>();
+        for (TopologyEdge edge : edges) {
+            mapped.addAll(edgeMapping.apply(edge));
+        }
+        return mapped;
+    }
+
     public Map<NprTraffic, Set<TopologyEdge>> getSolutionEdges() {
         return edgesPerTraffic;
     }
@@ -121,7 +224,7 @@ public class NfvPlacementSolution {
     }
 
     public Map<TopologyVertex, Double> getDelaysOfFlow(NprTraffic flow) {
-        return delays.get(flow);
+        return delays == null ? null : delays.get(flow);
     }
 
     public double getDelayDeviationOfFlow(NprTraffic flow) {
@@ -0,0 +1,413 @@
+package thesiscode.common.nfv.placement.solver;
+
+import gurobi.GRBEnv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiEnvPool;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Races several solver configurations on the same request, e.g. differently tuned Gurobi parameter sets, different
+ * formulations and a heuristic. The configurations run concurrently on a bounded executor, every configuration with a
+ * Gurobi environment of its own taken from an {@link GurobiEnvPool}, unless it declares that it needs none.
+ * <p>
+ * The first solution which is proven optimal is returned. If no configuration proves optimality before the deadline
+ * (or all of them finished without doing so), the solution with the lowest value is returned, including the
+ * incumbents of the configurations which are still running. All configurations which are still running are then
+ * terminated, the ones which did not start yet are cancelled. The solve returns once the terminated configurations
+ * stopped, so that their solvers and environments can be used by the next solve.
+ * <p>
+ * {@link #terminate()} ends a solve early from another thread the same way, e.g. if its result is not needed anymore.
+ * As a solver ignores a termination while it builds its model, the running configurations are terminated repeatedly
+ * until they stopped.
+ */
+public class PortfolioPlacementSolver implements INfvPlacementSolver {
+    // interval in which a decided solve re-terminates the configurations which are still running
+    private static final long TERMINATE_REPEAT_MS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final List<Configuration> configurations;
+    private final ExecutorService executor;
+    private final GurobiEnvPool envPool;
+    private final long deadlineMs;
+
+    private NfvPlacementSolution startSolution;
+    private NfvIncumbentListener incumbentListener;
+    private double runtime;
+    private String lastWinner;
+    private Map<String, SolveTelemetry> lastTelemetry = Collections.emptyMap();
+    private boolean lastTerminated;
+
+    // state of the running solve for terminate(), null if none is running
+    private volatile AtomicBoolean currentDecided;
+    private volatile AtomicReferenceArray<INfvPlacementSolver> currentRunning;
+
+    /**
+     * A named configuration of the portfolio. The factory is called for every solve with the environment acquired for
+     * the configuration (null if the portfolio has no environment pool) and returns the solver to run. It may return a
+     * new solver every time or always the same one, e.g. to keep its model across requests, but a solver must only be
+     * returned by one configuration.
+     */
+    public static final class Configuration {
+        private final String name;
+        private final Function<GRBEnv, INfvPlacementSolver> factory;
+        private final boolean needsEnv;
+
+        public Configuration(String name, Function<GRBEnv, INfvPlacementSolver> factory) {
+            this(name, factory, true);
+        }
+
+        private Configuration(String name, Function<GRBEnv, INfvPlacementSolver> factory, boolean needsEnv) {
+            this.name = name;
+            this.factory = factory;
+            this.needsEnv = needsEnv;
+        }
+
+        /**
+         * Creates a configuration which does not take an environment from the pool, e.g. a heuristic or a solver which
+         * keeps its model on an environment of its own. The solvers of such configurations must not share an
+         * environment with solvers which may run concurrently.
+         */
+        public static Configuration withoutEnv(String name, Supplier<INfvPlacementSolver> factory) {
+            return new Configuration(name, env -> factory.get(), false);
+        }
+
+        /**
+         * @return whether the configuration takes an environment from the pool
+         */
+        public boolean needsEnv() {
+            return needsEnv;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Result of one configuration.
+     */
+    private static class Outcome {
+        final Configuration configuration;
+        final NfvPlacementSolution solution;
+        final boolean optimal;
+
+        Outcome(Configuration configuration, NfvPlacementSolution solution, boolean optimal) {
+            this.configuration = configuration;
+            this.solution = solution;
+            this.optimal = optimal;
+        }
+    }
+
+    /**
+     * @param configurations the configurations to race
+     * @param executor       the executor the configurations run on, its number of threads bounds the number of
+     *                       concurrently running configurations
+     * @param envPool        the pool the environments of the configurations are taken from, may be null if no
+     *                       configuration needs one
+     * @param deadlineMs     the time in milliseconds after which the best solution found so far is returned
+     */
+    public PortfolioPlacementSolver(List<Configuration> configurations, ExecutorService executor,
+                                    GurobiEnvPool envPool, long deadlineMs) {
+        if (configurations.isEmpty()) {
+            throw new IllegalArgumentException("portfolio needs at least one configuration");
+        }
+        this.configurations = Collections.unmodifiableList(new ArrayList<>(configurations));
+        this.executor = executor;
+        this.envPool = envPool;
+        this.deadlineMs = deadlineMs;
+    }
+
+    @Override
+    public NfvPlacementSolution solve(NfvPlacementRequest req) {
+        final long before = System.nanoTime();
+        final long deadline = deadlineMs == Long.MAX_VALUE ? Long.MAX_VALUE : before + deadlineMs * 1_000_000;
+        final AtomicBoolean decided = new AtomicBoolean();
+        final AtomicReferenceArray<INfvPlacementSolver> running = new AtomicReferenceArray<>(configurations.size());
+        final Best best = new Best();
+        final Map<String, SolveTelemetry> telemetry = new ConcurrentHashMap<>();
+        currentRunning = running;
+        currentDecided = decided;
+
+        CompletionService<Outcome> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Outcome>> futures = new ArrayList<>(configurations.size());
+        for (int i = 0; i < configurations.size(); i++) {
+            final int index = i;
+            futures.add(completionService.submit(() -> run(index, req, decided, running, best, telemetry)));
+        }
+
+        try {
+            int received = 0;
+            while (received < futures.size()) {
+                if (decided.get()) {
+                    log.info("portfolio terminated");
+                    break;
+                }
+                long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.info("portfolio deadline of {} ms reached", deadlineMs);
+                    break;
+                }
+                // wait in slices, so that a terminate() is noticed even if no configuration finishes
+                Future<Outcome> done = completionService.poll(Math.min(remaining,
+                        TimeUnit.MILLISECONDS.toNanos(TERMINATE_REPEAT_MS)), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    continue;
+                }
+                received++;
+                Outcome outcome;
+                try {
+                    outcome = done.get();
+                } catch (ExecutionException e) {
+                    log.warn("a configuration of the portfolio failed", e.getCause());
+                    continue;
+                }
+                if (outcome.solution == null) {
+                    continue;
+                }
+                best.offer(outcome.configuration, outcome.solution);
+                if (outcome.optimal) {
+                    best.prefer(outcome.configuration, outcome.solution);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            best.fix();
+            lastTerminated = decided.get();
+            stop(futures, decided, running);
+            currentDecided = null;
+            currentRunning = null;
+        }
+
+        runtime = (System.nanoTime() - before) / 1_000_000.0;
+        lastWinner = best.configuration == null ? null : best.configuration.getName();
+        // the configurations stopped, so their records are complete
+        Map<String, SolveTelemetry> ordered = new LinkedHashMap<>();
+        for (Configuration configuration : configurations) {
+            if (telemetry.containsKey(configuration.getName())) {
+                ordered.put(configuration.getName(), telemetry.get(configuration.getName()));
+            }
+        }
+        lastTelemetry = Collections.unmodifiableMap(ordered);
+        log.info("portfolio solved request in {} ms, winner: {}", runtime, lastWinner);
+        return best.solution;
+    }
+
+    private Outcome run(int index, NfvPlacementRequest req, AtomicBoolean decided,
+                        AtomicReferenceArray<INfvPlacementSolver> running, Best best,
+                        Map<String, SolveTelemetry> telemetry) throws InterruptedException {
+        Configuration configuration = configurations.get(index);
+        if (decided.get()) {
+            return new Outcome(configuration, null, false);
+        }
+        GRBEnv env = envPool == null || !configuration.needsEnv ? null : envPool.acquire();
+        try {
+            INfvPlacementSolver solver = configuration.factory.apply(env);
+            if (solver instanceof AbstractNfvIlpPlacementSolver) {
+                AbstractNfvIlpPlacementSolver ilpSolver = (AbstractNfvIlpPlacementSolver) solver;
+                ilpSolver.setStartSolution(startSolution);
+                NfvIncumbentListener listener = incumbentListener;
+                ilpSolver.setIncumbentListener(incumbent -> {
+                    best.offer(configuration, incumbent);
+                    if (listener != null) {
+                        listener.incumbentFound(incumbent);
+                    }
+                });
+            }
+
+            // register before checking whether the race is decided, so that stop() either sees the solver or the
+            // configuration sees the decision
+            running.set(index, solver);
+            if (decided.get()) {
+                return new Outcome(configuration, null, false);
+            }
+            NfvPlacementSolution solution = solver.solve(req);
+            boolean optimal = false;
+            if (solver instanceof AbstractNfvIlpPlacementSolver) {
+                AbstractNfvIlpPlacementSolver ilpSolver = (AbstractNfvIlpPlacementSolver) solver;
+                optimal = ilpSolver.getLastStatus() == IlpStatus.OPTIMAL;
+                if (ilpSolver.getLastTelemetry() != null) {
+                    telemetry.put(configuration.getName(), ilpSolver.getLastTelemetry());
+                }
+            }
+            log.debug("configuration {} finished after {} ms, optimal: {}", configuration, solver.getLastRuntime(),
+                    optimal);
+            return new Outcome(configuration, solution, optimal);
+        } finally {
+            running.set(index, null);
+            if (env != null) {
+                envPool.release(env);
+            }
+        }
+    }
+
+    /**
+     * Stops the running solve as soon as possible: its running configurations are terminated, the others cancelled, and
+     * it returns the best solution found so far. Does nothing if no solve is running. May be called from any thread.
+     */
+    public void terminate() {
+        AtomicBoolean decided = currentDecided;
+        AtomicReferenceArray<INfvPlacementSolver> running = currentRunning;
+        if (decided == null || decided.getAndSet(true)) {
+            return;
+        }
+        log.info("terminating portfolio");
+        terminateRunning(running);
+    }
+
+    /**
+     * Cancels the configurations which did not start yet, terminates the running ones and waits until they stopped. The
+     * termination is repeated while waiting, as a configuration which still builds its model ignores it.
+     */
+    private void stop(List<Future<Outcome>> futures, AtomicBoolean decided,
+                      AtomicReferenceArray<INfvPlacementSolver> running) {
+        decided.set(true);
+        for (Future<Outcome> future : futures) {
+            future.cancel(false);
+        }
+        terminateRunning(running);
+        boolean interrupted = false;
+        for (Future<Outcome> future : futures) {
+            while (!future.isDone()) {
+                try {
+                    future.get(TERMINATE_REPEAT_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    terminateRunning(running);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    // failures were logged or do not matter anymore
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void terminateRunning(AtomicReferenceArray<INfvPlacementSolver> running) {
+        for (int i = 0; i < running.length(); i++) {
+            INfvPlacementSolver solver = running.get(i);
+            if (solver instanceof AbstractNfvIlpPlacementSolver) {
+                log.debug("terminating configuration {}", configurations.get(i));
+                ((AbstractNfvIlpPlacementSolver) solver).terminate();
+            }
+        }
+    }
+
+    /**
+     * The best solution offered by the configurations, either as result or as incumbent.
+     */
+    private static class Best {
+        private Configuration configuration;
+        private NfvPlacementSolution solution;
+        private boolean fixed;
+
+        synchronized void offer(Configuration configuration, NfvPlacementSolution solution) {
+            if (!fixed && (this.solution == null || solution.getValue() < this.solution.getValue())) {
+                this.configuration = configuration;
+                this.solution = solution;
+            }
+        }
+
+        /**
+         * Takes the solution regardless of its value and ignores all following offers, used for proven optimal
+         * solutions.
+         */
+        synchronized void prefer(Configuration configuration, NfvPlacementSolution solution) {
+            this.configuration = configuration;
+            this.solution = solution;
+            this.fixed = true;
+        }
+
+        /**
+         * Ignores all following offers, e.g. incumbents of terminated configurations.
+         */
+        synchronized void fix() {
+            this.fixed = true;
+        }
+    }
+
+    @Override
+    public double getLastRuntime() {
+        return runtime;
+    }
+
+    /**
+     * @return the name of the configuration whose solution was returned by the last solve, null if none was returned
+     */
+    public String getLastWinner() {
+        return lastWinner;
+    }
+
+    /**
+     * @return configuration name -> record of the last solve of the configuration, for the ILP configurations which
+     * ran in the last solve, in the order of the configurations
+     */
+    public Map<String, SolveTelemetry> getLastTelemetry() {
+        return lastTelemetry;
+    }
+
+    /**
+     * @return true if the last solve was ended by {@link #terminate()}
+     */
+    public boolean wasLastTerminated() {
+        return lastTerminated;
+    }
+
+    public List<Configuration> getConfigurations() {
+        return configurations;
+    }
+
+    public NfvPlacementSolution getStartSolution() {
+        return startSolution;
+    }
+
+    /**
+     * @param startSolution the solution passed as start to the ILP configurations in the next solves, may be null
+     */
+    public void setStartSolution(NfvPlacementSolution startSolution) {
+        this.startSolution = startSolution;
+    }
+
+    public NfvIncumbentListener getIncumbentListener() {
+        return incumbentListener;
+    }
+
+    /**
+     * Sets a listener which is notified about the incumbents of all ILP configurations. As the configurations run
+     * concurrently, the listener may be called concurrently, and incumbents of different configurations are not
+     * ordered by their value.
+     *
+     * @param incumbentListener the listener, null to remove it
+     */
+    public void setIncumbentListener(NfvIncumbentListener incumbentListener) {
+        this.incumbentListener = incumbentListener;
+    }
+}
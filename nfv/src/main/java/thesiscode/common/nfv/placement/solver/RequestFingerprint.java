@@ -0,0 +1,136 @@
+package thesiscode.common.nfv.placement.solver;
+
+import org.onosproject.net.Link;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.ILinkWeigher;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Canonical fingerprint of an {@link NfvPlacementRequest} and the parameters of the solver, used as key of the
+ * {@link SolutionCache}. Two requests have the same fingerprint if they describe the same problem, independently of
+ * the iteration order of their sets and of the wrapper instances: vertices, edges and flows are identified by their
+ * devices and ports and encoded in sorted order, together with the PoP capacities, deployment costs and VNF delays,
+ * the link bandwidths and delays reported by the {@link ILinkWeigher}, the demands of the flows, the goal and alpha.
+ * The canonical encoding is hashed with SHA-256.
+ */
+public final class RequestFingerprint {
+    private final byte[] digest;
+    private final int hashCode;
+
+    private RequestFingerprint(byte[] digest) {
+        this.digest = digest;
+        this.hashCode = Arrays.hashCode(digest);
+    }
+
+    /**
+     * @param req   the request
+     * @param goal  the goal the request is solved for
+     * @param alpha the weight factor of the VNF deployment cost the request is solved with
+     * @return the fingerprint of the request solved with the given parameters
+     */
+    public static RequestFingerprint of(NfvPlacementRequest req, OptimizationGoal goal, double alpha) {
+        List<String> vertices = new ArrayList<>(req.getVertices().size());
+        for (TopologyVertex vertex : req.getVertices()) {
+            vertices.add(encode(vertex));
+        }
+        Collections.sort(vertices);
+
+        ILinkWeigher linkWeigher = req.getLinkWeigher();
+        List<String> edges = new ArrayList<>(req.getEdges().size());
+        for (TopologyEdge edge : req.getEdges()) {
+            edges.add(encode(edge) + ",bw=" + linkWeigher.getBandwidth(edge) + ",delay=" + linkWeigher.getDelay(edge));
+        }
+        Collections.sort(edges);
+
+        List<String> flows = new ArrayList<>(req.getTraffic().size());
+        for (NprTraffic flow : req.getTraffic()) {
+            flows.add(encode(flow));
+        }
+        Collections.sort(flows);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("goal=").append(goal).append(";alpha=").append(Double.doubleToLongBits(alpha));
+        sb.append(";V=").append(String.join(";", vertices));
+        sb.append(";E=").append(String.join(";", edges));
+        sb.append(";T=").append(String.join(";", flows));
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return new RequestFingerprint(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(TopologyVertex vertex) {
+        StringBuilder sb = new StringBuilder(vertex.deviceId().toString());
+        if (vertex instanceof WrappedPoPVertex) {
+            WrappedPoPVertex pop = (WrappedPoPVertex) vertex;
+            sb.append("[pop");
+            for (NprResources resource : NprResources.values()) {
+                sb.append(',').append(resource).append('=').append(pop.getResourceCapacity(resource));
+            }
+            for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+                sb.append(',').append(type).append("=cost:").append(pop.getDeploymentCost(type)).append("/delay:")
+                  .append(pop.getDelay(type));
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    private static String encode(TopologyEdge edge) {
+        Link link = edge.link();
+        if (link == null) {
+            return edge.src().deviceId() + "->" + edge.dst().deviceId();
+        }
+        return link.src().toString() + "->" + link.dst().toString();
+    }
+
+    private static String encode(NprTraffic flow) {
+        List<String> egress = new ArrayList<>(flow.getEgressNodes().size());
+        for (TopologyVertex dst : flow.getEgressNodes()) {
+            egress.add(dst.deviceId().toString());
+        }
+        Collections.sort(egress);
+        return flow.getIngressNode().deviceId() + "->" + egress + ",sfc=" + flow.getSfc() + ",demand=" +
+               flow.getDemand();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(digest, ((RequestFingerprint) o).digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append(String.format("%02x", digest[i]));
+        }
+        return sb.toString();
+    }
+}
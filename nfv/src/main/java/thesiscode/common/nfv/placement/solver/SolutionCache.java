@@ -0,0 +1,124 @@
+package thesiscode.common.nfv.placement.solver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of {@link NfvPlacementSolution}s keyed by the {@link RequestFingerprint} of the request they solve.
+ * Entries are evicted if the cache is full (least recently used first) or if they are older than the maximum age. The
+ * cache counts hits, misses and evictions; invalidated entries are not counted as evictions. Thread-safe.
+ */
+public class SolutionCache {
+    private final int maxEntries;
+    private final long maxAgeMs;
+
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<RequestFingerprint, CachedSolution> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class CachedSolution {
+        final NfvPlacementSolution solution;
+        final long created;
+
+        CachedSolution(NfvPlacementSolution solution, long created) {
+            this.solution = solution;
+            this.created = created;
+        }
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached solutions
+     * @param maxAgeMs   the time in milliseconds after which a cached solution is evicted
+     */
+    public SolutionCache(int maxEntries, long maxAgeMs) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxAgeMs = maxAgeMs;
+        this.entries = new LinkedHashMap<RequestFingerprint, CachedSolution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RequestFingerprint, CachedSolution> eldest) {
+                if (size() > SolutionCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the request
+     * @return the cached solution or null if there is none or it expired
+     */
+    public synchronized NfvPlacementSolution get(RequestFingerprint fingerprint) {
+        CachedSolution entry = entries.get(fingerprint);
+        if (entry != null && System.currentTimeMillis() - entry.created > maxAgeMs) {
+            entries.remove(fingerprint);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.solution;
+    }
+
+    /**
+     * Caches a solution, replaces a solution cached for the same fingerprint.
+     *
+     * @param fingerprint the fingerprint of the solved request
+     * @param solution    the solution
+     */
+    public synchronized void put(RequestFingerprint fingerprint, NfvPlacementSolution solution) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        entries.put(fingerprint, new CachedSolution(solution, now));
+    }
+
+    /**
+     * Removes all cached solutions, e.g. because the topology changed.
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<CachedSolution> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().created > maxAgeMs) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SolutionCache{size=" + entries.size() + "/" + maxEntries + ", hits=" + hits + ", misses=" + misses +
+               ", evictions=" + evictions + "}";
+    }
+}
@@ -0,0 +1,256 @@
+package thesiscode.common.nfv.placement.solver;
+
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.ilp.IlpConstraint;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpObjective;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSolveStats;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record of one solve of an {@link AbstractNfvIlpPlacementSolver}, to find out which features of a request make it
+ * expensive: the size of the request before and after the presolve, the size of the model, the time spent building it
+ * and optimizing it, the objective values and what the backend observed during the optimization (see
+ * {@link IlpSolveStats}, e.g. the incumbent/bound timeline per objective pass). Parts which were not reached, e.g. the
+ * optimization if building the model failed, stay unset (-1, NaN or null).
+ */
+public class SolveTelemetry {
+    // request
+    private final int numVertices;
+    private final int numEdges;
+    private final int numPoPs;
+    private final int numFlows;
+    private final int numDestinations;
+    private final int numVnfs;
+    private final int reducedVertices;
+    private final int reducedEdges;
+
+    // model
+    private boolean modelReused;
+    private double modelTimeMs = Double.NaN;
+    private int numBinaryVars = -1;
+    private int numIntegerVars = -1;
+    private int numContinuousVars = -1;
+    private int numConstrs = -1;
+    private long numNonZeros = -1;
+    private int numGenConstrs = -1;
+    private boolean hasStart;
+
+    // optimization
+    private String backend;
+    private IlpStatus status;
+    private double runtimeMs = Double.NaN;
+    private final Map<String, Double> objectiveValues = new LinkedHashMap<>();
+    private IlpSolveStats backendStats;
+
+    /**
+     * @param request the request as passed to the solver
+     * @param reduced the request the model is built for, i.e. the presolved request or the request itself
+     */
+    SolveTelemetry(NfvPlacementRequest request, NfvPlacementRequest reduced) {
+        numVertices = request.getVertices().size();
+        numEdges = request.getEdges().size();
+        int pops = 0;
+        for (TopologyVertex vertex : request.getVertices()) {
+            if (vertex instanceof WrappedPoPVertex) {
+                pops++;
+            }
+        }
+        numPoPs = pops;
+        numFlows = request.getTraffic().size();
+        int destinations = 0;
+        int vnfs = 0;
+        for (NprTraffic flow : request.getTraffic()) {
+            destinations += flow.getEgressNodes().size();
+            vnfs += flow.getSfc() == null ? 0 : flow.getSfc().size();
+        }
+        numDestinations = destinations;
+        numVnfs = vnfs;
+        reducedVertices = reduced.getVertices().size();
+        reducedEdges = reduced.getEdges().size();
+    }
+
+    void setModel(IlpModel model, boolean reused, double modelTimeMs) {
+        this.modelReused = reused;
+        this.modelTimeMs = modelTimeMs;
+        numBinaryVars = 0;
+        numIntegerVars = 0;
+        numContinuousVars = 0;
+        for (int i = 0; i < model.getNumVars(); i++) {
+            switch (model.getType(i)) {
+                case BINARY:
+                    numBinaryVars++;
+                    break;
+                case INTEGER:
+                    numIntegerVars++;
+                    break;
+                default:
+                    numContinuousVars++;
+            }
+        }
+        numConstrs = model.getNumConstrs();
+        numNonZeros = 0;
+        for (IlpConstraint constr : model.getConstraints()) {
+            numNonZeros += constr.getRow().size();
+        }
+        numGenConstrs = model.getGenConstraints().size();
+        hasStart = model.hasStart();
+    }
+
+    void setResult(String backend, IlpResult result) {
+        this.backend = backend;
+        this.status = result.getStatus();
+        this.runtimeMs = result.getRuntime();
+        this.backendStats = result.getStats();
+        if (!result.hasSolution()) {
+            return;
+        }
+        List<IlpObjective> objectives = new ArrayList<>(result.getModel().getObjectives());
+        objectives.sort(Comparator.comparingInt(IlpObjective::getPriority).reversed());
+        if (objectives.isEmpty()) {
+            objectiveValues.put("objective", result.getObjVal());
+        }
+        for (IlpObjective objective : objectives) {
+            String name = objective.getName() == null ? "objective" + objective.getIndex() : objective.getName();
+            objectiveValues.put(name, result.getObjNVal(objective.getIndex()));
+        }
+    }
+
+    public int getNumVertices() {
+        return numVertices;
+    }
+
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    public int getNumPoPs() {
+        return numPoPs;
+    }
+
+    public int getNumFlows() {
+        return numFlows;
+    }
+
+    /**
+     * @return the number of egress nodes summed over all flows
+     */
+    public int getNumDestinations() {
+        return numDestinations;
+    }
+
+    /**
+     * @return the length of the SFCs summed over all flows
+     */
+    public int getNumVnfs() {
+        return numVnfs;
+    }
+
+    /**
+     * @return the number of vertices after the presolve, the number of vertices of the request without presolve
+     */
+    public int getReducedVertices() {
+        return reducedVertices;
+    }
+
+    /**
+     * @return the number of edges after the presolve, the number of edges of the request without presolve
+     */
+    public int getReducedEdges() {
+        return reducedEdges;
+    }
+
+    /**
+     * @return true if a kept model was updated instead of building a new one
+     */
+    public boolean isModelReused() {
+        return modelReused;
+    }
+
+    /**
+     * @return the time spent on the presolve and on building (or updating) the model and its start in ms
+     */
+    public double getModelTimeMs() {
+        return modelTimeMs;
+    }
+
+    public int getNumBinaryVars() {
+        return numBinaryVars;
+    }
+
+    public int getNumIntegerVars() {
+        return numIntegerVars;
+    }
+
+    public int getNumContinuousVars() {
+        return numContinuousVars;
+    }
+
+    /**
+     * @return the number of linear constraints, without lazy constraints added during the optimization
+     */
+    public int getNumConstrs() {
+        return numConstrs;
+    }
+
+    /**
+     * @return the number of terms of all linear constraints
+     */
+    public long getNumNonZeros() {
+        return numNonZeros;
+    }
+
+    public int getNumGenConstrs() {
+        return numGenConstrs;
+    }
+
+    public boolean hasStart() {
+        return hasStart;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public IlpStatus getStatus() {
+        return status;
+    }
+
+    public double getRuntimeMs() {
+        return runtimeMs;
+    }
+
+    /**
+     * @return objective name -> value of the solution, in order of decreasing priority; empty if there is no solution
+     */
+    public Map<String, Double> getObjectiveValues() {
+        return objectiveValues;
+    }
+
+    /**
+     * @return what the backend observed during the optimization, null if it does not record it
+     */
+    public IlpSolveStats getBackendStats() {
+        return backendStats;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveTelemetry{request=[vertices=" + numVertices + "->" + reducedVertices + ", edges=" + numEdges +
+               "->" + reducedEdges + ", pops=" + numPoPs + ", flows=" + numFlows + ", destinations=" +
+               numDestinations + ", vnfs=" + numVnfs + "], model=[reused=" + modelReused + ", time=" + modelTimeMs +
+               "ms, vars=" + numBinaryVars + "b/" + numIntegerVars + "i/" + numContinuousVars + "c, constrs=" +
+               numConstrs + ", nonZeros=" + numNonZeros + ", genConstrs=" + numGenConstrs + ", start=" + hasStart +
+               "], backend=" + backend + ", status=" + status + ", runtime=" + runtimeMs + "ms, objectives=" +
+               objectiveValues + ", " + backendStats + "}";
+    }
+}
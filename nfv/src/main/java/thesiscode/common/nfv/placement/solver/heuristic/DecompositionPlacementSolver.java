@@ -0,0 +1,371 @@
+package thesiscode.common.nfv.placement.solver.heuristic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.INfvPlacementSolver;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.heuristic.SfcHeuristicPlacementSolver.FlowRouting;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lagrangian decomposition for requests with many flows. The flows of the SFC ILPs are only coupled by the link
+ * capacities, the PoP resource capacities and the deployment costs, which are paid once per VNF instance no matter how
+ * many flows use it. These coupling constraints are relaxed: the link and PoP capacities are replaced by prices, the
+ * deployment cost (and the price of the resources) of an instance is shared by the flows which used it in the previous
+ * iteration. Every flow is then placed and routed on its own by a {@link FlowSubproblem}, all flows concurrently on a
+ * fork-join pool.
+ * <p>
+ * After every iteration, a repair step turns the routings of the flows into a feasible solution: the flows are taken in
+ * the order of decreasing demand and keep their routing if it fits into the resources left by the previous flows,
+ * otherwise they are rerouted on the residual resources by the {@link SfcHeuristicPlacementSolver}. The prices of
+ * overloaded links and PoP resources are then raised (and the ones of idle ones lowered) by a subgradient step
+ * proportional to the relative overload, so that the next iteration moves flows away from them.
+ * <p>
+ * The best repaired solution is returned once the routings converged (no capacity is exceeded and no flow changed its
+ * routing), after the maximum number of iterations, after some iterations without improvement or after the time
+ * limit. As the subproblems are only solved heuristically, the result is a heuristic solution without a bound. Every
+ * subproblem only needs memory in the size of the graph and the SFC of its flow; apart from the routings of the current
+ * iteration, nothing grows with the number of flows.
+ */
+public class DecompositionPlacementSolver implements INfvPlacementSolver {
+    private static final double EPSILON = 1e-9;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final OptimizationGoal goal;
+    private final double alpha; // weight factor for the VNF deployment cost
+    private final ForkJoinPool pool;
+    private final SfcHeuristicPlacementSolver repair;
+    private int maxIterations = 50;
+    private int maxIterationsWithoutImprovement = 10;
+    private long timeLimitMs = Long.MAX_VALUE;
+    private double runtime = 0;
+    private int lastIterations = 0;
+
+    /*
+     * state of the current solve
+     */
+    private CsrTopologyGraph graph;
+    private List<NprTraffic> traffic;
+    private double[] edgePrices; // per edge and unit of demand
+    private double[] resourcePrices; // resource ordinal * |V| + vertex, per unit of the resource
+    private double edgeStep; // price change of an edge per relative overload
+    private double resourceStep; // price change of a resource per relative overload
+
+    /**
+     * Creates a new DecompositionPlacementSolver.
+     *
+     * @param goal  the goal to optimize, MIN_MAX_DELAYSUM_THEN_DEVIATION, SPT, DELAY_REDUCTION_PER_DST_SUM or
+     *              LOAD_REDUCTION
+     * @param alpha the weight factor for the VNF deployment cost
+     * @param pool  the pool the subproblems of the flows are solved on
+     */
+    public DecompositionPlacementSolver(OptimizationGoal goal, double alpha, ForkJoinPool pool) {
+        this.repair = new SfcHeuristicPlacementSolver(goal, alpha);
+        this.goal = goal;
+        this.alpha = alpha;
+        this.pool = pool;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public int getMaxIterationsWithoutImprovement() {
+        return maxIterationsWithoutImprovement;
+    }
+
+    /**
+     * @param maxIterationsWithoutImprovement the number of iterations after which the solve stops if the best repaired
+     *                                        solution did not improve
+     */
+    public void setMaxIterationsWithoutImprovement(int maxIterationsWithoutImprovement) {
+        this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+    }
+
+    /**
+     * Sets the time after which no further iteration is started. The running iteration is finished, so the solve may
+     * take a bit longer.
+     *
+     * @param timeLimitMs the time limit in ms, Long.MAX_VALUE for no limit
+     */
+    public void setTimeLimit(long timeLimitMs) {
+        this.timeLimitMs = timeLimitMs;
+    }
+
+    /**
+     * @return the number of iterations of the last solve
+     */
+    public int getLastIterations() {
+        return lastIterations;
+    }
+
+    @Override
+    public NfvPlacementSolution solve(NfvPlacementRequest req) {
+        long before = System.nanoTime();
+        long deadline = timeLimitMs == Long.MAX_VALUE ? Long.MAX_VALUE : before + timeLimitMs * 1_000_000;
+        graph = req.getGraph();
+        traffic = req.getTraffic();
+        edgePrices = new double[graph.getNumEdges()];
+        resourcePrices = new double[NprResources.values().length * graph.getNumVertices()];
+        initSteps();
+
+        NfvPlacementSolution best = null;
+        FlowRouting[] routings = null;
+        int withoutImprovement = 0;
+        int iteration = 0;
+        while (iteration < maxIterations && withoutImprovement < maxIterationsWithoutImprovement &&
+                (iteration == 0 || System.nanoTime() < deadline)) {
+            FlowRouting[] next = solveSubproblems(routings);
+            iteration++;
+            if (next == null) {
+                break;
+            }
+
+            NfvPlacementSolution repaired = repair(req, next);
+            if (repaired != null && (best == null || repaired.getValue() < best.getValue() - EPSILON)) {
+                best = repaired;
+                withoutImprovement = 0;
+            } else {
+                withoutImprovement++;
+            }
+
+            boolean overloaded = updatePrices(next, iteration);
+            if (!overloaded && routings != null && sameRoutings(routings, next)) {
+                log.debug("routings converged after {} iterations", iteration);
+                break;
+            }
+            routings = next;
+        }
+
+        lastIterations = iteration;
+        runtime = (System.nanoTime() - before) / 1e6;
+        if (best == null) {
+            log.warn("No feasible solution found after {} iterations. Returning null", iteration);
+        } else {
+            log.debug("computed decomposition solution with value {} in {} iterations and {} ms", best.getValue(),
+                    iteration, runtime);
+        }
+        return best;
+    }
+
+    @Override
+    public double getLastRuntime() {
+        return runtime;
+    }
+
+    /**
+     * The prices start at zero. An overload by the whole capacity raises the price of a link such that a unit of the
+     * average demand on it costs like an average hop of a flow, and the price of a PoP resource such that an average
+     * requirement costs the same.
+     */
+    private void initSteps() {
+        double meanDemand = traffic.stream().mapToDouble(NprTraffic::getDemand).average().orElse(1);
+        double meanDelay = 0;
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            meanDelay += graph.getDelay(e);
+        }
+        meanDelay = graph.getNumEdges() > 0 ? meanDelay / graph.getNumEdges() : 1;
+        double hopCost = goal == OptimizationGoal.LOAD_REDUCTION ? meanDemand : meanDelay;
+
+        double requirementSum = 0;
+        int requirements = 0;
+        for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+            for (int requirement : NprNfvTypes.getRequirements(type).values()) {
+                requirementSum += requirement;
+                requirements++;
+            }
+        }
+        edgeStep = meanDemand > 0 ? hopCost / meanDemand : hopCost;
+        resourceStep = requirementSum > 0 ? hopCost * requirements / requirementSum : hopCost;
+    }
+
+    /**
+     * Solves the subproblems of all flows concurrently.
+     *
+     * @param previous the routings of the previous iteration, null in the first iteration
+     * @return the routing per flow, null if a flow can not be routed at all or the solve was interrupted
+     */
+    private FlowRouting[] solveSubproblems(FlowRouting[] previous) {
+        int numVertices = graph.getNumVertices();
+        double[] slotCosts = new double[NprNfvTypes.Type.values().length * numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            if (!graph.isPoP(v)) {
+                continue;
+            }
+            WrappedPoPVertex pop = (WrappedPoPVertex) graph.getVertex(v);
+            for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+                double cost = alpha * pop.getDeploymentCost(type);
+                for (Map.Entry<NprResources, Integer> requirement : NprNfvTypes.getRequirements(type).entrySet()) {
+                    cost += requirement.getValue() * resourcePrices[requirement.getKey().ordinal() * numVertices + v];
+                }
+                slotCosts[type.ordinal() * numVertices + v] = cost;
+            }
+        }
+        BitSet[] ownSlots = new BitSet[traffic.size()];
+        int[] slotUsers = new int[slotCosts.length];
+        for (int t = 0; t < traffic.size(); t++) {
+            ownSlots[t] = previous == null ? new BitSet() : slotsOf(previous[t]);
+            for (int s = ownSlots[t].nextSetBit(0); s >= 0; s = ownSlots[t].nextSetBit(s + 1)) {
+                slotUsers[s]++;
+            }
+        }
+
+        // the prices are copied, so that the subproblems never see the updates of the next iteration
+        double[] prices = edgePrices.clone();
+        List<Callable<FlowRouting>> subproblems = new ArrayList<>(traffic.size());
+        for (int t = 0; t < traffic.size(); t++) {
+            NprTraffic flow = traffic.get(t);
+            BitSet own = ownSlots[t];
+            subproblems.add(() -> new FlowSubproblem(graph, goal, prices, slotCosts, slotUsers).solve(flow, own));
+        }
+
+        FlowRouting[] routings = new FlowRouting[traffic.size()];
+        try {
+            List<Future<FlowRouting>> futures = pool.invokeAll(subproblems);
+            for (int t = 0; t < routings.length; t++) {
+                routings[t] = futures.get(t).get();
+                if (routings[t] == null) {
+                    log.warn("Flow {} can not be routed. Returning null", traffic.get(t));
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while solving the subproblems", e);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("subproblem failed", e.getCause());
+        }
+        return routings;
+    }
+
+    /**
+     * @return the slots (type ordinal * |V| + vertex) of the VNF instances the routing uses
+     */
+    private BitSet slotsOf(FlowRouting routing) {
+        BitSet slots = new BitSet();
+        List<NprNfvTypes.Type> sfc = routing.flow.getSfc();
+        for (int j = 1; j < routing.placements.length; j++) {
+            slots.set(sfc.get(j - 1).ordinal() * graph.getNumVertices() + routing.placements[j]);
+        }
+        return slots;
+    }
+
+    /**
+     * Turns the routings into a feasible solution. The flows with the highest demand keep their routing if it fits,
+     * the others are rerouted on the residual resources.
+     *
+     * @return the solution or null if a flow could not be rerouted
+     */
+    private NfvPlacementSolution repair(NfvPlacementRequest req, FlowRouting[] routings) {
+        Integer[] order = new Integer[routings.length];
+        for (int t = 0; t < order.length; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer t) -> traffic.get(t).getDemand()).reversed());
+
+        repair.reset(graph);
+        List<FlowRouting> repaired = new ArrayList<>(routings.length);
+        for (int t : order) {
+            if (repair.reserve(routings[t])) {
+                repaired.add(routings[t]);
+                continue;
+            }
+            FlowRouting rerouted = repair.route(traffic.get(t));
+            if (rerouted == null) {
+                log.debug("repair failed, flow {} does not fit into the residual resources", traffic.get(t));
+                return null;
+            }
+            repaired.add(rerouted);
+        }
+        return repair.toSolution(req, repaired);
+    }
+
+    /**
+     * Subgradient step: the price of every link and PoP resource changes by the relative overload (negative if it is
+     * not fully used), scaled by a step size decreasing with the iterations. Prices never become negative.
+     *
+     * @return true if a link or a PoP resource is overloaded by the routings
+     */
+    private boolean updatePrices(FlowRouting[] routings, int iteration) {
+        int numVertices = graph.getNumVertices();
+        double[] load = new double[graph.getNumEdges()];
+        BitSet slots = new BitSet();
+        for (FlowRouting routing : routings) {
+            for (int[] logicalEdge : routing.logicalEdges) {
+                for (int e : logicalEdge) {
+                    load[e] += routing.flow.getDemand();
+                }
+            }
+            slots.or(slotsOf(routing));
+        }
+        double[] usage = new double[resourcePrices.length];
+        for (int s = slots.nextSetBit(0); s >= 0; s = slots.nextSetBit(s + 1)) {
+            NprNfvTypes.Type type = NprNfvTypes.Type.values()[s / numVertices];
+            for (Map.Entry<NprResources, Integer> requirement : NprNfvTypes.getRequirements(type).entrySet()) {
+                usage[requirement.getKey().ordinal() * numVertices + s % numVertices] += requirement.getValue();
+            }
+        }
+
+        double step = 1.0 / iteration;
+        boolean overloaded = false;
+        for (int e = 0; e < load.length; e++) {
+            double capacity = graph.getBandwidth(e);
+            overloaded |= load[e] > capacity + EPSILON;
+            edgePrices[e] = Math.max(0, edgePrices[e] + step * edgeStep * (load[e] - capacity) / Math.max(capacity, 1));
+        }
+        for (int v = 0; v < numVertices; v++) {
+            if (!graph.isPoP(v)) {
+                continue;
+            }
+            WrappedPoPVertex pop = (WrappedPoPVertex) graph.getVertex(v);
+            for (NprResources resource : NprResources.values()) {
+                int r = resource.ordinal() * numVertices + v;
+                double capacity = pop.getResourceCapacity(resource);
+                overloaded |= usage[r] > capacity + EPSILON;
+                resourcePrices[r] = Math.max(0,
+                        resourcePrices[r] + step * resourceStep * (usage[r] - capacity) / Math.max(capacity, 1));
+            }
+        }
+        return overloaded;
+    }
+
+    private static boolean sameRoutings(FlowRouting[] routings, FlowRouting[] other) {
+        for (int t = 0; t < routings.length; t++) {
+            if (!Arrays.equals(routings[t].placements, other[t].placements) ||
+                    routings[t].logicalEdges.size() != other[t].logicalEdges.size()) {
+                return false;
+            }
+            for (int j = 0; j < routings[t].logicalEdges.size(); j++) {
+                if (!Arrays.equals(routings[t].logicalEdges.get(j), other[t].logicalEdges.get(j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
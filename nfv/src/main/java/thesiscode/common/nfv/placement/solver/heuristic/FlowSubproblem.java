@@ -0,0 +1,311 @@
+package thesiscode.common.nfv.placement.solver.heuristic;
+
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.heuristic.SfcHeuristicPlacementSolver.FlowRouting;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The subproblem of a single flow in the {@link DecompositionPlacementSolver}. The flow is placed and routed like by
+ * {@link SfcHeuristicPlacementSolver}, but without link and PoP capacities and with the costs of the heuristic extended
+ * by the prices of the relaxed coupling constraints: every edge additionally costs its price per unit of demand, every
+ * VNF instance the cost of its slot (deployment cost and the prices of the resources it takes), shared with the other
+ * flows which used the slot in the previous iteration.
+ * <p>
+ * The state of a solve only depends on the size of the graph and the length of the SFC of the flow, not on the other
+ * flows, so the subproblems of all flows can be solved concurrently, every one with a subproblem of its own.
+ */
+class FlowSubproblem {
+    private final CsrTopologyGraph graph;
+    private final boolean hopMetric; // flag to indicate whether paths are weighted by hops (true) or by delay (false)
+    private final boolean sumsDelays; // flag to indicate whether the delays of all egress nodes are summed up
+    private final double[] edgePrices; // per edge and unit of demand
+    private final double[] slotCosts; // type ordinal * |V| + vertex
+    private final int[] slotUsers; // number of flows which used the slot in the previous iteration
+
+    /**
+     * @param graph      the graph of the request
+     * @param goal       the goal to optimize
+     * @param edgePrices the price of every edge per unit of demand, must not be modified during the solve
+     * @param slotCosts  the cost of a VNF instance per slot (type ordinal * |V| + vertex)
+     * @param slotUsers  the number of flows which used a slot in the previous iteration
+     */
+    FlowSubproblem(CsrTopologyGraph graph, OptimizationGoal goal, double[] edgePrices, double[] slotCosts,
+                   int[] slotUsers) {
+        this.graph = graph;
+        this.hopMetric = goal == OptimizationGoal.LOAD_REDUCTION;
+        this.sumsDelays = goal == OptimizationGoal.SPT || goal == OptimizationGoal.DELAY_REDUCTION_PER_DST_SUM;
+        this.edgePrices = edgePrices;
+        this.slotCosts = slotCosts;
+        this.slotUsers = slotUsers;
+    }
+
+    /**
+     * Computes the cheapest routing of the flow found by the heuristic under the current prices.
+     *
+     * @param flow     the flow
+     * @param ownSlots the slots the flow itself used in the previous iteration
+     * @return the routing or null if an egress node is unreachable from the source
+     */
+    FlowRouting solve(NprTraffic flow, BitSet ownSlots) {
+        int src = graph.getVertexId(flow.getIngressNode().deviceId());
+        int[] dsts = new int[flow.getEgressNodes().size()];
+        int i = 0;
+        for (TopologyVertex egress : flow.getEgressNodes()) {
+            dsts[i++] = graph.getVertexId(egress.deviceId());
+        }
+        if (src < 0 || Arrays.stream(dsts).anyMatch(d -> d < 0)) {
+            throw new IllegalArgumentException("flow " + flow + " has a node which is not part of the topology");
+        }
+
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        double demand = flow.getDemand();
+        // the logical edges before the last one are used by all egress nodes
+        double prefixWeight = hopMetric ? demand : (sumsDelays ? dsts.length : 1);
+        // the price of an edge is scaled down so that prefixWeight * distance contains it exactly once
+        double priceWeight = prefixWeight > 0 ? demand / prefixWeight : 0;
+        int numVertices = graph.getNumVertices();
+
+        Dijkstra[] pathsFrom = new Dijkstra[numVertices];
+        double[][] cost = new double[sfc.size() + 1][numVertices];
+        int[][] pred = new int[sfc.size() + 1][numVertices];
+        Arrays.fill(cost[0], Double.POSITIVE_INFINITY);
+        cost[0][src] = 0;
+
+        for (int j = 1; j <= sfc.size(); j++) {
+            NprNfvTypes.Type type = sfc.get(j - 1);
+            Arrays.fill(cost[j], Double.POSITIVE_INFINITY);
+            for (int q = 0; q < numVertices; q++) {
+                if (cost[j - 1][q] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                Dijkstra paths = pathsFrom(pathsFrom, q, priceWeight);
+                for (int p = 0; p < numVertices; p++) {
+                    if (paths.dist[p] == Double.POSITIVE_INFINITY || !graph.isPoP(p)) {
+                        continue;
+                    }
+                    double c = cost[j - 1][q] + prefixWeight * paths.dist[p] + slotPrice(type, p, ownSlots);
+                    if (!hopMetric) {
+                        c += prefixWeight * ((WrappedPoPVertex) graph.getVertex(p)).getDelay(type);
+                    }
+                    if (c < cost[j][p]) {
+                        cost[j][p] = c;
+                        pred[j][p] = q;
+                    }
+                }
+            }
+        }
+
+        // add the cost of the last logical edge
+        int last = sfc.size();
+        int bestVertex = -1;
+        int[] bestTree = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < numVertices; p++) {
+            if (cost[last][p] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            int[] parentEdge = hopMetric ? steinerTree(p, dsts, priceWeight) :
+                    shortestPathTree(pathsFrom(pathsFrom, p, priceWeight), dsts);
+            if (parentEdge == null) {
+                continue;
+            }
+            double c = cost[last][p] + lastEdgeCost(p, parentEdge, dsts, demand);
+            if (c < bestCost) {
+                bestVertex = p;
+                bestTree = parentEdge;
+                bestCost = c;
+            }
+        }
+        if (bestVertex < 0) {
+            return null;
+        }
+
+        int[] chain = new int[sfc.size() + 1];
+        chain[last] = bestVertex;
+        for (int j = last; j > 0; j--) {
+            chain[j - 1] = pred[j][chain[j]];
+        }
+        return toRouting(flow, chain, pathsFrom, bestTree, dsts, priceWeight);
+    }
+
+    private double slotPrice(NprNfvTypes.Type type, int v, BitSet ownSlots) {
+        int slot = type.ordinal() * graph.getNumVertices() + v;
+        int otherUsers = slotUsers[slot] - (ownSlots.get(slot) ? 1 : 0);
+        return slotCosts[slot] / (1 + otherUsers);
+    }
+
+    /**
+     * @return the cost of the tree of the last logical edge: the delays to the egress nodes like in the heuristic (or
+     * the hops for LOAD_REDUCTION) and the prices of its edges
+     */
+    private double lastEdgeCost(int root, int[] parentEdge, int[] dsts, double demand) {
+        BitSet edges = new BitSet(graph.getNumEdges());
+        double max = 0;
+        double sum = 0;
+        for (int d : dsts) {
+            int delay = 0;
+            for (int v = d; v != root; v = graph.getSrc(parentEdge[v])) {
+                edges.set(parentEdge[v]);
+                delay += graph.getDelay(parentEdge[v]);
+            }
+            max = Math.max(max, delay);
+            sum += delay;
+        }
+        double price = 0;
+        for (int e = edges.nextSetBit(0); e >= 0; e = edges.nextSetBit(e + 1)) {
+            price += edgePrices[e];
+        }
+        if (hopMetric) {
+            return demand * (edges.cardinality() + price);
+        }
+        return (sumsDelays ? sum : max) + demand * price;
+    }
+
+    /**
+     * @return the parent edge of every vertex on the shortest paths to the destinations, null if one is unreachable
+     */
+    private int[] shortestPathTree(Dijkstra paths, int[] dsts) {
+        for (int d : dsts) {
+            if (paths.dist[d] == Double.POSITIVE_INFINITY) {
+                return null;
+            }
+        }
+        return paths.parentEdge;
+    }
+
+    /**
+     * Shortest path heuristic for the Steiner tree problem on the priced edges, like the one of the heuristic.
+     *
+     * @return the parent edge of every vertex of the tree, null if a destination is unreachable
+     */
+    private int[] steinerTree(int root, int[] dsts, double priceWeight) {
+        int[] parentEdge = new int[graph.getNumVertices()];
+        Arrays.fill(parentEdge, -1);
+        BitSet tree = new BitSet();
+        tree.set(root);
+        BitSet unconnected = new BitSet();
+        for (int d : dsts) {
+            unconnected.set(d);
+        }
+        unconnected.clear(root);
+        while (!unconnected.isEmpty()) {
+            Dijkstra paths = new Dijkstra(tree, priceWeight);
+            int nearest = -1;
+            for (int d = unconnected.nextSetBit(0); d >= 0; d = unconnected.nextSetBit(d + 1)) {
+                if (paths.dist[d] != Double.POSITIVE_INFINITY && (nearest < 0 || paths.dist[d] < paths.dist[nearest])) {
+                    nearest = d;
+                }
+            }
+            if (nearest < 0) {
+                return null;
+            }
+            for (int v = nearest; !tree.get(v); v = graph.getSrc(paths.parentEdge[v])) {
+                parentEdge[v] = paths.parentEdge[v];
+                tree.set(v);
+            }
+            unconnected.andNot(tree);
+        }
+        return parentEdge;
+    }
+
+    private FlowRouting toRouting(NprTraffic flow, int[] chain, Dijkstra[] pathsFrom, int[] parentEdge, int[] dsts,
+                                  double priceWeight) {
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        List<int[]> logicalEdges = new ArrayList<>(sfc.size() + 1);
+        double prefixDelay = 0;
+        for (int j = 0; j < sfc.size(); j++) {
+            int[] path = pathsFrom(pathsFrom, chain[j], priceWeight).pathTo(chain[j + 1]);
+            for (int e : path) {
+                prefixDelay += graph.getDelay(e);
+            }
+            prefixDelay += ((WrappedPoPVertex) graph.getVertex(chain[j + 1])).getDelay(sfc.get(j));
+            logicalEdges.add(path);
+        }
+
+        int root = chain[sfc.size()];
+        BitSet treeEdges = new BitSet(graph.getNumEdges());
+        double[] delays = new double[dsts.length];
+        for (int i = 0; i < dsts.length; i++) {
+            int delay = 0;
+            for (int v = dsts[i]; v != root; v = graph.getSrc(parentEdge[v])) {
+                treeEdges.set(parentEdge[v]);
+                delay += graph.getDelay(parentEdge[v]);
+            }
+            delays[i] = prefixDelay + delay;
+        }
+        logicalEdges.add(treeEdges.stream().toArray());
+        return new FlowRouting(flow, chain, logicalEdges, delays);
+    }
+
+    /**
+     * @return the shortest paths from q, computed once per vertex and solve
+     */
+    private Dijkstra pathsFrom(Dijkstra[] cache, int q, double priceWeight) {
+        if (cache[q] == null) {
+            BitSet root = new BitSet();
+            root.set(q);
+            cache[q] = new Dijkstra(root, priceWeight);
+        }
+        return cache[q];
+    }
+
+    /**
+     * Dijkstra on all edges, every edge weighted by its delay (or one hop) plus priceWeight times its price.
+     */
+    private final class Dijkstra {
+        private final double[] dist;
+        private final int[] parentEdge; // the edge over which a vertex is reached, -1 for the roots and unreachable
+
+        Dijkstra(BitSet roots, double priceWeight) {
+            int numVertices = graph.getNumVertices();
+            dist = new double[numVertices];
+            parentEdge = new int[numVertices];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(parentEdge, -1);
+
+            // the entries are (distance, vertex), outdated entries are skipped when polled
+            PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+            for (int r = roots.nextSetBit(0); r >= 0; r = roots.nextSetBit(r + 1)) {
+                dist[r] = 0;
+                queue.add(new double[]{0, r});
+            }
+            while (!queue.isEmpty()) {
+                double[] entry = queue.poll();
+                int u = (int) entry[1];
+                if (entry[0] > dist[u]) {
+                    continue;
+                }
+                for (int i = 0; i < graph.getOutDegree(u); i++) {
+                    int e = graph.getOutEdge(u, i);
+                    int w = graph.getDst(e);
+                    double dw = dist[u] + (hopMetric ? 1 : graph.getDelay(e)) + priceWeight * edgePrices[e];
+                    if (dw < dist[w]) {
+                        dist[w] = dw;
+                        parentEdge[w] = e;
+                        queue.add(new double[]{dw, w});
+                    }
+                }
+            }
+        }
+
+        private int[] pathTo(int vertex) {
+            Deque<Integer> path = new ArrayDeque<>();
+            for (int v = vertex; parentEdge[v] >= 0; v = graph.getSrc(parentEdge[v])) {
+                path.push(parentEdge[v]);
+            }
+            return path.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,774 @@
+package thesiscode.common.nfv.placement.solver.heuristic;
+
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.INfvPlacementSolver;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.*;
+
+/**
+ * Combinatorial heuristic for the problem solved by the SFC ILPs. It needs no solver and computes a solution in
+ * (sub-)milliseconds, so that it can be used as an instant first answer, as a fallback if the ILP finds no solution in
+ * time or as start solution of the ILP.
+ * <p>
+ * The flows are placed one after another on the residual link bandwidths and PoP resources left by the previous flows.
+ * Every VNF of the SFC of a flow is placed at exactly one PoP. The PoPs are chosen by a dynamic program over the SFC
+ * which combines the shortest paths between consecutive VNFs, the processing delays and the (weighted) deployment cost
+ * of VNF instances which are not yet deployed, and the cost of the last logical edge from the last VNF to the egress
+ * nodes. The logical edges between the VNFs are shortest paths, the last logical edge is a shortest path tree (a
+ * Steiner tree for the goal LOAD_REDUCTION). For MIN_MAX_DELAYSUM_THEN_DEVIATION, the tree is improved locally
+ * afterwards: branches leading to a single egress node are rerouted over a longer path if this brings the delay of the
+ * node closer to the maximum delay of the flow, which reduces the delay deviation.
+ * <p>
+ * The solution has the same structure as the solutions of the ILPs (one set of edges per logical edge for every SFC
+ * flow), but an SFC flow never uses more than one instance per VNF of its SFC.
+ */
+public class SfcHeuristicPlacementSolver implements INfvPlacementSolver {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final OptimizationGoal goal;
+    private final double alpha; // weight factor for the VNF deployment cost
+    private final boolean hopMetric; // flag to indicate whether paths are weighted by hops (true) or by delay (false)
+    private double runtime = 0;
+
+    /*
+     * state of the current solve, the residual resources after placing the flows routed so far
+     */
+    private CsrTopologyGraph graph;
+    private double[] residualBandwidth; // per edge
+    private int[] residualResources; // resource ordinal * |V| + vertex
+    private BitSet deployed; // type ordinal * |V| + vertex
+    private double deploymentCost;
+
+    /**
+     * The routing of one flow. Logical node 0 is the source, logical node j the j-th VNF of the SFC.
+     */
+    static final class FlowRouting {
+        final NprTraffic flow;
+        final int[] placements; // vertex per logical node
+        final List<int[]> logicalEdges; // edge ids per logical edge
+        final double[] delays; // per egress node, in the iteration order of the egress nodes
+
+        FlowRouting(NprTraffic flow, int[] placements, List<int[]> logicalEdges, double[] delays) {
+            this.flow = flow;
+            this.placements = placements;
+            this.logicalEdges = logicalEdges;
+            this.delays = delays;
+        }
+    }
+
+    private static final class ShortestPaths {
+        private final int[] dist;
+        /*
+         * the edge over which a vertex is reached, -1 for the roots and unreachable vertices. for paths to the root
+         * (reverse), the edge which leaves the vertex towards the root
+         */
+        private final int[] parentEdge;
+
+        private ShortestPaths(int[] dist, int[] parentEdge) {
+            this.dist = dist;
+            this.parentEdge = parentEdge;
+        }
+    }
+
+    private static final class Tree {
+        private final int root;
+        private final BitSet vertices = new BitSet();
+        private final int[] parentEdge; // -1 for the root and vertices which are not part of the tree
+        private final int[] delay; // link delay from the root
+
+        private Tree(int root, int numVertices) {
+            this.root = root;
+            this.parentEdge = new int[numVertices];
+            this.delay = new int[numVertices];
+            Arrays.fill(parentEdge, -1);
+            vertices.set(root);
+        }
+
+        private int[] getEdges() {
+            int[] edges = new int[vertices.cardinality() - 1];
+            int i = 0;
+            for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1)) {
+                if (v != root) {
+                    edges[i++] = parentEdge[v];
+                }
+            }
+            return edges;
+        }
+    }
+
+    /**
+     * Creates a new SfcHeuristicPlacementSolver.
+     *
+     * @param goal  the goal to optimize, MIN_MAX_DELAYSUM_THEN_DEVIATION, SPT, DELAY_REDUCTION_PER_DST_SUM or
+     *              LOAD_REDUCTION
+     * @param alpha the weight factor for the VNF deployment cost
+     */
+    public SfcHeuristicPlacementSolver(OptimizationGoal goal, double alpha) {
+        switch (goal) {
+            case MIN_MAX_DELAYSUM_THEN_DEVIATION:
+            case SPT:
+            case DELAY_REDUCTION_PER_DST_SUM:
+            case LOAD_REDUCTION:
+                break;
+            default:
+                throw new IllegalArgumentException("Optimization goal not supported by the heuristic: " + goal);
+        }
+        this.goal = goal;
+        this.alpha = alpha;
+        this.hopMetric = goal == OptimizationGoal.LOAD_REDUCTION;
+    }
+
+    @Override
+    public NfvPlacementSolution solve(NfvPlacementRequest req) {
+        long before = System.nanoTime();
+        reset(req.getGraph());
+
+        List<FlowRouting> routings = new ArrayList<>(req.getTraffic().size());
+        for (NprTraffic flow : req.getTraffic()) {
+            FlowRouting routing = route(flow);
+            if (routing == null) {
+                runtime = (System.nanoTime() - before) / 1e6;
+                log.warn("No feasible routing found for flow {}. Returning null", flow);
+                return null;
+            }
+            routings.add(routing);
+        }
+
+        NfvPlacementSolution solution = toSolution(req, routings);
+        runtime = (System.nanoTime() - before) / 1e6;
+        log.debug("computed heuristic solution in {} ms", runtime);
+        return solution;
+    }
+
+    @Override
+    public double getLastRuntime() {
+        return runtime;
+    }
+
+    /**
+     * Starts a new solve on the graph: all link bandwidths and PoP resources are available, no VNF is deployed.
+     */
+    void reset(CsrTopologyGraph graph) {
+        this.graph = graph;
+        int numVertices = graph.getNumVertices();
+
+        residualBandwidth = new double[graph.getNumEdges()];
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            residualBandwidth[e] = graph.getBandwidth(e);
+        }
+        residualResources = new int[NprResources.values().length * numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            if (graph.isPoP(v)) {
+                WrappedPoPVertex pop = (WrappedPoPVertex) graph.getVertex(v);
+                for (NprResources resource : NprResources.values()) {
+                    residualResources[resource.ordinal() * numVertices + v] = pop.getResourceCapacity(resource);
+                }
+            }
+        }
+        deployed = new BitSet(NprNfvTypes.Type.values().length * numVertices);
+        deploymentCost = 0;
+    }
+
+    /**
+     * Takes the resources of a routing computed elsewhere, if they are still available: the bandwidth of all its
+     * logical edges and the resources of the VNF instances it deploys.
+     *
+     * @return true if the routing fits into the residual resources, false if nothing was taken
+     */
+    boolean reserve(FlowRouting routing) {
+        List<NprNfvTypes.Type> sfc = routing.flow.getSfc();
+        double demand = routing.flow.getDemand();
+        double[] residual = residualBandwidth.clone();
+        for (int[] logicalEdge : routing.logicalEdges) {
+            for (int e : logicalEdge) {
+                residual[e] -= demand;
+                if (residual[e] < 0) {
+                    return false;
+                }
+            }
+        }
+        for (int j = 1; j < routing.placements.length; j++) {
+            if (!graph.isPoP(routing.placements[j])) {
+                return false;
+            }
+        }
+        if (findResourceConflict(sfc, routing.placements) >= 0) {
+            return false;
+        }
+
+        residualBandwidth = residual;
+        deploy(sfc, routing.placements);
+        return true;
+    }
+
+    /**
+     * Places the VNFs of the flow and routes it. Deploys the VNF instances and reserves the bandwidth of the flow.
+     *
+     * @return the routing or null if the flow can not be routed with the residual resources
+     */
+    FlowRouting route(NprTraffic flow) {
+        int src = graph.getVertexId(flow.getIngressNode().deviceId());
+        int[] dsts = new int[flow.getEgressNodes().size()];
+        int i = 0;
+        for (TopologyVertex egress : flow.getEgressNodes()) {
+            dsts[i++] = graph.getVertexId(egress.deviceId());
+        }
+        if (src < 0 || Arrays.stream(dsts).anyMatch(d -> d < 0)) {
+            throw new IllegalArgumentException("flow " + flow + " has a node which is not part of the topology");
+        }
+
+        // PoPs which can't host a type because the resources ran out when the type was placed there along the SFC
+        BitSet banned = new BitSet();
+        while (true) {
+            int[] chain = placeChain(flow, src, dsts, banned);
+            if (chain == null) {
+                return null;
+            }
+            int conflict = findResourceConflict(flow.getSfc(), chain);
+            if (conflict < 0) {
+                return commit(flow, chain, dsts);
+            }
+            banned.set(slot(flow.getSfc().get(conflict - 1), chain[conflict]));
+        }
+    }
+
+    /**
+     * Chooses the PoPs of the VNFs by a dynamic program over the logical nodes: cost[j][v] is the minimal cost of
+     * routing the flow from the source over the first j VNFs with the j-th VNF at v.
+     *
+     * @return the vertex per logical node or null if there is no feasible placement
+     */
+    private int[] placeChain(NprTraffic flow, int src, int[] dsts, BitSet banned) {
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        int numVertices = graph.getNumVertices();
+        double demand = flow.getDemand();
+        // the logical edges before the last one are used by all egress nodes
+        double prefixWeight = hopMetric ? demand : (sumsDelays() ? dsts.length : 1);
+
+        ShortestPaths[] pathsFrom = new ShortestPaths[numVertices];
+        double[][] cost = new double[sfc.size() + 1][numVertices];
+        int[][] pred = new int[sfc.size() + 1][numVertices];
+        Arrays.fill(cost[0], Double.POSITIVE_INFINITY);
+        cost[0][src] = 0;
+
+        for (int j = 1; j <= sfc.size(); j++) {
+            NprNfvTypes.Type type = sfc.get(j - 1);
+            Arrays.fill(cost[j], Double.POSITIVE_INFINITY);
+            for (int q = 0; q < numVertices; q++) {
+                if (cost[j - 1][q] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                ShortestPaths paths = shortestPathsFrom(pathsFrom, q, demand);
+                for (int p = 0; p < numVertices; p++) {
+                    if (paths.dist[p] == INF || !canHost(type, p, banned)) {
+                        continue;
+                    }
+                    WrappedPoPVertex pop = (WrappedPoPVertex) graph.getVertex(p);
+                    double c = cost[j - 1][q] + prefixWeight * paths.dist[p];
+                    if (!hopMetric) {
+                        c += prefixWeight * pop.getDelay(type);
+                    }
+                    if (!deployed.get(slot(type, p))) {
+                        c += alpha * pop.getDeploymentCost(type);
+                    }
+                    if (c < cost[j][p]) {
+                        cost[j][p] = c;
+                        pred[j][p] = q;
+                    }
+                }
+            }
+        }
+
+        // add the cost of the last logical edge, ties of the delay goals are broken by the delay deviation
+        int last = sfc.size();
+        int bestVertex = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        double bestDeviation = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < numVertices; p++) {
+            if (cost[last][p] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double c = cost[last][p];
+            double deviation = 0;
+            if (hopMetric) {
+                Tree tree = steinerTree(p, dsts, demand, residualBandwidth);
+                if (tree == null) {
+                    continue;
+                }
+                c += demand * (tree.vertices.cardinality() - 1);
+            } else {
+                ShortestPaths paths = shortestPathsFrom(pathsFrom, p, demand);
+                int max = 0;
+                int min = INF;
+                long sum = 0;
+                for (int d : dsts) {
+                    max = Math.max(max, paths.dist[d]);
+                    min = Math.min(min, paths.dist[d]);
+                    sum += paths.dist[d];
+                }
+                if (max == INF) {
+                    continue;
+                }
+                c += sumsDelays() ? sum : max;
+                deviation = max - min;
+            }
+            if (c < bestCost || (c == bestCost && deviation < bestDeviation)) {
+                bestVertex = p;
+                bestCost = c;
+                bestDeviation = deviation;
+            }
+        }
+        if (bestVertex < 0) {
+            return null;
+        }
+
+        int[] chain = new int[sfc.size() + 1];
+        chain[last] = bestVertex;
+        for (int j = last; j > 0; j--) {
+            chain[j - 1] = pred[j][chain[j]];
+        }
+        return chain;
+    }
+
+    /**
+     * @return the first logical node whose VNF does not fit at its PoP if the VNFs are deployed in the order of the
+     * SFC, or -1 if all VNFs fit
+     */
+    private int findResourceConflict(List<NprNfvTypes.Type> sfc, int[] chain) {
+        int numVertices = graph.getNumVertices();
+        int[] resources = residualResources.clone();
+        BitSet placed = (BitSet) deployed.clone();
+        for (int j = 1; j < chain.length; j++) {
+            NprNfvTypes.Type type = sfc.get(j - 1);
+            if (placed.get(slot(type, chain[j]))) {
+                continue;
+            }
+            for (Map.Entry<NprResources, Integer> requirement : NprNfvTypes.getRequirements(type).entrySet()) {
+                int r = requirement.getKey().ordinal() * numVertices + chain[j];
+                if (resources[r] < requirement.getValue()) {
+                    return j;
+                }
+                resources[r] -= requirement.getValue();
+            }
+            placed.set(slot(type, chain[j]));
+        }
+        return -1;
+    }
+
+    /**
+     * Routes the flow along the given placement, deploys the VNFs and reserves the bandwidth.
+     *
+     * @return the routing or null if a logical edge can not be routed with the residual bandwidth
+     */
+    private FlowRouting commit(NprTraffic flow, int[] chain, int[] dsts) {
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        double demand = flow.getDemand();
+        double[] residual = residualBandwidth.clone();
+
+        // the logical edges between the VNFs are shortest paths on the bandwidth left by the previous logical edges
+        List<int[]> logicalEdges = new ArrayList<>(sfc.size() + 1);
+        double prefixDelay = 0;
+        for (int j = 0; j < sfc.size(); j++) {
+            int[] path = pathTo(shortestPaths(chain[j], demand, false, null, residual), chain[j + 1]);
+            if (path == null) {
+                return null;
+            }
+            for (int e : path) {
+                residual[e] -= demand;
+                prefixDelay += graph.getDelay(e);
+            }
+            prefixDelay += ((WrappedPoPVertex) graph.getVertex(chain[j + 1])).getDelay(sfc.get(j));
+            logicalEdges.add(path);
+        }
+
+        int root = chain[sfc.size()];
+        Tree tree = hopMetric ? steinerTree(root, dsts, demand, residual) : shortestPathTree(root, dsts, demand,
+                residual);
+        if (tree == null) {
+            return null;
+        }
+        if (goal == OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION) {
+            balance(tree, dsts, demand, residual);
+        }
+        int[] treeEdges = tree.getEdges();
+        for (int e : treeEdges) {
+            residual[e] -= demand;
+        }
+        logicalEdges.add(treeEdges);
+
+        double[] delays = new double[dsts.length];
+        for (int i = 0; i < dsts.length; i++) {
+            delays[i] = prefixDelay + tree.delay[dsts[i]];
+        }
+
+        // the flow fits, take its resources
+        residualBandwidth = residual;
+        deploy(sfc, chain);
+
+        return new FlowRouting(flow, chain, logicalEdges, delays);
+    }
+
+    /**
+     * Deploys the VNF instances of the placement which are not yet deployed and takes their resources.
+     */
+    private void deploy(List<NprNfvTypes.Type> sfc, int[] chain) {
+        int numVertices = graph.getNumVertices();
+        for (int j = 1; j < chain.length; j++) {
+            NprNfvTypes.Type type = sfc.get(j - 1);
+            if (deployed.get(slot(type, chain[j]))) {
+                continue;
+            }
+            for (Map.Entry<NprResources, Integer> requirement : NprNfvTypes.getRequirements(type).entrySet()) {
+                residualResources[requirement.getKey().ordinal() * numVertices + chain[j]] -= requirement.getValue();
+            }
+            deployed.set(slot(type, chain[j]));
+            deploymentCost += ((WrappedPoPVertex) graph.getVertex(chain[j])).getDeploymentCost(type);
+        }
+    }
+
+    /**
+     * @return the union of the shortest paths from the root to the destinations, null if a destination is unreachable
+     */
+    private Tree shortestPathTree(int root, int[] dsts, double demand, double[] residual) {
+        ShortestPaths paths = shortestPaths(root, demand, false, null, residual);
+        Tree tree = new Tree(root, graph.getNumVertices());
+        for (int d : dsts) {
+            if (paths.dist[d] == INF) {
+                return null;
+            }
+            attach(tree, paths, d);
+        }
+        return tree;
+    }
+
+    /**
+     * Shortest path heuristic for the Steiner tree problem: the tree grows by the shortest path from the tree to the
+     * nearest destination which is not yet connected.
+     *
+     * @return the tree or null if a destination is unreachable
+     */
+    private Tree steinerTree(int root, int[] dsts, double demand, double[] residual) {
+        Tree tree = new Tree(root, graph.getNumVertices());
+        BitSet unconnected = new BitSet();
+        for (int d : dsts) {
+            unconnected.set(d);
+        }
+        unconnected.clear(root);
+        while (!unconnected.isEmpty()) {
+            ShortestPaths paths = shortestPaths(tree.vertices, demand, false, null, residual);
+            int nearest = -1;
+            for (int d = unconnected.nextSetBit(0); d >= 0; d = unconnected.nextSetBit(d + 1)) {
+                if (paths.dist[d] != INF && (nearest < 0 || paths.dist[d] < paths.dist[nearest])) {
+                    nearest = d;
+                }
+            }
+            if (nearest < 0) {
+                return null;
+            }
+            attach(tree, paths, nearest);
+            unconnected.andNot(tree.vertices);
+        }
+        return tree;
+    }
+
+    /**
+     * Adds the path to the vertex to the tree. The path ends at the first vertex which already is part of the tree.
+     */
+    private void attach(Tree tree, ShortestPaths paths, int vertex) {
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int v = vertex; !tree.vertices.get(v); v = graph.getSrc(paths.parentEdge[v])) {
+            path.push(paths.parentEdge[v]);
+        }
+        for (int e : path) {
+            int v = graph.getDst(e);
+            tree.parentEdge[v] = e;
+            tree.delay[v] = tree.delay[graph.getSrc(e)] + graph.getDelay(e);
+            tree.vertices.set(v);
+        }
+    }
+
+    /**
+     * Local improvement of the delay deviation. The destinations are visited in ascending order of their delay. If a
+     * destination is a leaf, the branch leading only to it is removed and the destination is reattached by the path
+     * whose delay is closest to, but not above, the maximum delay of the tree. As the maximum delay never grows, the
+     * primary objective is not affected.
+     */
+    private void balance(Tree tree, int[] dsts, double demand, double[] residual) {
+        int numVertices = graph.getNumVertices();
+        BitSet isDst = new BitSet(numVertices);
+        int target = 0;
+        for (int d : dsts) {
+            isDst.set(d);
+            target = Math.max(target, tree.delay[d]);
+        }
+        int[] children = new int[numVertices];
+        for (int v = tree.vertices.nextSetBit(0); v >= 0; v = tree.vertices.nextSetBit(v + 1)) {
+            if (v != tree.root) {
+                children[graph.getSrc(tree.parentEdge[v])]++;
+            }
+        }
+
+        Integer[] order = Arrays.stream(dsts).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt(d -> tree.delay[d]));
+        for (int d : order) {
+            if (d == tree.root || children[d] > 0 || tree.delay[d] >= target) {
+                continue;
+            }
+
+            // the branch consists of d and its ancestors which are only on the path to d
+            BitSet branch = new BitSet(numVertices);
+            int attachedTo = d;
+            do {
+                branch.set(attachedTo);
+                attachedTo = graph.getSrc(tree.parentEdge[attachedTo]);
+            } while (attachedTo != tree.root && !isDst.get(attachedTo) && children[attachedTo] == 1);
+
+            // the new path has to avoid the rest of the tree, otherwise it would not be a tree any more
+            BitSet rest = (BitSet) tree.vertices.clone();
+            rest.andNot(branch);
+            ShortestPaths toDst = shortestPaths(d, demand, true, rest, residual);
+            int bestDelay = tree.delay[d];
+            int bestEdge = -1;
+            for (int x = rest.nextSetBit(0); x >= 0; x = rest.nextSetBit(x + 1)) {
+                for (int i = 0; i < graph.getOutDegree(x); i++) {
+                    int e = graph.getOutEdge(x, i);
+                    int w = graph.getDst(e);
+                    if (rest.get(w) || toDst.dist[w] == INF || residual[e] < demand) {
+                        continue;
+                    }
+                    int delay = tree.delay[x] + graph.getDelay(e) + toDst.dist[w];
+                    if (delay > bestDelay && delay <= target) {
+                        bestDelay = delay;
+                        bestEdge = e;
+                    }
+                }
+            }
+            if (bestEdge < 0) {
+                continue;
+            }
+
+            // replace the branch by the new path
+            for (int v = branch.nextSetBit(0); v >= 0; v = branch.nextSetBit(v + 1)) {
+                tree.vertices.clear(v);
+                tree.parentEdge[v] = -1;
+                children[v] = 0;
+            }
+            children[attachedTo]--;
+            int e = bestEdge;
+            while (true) {
+                int src = graph.getSrc(e);
+                int dst = graph.getDst(e);
+                children[src]++;
+                tree.parentEdge[dst] = e;
+                tree.delay[dst] = tree.delay[src] + graph.getDelay(e);
+                tree.vertices.set(dst);
+                if (dst == d) {
+                    break;
+                }
+                e = toDst.parentEdge[dst];
+            }
+        }
+    }
+
+    /**
+     * @return the shortest paths from q, computed once per vertex and flow
+     */
+    private ShortestPaths shortestPathsFrom(ShortestPaths[] cache, int q, double demand) {
+        if (cache[q] == null) {
+            cache[q] = shortestPaths(q, demand, false, null, residualBandwidth);
+        }
+        return cache[q];
+    }
+
+    private ShortestPaths shortestPaths(int root, double demand, boolean reverse, BitSet excluded,
+                                        double[] residual) {
+        BitSet roots = new BitSet();
+        roots.set(root);
+        return shortestPaths(roots, demand, reverse, excluded, residual);
+    }
+
+    /**
+     * Dijkstra on the edges which have enough residual bandwidth for the demand.
+     *
+     * @param roots    the vertices to start from
+     * @param demand   the demand of the flow
+     * @param reverse  whether the paths lead to the roots instead of away from them
+     * @param excluded vertices which must not be used by the paths, may be null
+     * @param residual the residual bandwidth per edge
+     * @return the shortest paths
+     */
+    private ShortestPaths shortestPaths(BitSet roots, double demand, boolean reverse, BitSet excluded,
+                                        double[] residual) {
+        int numVertices = graph.getNumVertices();
+        int[] dist = new int[numVertices];
+        int[] parentEdge = new int[numVertices];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parentEdge, -1);
+
+        // the entries are (distance << 32 | vertex), outdated entries are skipped when polled
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int r = roots.nextSetBit(0); r >= 0; r = roots.nextSetBit(r + 1)) {
+            dist[r] = 0;
+            queue.add((long) r);
+        }
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int u = (int) entry;
+            int du = (int) (entry >>> 32);
+            if (du > dist[u]) {
+                continue;
+            }
+            int degree = reverse ? graph.getInDegree(u) : graph.getOutDegree(u);
+            for (int i = 0; i < degree; i++) {
+                int e = reverse ? graph.getInEdge(u, i) : graph.getOutEdge(u, i);
+                int w = reverse ? graph.getSrc(e) : graph.getDst(e);
+                if (residual[e] < demand || (excluded != null && excluded.get(w))) {
+                    continue;
+                }
+                int dw = du + (hopMetric ? 1 : graph.getDelay(e));
+                if (dw < dist[w]) {
+                    dist[w] = dw;
+                    parentEdge[w] = e;
+                    queue.add(((long) dw << 32) | w);
+                }
+            }
+        }
+        return new ShortestPaths(dist, parentEdge);
+    }
+
+    /**
+     * @return the edges of the path from the root to the vertex or null if the vertex is unreachable
+     */
+    private int[] pathTo(ShortestPaths paths, int vertex) {
+        if (paths.dist[vertex] == INF) {
+            return null;
+        }
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int v = vertex; paths.parentEdge[v] >= 0; v = graph.getSrc(paths.parentEdge[v])) {
+            path.push(paths.parentEdge[v]);
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private boolean canHost(NprNfvTypes.Type type, int v, BitSet banned) {
+        if (!graph.isPoP(v) || banned.get(slot(type, v))) {
+            return false;
+        }
+        if (deployed.get(slot(type, v))) {
+            return true;
+        }
+        for (Map.Entry<NprResources, Integer> requirement : NprNfvTypes.getRequirements(type).entrySet()) {
+            if (residualResources[requirement.getKey().ordinal() * graph.getNumVertices() + v] <
+                    requirement.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(NprNfvTypes.Type type, int v) {
+        return type.ordinal() * graph.getNumVertices() + v;
+    }
+
+    /**
+     * @return true if the goal minimizes the sum of the delays of all destinations instead of the maximum per flow
+     */
+    private boolean sumsDelays() {
+        return goal == OptimizationGoal.SPT || goal == OptimizationGoal.DELAY_REDUCTION_PER_DST_SUM;
+    }
+
+    NfvPlacementSolution toSolution(NfvPlacementRequest req, List<FlowRouting> routings) {
+        Map<NprTraffic, Set<TopologyEdge>> solutionEdges = new HashMap<>();
+        Map<NprTraffic, Map<NprNfvTypes.Type, Set<TopologyVertex>>> placements = new HashMap<>();
+        Map<NprTraffic, List<Set<TopologyEdge>>> logicalToRealEdgesForTraffics = new HashMap<>();
+        Map<NprTraffic, Map<TopologyVertex, Double>> delays = new HashMap<>();
+        Map<NprTraffic, Double> maxDelayPerFlow = new HashMap<>();
+        Map<NprTraffic, Double> deviationPerFlow = new HashMap<>();
+        double deviationSum = 0;
+        double delaySum = 0;
+        double delayOfAllDsts = 0;
+        double networkLoad = 0;
+
+        for (FlowRouting routing : routings) {
+            NprTraffic flow = routing.flow;
+
+            Set<TopologyEdge> edgesOfFlow = new HashSet<>();
+            List<Set<TopologyEdge>> logicalToRealEdges = new ArrayList<>(routing.logicalEdges.size());
+            for (int[] logicalEdge : routing.logicalEdges) {
+                Set<TopologyEdge> edges = new HashSet<>();
+                for (int e : logicalEdge) {
+                    edges.add(graph.getEdge(e));
+                }
+                logicalToRealEdges.add(edges);
+                edgesOfFlow.addAll(edges);
+                networkLoad += flow.getDemand() * logicalEdge.length;
+            }
+            solutionEdges.put(flow, edgesOfFlow);
+
+            Map<TopologyVertex, Double> delaysOfFlow = new HashMap<>();
+            double maxDelayOfFlow = 0;
+            double minDelayOfFlow = Double.POSITIVE_INFINITY;
+            int i = 0;
+            for (TopologyVertex dst : flow.getEgressNodes()) {
+                double delay = routing.delays[i++];
+                delaysOfFlow.put(dst, delay);
+                maxDelayOfFlow = Math.max(maxDelayOfFlow, delay);
+                minDelayOfFlow = Math.min(minDelayOfFlow, delay);
+                delayOfAllDsts += delay;
+            }
+            maxDelayOfFlow = Math.round(maxDelayOfFlow);
+            minDelayOfFlow = Math.round(minDelayOfFlow);
+            delays.put(flow, delaysOfFlow);
+            maxDelayPerFlow.put(flow, maxDelayOfFlow);
+            deviationPerFlow.put(flow, maxDelayOfFlow - minDelayOfFlow);
+            deviationSum += maxDelayOfFlow - minDelayOfFlow;
+            delaySum += maxDelayOfFlow;
+
+            // like the ILPs, only the SFC flows have placements and logical edges
+            if (!flow.getSfc().isEmpty()) {
+                Map<NprNfvTypes.Type, Set<TopologyVertex>> placementsOfFlow = new HashMap<>();
+                for (int j = 1; j < routing.placements.length; j++) {
+                    placementsOfFlow.computeIfAbsent(flow.getSfc().get(j - 1), k -> new HashSet<>())
+                                    .add(graph.getVertex(routing.placements[j]));
+                }
+                placements.put(flow, placementsOfFlow);
+                logicalToRealEdgesForTraffics.put(flow, logicalToRealEdges);
+            }
+        }
+
+        double value = alpha * deploymentCost;
+        switch (goal) {
+            case MIN_MAX_DELAYSUM_THEN_DEVIATION:
+                value += delaySum;
+                break;
+            case LOAD_REDUCTION:
+                value += networkLoad;
+                break;
+            default:
+                value += delayOfAllDsts;
+                break;
+        }
+
+        NfvPlacementSolution.SolutionType type = goal == OptimizationGoal.SPT ? NfvPlacementSolution.SolutionType.SPT :
+                NfvPlacementSolution.SolutionType.TOPOSYNC_SFC;
+        NfvPlacementSolution sol = new NfvPlacementSolution(solutionEdges, placements, req, goal, value, deviationSum,
+                delaySum, networkLoad, deviationPerFlow, maxDelayPerFlow, type);
+        for (NprTraffic flow : logicalToRealEdgesForTraffics.keySet()) {
+            sol.setLogicalEdgesForTraffic(flow, logicalToRealEdgesForTraffics.get(flow));
+        }
+        sol.setDelays(delays);
+        return sol;
+    }
+}
@@ -0,0 +1,393 @@
+package thesiscode.common.nfv.placement.solver.heuristic;
+
+import org.onosproject.net.LinkKey;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.*;
+
+/**
+ * Repairs the trees of a solution after link failures without solving the placement problem again. The VNF placements
+ * are pinned: only the logical edges which use a failed link are rerouted, all other logical edges stay as they are.
+ * <p>
+ * A broken logical edge keeps the part of its tree which is still connected to its root (the source or the VNF it
+ * starts at). Every sink (the next VNF or an egress node) which was cut off is reattached by the path with the
+ * smallest delay from the root over the kept tree, in the order of these delays, like the shortest path heuristic for
+ * the Steiner tree problem. The paths only use links with enough residual bandwidth left by all other logical edges of
+ * the solution. Branches which do not lead to a sink anymore are removed.
+ * <p>
+ * Only flows with logical edges and a single instance per VNF of their SFC, i.e. the flows of the SFC solutions, can
+ * be repaired. The repair works on the graph of the request of the solution, it is meant for the time until the next
+ * request is solved for the changed topology.
+ */
+public class TreeRepair {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private double runtime = 0;
+
+    /*
+     * state of the current repair
+     */
+    private CsrTopologyGraph graph;
+    private BitSet failed; // per edge
+    private double[] residualBandwidth; // per edge
+
+    /**
+     * The tree of one logical edge, spanning the vertices reachable from its root.
+     */
+    private static final class Tree {
+        private final int root;
+        private final BitSet vertices = new BitSet();
+        private final int[] parentEdge; // -1 for the root and vertices which are not part of the tree
+        private final int[] delay; // link delay from the root
+
+        private Tree(int root, int numVertices) {
+            this.root = root;
+            this.parentEdge = new int[numVertices];
+            this.delay = new int[numVertices];
+            Arrays.fill(parentEdge, -1);
+            vertices.set(root);
+        }
+
+        private int[] getEdges() {
+            int[] edges = new int[vertices.cardinality() - 1];
+            int i = 0;
+            for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1)) {
+                if (v != root) {
+                    edges[i++] = parentEdge[v];
+                }
+            }
+            return edges;
+        }
+    }
+
+    /**
+     * Repairs the solution after the failure of the given links.
+     *
+     * @param solution    the solution to repair
+     * @param failedLinks the links which failed, directed
+     * @return the solution itself if it uses none of the links, the repaired copy of it (see
+     * {@link NfvPlacementSolution#replaceLogicalEdges(Map, Map)}) or null if it can not be repaired
+     */
+    public NfvPlacementSolution repair(NfvPlacementSolution solution, Set<LinkKey> failedLinks) {
+        long before = System.nanoTime();
+        NfvPlacementSolution repaired = repairInternal(solution, failedLinks);
+        runtime = (System.nanoTime() - before) / 1e6;
+        log.debug("repaired solution in {} ms", runtime);
+        return repaired;
+    }
+
+    /**
+     * @return the runtime of the last repair in ms
+     */
+    public double getLastRuntime() {
+        return runtime;
+    }
+
+    private NfvPlacementSolution repairInternal(NfvPlacementSolution solution, Set<LinkKey> failedLinks) {
+        graph = solution.getRequest().getGraph();
+        failed = new BitSet(graph.getNumEdges());
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            if (isFailed(graph.getEdge(e), failedLinks)) {
+                failed.set(e);
+            }
+        }
+
+        // the bandwidth left by all flows, every logical edge of a flow takes its demand
+        residualBandwidth = new double[graph.getNumEdges()];
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            residualBandwidth[e] = graph.getBandwidth(e);
+        }
+        Map<NprTraffic, List<int[]>> logicalEdgesPerFlow = new LinkedHashMap<>();
+        List<NprTraffic> brokenFlows = new ArrayList<>();
+        for (Map.Entry<NprTraffic, Set<TopologyEdge>> entry : solution.getSolutionEdges().entrySet()) {
+            NprTraffic flow = entry.getKey();
+            List<Set<TopologyEdge>> logicalEdges = solution.getLogicalEdgesPerTraffic().get(flow);
+            List<int[]> mapped = new ArrayList<>();
+            for (Set<TopologyEdge> logicalEdge : logicalEdges != null ? logicalEdges :
+                    Collections.singletonList(entry.getValue())) {
+                int[] edges = graph.mapEdges(logicalEdge);
+                if (edges == null) {
+                    log.warn("Solution does not fit the graph of its request. Returning null");
+                    return null;
+                }
+                take(edges, flow.getDemand());
+                mapped.add(edges);
+            }
+            if (mapped.stream().flatMapToInt(Arrays::stream).anyMatch(failed::get)) {
+                if (logicalEdges == null) {
+                    log.info("Flow {} without logical edges uses a failed link. Returning null", flow);
+                    return null;
+                }
+                brokenFlows.add(flow);
+            }
+            logicalEdgesPerFlow.put(flow, mapped);
+        }
+        if (brokenFlows.isEmpty()) {
+            return solution;
+        }
+
+        Map<NprTraffic, List<Set<TopologyEdge>>> repairedEdges = new HashMap<>();
+        Map<NprTraffic, Map<TopologyVertex, Double>> repairedDelays = new HashMap<>();
+        for (NprTraffic flow : brokenFlows) {
+            int[] chain = chainOf(solution, flow);
+            if (chain == null) {
+                log.info("Flow {} has not exactly one instance per VNF. Returning null", flow);
+                return null;
+            }
+            int[] dsts = graph.mapVertices(flow.getEgressNodes());
+
+            List<int[]> logicalEdges = logicalEdgesPerFlow.get(flow);
+            List<Set<TopologyEdge>> repairedLogicalEdges = new ArrayList<>(logicalEdges.size());
+            Tree[] trees = new Tree[logicalEdges.size()];
+            for (int j = 0; j < logicalEdges.size(); j++) {
+                int[] sinks = j < logicalEdges.size() - 1 ? new int[]{chain[j + 1]} : dsts;
+                trees[j] = repair(chain[j], sinks, logicalEdges.get(j), flow.getDemand());
+                if (trees[j] == null) {
+                    log.info("Logical edge {} of flow {} can not be repaired. Returning null", j, flow);
+                    return null;
+                }
+                boolean broken = Arrays.stream(logicalEdges.get(j)).anyMatch(failed::get);
+                Set<TopologyEdge> edges = new HashSet<>();
+                for (int e : broken ? trees[j].getEdges() : logicalEdges.get(j)) {
+                    edges.add(graph.getEdge(e));
+                }
+                repairedLogicalEdges.add(edges);
+            }
+            repairedEdges.put(flow, repairedLogicalEdges);
+            repairedDelays.put(flow, delays(flow, chain, dsts, trees));
+        }
+        return solution.replaceLogicalEdges(repairedEdges, repairedDelays);
+    }
+
+    private static boolean isFailed(TopologyEdge edge, Set<LinkKey> failedLinks) {
+        if (edge.link() != null) {
+            return failedLinks.contains(LinkKey.linkKey(edge.link()));
+        }
+        for (LinkKey link : failedLinks) {
+            if (link.src().deviceId().equals(edge.src().deviceId()) &&
+                    link.dst().deviceId().equals(edge.dst().deviceId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the vertex per logical node (the source and the VNFs of the SFC) or null if a VNF of the SFC has not
+     * exactly one instance
+     */
+    private int[] chainOf(NfvPlacementSolution solution, NprTraffic flow) {
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        Map<NprNfvTypes.Type, Set<TopologyVertex>> placements = solution.getPlacementsForTraffic(flow);
+        int[] chain = new int[sfc.size() + 1];
+        chain[0] = graph.getVertexId(flow.getIngressNode().deviceId());
+        for (int j = 1; j < chain.length; j++) {
+            Set<TopologyVertex> instances = placements == null ? null : placements.get(sfc.get(j - 1));
+            if (instances == null || instances.size() != 1) {
+                return null;
+            }
+            chain[j] = graph.getVertexId(instances.iterator().next().deviceId());
+        }
+        return chain;
+    }
+
+    /**
+     * Repairs the logical edge if it uses a failed link, see the class description. A logical edge without failed
+     * links is kept as it is, only its bandwidth is taken again and its tree gives the delays of its sinks.
+     *
+     * @return the tree of the logical edge or null if a sink can not be reached
+     */
+    private Tree repair(int root, int[] sinks, int[] logicalEdge, double demand) {
+        boolean broken = Arrays.stream(logicalEdge).anyMatch(failed::get);
+        // the bandwidth of the logical edge is free for its repair
+        take(logicalEdge, -demand);
+
+        Tree tree = keptTree(root, logicalEdge);
+        BitSet unconnected = new BitSet();
+        for (int s : sinks) {
+            if (!tree.vertices.get(s)) {
+                unconnected.set(s);
+            }
+        }
+        if (!broken) {
+            take(logicalEdge, demand);
+            // null if the logical edge did not reach all sinks before the failure
+            return unconnected.isEmpty() ? tree : null;
+        }
+        while (!unconnected.isEmpty()) {
+            int[] pathParent = shortestPathsFromTree(tree, demand);
+            int nearest = -1;
+            for (int s = unconnected.nextSetBit(0); s >= 0; s = unconnected.nextSetBit(s + 1)) {
+                if (pathParent[s] >= 0 && (nearest < 0 || tree.delay[s] < tree.delay[nearest])) {
+                    nearest = s;
+                }
+            }
+            if (nearest < 0) {
+                return null;
+            }
+            attach(tree, pathParent, nearest);
+            unconnected.andNot(tree.vertices);
+        }
+        prune(tree, sinks);
+
+        take(tree.getEdges(), demand);
+        return tree;
+    }
+
+    /**
+     * @return the tree of the edges of the logical edge which are reachable from the root over links which did not
+     * fail
+     */
+    private Tree keptTree(int root, int[] logicalEdge) {
+        BitSet edges = new BitSet(graph.getNumEdges());
+        for (int e : logicalEdge) {
+            if (!failed.get(e)) {
+                edges.set(e);
+            }
+        }
+        Tree tree = new Tree(root, graph.getNumVertices());
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int i = 0; i < graph.getOutDegree(u); i++) {
+                int e = graph.getOutEdge(u, i);
+                int w = graph.getDst(e);
+                if (edges.get(e) && !tree.vertices.get(w)) {
+                    tree.parentEdge[w] = e;
+                    tree.delay[w] = tree.delay[u] + graph.getDelay(e);
+                    tree.vertices.set(w);
+                    queue.add(w);
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Dijkstra from the vertices of the tree, starting at their delays from the root, on the links which did not fail
+     * and have enough residual bandwidth for the demand. The paths do not enter the tree again. The delays of the
+     * vertices outside of the tree are stored in the tree.
+     *
+     * @return the edge over which a vertex outside of the tree is reached, -1 for the vertices of the tree and
+     * unreachable vertices
+     */
+    private int[] shortestPathsFromTree(Tree tree, double demand) {
+        int numVertices = graph.getNumVertices();
+        int[] dist = new int[numVertices];
+        int[] parentEdge = new int[numVertices];
+        Arrays.fill(dist, INF);
+        Arrays.fill(parentEdge, -1);
+
+        // the entries are (distance << 32 | vertex), outdated entries are skipped when polled
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int v = tree.vertices.nextSetBit(0); v >= 0; v = tree.vertices.nextSetBit(v + 1)) {
+            dist[v] = tree.delay[v];
+            queue.add(((long) dist[v] << 32) | v);
+        }
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int u = (int) entry;
+            int du = (int) (entry >>> 32);
+            if (du > dist[u]) {
+                continue;
+            }
+            for (int i = 0; i < graph.getOutDegree(u); i++) {
+                int e = graph.getOutEdge(u, i);
+                int w = graph.getDst(e);
+                if (failed.get(e) || residualBandwidth[e] < demand || tree.vertices.get(w)) {
+                    continue;
+                }
+                int dw = du + graph.getDelay(e);
+                if (dw < dist[w]) {
+                    dist[w] = dw;
+                    parentEdge[w] = e;
+                    queue.add(((long) dw << 32) | w);
+                }
+            }
+        }
+        for (int v = 0; v < numVertices; v++) {
+            if (!tree.vertices.get(v)) {
+                tree.delay[v] = dist[v];
+            }
+        }
+        return parentEdge;
+    }
+
+    /**
+     * Adds the path to the vertex to the tree. The path starts at the last vertex which already is part of the tree.
+     */
+    private void attach(Tree tree, int[] pathParent, int vertex) {
+        for (int v = vertex; !tree.vertices.get(v); v = graph.getSrc(pathParent[v])) {
+            tree.parentEdge[v] = pathParent[v];
+        }
+        for (int v = vertex; !tree.vertices.get(v); v = graph.getSrc(pathParent[v])) {
+            tree.vertices.set(v);
+        }
+    }
+
+    /**
+     * Removes the branches which do not lead to a sink, starting at their leaves.
+     */
+    private void prune(Tree tree, int[] sinks) {
+        int numVertices = graph.getNumVertices();
+        BitSet isSink = new BitSet(numVertices);
+        for (int s : sinks) {
+            isSink.set(s);
+        }
+        int[] children = new int[numVertices];
+        for (int v = tree.vertices.nextSetBit(0); v >= 0; v = tree.vertices.nextSetBit(v + 1)) {
+            if (v != tree.root) {
+                children[graph.getSrc(tree.parentEdge[v])]++;
+            }
+        }
+        Deque<Integer> leaves = new ArrayDeque<>();
+        for (int v = tree.vertices.nextSetBit(0); v >= 0; v = tree.vertices.nextSetBit(v + 1)) {
+            if (v != tree.root && children[v] == 0 && !isSink.get(v)) {
+                leaves.push(v);
+            }
+        }
+        while (!leaves.isEmpty()) {
+            int v = leaves.pop();
+            int parent = graph.getSrc(tree.parentEdge[v]);
+            tree.vertices.clear(v);
+            tree.parentEdge[v] = -1;
+            if (--children[parent] == 0 && parent != tree.root && !isSink.get(parent)) {
+                leaves.push(parent);
+            }
+        }
+    }
+
+    /**
+     * @return the delay of every egress node of the flow: the link delays of the logical edges leading to it and the
+     * processing delays of the VNFs
+     */
+    private Map<TopologyVertex, Double> delays(NprTraffic flow, int[] chain, int[] dsts, Tree[] trees) {
+        double prefixDelay = 0;
+        for (int j = 1; j < chain.length; j++) {
+            prefixDelay += trees[j - 1].delay[chain[j]];
+            prefixDelay += ((WrappedPoPVertex) graph.getVertex(chain[j])).getDelay(flow.getSfc().get(j - 1));
+        }
+        Map<TopologyVertex, Double> delays = new HashMap<>();
+        int i = 0;
+        for (TopologyVertex dst : flow.getEgressNodes()) {
+            delays.put(dst, prefixDelay + trees[trees.length - 1].delay[dsts[i++]]);
+        }
+        return delays;
+    }
+
+    private void take(int[] edges, double demand) {
+        for (int e : edges) {
+            residualBandwidth[e] -= demand;
+        }
+    }
+}
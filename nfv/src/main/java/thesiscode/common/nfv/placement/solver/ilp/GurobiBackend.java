@@ -0,0 +1,612 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import gurobi.GRB;
+import gurobi.GRBCallback;
+import gurobi.GRBConstr;
+import gurobi.GRBEnv;
+import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBModel;
+import gurobi.GRBVar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link IlpBackend} which translates the {@link IlpModel} into a {@link GRBModel} and lets Gurobi optimize it. If
+ * {@link #setKeepModel(boolean)} is set, the translation is kept until another model is optimized, so that updates of
+ * the same model are applied in place and Gurobi can re-optimize from its previous state.
+ * <p>
+ * The time limit, the MIP gap and the parameters set by {@link #setParam(GRB.IntParam, int)} and
+ * {@link #setParam(GRB.DoubleParam, double)} are passed as Gurobi parameters, incumbents are reported by a callback on
+ * every new MIP solution. The same callback adds the lazy constraints of the model, separated for every new MIP
+ * solution and every optimal node relaxation, and records the {@link IlpSolveStats} of the optimization: the presolve
+ * reductions, the root relaxation and the progress of incumbent and bound. Gurobi does not report the passes of
+ * multi-objective models to the callback, they are completed from the priorities of the objectives once the
+ * optimization finished.
+ */
+public class GurobiBackend implements IlpBackend {
+    private final static double DEFAULT_MIP_GAP = 1e-4;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final GRBEnv env;
+
+    // where the IIS of an infeasible model is written to
+    private String iisFilePath = Paths.get(System.getProperty("java.io.tmpdir"), "gurobi.ilp").toString();
+    private boolean keepModel = false;
+    private long timeLimitMs = Long.MAX_VALUE;
+    private double mipGap = DEFAULT_MIP_GAP;
+    private IlpIncumbentListener incumbentListener;
+    private final Map<GRB.IntParam, Integer> intParams = new EnumMap<>(GRB.IntParam.class);
+    private final Map<GRB.DoubleParam, Double> doubleParams = new EnumMap<>(GRB.DoubleParam.class);
+
+    // the model which is currently optimized, whether an optimization is in progress and whether it should be
+    // terminated, see terminate()
+    private volatile GRBModel optimizing;
+    private volatile boolean inProgress;
+    private volatile boolean terminateRequested;
+
+    // translation of the last optimized model, only set if keepModel is set
+    private IlpModel keptIlpModel;
+    private GRBModel keptModel;
+    private GRBVar[] keptVars;
+    private GRBConstr[] keptConstrs;
+    private int keptNumGenConstrs;
+
+    /**
+     * Creates a new Gurobi backend.
+     *
+     * @param env the environment (passing this as a parameter requires only one license check )
+     */
+    public GurobiBackend(GRBEnv env) {
+        this.env = env;
+    }
+
+    @Override
+    public void setKeepModel(boolean keepModel) {
+        this.keepModel = keepModel;
+        if (!keepModel) {
+            dispose();
+        }
+    }
+
+    @Override
+    public void setTimeLimit(long timeLimitMs) {
+        this.timeLimitMs = timeLimitMs;
+    }
+
+    @Override
+    public void setMipGap(double mipGap) {
+        this.mipGap = mipGap;
+    }
+
+    @Override
+    public void setIncumbentListener(IlpIncumbentListener listener) {
+        this.incumbentListener = listener;
+    }
+
+    /**
+     * Sets a Gurobi parameter for all following optimizations, e.g. MIPFocus to run differently tuned configurations
+     * of the same model. Parameters can not be unset, but set to their default value.
+     *
+     * @param param the parameter
+     * @param value the value
+     */
+    public void setParam(GRB.IntParam param, int value) {
+        intParams.put(param, value);
+    }
+
+    /**
+     * Sets a Gurobi parameter for all following optimizations, see {@link #setParam(GRB.IntParam, int)}. Time limit and
+     * MIP gap are set by {@link #setTimeLimit(long)} and {@link #setMipGap(double)}.
+     *
+     * @param param the parameter
+     * @param value the value
+     */
+    public void setParam(GRB.DoubleParam param, double value) {
+        doubleParams.put(param, value);
+    }
+
+    public String getIisFilePath() {
+        return iisFilePath;
+    }
+
+    /**
+     * Sets the file the Irreducible Infeasible Set of an infeasible model is written to, gurobi.ilp in java.io.tmpdir
+     * by default. Gurobi derives the format from the extension, which has to be .ilp.
+     *
+     * @param iisFilePath the path of the file
+     */
+    public void setIisFilePath(String iisFilePath) {
+        this.iisFilePath = iisFilePath;
+    }
+
+    @Override
+    public void terminate() {
+        if (!inProgress) {
+            return;
+        }
+        terminateRequested = true;
+        GRBModel model = optimizing;
+        if (model != null) {
+            model.terminate();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (keptModel != null) {
+            try {
+                keptModel.dispose();
+            } catch (GRBException e) {
+                log.warn("could not dispose model", e);
+            }
+        }
+        keptIlpModel = null;
+        keptModel = null;
+        keptVars = null;
+        keptConstrs = null;
+    }
+
+    @Override
+    public IlpResult optimize(IlpModel ilpModel, boolean verbose) throws IlpException {
+        GRBModel model = null;
+        // a terminate() which arrived after the last optimization must not stop this one
+        terminateRequested = false;
+        inProgress = true;
+        try {
+            GRBVar[] vars;
+            GRBConstr[] constrs;
+            boolean reused = isKept(ilpModel);
+            if (reused) {
+                model = keptModel;
+                vars = keptVars;
+                constrs = keptConstrs;
+                model.set(GRB.IntParam.OutputFlag, verbose ? 1 : 0);
+                applyChanges(model, ilpModel, vars, constrs);
+                log.debug("applied changes to kept model");
+            } else {
+                dispose();
+                model = new GRBModel(env);
+
+                // adapt verbosity of Gurobi
+                if (!verbose) {
+                    model.set(GRB.IntParam.OutputFlag, 0);
+                }
+
+                vars = addVariables(model, ilpModel);
+                constrs = addConstraints(model, ilpModel, vars);
+                addGenConstraints(model, ilpModel, vars);
+                addObjectives(model, ilpModel, vars);
+                log.debug("finished translating model");
+            }
+            ilpModel.clearChanges();
+            addStart(model, ilpModel, vars, reused);
+            if (keepModel) {
+                keptIlpModel = ilpModel;
+                keptModel = model;
+                keptVars = vars;
+                keptConstrs = constrs;
+                keptNumGenConstrs = ilpModel.getGenConstraints().size();
+            }
+
+            // the parameters and the callback are set on every optimization, a kept model still has the old ones
+            model.set(GRB.DoubleParam.TimeLimit, timeLimitMs == Long.MAX_VALUE ? GRB.INFINITY : timeLimitMs / 1000.0);
+            model.set(GRB.DoubleParam.MIPGap, mipGap);
+            model.set(GRB.IntParam.LazyConstraints, ilpModel.getLazyConstraintSeparator() == null ? 0 : 1);
+            for (Map.Entry<GRB.IntParam, Integer> param : intParams.entrySet()) {
+                model.set(param.getKey(), param.getValue());
+            }
+            for (Map.Entry<GRB.DoubleParam, Double> param : doubleParams.entrySet()) {
+                model.set(param.getKey(), param.getValue());
+            }
+
+            // this is the actual optimization. the runtime of it is stored
+            double beforeOptimizing = System.currentTimeMillis();
+            IlpSolveStats stats = new IlpSolveStats();
+            int[] passPriorities = passPriorities(ilpModel);
+            stats.startPass(passPriorities.length == 0 ? 0 : passPriorities[0], 0);
+            model.setCallback(new SolverCallback(ilpModel, vars, incumbentListener, stats, beforeOptimizing));
+            optimizing = model;
+            if (terminateRequested) {
+                // terminate() was called before the model was set, nothing to optimize
+                return new IlpResult(ilpModel, IlpStatus.INTERRUPTED, null, Double.NaN, new HashMap<>(), 0).setStats(
+                        stats);
+            }
+            model.optimize();
+            double runtime = System.currentTimeMillis() - beforeOptimizing;
+            finishStats(model, stats, runtime, passPriorities.length <= 1);
+
+            final int grbStatus = model.get(GRB.IntAttr.Status);
+            /*
+             * if during optimization the model was found to be infeasible, an Irreducible Infeasible Set (IIS) is
+             * computed which contains the minimum set of variables and constraints which lead to the infeasibility.
+             * the IIS is then written to a file.
+             * great tool for debugging the model.
+             */
+            if (grbStatus == GRB.Status.INFEASIBLE) {
+                if (!ilpModel.isDebugNames()) {
+                    // names were omitted while building, the IIS is only readable with them
+                    model.set(GRB.StringAttr.VarName, vars, varNames(ilpModel));
+                    model.set(GRB.StringAttr.ConstrName, constrs, constrNames(ilpModel));
+                }
+                model.computeIIS();
+                model.write(iisFilePath);
+                log.warn("Model was infeasible, IIS written to {}", iisFilePath);
+                return new IlpResult(ilpModel, IlpStatus.INFEASIBLE, null, Double.NaN, new HashMap<>(), runtime)
+                        .setStats(stats);
+            }
+
+            IlpStatus status = toStatus(grbStatus);
+            if (model.get(GRB.IntAttr.SolCount) == 0) {
+                return new IlpResult(ilpModel, status, null, Double.NaN, new HashMap<>(), runtime).setStats(stats);
+            }
+
+            double[] values = model.get(GRB.DoubleAttr.X, vars);
+            Map<Integer, Double> objNVals = new HashMap<>();
+            if (ilpModel.isMultiObjective()) {
+                for (IlpObjective objective : ilpModel.getObjectives()) {
+                    model.set(GRB.IntParam.ObjNumber, objective.getIndex());
+                    objNVals.put(objective.getIndex(), model.get(GRB.DoubleAttr.ObjNVal));
+                }
+                if (status == IlpStatus.OPTIMAL) {
+                    completePasses(ilpModel, passPriorities, objNVals, stats, runtime);
+                }
+            }
+            return new IlpResult(ilpModel, status, values, model.get(GRB.DoubleAttr.ObjVal), objNVals, runtime)
+                    .setStats(stats);
+        } catch (GRBException e) {
+            throw new IlpException("Gurobi failed to optimize the model", e);
+        } finally {
+            optimizing = null;
+            inProgress = false;
+            if (model != null && model != keptModel) {
+                try {
+                    model.dispose();
+                } catch (GRBException e) {
+                    log.warn("could not dispose model", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gurobi optimizes one pass per priority, highest priority first.
+     *
+     * @return the distinct priorities of the objectives of the model, highest first
+     */
+    private static int[] passPriorities(IlpModel ilpModel) {
+        return ilpModel.getObjectives()
+                       .stream()
+                       .mapToInt(IlpObjective::getPriority)
+                       .distinct()
+                       .map(priority -> -priority)
+                       .sorted()
+                       .map(priority -> -priority)
+                       .toArray();
+    }
+
+    /**
+     * Completes the passes of a multi-objective optimization which finished all of them. The objective of a pass is
+     * the weighted sum of the objectives of its priority in the final solution.
+     */
+    private static void completePasses(IlpModel ilpModel, int[] passPriorities, Map<Integer, Double> objNVals,
+                                       IlpSolveStats stats, double runtime) {
+        double[] passObjVals = new double[passPriorities.length];
+        for (int pass = 0; pass < passPriorities.length; pass++) {
+            for (IlpObjective objective : ilpModel.getObjectives()) {
+                if (objective.getPriority() == passPriorities[pass]) {
+                    passObjVals[pass] += objective.getWeight() * objNVals.get(objective.getIndex());
+                }
+            }
+        }
+        stats.completePasses(passPriorities, passObjVals, runtime);
+    }
+
+    /**
+     * Reads the counters of the finished optimization into the statistics. The pass is only ended for single pass
+     * optimizations, as the pass a multi-objective optimization stopped in is unknown.
+     */
+    private void finishStats(GRBModel model, IlpSolveStats stats, double runtime, boolean singlePass) {
+        if (singlePass) {
+            stats.endPass(runtime);
+        }
+        try {
+            stats.setNodeCount((long) model.get(GRB.DoubleAttr.NodeCount));
+            stats.setIterationCount((long) model.get(GRB.DoubleAttr.IterCount));
+            stats.setBestBound(model.get(GRB.DoubleAttr.ObjBound));
+        } catch (GRBException e) {
+            // e.g. no bound if the optimization stopped before the root relaxation was solved
+            log.debug("could not read statistics of the optimization", e);
+        }
+    }
+
+    /**
+     * Separates the lazy constraints of the model, if it has a separator, and reports every new MIP solution which
+     * satisfies them to the listener, if one is set. Records the progress of the optimization into the statistics.
+     */
+    private static class SolverCallback extends GRBCallback {
+        private final Logger log = LoggerFactory.getLogger(getClass());
+        private final IlpModel ilpModel;
+        private final GRBVar[] vars;
+        private final IlpLazyConstraintSeparator separator;
+        private final IlpIncumbentListener listener;
+        private final IlpSolveStats stats;
+        private final double start;
+
+        SolverCallback(IlpModel ilpModel, GRBVar[] vars, IlpIncumbentListener listener, IlpSolveStats stats,
+                       double start) {
+            this.ilpModel = ilpModel;
+            this.vars = vars;
+            this.separator = ilpModel.getLazyConstraintSeparator();
+            this.listener = listener;
+            this.stats = stats;
+            this.start = start;
+        }
+
+        @Override
+        protected void callback() {
+            try {
+                double time = System.currentTimeMillis() - start;
+                if (where == GRB.CB_MIPSOL) {
+                    double[] values = getSolution(vars);
+                    // a solution violating a lazy constraint is rejected by Gurobi, so it is no incumbent
+                    if (separator != null && addLazyConstraints(values, true)) {
+                        return;
+                    }
+                    stats.recordProgress(time, getDoubleInfo(GRB.CB_MIPSOL_OBJ),
+                            finite(getDoubleInfo(GRB.CB_MIPSOL_OBJBND)), (long) getDoubleInfo(GRB.CB_MIPSOL_NODCNT));
+                    if (listener != null) {
+                        listener.incumbentFound(IlpResult.of(ilpModel, IlpStatus.INCUMBENT, values, time));
+                    }
+                } else if (where == GRB.CB_MIPNODE && getIntInfo(GRB.CB_MIPNODE_STATUS) == GRB.Status.OPTIMAL) {
+                    if (Double.isNaN(stats.getRootLpTimeMs()) && getDoubleInfo(GRB.CB_MIPNODE_NODCNT) == 0) {
+                        stats.setRootLp(time, getDoubleInfo(GRB.CB_MIPNODE_OBJBND));
+                    }
+                    if (separator != null) {
+                        addLazyConstraints(getNodeRel(vars), false);
+                    }
+                } else if (where == GRB.CB_MIP) {
+                    stats.recordProgress(time, finite(getDoubleInfo(GRB.CB_MIP_OBJBST)),
+                            finite(getDoubleInfo(GRB.CB_MIP_OBJBND)), (long) getDoubleInfo(GRB.CB_MIP_NODCNT));
+                } else if (where == GRB.CB_PRESOLVE) {
+                    stats.setPresolveReductions(getIntInfo(GRB.CB_PRE_ROWDEL), getIntInfo(GRB.CB_PRE_COLDEL));
+                }
+            } catch (GRBException e) {
+                log.warn("could not handle callback", e);
+            }
+        }
+
+        /**
+         * @return the value, NaN if Gurobi reports it as infinite, i.e. unknown
+         */
+        private static double finite(double value) {
+            return Math.abs(value) >= GRB.INFINITY ? Double.NaN : value;
+        }
+
+        /**
+         * @return true if at least one violated constraint was added
+         */
+        private boolean addLazyConstraints(double[] values, boolean integral) throws GRBException {
+            List<IlpCut> cuts = separator.separate(values, integral);
+            for (IlpCut cut : cuts) {
+                addLazy(toGrbExpr(cut.getRow(), vars), toGrbSense(cut.getSense()), cut.getRhs());
+            }
+            return !cuts.isEmpty();
+        }
+    }
+
+    /**
+     * Adds all variables with one call. Names are only passed if the model asks for them.
+     */
+    private GRBVar[] addVariables(GRBModel model, IlpModel ilpModel) throws GRBException {
+        int numVars = ilpModel.getNumVars();
+        double[] lb = new double[numVars];
+        double[] ub = new double[numVars];
+        double[] obj = new double[numVars];
+        char[] types = new char[numVars];
+        for (int i = 0; i < numVars; i++) {
+            lb[i] = ilpModel.getLowerBound(i);
+            ub[i] = ilpModel.getUpperBound(i);
+            obj[i] = ilpModel.getObjCoeff(i);
+            types[i] = toGrbType(ilpModel.getType(i));
+        }
+        return model.addVars(lb, ub, obj, types, ilpModel.isDebugNames() ? varNames(ilpModel) : null);
+    }
+
+    /**
+     * @return true if the model can be optimized by applying its changes to the kept translation. Only updated
+     * constraints are applied, so variables, constraints and general constraints must not have been added since.
+     */
+    private boolean isKept(IlpModel ilpModel) {
+        return keepModel && keptIlpModel == ilpModel && keptVars.length == ilpModel.getNumVars() &&
+               keptConstrs.length == ilpModel.getNumConstrs() &&
+               keptNumGenConstrs == ilpModel.getGenConstraints().size();
+    }
+
+    /**
+     * Applies the coefficients and right hand sides of all constraints updated since the model was translated.
+     */
+    private static void applyChanges(GRBModel model, IlpModel ilpModel, GRBVar[] vars, GRBConstr[] constrs)
+            throws GRBException {
+        List<IlpConstraint> changed = ilpModel.getChangedConstraints();
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<GRBConstr> coeffConstrs = new ArrayList<>();
+        List<GRBVar> coeffVars = new ArrayList<>();
+        List<Double> coeffs = new ArrayList<>();
+        GRBConstr[] rhsConstrs = new GRBConstr[changed.size()];
+        double[] rhs = new double[changed.size()];
+        for (int i = 0; i < rhs.length; i++) {
+            IlpConstraint constr = changed.get(i);
+            // chgCoeff sets the coefficient, so duplicate variables of a row are summed up first
+            Map<Integer, Double> row = new LinkedHashMap<>();
+            for (int t = 0; t < constr.getRow().size(); t++) {
+                row.merge(constr.getRow().getVarIndex(t), constr.getRow().getCoeff(t), Double::sum);
+            }
+            for (Map.Entry<Integer, Double> term : row.entrySet()) {
+                coeffConstrs.add(constrs[constr.index()]);
+                coeffVars.add(vars[term.getKey()]);
+                coeffs.add(term.getValue());
+            }
+            rhsConstrs[i] = constrs[constr.index()];
+            rhs[i] = constr.getRhs();
+        }
+        model.chgCoeffs(coeffConstrs.toArray(new GRBConstr[0]), coeffVars.toArray(new GRBVar[0]),
+                coeffs.stream().mapToDouble(Double::doubleValue).toArray());
+        model.set(GRB.DoubleAttr.RHS, rhsConstrs, rhs);
+    }
+
+    /**
+     * Passes the start values of the model, Gurobi completes partial starts itself. The start values of a reused model
+     * are always reset, so that no start of a previous optimization is left over.
+     */
+    private static void addStart(GRBModel model, IlpModel ilpModel, GRBVar[] vars, boolean reused)
+            throws GRBException {
+        if (!ilpModel.hasStart() && !reused) {
+            return;
+        }
+        double[] start = new double[vars.length];
+        for (int i = 0; i < start.length; i++) {
+            double value = ilpModel.getStart(i);
+            start[i] = Double.isNaN(value) ? GRB.UNDEFINED : value;
+        }
+        model.set(GRB.DoubleAttr.Start, vars, start);
+    }
+
+    /**
+     * Adds all linear constraints with one call. Names are only passed if the model asks for them.
+     */
+    private GRBConstr[] addConstraints(GRBModel model, IlpModel ilpModel, GRBVar[] vars) throws GRBException {
+        List<IlpConstraint> constraints = ilpModel.getConstraints();
+        GRBLinExpr[] lhs = new GRBLinExpr[constraints.size()];
+        char[] senses = new char[constraints.size()];
+        double[] rhs = new double[constraints.size()];
+        for (int i = 0; i < lhs.length; i++) {
+            IlpConstraint constr = constraints.get(i);
+            lhs[i] = toGrbExpr(constr.getRow(), vars);
+            senses[i] = toGrbSense(constr.getSense());
+            rhs[i] = constr.getRhs();
+        }
+        return model.addConstrs(lhs, senses, rhs, ilpModel.isDebugNames() ? constrNames(ilpModel) : null);
+    }
+
+    /**
+     * @return the names of all variables, unnamed variables get Gurobi's default name
+     */
+    private static String[] varNames(IlpModel ilpModel) {
+        String[] names = new String[ilpModel.getNumVars()];
+        for (int i = 0; i < names.length; i++) {
+            String name = ilpModel.getVarName(i);
+            names[i] = name == null || name.isEmpty() ? "C" + i : name;
+        }
+        return names;
+    }
+
+    /**
+     * @return the names of all constraints, unnamed constraints get Gurobi's default name
+     */
+    private static String[] constrNames(IlpModel ilpModel) {
+        List<IlpConstraint> constraints = ilpModel.getConstraints();
+        String[] names = new String[constraints.size()];
+        for (int i = 0; i < names.length; i++) {
+            String name = constraints.get(i).getName();
+            names[i] = name == null || name.isEmpty() ? "R" + i : name;
+        }
+        return names;
+    }
+
+    private void addGenConstraints(GRBModel model, IlpModel ilpModel, GRBVar[] vars) throws GRBException {
+        for (IlpGenConstr genConstr : ilpModel.getGenConstraints()) {
+            GRBVar[] operands = new GRBVar[genConstr.getVars().length];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = vars[genConstr.getVars()[i].index()];
+            }
+            GRBVar resVar = vars[genConstr.getResVar().index()];
+            if (genConstr.getType() == IlpGenConstr.Type.MAX) {
+                model.addGenConstrMax(resVar, operands, genConstr.getConstant(), genConstr.getName());
+            } else {
+                model.addGenConstrMin(resVar, operands, genConstr.getConstant(), genConstr.getName());
+            }
+        }
+    }
+
+    private void addObjectives(GRBModel model, IlpModel ilpModel, GRBVar[] vars) throws GRBException {
+        List<IlpObjective> objectives = ilpModel.getObjectives();
+        if (!ilpModel.isMultiObjective()) {
+            if (!objectives.isEmpty()) {
+                model.setObjective(toGrbExpr(objectives.get(0).getExpr(), vars), toGrbObjSense(ilpModel.getSense()));
+            }
+            return;
+        }
+
+        model.set(GRB.IntAttr.ModelSense, toGrbObjSense(ilpModel.getSense()));
+        for (IlpObjective objective : objectives) {
+            model.setObjectiveN(toGrbExpr(objective.getExpr(), vars), objective.getIndex(), objective.getPriority(),
+                    objective.getWeight(), objective.getAbsTol(), objective.getRelTol(), objective.getName());
+        }
+    }
+
+    private static GRBLinExpr toGrbExpr(IlpLinExpr expr, GRBVar[] vars) {
+        GRBLinExpr grbExpr = new GRBLinExpr();
+        for (int i = 0; i < expr.size(); i++) {
+            grbExpr.addTerm(expr.getCoeff(i), vars[expr.getVarIndex(i)]);
+        }
+        grbExpr.addConstant(expr.getConstant());
+        return grbExpr;
+    }
+
+    private static char toGrbType(IlpVarType type) {
+        switch (type) {
+            case BINARY:
+                return GRB.BINARY;
+            case INTEGER:
+                return GRB.INTEGER;
+            default:
+                return GRB.CONTINUOUS;
+        }
+    }
+
+    private static char toGrbSense(IlpSense sense) {
+        switch (sense) {
+            case LESS_EQUAL:
+                return GRB.LESS_EQUAL;
+            case GREATER_EQUAL:
+                return GRB.GREATER_EQUAL;
+            default:
+                return GRB.EQUAL;
+        }
+    }
+
+    private static int toGrbObjSense(int sense) {
+        return sense == IlpModel.MAXIMIZE ? GRB.MAXIMIZE : GRB.MINIMIZE;
+    }
+
+    private static IlpStatus toStatus(int grbStatus) {
+        switch (grbStatus) {
+            case GRB.Status.OPTIMAL:
+                return IlpStatus.OPTIMAL;
+            case GRB.Status.INFEASIBLE:
+                return IlpStatus.INFEASIBLE;
+            case GRB.Status.UNBOUNDED:
+            case GRB.Status.INF_OR_UNBD:
+                return IlpStatus.UNBOUNDED;
+            case GRB.Status.INTERRUPTED:
+                return IlpStatus.INTERRUPTED;
+            default:
+                return IlpStatus.LIMIT_REACHED;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "gurobi";
+    }
+}
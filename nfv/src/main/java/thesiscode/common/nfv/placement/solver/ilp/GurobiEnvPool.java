@@ -0,0 +1,90 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import gurobi.GRBEnv;
+import gurobi.GRBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed size pool of Gurobi environments. Gurobi environments must not be shared by models which are optimized
+ * concurrently, so every concurrently running optimization acquires an environment of its own and releases it once it
+ * finished. Thread-safe.
+ */
+public class GurobiEnvPool {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final List<GRBEnv> envs;
+    private final BlockingQueue<GRBEnv> idle;
+
+    /**
+     * Creates the environments of the pool.
+     *
+     * @param size    the number of environments
+     * @param logFile the log file of the environments, null for no log file
+     * @throws GRBException if an environment could not be created, the already created ones are disposed
+     */
+    public GurobiEnvPool(int size, String logFile) throws GRBException {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        List<GRBEnv> created = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                created.add(logFile == null ? new GRBEnv() : new GRBEnv(logFile));
+            }
+        } catch (GRBException e) {
+            dispose(created);
+            throw e;
+        }
+        this.envs = Collections.unmodifiableList(created);
+        this.idle = new ArrayBlockingQueue<>(size, false, created);
+    }
+
+    /**
+     * Takes an environment from the pool, waits until one is released if all are in use.
+     *
+     * @return the environment, has to be released by {@link #release(GRBEnv)}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public GRBEnv acquire() throws InterruptedException {
+        return idle.take();
+    }
+
+    /**
+     * Returns an environment to the pool.
+     *
+     * @param env an environment acquired from this pool
+     */
+    public void release(GRBEnv env) {
+        if (!envs.contains(env)) {
+            throw new IllegalArgumentException("environment does not belong to this pool");
+        }
+        idle.offer(env);
+    }
+
+    public int size() {
+        return envs.size();
+    }
+
+    /**
+     * Disposes all environments of the pool. The pool must not be used afterwards.
+     */
+    public void dispose() {
+        dispose(envs);
+    }
+
+    private void dispose(List<GRBEnv> toDispose) {
+        for (GRBEnv env : toDispose) {
+            try {
+                env.dispose();
+            } catch (GRBException e) {
+                log.warn("could not dispose environment", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * A solver which is able to optimize an {@link IlpModel}. Implementations translate the solver-neutral model into
+ * their own representation (or solve it directly) and report the result as {@link IlpResult}.
+ */
+public interface IlpBackend {
+
+    /**
+     * Optimizes the model.
+     *
+     * @param model   the model to optimize
+     * @param verbose whether the backend may print its progress
+     * @return the result of the optimization
+     * @throws IlpException if the backend failed to optimize the model
+     */
+    IlpResult optimize(IlpModel model, boolean verbose) throws IlpException;
+
+    /**
+     * Sets whether the backend keeps its translation of the last optimized model. If the same model is optimized
+     * again, only the constraints which were updated in the meantime are applied to the translation and the solver
+     * re-optimizes in place. Backends which do not translate models ignore this.
+     *
+     * @param keepModel true if the translation should be kept
+     */
+    default void setKeepModel(boolean keepModel) {
+    }
+
+    /**
+     * Sets the time after which the optimization is stopped. The best solution found until then is returned with
+     * status {@link IlpStatus#LIMIT_REACHED}.
+     *
+     * @param timeLimitMs the time limit in ms, Long.MAX_VALUE for no limit
+     */
+    default void setTimeLimit(long timeLimitMs) {
+    }
+
+    /**
+     * Sets the relative gap between the objective of the incumbent and the best bound at which the incumbent is
+     * accepted as optimal.
+     *
+     * @param mipGap the relative gap, e.g. 0.01 to stop as soon as the incumbent is proven to be within 1% of the
+     *               optimum
+     */
+    default void setMipGap(double mipGap) {
+    }
+
+    /**
+     * Sets the listener which is notified about every incumbent found during the following optimizations.
+     *
+     * @param listener the listener, null to remove it
+     */
+    default void setIncumbentListener(IlpIncumbentListener listener) {
+    }
+
+    /**
+     * Asks the running optimization to stop as soon as possible, e.g. because another solver already found a solution.
+     * May be called from another thread. The request only applies to the optimization which is set up or running when
+     * it arrives, it is ignored if none is. The interrupted optimization returns its incumbent, if any, with status
+     * {@link IlpStatus#INTERRUPTED}.
+     */
+    default void terminate() {
+    }
+
+    /**
+     * Releases the kept translation of a model, if any.
+     */
+    default void dispose() {
+    }
+
+    /**
+     * @return a short, human-readable name of this backend (used for logging and benchmarking)
+     */
+    String getName();
+}
@@ -0,0 +1,90 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * A linear constraint of an {@link IlpModel} in row form: sum_i coeff_i * var_i (sense) rhs. Constraints added with
+ * expressions on both sides are normalized into this form by the model.
+ */
+public class IlpConstraint {
+    private final int index;
+    private final IlpLinExpr row;
+    private final IlpSense sense;
+    private double rhs;
+    private final IlpName name;
+
+    IlpConstraint(int index, IlpLinExpr row, IlpSense sense, double rhs, IlpName name) {
+        this.index = index;
+        this.row = row;
+        this.sense = sense;
+        this.rhs = rhs;
+        this.name = name;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return the left hand side of the row. the constant of the returned expression is always 0.
+     */
+    public IlpLinExpr getRow() {
+        return row;
+    }
+
+    /**
+     * Replaces the coefficients and the right hand side, see {@link IlpModel#updateConstr(IlpConstraint, IlpLinExpr,
+     * IlpLinExpr)}.
+     */
+    void update(IlpLinExpr newRow, double newRhs) {
+        if (newRow.size() != row.size()) {
+            throw new IllegalArgumentException("constraint " + index + " has " + row.size() + " terms, not " +
+                                               newRow.size());
+        }
+        for (int i = 0; i < row.size(); i++) {
+            if (newRow.getVarIndex(i) != row.getVarIndex(i)) {
+                throw new IllegalArgumentException("term " + i + " of constraint " + index + " has another variable");
+            }
+        }
+        for (int i = 0; i < row.size(); i++) {
+            row.setCoeff(i, newRow.getCoeff(i));
+        }
+        rhs = newRhs;
+    }
+
+    void setRhs(double rhs) {
+        this.rhs = rhs;
+    }
+
+    public IlpSense getSense() {
+        return sense;
+    }
+
+    public double getRhs() {
+        return rhs;
+    }
+
+    /**
+     * @return the name of the constraint, built on first access, or null if the constraint has no name
+     */
+    public String getName() {
+        return name == null ? null : name.toString();
+    }
+
+    /**
+     * Checks whether the constraint is satisfied by the given variable values.
+     *
+     * @param values    the values of all variables of the model
+     * @param tolerance the allowed absolute violation
+     * @return true if satisfied
+     */
+    public boolean isSatisfied(double[] values, double tolerance) {
+        double lhs = row.evaluate(values);
+        switch (sense) {
+            case LESS_EQUAL:
+                return lhs <= rhs + tolerance;
+            case GREATER_EQUAL:
+                return lhs >= rhs - tolerance;
+            default:
+                return Math.abs(lhs - rhs) <= tolerance;
+        }
+    }
+}
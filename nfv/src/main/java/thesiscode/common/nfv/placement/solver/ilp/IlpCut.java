@@ -0,0 +1,57 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * A constraint returned by an {@link IlpLazyConstraintSeparator}: sum_i coeff_i * var_i (sense) rhs. Unlike an
+ * {@link IlpConstraint} it is not part of the model, backends add it to their own representation when it is separated.
+ */
+public class IlpCut {
+    private final IlpLinExpr row;
+    private final IlpSense sense;
+    private final double rhs;
+
+    /**
+     * @param lhs   the left hand side, its constant is moved to the right hand side
+     * @param sense the sense
+     * @param rhs   the right hand side
+     */
+    public IlpCut(IlpLinExpr lhs, IlpSense sense, double rhs) {
+        this.row = new IlpLinExpr(lhs.size());
+        for (int i = 0; i < lhs.size(); i++) {
+            row.addTerm(lhs.getCoeff(i), lhs.getVarIndex(i));
+        }
+        this.sense = sense;
+        this.rhs = rhs - lhs.getConstant();
+    }
+
+    /**
+     * @return the left hand side of the row. the constant of the returned expression is always 0.
+     */
+    public IlpLinExpr getRow() {
+        return row;
+    }
+
+    public IlpSense getSense() {
+        return sense;
+    }
+
+    public double getRhs() {
+        return rhs;
+    }
+
+    /**
+     * @param values    the values of all variables of the model
+     * @param tolerance the allowed absolute violation
+     * @return true if the cut is violated by the given variable values by more than the tolerance
+     */
+    public boolean isViolated(double[] values, double tolerance) {
+        double lhs = row.evaluate(values);
+        switch (sense) {
+            case LESS_EQUAL:
+                return lhs > rhs + tolerance;
+            case GREATER_EQUAL:
+                return lhs < rhs - tolerance;
+            default:
+                return Math.abs(lhs - rhs) > tolerance;
+        }
+    }
+}
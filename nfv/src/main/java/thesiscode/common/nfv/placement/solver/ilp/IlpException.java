@@ -0,0 +1,14 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Thrown by an {@link IlpBackend} if a model could not be solved (e.g. the underlying solver reported an error).
+ */
+public class IlpException extends Exception {
+    public IlpException(String message) {
+        super(message);
+    }
+
+    public IlpException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
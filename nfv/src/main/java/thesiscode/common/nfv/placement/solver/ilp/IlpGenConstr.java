@@ -0,0 +1,45 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * A general constraint res = max(vars, constant) or res = min(vars, constant).
+ */
+public class IlpGenConstr {
+    public enum Type {
+        MAX,
+        MIN
+    }
+
+    private final Type type;
+    private final IlpVar resVar;
+    private final IlpVar[] vars;
+    private final double constant;
+    private final String name;
+
+    IlpGenConstr(Type type, IlpVar resVar, IlpVar[] vars, double constant, String name) {
+        this.type = type;
+        this.resVar = resVar;
+        this.vars = vars;
+        this.constant = constant;
+        this.name = name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public IlpVar getResVar() {
+        return resVar;
+    }
+
+    public IlpVar[] getVars() {
+        return vars;
+    }
+
+    public double getConstant() {
+        return constant;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
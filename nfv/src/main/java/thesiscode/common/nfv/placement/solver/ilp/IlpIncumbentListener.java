@@ -0,0 +1,17 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Listener which is notified about the incumbents an {@link IlpBackend} finds while it optimizes a model, so that a
+ * solution can be used before the optimization finished.
+ */
+public interface IlpIncumbentListener {
+
+    /**
+     * Called by the optimizing thread whenever the backend found a new incumbent. Should return quickly, the
+     * optimization waits for it.
+     *
+     * @param incumbent the incumbent, with status {@link IlpStatus#INCUMBENT} and the time since the optimization
+     *                  started as runtime
+     */
+    void incumbentFound(IlpResult incumbent);
+}
@@ -0,0 +1,24 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import java.util.List;
+
+/**
+ * Separates constraints of a model which are too many to be added up front, e.g. subtour elimination constraints. The
+ * model is optimized without them and the backend asks the separator for the constraints violated by every candidate
+ * incumbent and, if the backend supports it, by the relaxations of the nodes it explores. A candidate incumbent is
+ * only accepted if no violated constraint is returned for it.
+ *
+ * @see IlpModel#setLazyConstraintSeparator(IlpLazyConstraintSeparator)
+ */
+public interface IlpLazyConstraintSeparator {
+
+    /**
+     * Called by the optimizing thread. The returned constraints must be valid for every feasible solution of the full
+     * model and stay part of the model for the rest of the optimization.
+     *
+     * @param values   the values of all variables of the model
+     * @param integral true if the values are a candidate incumbent, false if they are the relaxation of a node
+     * @return the constraints violated by the values, empty if there are none
+     */
+    List<IlpCut> separate(double[] values, boolean integral);
+}
@@ -0,0 +1,95 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import java.util.Arrays;
+
+/**
+ * A linear expression sum_i coeff_i * var_i + constant. Terms are stored in primitive arrays, duplicate variables are
+ * allowed (they are summed up by the backends).
+ */
+public class IlpLinExpr {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] vars;
+    private double[] coeffs;
+    private int size;
+    private double constant;
+
+    public IlpLinExpr() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public IlpLinExpr(int capacity) {
+        vars = new int[Math.max(capacity, 1)];
+        coeffs = new double[Math.max(capacity, 1)];
+    }
+
+    public IlpLinExpr(IlpLinExpr other) {
+        vars = Arrays.copyOf(other.vars, Math.max(other.size, 1));
+        coeffs = Arrays.copyOf(other.coeffs, Math.max(other.size, 1));
+        size = other.size;
+        constant = other.constant;
+    }
+
+    public void addTerm(double coeff, IlpVar var) {
+        addTerm(coeff, var.index());
+    }
+
+    void addTerm(double coeff, int varIndex) {
+        if (size == vars.length) {
+            vars = Arrays.copyOf(vars, size * 2);
+            coeffs = Arrays.copyOf(coeffs, size * 2);
+        }
+        vars[size] = varIndex;
+        coeffs[size] = coeff;
+        size++;
+    }
+
+    void setCoeff(int term, double coeff) {
+        coeffs[term] = coeff;
+    }
+
+    public void addConstant(double constant) {
+        this.constant += constant;
+    }
+
+    public void add(IlpLinExpr other) {
+        multAdd(1.0, other);
+    }
+
+    public void multAdd(double factor, IlpLinExpr other) {
+        for (int i = 0; i < other.size; i++) {
+            addTerm(factor * other.coeffs[i], other.vars[i]);
+        }
+        constant += factor * other.constant;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getVarIndex(int term) {
+        return vars[term];
+    }
+
+    public double getCoeff(int term) {
+        return coeffs[term];
+    }
+
+    public double getConstant() {
+        return constant;
+    }
+
+    /**
+     * Evaluates this expression for the given variable values.
+     *
+     * @param values the values of all variables of the model, indexed by variable index
+     * @return the value of the expression
+     */
+    public double evaluate(double[] values) {
+        double value = constant;
+        for (int i = 0; i < size; i++) {
+            value += coeffs[i] * values[vars[i]];
+        }
+        return value;
+    }
+}
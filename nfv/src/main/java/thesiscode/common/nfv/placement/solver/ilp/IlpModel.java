@@ -0,0 +1,466 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Solver-neutral representation of a (multi-objective) mixed integer linear program. The formulations build the model
+ * once, afterwards it can be handed to any {@link IlpBackend}.
+ * <p>
+ * The API intentionally mirrors the one of Gurobi's GRBModel so that formulations read the same as before. In addition,
+ * variables can be created in blocks by {@link #addVars(int, double, double, double, IlpVarType, IntFunction)} and
+ * constraints can be named by {@link IlpName}s. Both only build the human readable names when they are requested,
+ * which backends only do if {@link #isDebugNames()} is set or an IIS is written.
+ * <p>
+ * A model can be kept across requests whose structure is the same: the coefficients and right hand sides of its
+ * constraints are then updated by {@link #updateConstr(IlpConstraint, IlpLinExpr, IlpLinExpr)} and
+ * {@link #setRhs(IlpConstraint, double)}. The model records which constraints changed, so that backends which keep
+ * their translation of the model only have to apply these changes.
+ */
+public class IlpModel {
+    public static final int MINIMIZE = 1;
+    public static final int MAXIMIZE = -1;
+
+    /**
+     * everything above this value is treated as infinite bound
+     */
+    public static final double INFINITY = 1e30;
+
+    private static final int INITIAL_VAR_CAPACITY = 64;
+
+    // variable attributes, indexed by variable index
+    private int numVars;
+    private double[] lb = new double[INITIAL_VAR_CAPACITY];
+    private double[] ub = new double[INITIAL_VAR_CAPACITY];
+    private double[] obj = new double[INITIAL_VAR_CAPACITY];
+    private IlpVarType[] types = new IlpVarType[INITIAL_VAR_CAPACITY];
+    private String[] names = new String[INITIAL_VAR_CAPACITY];
+    // MIP start values, NaN if the variable has no start value. Only allocated once a start value is set
+    private double[] start;
+    private List<IlpVar> vars = new ArrayList<>();
+    // blocks of variables created by addVars, ordered by their first variable index
+    private List<VarBlock> varBlocks = new ArrayList<>();
+
+    private List<IlpConstraint> constraints = new ArrayList<>();
+    private BitSet changedConstraints = new BitSet();
+    private List<IlpGenConstr> genConstraints = new ArrayList<>();
+    private List<IlpObjective> objectives = new ArrayList<>();
+    private int sense = MINIMIZE;
+    private boolean debugNames = false;
+    private IlpLazyConstraintSeparator lazyConstraintSeparator;
+
+    public IlpVar addVar(double lb, double ub, double obj, IlpVarType type, String name) {
+        ensureVarCapacity(numVars + 1);
+        this.lb[numVars] = lb;
+        this.ub[numVars] = ub;
+        this.obj[numVars] = obj;
+        this.types[numVars] = type;
+        this.names[numVars] = name;
+        IlpVar var = new IlpVar(numVars);
+        vars.add(var);
+        numVars++;
+        return var;
+    }
+
+    /**
+     * Adds a block of variables with the same bounds, objective coefficient and type. The names are not built here, the
+     * namer is only called if the name of a variable is requested.
+     *
+     * @param count the number of variables to add
+     * @param lb    the lower bound of all variables
+     * @param ub    the upper bound of all variables
+     * @param obj   the objective coefficient of all variables
+     * @param type  the type of all variables
+     * @param namer maps the position of a variable in the block to its name, may be null
+     * @return the new variables, in the order of their positions in the block
+     */
+    public IlpVar[] addVars(int count, double lb, double ub, double obj, IlpVarType type, IntFunction<String> namer) {
+        ensureVarCapacity(numVars + count);
+        IlpVar[] block = new IlpVar[count];
+        Arrays.fill(this.lb, numVars, numVars + count, lb);
+        Arrays.fill(this.ub, numVars, numVars + count, ub);
+        Arrays.fill(this.obj, numVars, numVars + count, obj);
+        Arrays.fill(this.types, numVars, numVars + count, type);
+        if (namer != null) {
+            varBlocks.add(new VarBlock(numVars, count, namer));
+        }
+        for (int i = 0; i < count; i++) {
+            block[i] = new IlpVar(numVars + i);
+            vars.add(block[i]);
+        }
+        numVars += count;
+        return block;
+    }
+
+    private void ensureVarCapacity(int capacity) {
+        if (capacity > lb.length) {
+            int newCapacity = Math.max(capacity, lb.length * 2);
+            lb = Arrays.copyOf(lb, newCapacity);
+            ub = Arrays.copyOf(ub, newCapacity);
+            obj = Arrays.copyOf(obj, newCapacity);
+            types = Arrays.copyOf(types, newCapacity);
+            names = Arrays.copyOf(names, newCapacity);
+            if (start != null) {
+                int oldCapacity = start.length;
+                start = Arrays.copyOf(start, newCapacity);
+                Arrays.fill(start, oldCapacity, newCapacity, Double.NaN);
+            }
+        }
+    }
+
+    /**
+     * Sets the start value of a variable, same semantics as Gurobi's Start attribute. Start values do not have to form
+     * a complete or feasible solution, backends complete or repair them if they can and ignore them otherwise.
+     *
+     * @param var   the variable
+     * @param value the start value, {@link Double#NaN} to clear it
+     */
+    public void setStart(IlpVar var, double value) {
+        if (start == null) {
+            start = new double[lb.length];
+            Arrays.fill(start, Double.NaN);
+        }
+        start[var.index()] = value;
+    }
+
+    /**
+     * @param varIndex the index of the variable
+     * @return the start value of the variable or {@link Double#NaN} if it has none
+     */
+    public double getStart(int varIndex) {
+        return start == null ? Double.NaN : start[varIndex];
+    }
+
+    /**
+     * Removes the start values of all variables.
+     */
+    public void clearStart() {
+        start = null;
+    }
+
+    /**
+     * @return true if a start value was set for at least one variable
+     */
+    public boolean hasStart() {
+        return start != null;
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, IlpLinExpr rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, IlpVar rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, double rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, IlpLinExpr rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, IlpVar rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, double rhs, String name) {
+        return addConstr(lhs, sense, rhs, toName(name));
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, IlpLinExpr rhs, IlpName name) {
+        return addRow(toRow(lhs, rhs), sense, rhs.getConstant() - lhs.getConstant(), name);
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, IlpVar rhs, IlpName name) {
+        return addConstr(lhs, sense, toExpr(rhs), name);
+    }
+
+    public IlpConstraint addConstr(IlpLinExpr lhs, IlpSense sense, double rhs, IlpName name) {
+        IlpLinExpr row = new IlpLinExpr(lhs.size());
+        for (int i = 0; i < lhs.size(); i++) {
+            row.addTerm(lhs.getCoeff(i), lhs.getVarIndex(i));
+        }
+        return addRow(row, sense, rhs - lhs.getConstant(), name);
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, IlpLinExpr rhs, IlpName name) {
+        return addConstr(toExpr(lhs), sense, rhs, name);
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, IlpVar rhs, IlpName name) {
+        IlpLinExpr row = new IlpLinExpr(2);
+        row.addTerm(1.0, lhs);
+        row.addTerm(-1.0, rhs);
+        return addRow(row, sense, 0.0, name);
+    }
+
+    public IlpConstraint addConstr(IlpVar lhs, IlpSense sense, double rhs, IlpName name) {
+        return addRow(toExpr(lhs), sense, rhs, name);
+    }
+
+    private IlpConstraint addRow(IlpLinExpr row, IlpSense sense, double rhs, IlpName name) {
+        IlpConstraint constr = new IlpConstraint(constraints.size(), row, sense, rhs, name);
+        constraints.add(constr);
+        return constr;
+    }
+
+    /**
+     * Replaces the coefficients of a constraint. The new sides are normalized like the ones passed to
+     * {@link #addConstr(IlpLinExpr, IlpSense, IlpLinExpr, IlpName)}, the resulting row has to contain the same
+     * variables in the same order as the one of the constraint, i.e. the sides have to be built by the same code as
+     * when the constraint was added. The sense can not be changed.
+     *
+     * @param constr the constraint to update
+     * @param lhs    the new left hand side
+     * @param rhs    the new right hand side
+     * @throws IllegalArgumentException if the variables of the row differ
+     */
+    public void updateConstr(IlpConstraint constr, IlpLinExpr lhs, IlpLinExpr rhs) {
+        constr.update(toRow(lhs, rhs), rhs.getConstant() - lhs.getConstant());
+        changedConstraints.set(constr.index());
+    }
+
+    /**
+     * Same as {@link #updateConstr(IlpConstraint, IlpLinExpr, IlpLinExpr)} with a single variable on the right.
+     */
+    public void updateConstr(IlpConstraint constr, IlpLinExpr lhs, IlpVar rhs) {
+        updateConstr(constr, lhs, toExpr(rhs));
+    }
+
+    /**
+     * Same as {@link #updateConstr(IlpConstraint, IlpLinExpr, IlpLinExpr)} with a single variable on the left.
+     */
+    public void updateConstr(IlpConstraint constr, IlpVar lhs, IlpLinExpr rhs) {
+        updateConstr(constr, toExpr(lhs), rhs);
+    }
+
+    /**
+     * Same as {@link #updateConstr(IlpConstraint, IlpLinExpr, IlpLinExpr)} with a constant right hand side.
+     */
+    public void updateConstr(IlpConstraint constr, IlpLinExpr lhs, double rhs) {
+        constr.update(toRow(lhs, new IlpLinExpr(0)), rhs - lhs.getConstant());
+        changedConstraints.set(constr.index());
+    }
+
+    /**
+     * Changes the right hand side of a constraint.
+     *
+     * @param constr the constraint to update
+     * @param rhs    the new right hand side
+     */
+    public void setRhs(IlpConstraint constr, double rhs) {
+        if (constr.getRhs() != rhs) {
+            constr.setRhs(rhs);
+            changedConstraints.set(constr.index());
+        }
+    }
+
+    /**
+     * @return the constraints which were updated since the last call of {@link #clearChanges()}
+     */
+    public List<IlpConstraint> getChangedConstraints() {
+        List<IlpConstraint> changed = new ArrayList<>(changedConstraints.cardinality());
+        for (int i = changedConstraints.nextSetBit(0); i >= 0; i = changedConstraints.nextSetBit(i + 1)) {
+            changed.add(constraints.get(i));
+        }
+        return changed;
+    }
+
+    /**
+     * Forgets which constraints were updated, called by backends once they applied the changes.
+     */
+    public void clearChanges() {
+        changedConstraints.clear();
+    }
+
+    private static IlpLinExpr toRow(IlpLinExpr lhs, IlpLinExpr rhs) {
+        IlpLinExpr row = new IlpLinExpr(lhs.size() + rhs.size());
+        for (int i = 0; i < lhs.size(); i++) {
+            row.addTerm(lhs.getCoeff(i), lhs.getVarIndex(i));
+        }
+        for (int i = 0; i < rhs.size(); i++) {
+            row.addTerm(-rhs.getCoeff(i), rhs.getVarIndex(i));
+        }
+        return row;
+    }
+
+    private static IlpName toName(String name) {
+        return name == null || name.isEmpty() ? null : IlpName.of(name);
+    }
+
+    private static IlpLinExpr toExpr(IlpVar var) {
+        IlpLinExpr expr = new IlpLinExpr(1);
+        expr.addTerm(1.0, var);
+        return expr;
+    }
+
+    public IlpGenConstr addGenConstrMax(IlpVar resVar, IlpVar[] vars, double constant, String name) {
+        IlpGenConstr genConstr = new IlpGenConstr(IlpGenConstr.Type.MAX, resVar, vars, constant, name);
+        genConstraints.add(genConstr);
+        return genConstr;
+    }
+
+    public IlpGenConstr addGenConstrMin(IlpVar resVar, IlpVar[] vars, double constant, String name) {
+        IlpGenConstr genConstr = new IlpGenConstr(IlpGenConstr.Type.MIN, resVar, vars, constant, name);
+        genConstraints.add(genConstr);
+        return genConstr;
+    }
+
+    /**
+     * Sets a single objective. Replaces all objectives that were set before.
+     *
+     * @param expr  the objective expression
+     * @param sense {@link #MINIMIZE} or {@link #MAXIMIZE}
+     */
+    public void setObjective(IlpLinExpr expr, int sense) {
+        this.sense = sense;
+        objectives.clear();
+        objectives.add(new IlpObjective(expr, 0, 0, 1.0, 0.0, 0.0, "objective"));
+    }
+
+    /**
+     * Sets the objective with the given index of a multi-objective model. Same semantics as Gurobi's setObjectiveN.
+     *
+     * @param expr     the objective expression
+     * @param index    the index of the objective
+     * @param priority the priority, higher priorities are optimized first
+     * @param weight   the weight used for blending objectives of the same priority
+     * @param absTol   the absolute degradation allowed for this objective when optimizing lower priority objectives
+     * @param relTol   the relative degradation allowed for this objective when optimizing lower priority objectives
+     * @param name     the name of the objective
+     */
+    public void setObjectiveN(IlpLinExpr expr, int index, int priority, double weight, double absTol, double relTol,
+                              String name) {
+        objectives.removeIf(o -> o.getIndex() == index);
+        objectives.add(new IlpObjective(expr, index, priority, weight, absTol, relTol, name));
+    }
+
+    public int getNumVars() {
+        return numVars;
+    }
+
+    public int getNumConstrs() {
+        return constraints.size();
+    }
+
+    public List<IlpVar> getVars() {
+        return Collections.unmodifiableList(vars);
+    }
+
+    public IlpVar getVar(int index) {
+        return vars.get(index);
+    }
+
+    public double getLowerBound(int varIndex) {
+        return lb[varIndex];
+    }
+
+    public double getUpperBound(int varIndex) {
+        return ub[varIndex];
+    }
+
+    public double getObjCoeff(int varIndex) {
+        return obj[varIndex];
+    }
+
+    public IlpVarType getType(int varIndex) {
+        return types[varIndex];
+    }
+
+    public String getVarName(IlpVar var) {
+        return getVarName(var.index());
+    }
+
+    /**
+     * @param varIndex the index of the variable
+     * @return the name of the variable, for variables of a block it is built on every call, null if it has no name
+     */
+    public String getVarName(int varIndex) {
+        if (names[varIndex] != null) {
+            return names[varIndex];
+        }
+        // find the last block starting at or before the variable
+        int low = 0;
+        int high = varBlocks.size() - 1;
+        VarBlock block = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (varBlocks.get(mid).first <= varIndex) {
+                block = varBlocks.get(mid);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block == null || (block.first + block.count <= varIndex)) {
+            return null;
+        }
+        return block.namer.apply(varIndex - block.first);
+    }
+
+    public List<IlpConstraint> getConstraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    public List<IlpGenConstr> getGenConstraints() {
+        return Collections.unmodifiableList(genConstraints);
+    }
+
+    public List<IlpObjective> getObjectives() {
+        return Collections.unmodifiableList(objectives);
+    }
+
+    public int getSense() {
+        return sense;
+    }
+
+    public boolean isMultiObjective() {
+        return objectives.size() > 1;
+    }
+
+    public boolean isDebugNames() {
+        return debugNames;
+    }
+
+    /**
+     * Sets whether backends should pass the names of variables and constraints to the solver. Building the names is
+     * costly for large models, so they are omitted by default and only built if an IIS is written.
+     *
+     * @param debugNames true if all names should be passed to the solver
+     */
+    public void setDebugNames(boolean debugNames) {
+        this.debugNames = debugNames;
+    }
+
+    public IlpLazyConstraintSeparator getLazyConstraintSeparator() {
+        return lazyConstraintSeparator;
+    }
+
+    /**
+     * Sets the separator of the constraints which are not added to the model up front but only once a solution
+     * violates them, see {@link IlpLazyConstraintSeparator}.
+     *
+     * @param lazyConstraintSeparator the separator, null if the model has no lazy constraints
+     */
+    public void setLazyConstraintSeparator(IlpLazyConstraintSeparator lazyConstraintSeparator) {
+        this.lazyConstraintSeparator = lazyConstraintSeparator;
+    }
+
+    private static final class VarBlock {
+        private final int first;
+        private final int count;
+        private final IntFunction<String> namer;
+
+        private VarBlock(int first, int count, IntFunction<String> namer) {
+            this.first = first;
+            this.count = count;
+            this.namer = namer;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Lazily built name of a constraint. The formulations pass the parts of the name (strings, indices, vertices, ...) and
+ * the parts are only concatenated when the name is actually needed, i.e. when a backend hands names to the solver
+ * because {@link IlpModel#isDebugNames()} is set or when an IIS is written.
+ */
+public final class IlpName {
+    private final Object[] parts;
+    private String name;
+
+    private IlpName(Object[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * @param parts the parts of the name, their string representations are concatenated on demand
+     * @return the lazy name
+     */
+    public static IlpName of(Object... parts) {
+        return new IlpName(parts);
+    }
+
+    @Override
+    public String toString() {
+        if (name == null) {
+            StringBuilder sb = new StringBuilder();
+            for (Object part : parts) {
+                sb.append(part);
+            }
+            name = sb.toString();
+        }
+        return name;
+    }
+}
@@ -0,0 +1,53 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * An objective of an {@link IlpModel}. Models with several objectives are solved hierarchically: objectives with higher
+ * priority are optimized first, objectives with equal priority are blended using their weights.
+ */
+public class IlpObjective {
+    private final IlpLinExpr expr;
+    private final int index;
+    private final int priority;
+    private final double weight;
+    private final double absTol;
+    private final double relTol;
+    private final String name;
+
+    IlpObjective(IlpLinExpr expr, int index, int priority, double weight, double absTol, double relTol, String name) {
+        this.expr = expr;
+        this.index = index;
+        this.priority = priority;
+        this.weight = weight;
+        this.absTol = absTol;
+        this.relTol = relTol;
+        this.name = name;
+    }
+
+    public IlpLinExpr getExpr() {
+        return expr;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getAbsTol() {
+        return absTol;
+    }
+
+    public double getRelTol() {
+        return relTol;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,213 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the optimization of an {@link IlpModel} by an {@link IlpBackend}.
+ */
+public class IlpResult {
+    /**
+     * Values with a smaller absolute value are considered zero by {@link #getNonZeroPositions(IlpVar[], int, int)}.
+     */
+    public static final double ZERO_TOLERANCE = 1e-9;
+
+    private final IlpModel model;
+    private final IlpStatus status;
+    private final double[] values;
+    private final double objVal;
+    private final Map<Integer, Double> objNVals;
+    private final double runtime;
+    private IlpSolveStats stats;
+    // indices of the variables with a non-zero value in ascending order, built on first use
+    private int[] nonZeroIndices;
+
+    /**
+     * Creates a new result.
+     *
+     * @param model    the model which was optimized
+     * @param status   the status of the optimization
+     * @param values   the values of all variables (indexed by variable index) or null if no solution was found
+     * @param objVal   the value of the (highest priority) objective
+     * @param objNVals objective index -> value of the objective
+     * @param runtime  the runtime of the optimization in ms
+     */
+    public IlpResult(IlpModel model, IlpStatus status, double[] values, double objVal, Map<Integer, Double> objNVals,
+                     double runtime) {
+        this.model = model;
+        this.status = status;
+        this.values = values;
+        this.objVal = objVal;
+        this.objNVals = objNVals;
+        this.runtime = runtime;
+    }
+
+    /**
+     * Creates a result for the given variable values. The objective values are computed from the objectives of the
+     * model, the objective value is the one of the highest priority objective.
+     *
+     * @param model   the model which was optimized
+     * @param status  the status of the optimization
+     * @param values  the values of all variables (indexed by variable index) or null if no solution was found
+     * @param runtime the runtime of the optimization in ms
+     * @return the result
+     */
+    public static IlpResult of(IlpModel model, IlpStatus status, double[] values, double runtime) {
+        if (values == null) {
+            return new IlpResult(model, status, null, Double.NaN, new HashMap<>(), runtime);
+        }
+
+        Map<Integer, Double> objNVals = new HashMap<>();
+        double objVal = 0;
+        List<IlpObjective> objectives = new ArrayList<>(model.getObjectives());
+        objectives.sort(Comparator.comparingInt(IlpObjective::getPriority).reversed());
+        for (IlpObjective objective : objectives) {
+            objNVals.put(objective.getIndex(), objective.getExpr().evaluate(values));
+        }
+        if (!objectives.isEmpty()) {
+            objVal = objectives.get(0).getExpr().evaluate(values);
+        } else {
+            for (int j = 0; j < values.length; j++) {
+                objVal += model.getObjCoeff(j) * values[j];
+            }
+        }
+        return new IlpResult(model, status, values, objVal, objNVals, runtime);
+    }
+
+    public IlpModel getModel() {
+        return model;
+    }
+
+    public IlpStatus getStatus() {
+        return status;
+    }
+
+    public boolean hasSolution() {
+        return values != null;
+    }
+
+    public double getValue(IlpVar var) {
+        return values[var.index()];
+    }
+
+    /**
+     * @return the values of all variables, indexed by variable index. must not be modified.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the indices of all variables with a non-zero value, in ascending order. must not be modified.
+     */
+    public int[] getNonZeroIndices() {
+        if (nonZeroIndices == null) {
+            int[] indices = new int[16];
+            int count = 0;
+            for (int j = 0; j < values.length; j++) {
+                if (Math.abs(values[j]) > ZERO_TOLERANCE) {
+                    if (count == indices.length) {
+                        indices = Arrays.copyOf(indices, 2 * count);
+                    }
+                    indices[count++] = j;
+                }
+            }
+            nonZeroIndices = Arrays.copyOf(indices, count);
+        }
+        return nonZeroIndices;
+    }
+
+    /**
+     * Finds the variables of a block with a non-zero value, so that callers can decode a mostly zero variable family
+     * in time proportional to its non-zero entries. The non-zero entries are found by a binary search in the sorted
+     * {@link #getNonZeroIndices() non-zero indices}, which requires vars[from, to) to hold variables with consecutive
+     * indices in ascending order, as created by one {@link IlpModel#addVars} call. Blocks whose first and last variable
+     * do not span exactly to - from indices are scanned instead.
+     *
+     * @param vars the variables
+     * @param from the first position in vars, inclusive
+     * @param to   the last position in vars, exclusive
+     * @return the positions in vars of the variables with a non-zero value, in ascending order
+     */
+    public int[] getNonZeroPositions(IlpVar[] vars, int from, int to) {
+        if (from >= to) {
+            return new int[0];
+        }
+        if (vars[from] == null || vars[to - 1] == null
+            || vars[to - 1].index() - vars[from].index() != to - 1 - from) {
+            return scanNonZeroPositions(vars, from, to);
+        }
+        int firstIndex = vars[from].index();
+        int[] indices = getNonZeroIndices();
+        int lo = lowerBound(indices, firstIndex);
+        int hi = lowerBound(indices, firstIndex + (to - from));
+        int[] positions = new int[hi - lo];
+        for (int i = lo; i < hi; i++) {
+            positions[i - lo] = from + indices[i] - firstIndex;
+        }
+        return positions;
+    }
+
+    private int[] scanNonZeroPositions(IlpVar[] vars, int from, int to) {
+        int[] positions = new int[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (vars[i] != null && Math.abs(values[vars[i].index()]) > ZERO_TOLERANCE) {
+                positions[count++] = i;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * @return the first position in the sorted array whose value is at least key
+     */
+    private static int lowerBound(int[] sorted, int key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public double getObjVal() {
+        return objVal;
+    }
+
+    public double getObjNVal(int index) {
+        Double value = objNVals.get(index);
+        return value == null ? Double.NaN : value;
+    }
+
+    public double getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * @return what the backend observed while optimizing, null if the backend does not record it
+     */
+    public IlpSolveStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Attaches the statistics of the optimization, set by the backend which created the result.
+     *
+     * @param stats the statistics
+     * @return this result
+     */
+    public IlpResult setStats(IlpSolveStats stats) {
+        this.stats = stats;
+        return this;
+    }
+}
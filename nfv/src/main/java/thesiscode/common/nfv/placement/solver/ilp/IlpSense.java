@@ -0,0 +1,10 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Sense of a linear constraint in an {@link IlpModel}.
+ */
+public enum IlpSense {
+    LESS_EQUAL,
+    GREATER_EQUAL,
+    EQUAL
+}
@@ -0,0 +1,329 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What an {@link IlpBackend} observed while it optimized a model: the reductions of its presolve, the time of the root
+ * relaxation, the explored nodes and the progress of incumbent and bound over time, per pass of a multi-objective
+ * optimization. Backends record into it from their callbacks on the optimizing thread and attach it to the
+ * {@link IlpResult}; values a backend does not know stay unknown (-1 or NaN).
+ * <p>
+ * The objective values and bounds are the ones of the objective of the current pass in the sense of the model. Bound
+ * changes without a new incumbent are thinned out, so the timeline stays small for long optimizations.
+ */
+public class IlpSolveStats {
+    private static final double MIN_BOUND_INTERVAL_MS = 100;
+
+    private int presolveRemovedRows = -1;
+    private int presolveRemovedCols = -1;
+    private double rootLpTimeMs = Double.NaN;
+    private double rootBound = Double.NaN;
+    private long nodeCount = -1;
+    private long iterationCount = -1;
+    private double bestBound = Double.NaN;
+    private final List<ProgressPoint> timeline = new ArrayList<>();
+    private final List<ObjectivePass> passes = new ArrayList<>();
+
+    /**
+     * A point of the timeline.
+     */
+    public static final class ProgressPoint {
+        private final double timeMs;
+        private final int pass;
+        private final double incumbent;
+        private final double bound;
+        private final long nodeCount;
+
+        ProgressPoint(double timeMs, int pass, double incumbent, double bound, long nodeCount) {
+            this.timeMs = timeMs;
+            this.pass = pass;
+            this.incumbent = incumbent;
+            this.bound = bound;
+            this.nodeCount = nodeCount;
+        }
+
+        /**
+         * @return the time since the optimization started in ms
+         */
+        public double getTimeMs() {
+            return timeMs;
+        }
+
+        /**
+         * @return the index of the objective pass, see {@link IlpSolveStats#getPasses()}
+         */
+        public int getPass() {
+            return pass;
+        }
+
+        /**
+         * @return the objective of the incumbent, NaN if there is none yet
+         */
+        public double getIncumbent() {
+            return incumbent;
+        }
+
+        /**
+         * @return the best bound, NaN if unknown
+         */
+        public double getBound() {
+            return bound;
+        }
+
+        /**
+         * @return the relative gap between incumbent and bound, infinite if one of them is unknown
+         */
+        public double getGap() {
+            return gap(incumbent, bound);
+        }
+
+        public long getNodeCount() {
+            return nodeCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0fms[pass=%d,incumbent=%s,bound=%s,nodes=%d]", timeMs, pass, incumbent, bound,
+                    nodeCount);
+        }
+    }
+
+    /**
+     * A pass of a multi-objective optimization, in which the objectives of one priority are optimized. Optimizations of
+     * a single objective have a single pass.
+     */
+    public static final class ObjectivePass {
+        private final int priority;
+        private final double startMs;
+        private double endMs = Double.NaN;
+        private double objVal = Double.NaN;
+
+        ObjectivePass(int priority, double startMs) {
+            this.priority = priority;
+            this.startMs = startMs;
+        }
+
+        /**
+         * @return the priority of the objectives of this pass, 0 if the model has a single objective
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return the time the pass started, NaN if unknown
+         */
+        public double getStartMs() {
+            return startMs;
+        }
+
+        /**
+         * @return the time the pass ended, NaN if the optimization stopped during the pass or the time is unknown
+         */
+        public double getEndMs() {
+            return endMs;
+        }
+
+        /**
+         * @return the objective of the best solution of the pass, NaN if it found none
+         */
+        public double getObjVal() {
+            return objVal;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("priority %d: %s in %.0f-%.0fms", priority, objVal, startMs, endMs);
+        }
+    }
+
+    /**
+     * Starts the next objective pass, ending the current one.
+     *
+     * @param priority the priority of the objectives of the pass
+     * @param timeMs   the time since the optimization started in ms
+     */
+    public void startPass(int priority, double timeMs) {
+        endPass(timeMs);
+        passes.add(new ObjectivePass(priority, timeMs));
+    }
+
+    /**
+     * Ends the current objective pass, if it is not ended yet.
+     *
+     * @param timeMs the time since the optimization started in ms
+     */
+    public void endPass(double timeMs) {
+        ObjectivePass current = currentPass();
+        if (current != null && Double.isNaN(current.endMs)) {
+            current.endMs = timeMs;
+        }
+    }
+
+    /**
+     * Completes the passes of an optimization which finished all of them, for backends which do not observe the passes
+     * of a multi-objective optimization while optimizing. The recorded passes are matched to the priorities in their
+     * order, the missing ones are added without start and end time, and the objectives of all passes are set. The
+     * timeline stays with the passes it was recorded in.
+     *
+     * @param priorities the priorities of all passes, highest first
+     * @param objVals    the objective of the solution in every pass
+     * @param timeMs     the time since the optimization started at which the last pass ended
+     */
+    public void completePasses(int[] priorities, double[] objVals, double timeMs) {
+        for (int i = passes.size(); i < priorities.length; i++) {
+            passes.add(new ObjectivePass(priorities[i], Double.NaN));
+        }
+        for (int i = 0; i < priorities.length; i++) {
+            passes.get(i).objVal = objVals[i];
+        }
+        endPass(timeMs);
+    }
+
+    /**
+     * Records the progress of the current pass. A point is added if the incumbent changed, or the bound changed and the
+     * last point is some time ago.
+     *
+     * @param timeMs    the time since the optimization started in ms
+     * @param incumbent the objective of the incumbent, NaN if there is none
+     * @param bound     the best bound, NaN if unknown
+     * @param nodeCount the number of nodes explored so far
+     */
+    public void recordProgress(double timeMs, double incumbent, double bound, long nodeCount) {
+        if (passes.isEmpty()) {
+            startPass(0, 0);
+        }
+        int pass = passes.size() - 1;
+        ObjectivePass current = passes.get(pass);
+        if (!Double.isNaN(incumbent)) {
+            current.objVal = incumbent;
+        }
+        ProgressPoint last = timeline.isEmpty() ? null : timeline.get(timeline.size() - 1);
+        if (last != null && last.pass == pass) {
+            boolean newIncumbent = !sameValue(last.incumbent, incumbent);
+            boolean newBound = !sameValue(last.bound, bound) && timeMs - last.timeMs >= MIN_BOUND_INTERVAL_MS;
+            if (!newIncumbent && !newBound) {
+                return;
+            }
+        }
+        timeline.add(new ProgressPoint(timeMs, pass, incumbent, bound, nodeCount));
+    }
+
+    public void setPresolveReductions(int removedRows, int removedCols) {
+        this.presolveRemovedRows = removedRows;
+        this.presolveRemovedCols = removedCols;
+    }
+
+    /**
+     * @param timeMs the time since the optimization started at which the root relaxation was solved
+     * @param bound  the objective of the root relaxation
+     */
+    public void setRootLp(double timeMs, double bound) {
+        this.rootLpTimeMs = timeMs;
+        this.rootBound = bound;
+    }
+
+    public void setNodeCount(long nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public void setIterationCount(long iterationCount) {
+        this.iterationCount = iterationCount;
+    }
+
+    public void setBestBound(double bestBound) {
+        this.bestBound = bestBound;
+    }
+
+    /**
+     * @return the number of rows removed by the presolve of the backend, -1 if unknown
+     */
+    public int getPresolveRemovedRows() {
+        return presolveRemovedRows;
+    }
+
+    /**
+     * @return the number of columns removed by the presolve of the backend, -1 if unknown
+     */
+    public int getPresolveRemovedCols() {
+        return presolveRemovedCols;
+    }
+
+    /**
+     * @return the time since the optimization started at which the root relaxation (of the first pass) was solved in
+     * ms, NaN if it was not solved or the time is unknown
+     */
+    public double getRootLpTimeMs() {
+        return rootLpTimeMs;
+    }
+
+    public double getRootBound() {
+        return rootBound;
+    }
+
+    /**
+     * @return the number of explored nodes over all passes, -1 if unknown
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of simplex iterations over all passes, -1 if unknown
+     */
+    public long getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * @return the best bound of the last pass at the end of the optimization, NaN if unknown
+     */
+    public double getBestBound() {
+        return bestBound;
+    }
+
+    public List<ProgressPoint> getTimeline() {
+        return Collections.unmodifiableList(timeline);
+    }
+
+    public List<ObjectivePass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    /**
+     * @return the time since the optimization started at which the first incumbent was found, NaN if none was found
+     */
+    public double getTimeToFirstIncumbentMs() {
+        for (ProgressPoint point : timeline) {
+            if (!Double.isNaN(point.incumbent)) {
+                return point.timeMs;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private ObjectivePass currentPass() {
+        return passes.isEmpty() ? null : passes.get(passes.size() - 1);
+    }
+
+    private static boolean sameValue(double a, double b) {
+        return (Double.isNaN(a) && Double.isNaN(b)) || Math.abs(a - b) <= 1e-9 * Math.max(1, Math.abs(a));
+    }
+
+    private static double gap(double incumbent, double bound) {
+        if (Double.isNaN(incumbent) || Double.isNaN(bound) || Double.isInfinite(bound)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(incumbent - bound) / Math.max(1e-10, Math.abs(incumbent));
+    }
+
+    @Override
+    public String toString() {
+        return "IlpSolveStats{presolveRemovedRows=" + presolveRemovedRows + ", presolveRemovedCols=" +
+               presolveRemovedCols + ", rootLpTimeMs=" + rootLpTimeMs + ", rootBound=" + rootBound + ", nodeCount=" +
+               nodeCount + ", iterationCount=" + iterationCount + ", bestBound=" + bestBound + ", passes=" + passes +
+               ", timeline=" + timeline.size() + " points}";
+    }
+}
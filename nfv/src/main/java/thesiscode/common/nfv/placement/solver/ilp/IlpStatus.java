@@ -0,0 +1,32 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Status of an optimization run of an {@link IlpBackend}.
+ */
+public enum IlpStatus {
+    /**
+     * proven optimal solution found
+     */
+    OPTIMAL,
+    /**
+     * the model has no feasible solution
+     */
+    INFEASIBLE,
+    /**
+     * the model is unbounded
+     */
+    UNBOUNDED,
+    /**
+     * a limit (time, nodes, ...) was hit. a feasible solution may be available
+     */
+    LIMIT_REACHED,
+    /**
+     * the optimization was interrupted. a feasible solution may be available
+     */
+    INTERRUPTED,
+    /**
+     * a feasible solution found while the optimization is still running, only reported to an
+     * {@link IlpIncumbentListener}
+     */
+    INCUMBENT
+}
@@ -0,0 +1,32 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Handle of a variable of an {@link IlpModel}. The handle only stores the (dense) index of the variable, all attributes
+ * (bounds, type, name, ...) are stored in the model.
+ */
+public final class IlpVar {
+    private final int index;
+
+    IlpVar(int index) {
+        this.index = index;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IlpVar && ((IlpVar) o).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "x" + index;
+    }
+}
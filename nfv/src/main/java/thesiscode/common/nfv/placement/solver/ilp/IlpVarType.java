@@ -0,0 +1,14 @@
+package thesiscode.common.nfv.placement.solver.ilp;
+
+/**
+ * Domain of a variable in an {@link IlpModel}.
+ */
+public enum IlpVarType {
+    BINARY,
+    INTEGER,
+    CONTINUOUS;
+
+    public boolean isIntegral() {
+        return this != CONTINUOUS;
+    }
+}
@@ -0,0 +1,632 @@
+package thesiscode.common.nfv.placement.solver.ilp.bnb;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Dense primal/dual simplex for LPs with bounded variables: min c^T x s.t. rows, lb <= x <= ub.
+ * <p>
+ * Every row gets a logical variable (row + s = rhs, the bounds of s encode the sense). Rows whose logical cannot absorb
+ * the residual of the start point get an artificial variable for phase 1, the artificial columns are implicit and never
+ * stored. Nonbasic variables rest at one of their bounds, so variable bounds do not need extra rows. The tableau only
+ * holds the columns which can ever enter the basis (structurals which are not fixed and logicals of inequalities).
+ * Both the primal and the dual simplex switch to Bland's rule after a series of degenerate pivots to avoid cycling.
+ * <p>
+ * After an optimal solve, {@link #resolve(double[], double[])} re-optimizes for other bounds starting from the last
+ * basis with the dual simplex, which is what makes the branch and bound cheap: a child node typically needs only a
+ * handful of pivots.
+ * <p>
+ * A stop check, e.g. for a deadline, is polled every {@value #PIVOTS_BETWEEN_STOP_CHECKS} pivots, so that a single LP
+ * does not delay the end of the search.
+ */
+class BoundedSimplex {
+    enum Status {
+        OPTIMAL,
+        INFEASIBLE,
+        UNBOUNDED,
+        ITERATION_LIMIT,
+        INTERRUPTED
+    }
+
+    private static final double PRIMAL_TOL = 1e-7;
+    private static final double DUAL_TOL = 1e-9;
+    private static final double PIVOT_TOL = 1e-9;
+    private static final double FEASIBILITY_CHECK_TOL = 1e-6;
+    private static final int DEGENERATE_PIVOTS_BEFORE_BLAND = 50;
+    private static final int MAX_ITERATIONS = 1_000_000;
+    private static final int PIVOTS_BETWEEN_STOP_CHECKS = 100;
+    private static final int MAX_WARM_SOLVES = 200; // warm solves before the tableau is rebuilt to get rid of drift
+
+    private final MipProblem problem;
+
+    private int m;
+    private int n; // structural columns
+    private int total; // structural + logical + (implicit) artificial columns
+
+    private int[] active; // position -> column
+    private int[] position; // column -> position or -1
+    private double[][] tableau; // B^-1 * [A | I] restricted to the active columns
+    private double[] reducedCost; // per position
+    private int[] basis; // row -> column
+    private int[] basisRow; // column -> row or -1
+    private double[] value; // current value of every column
+    private double[] lower;
+    private double[] upper;
+
+    private double[] cost; // phase 2 cost of every column
+    private Status status;
+    private double objective;
+    private boolean warm;
+    private int warmSolves;
+    private BooleanSupplier stopCheck = () -> false;
+
+    BoundedSimplex(MipProblem problem) {
+        this.problem = problem;
+    }
+
+    /**
+     * @param stopCheck polled every {@value #PIVOTS_BETWEEN_STOP_CHECKS} pivots, the LP is left with
+     *                  {@link Status#INTERRUPTED} once it returns true
+     */
+    void setStopCheck(BooleanSupplier stopCheck) {
+        this.stopCheck = stopCheck;
+    }
+
+    /**
+     * Solves the LP relaxation of the problem with the given bounds from scratch.
+     *
+     * @param cost objective coefficients of the structural columns (minimized)
+     * @param lb   lower bounds of the structural columns
+     * @param ub   upper bounds of the structural columns
+     * @return the status of the LP
+     */
+    Status solve(double[] cost, double[] lb, double[] ub) {
+        warm = false;
+        warmSolves = 0;
+        setUp(cost, lb, ub);
+        if (status == Status.INFEASIBLE) {
+            return status;
+        }
+
+        // phase 1: minimize the sum of artificials
+        boolean artificialBasic = false;
+        for (int i = 0; i < m; i++) {
+            artificialBasic |= basis[i] >= n + m && value[basis[i]] > PRIMAL_TOL;
+        }
+        if (artificialBasic) {
+            double[] phase1Cost = new double[total];
+            for (int j = n + m; j < total; j++) {
+                phase1Cost[j] = 1.0;
+            }
+            computeReducedCosts(phase1Cost);
+            Status phase1 = iterate();
+            if (phase1 == Status.ITERATION_LIMIT || phase1 == Status.INTERRUPTED) {
+                return status = phase1;
+            }
+            double infeasibility = 0;
+            for (int i = 0; i < m; i++) {
+                if (basis[i] >= n + m) {
+                    infeasibility += value[basis[i]];
+                }
+            }
+            if (infeasibility > PRIMAL_TOL * Math.max(1, m)) {
+                return status = Status.INFEASIBLE;
+            }
+        }
+
+        // phase 2: artificials are fixed to 0 and never enter again
+        for (int j = n + m; j < total; j++) {
+            upper[j] = 0.0;
+        }
+        computeReducedCosts(this.cost);
+        status = iterate();
+        return finish();
+    }
+
+    /**
+     * Re-optimizes for other bounds of the structural columns, starting from the basis of the last optimal solve. Falls
+     * back to a solve from scratch if there is no such basis or the warm solve runs into numerical trouble.
+     *
+     * @param lb lower bounds of the structural columns
+     * @param ub upper bounds of the structural columns
+     * @return the status of the LP
+     */
+    Status resolve(double[] lb, double[] ub) {
+        if (!warm || warmSolves >= MAX_WARM_SOLVES) {
+            return solve(Arrays.copyOf(cost, n), lb, ub);
+        }
+        for (int j = 0; j < n; j++) {
+            if (lb[j] > ub[j] + PRIMAL_TOL) {
+                // the basis stays valid, only the bounds are contradictory
+                return status = Status.INFEASIBLE;
+            }
+        }
+        warmSolves++;
+
+        for (int j = 0; j < n; j++) {
+            lower[j] = lb[j];
+            upper[j] = ub[j];
+            if (basisRow[j] >= 0) {
+                continue;
+            }
+            double target = nonbasicValue(j);
+            if (Double.isNaN(target)) {
+                // no bound keeps the column dual feasible
+                return solve(Arrays.copyOf(cost, n), lb, ub);
+            }
+            double delta = target - value[j];
+            if (delta != 0) {
+                value[j] = target;
+                int p = position[j];
+                if (p >= 0) {
+                    for (int i = 0; i < m; i++) {
+                        double alpha = tableau[i][p];
+                        if (alpha != 0) {
+                            value[basis[i]] -= alpha * delta;
+                        }
+                    }
+                }
+            }
+        }
+
+        status = dualIterate();
+        if (status == Status.INTERRUPTED) {
+            warm = false;
+            return status;
+        }
+        if (status == Status.INFEASIBLE) {
+            // the basis is still dual feasible and can be used by the next resolve
+            return status;
+        }
+        if (status == Status.OPTIMAL) {
+            // clean up dual infeasibilities caused by rounding
+            status = iterate();
+            if (status == Status.INTERRUPTED) {
+                warm = false;
+                return status;
+            }
+        }
+        if (status == Status.ITERATION_LIMIT || (status == Status.OPTIMAL && !isFeasible())) {
+            return solve(Arrays.copyOf(cost, n), lb, ub);
+        }
+        return finish();
+    }
+
+    double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return the values of the structural columns
+     */
+    double[] getValues() {
+        return Arrays.copyOf(value, n);
+    }
+
+    private Status finish() {
+        objective = 0;
+        for (int j = 0; j < n; j++) {
+            objective += cost[j] * value[j];
+        }
+        warm = status == Status.OPTIMAL;
+        return status;
+    }
+
+    /**
+     * The bound a nonbasic column has to rest at to stay dual feasible, NaN if that bound is infinite.
+     */
+    private double nonbasicValue(int j) {
+        if (lower[j] == upper[j]) {
+            return lower[j];
+        }
+        int p = position[j];
+        double d = p >= 0 ? reducedCost[p] : 0.0;
+        if (d > DUAL_TOL) {
+            return Double.isInfinite(lower[j]) ? Double.NaN : lower[j];
+        } else if (d < -DUAL_TOL) {
+            return Double.isInfinite(upper[j]) ? Double.NaN : upper[j];
+        }
+        if (value[j] >= lower[j] && value[j] <= upper[j] && (value[j] == lower[j] || value[j] == upper[j])) {
+            return value[j];
+        }
+        if (!Double.isInfinite(lower[j])) {
+            return lower[j];
+        }
+        return Double.isInfinite(upper[j]) ? 0.0 : upper[j];
+    }
+
+    private void setUp(double[] structuralCost, double[] lb, double[] ub) {
+        m = problem.numRows();
+        n = problem.numCols;
+        total = n + 2 * m;
+        basis = new int[m];
+        basisRow = new int[total];
+        value = new double[total];
+        lower = new double[total];
+        upper = new double[total];
+        cost = new double[total];
+        System.arraycopy(structuralCost, 0, cost, 0, n);
+        status = null;
+
+        // structural columns rest at a finite bound (or 0 if free)
+        for (int j = 0; j < n; j++) {
+            lower[j] = lb[j];
+            upper[j] = ub[j];
+            if (lb[j] > ub[j] + PRIMAL_TOL) {
+                status = Status.INFEASIBLE;
+                return;
+            }
+            if (!Double.isInfinite(lb[j])) {
+                value[j] = lb[j];
+            } else if (!Double.isInfinite(ub[j])) {
+                value[j] = ub[j];
+            } else {
+                value[j] = 0.0;
+            }
+        }
+        Arrays.fill(basisRow, -1);
+
+        // only columns which are not fixed in the problem and logicals of inequalities can ever enter the basis
+        position = new int[total];
+        Arrays.fill(position, -1);
+        int[] activeColumns = new int[n + m];
+        int w = 0;
+        for (int j = 0; j < n; j++) {
+            if (problem.lb[j] != problem.ub[j]) {
+                position[j] = w;
+                activeColumns[w++] = j;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            if (problem.rowSense.get(i) != IlpSense.EQUAL) {
+                position[n + i] = w;
+                activeColumns[w++] = n + i;
+            }
+        }
+        active = Arrays.copyOf(activeColumns, w);
+        tableau = new double[m][w];
+        reducedCost = new double[w];
+
+        for (int i = 0; i < m; i++) {
+            int[] idx = problem.rowIdx.get(i);
+            double[] val = problem.rowVal.get(i);
+            double residual = problem.rowRhs.get(i);
+            double[] row = tableau[i];
+            for (int k = 0; k < idx.length; k++) {
+                int p = position[idx[k]];
+                if (p >= 0) {
+                    row[p] += val[k];
+                }
+                residual -= val[k] * value[idx[k]];
+            }
+
+            // logical column
+            int logical = n + i;
+            IlpSense sense = problem.rowSense.get(i);
+            lower[logical] = sense == IlpSense.GREATER_EQUAL ? Double.NEGATIVE_INFINITY : 0.0;
+            upper[logical] = sense == IlpSense.LESS_EQUAL ? Double.POSITIVE_INFINITY : 0.0;
+            int artificial = n + m + i;
+            lower[artificial] = 0.0;
+            upper[artificial] = Double.POSITIVE_INFINITY;
+
+            if (sense != IlpSense.EQUAL && residual >= lower[logical] && residual <= upper[logical]) {
+                // the logical absorbs the residual, no artificial needed
+                row[position[logical]] = 1.0;
+                value[logical] = residual;
+                basis[i] = logical;
+                basisRow[logical] = i;
+            } else {
+                // artificial column (coefficient sigma), basic with value |residual|. The row is scaled by sigma so
+                // that the implicit artificial column is a unit column.
+                if (position[logical] >= 0) {
+                    row[position[logical]] = 1.0;
+                }
+                value[logical] = 0.0;
+                if (residual < 0) {
+                    for (int p = 0; p < w; p++) {
+                        row[p] = -row[p];
+                    }
+                }
+                value[artificial] = Math.abs(residual);
+                basis[i] = artificial;
+                basisRow[artificial] = i;
+            }
+        }
+    }
+
+    private void computeReducedCosts(double[] fullCost) {
+        int w = active.length;
+        for (int p = 0; p < w; p++) {
+            reducedCost[p] = fullCost[active[p]];
+        }
+        for (int i = 0; i < m; i++) {
+            double cb = fullCost[basis[i]];
+            if (cb == 0) {
+                continue;
+            }
+            double[] row = tableau[i];
+            for (int p = 0; p < w; p++) {
+                reducedCost[p] -= cb * row[p];
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            int p = position[basis[i]];
+            if (p >= 0) {
+                reducedCost[p] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Primal simplex, requires a primal feasible basis.
+     */
+    private Status iterate() {
+        int degenerate = 0;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if (stopRequested(iteration)) {
+                return Status.INTERRUPTED;
+            }
+            boolean bland = degenerate > DEGENERATE_PIVOTS_BEFORE_BLAND;
+            int qp = selectEntering(bland);
+            if (qp < 0) {
+                return Status.OPTIMAL;
+            }
+            int q = active[qp];
+            double dir = reducedCost[qp] < 0 ? 1.0 : -1.0;
+
+            // ratio test
+            double step = upper[q] - lower[q]; // bound flip
+            int leaveRow = -1;
+            double bestPivot = 0;
+            for (int i = 0; i < m; i++) {
+                double alpha = tableau[i][qp];
+                if (Math.abs(alpha) < PIVOT_TOL) {
+                    continue;
+                }
+                int col = basis[i];
+                double rate = -alpha * dir; // change of basic variable per unit step
+                double limit;
+                if (rate < 0) {
+                    if (Double.isInfinite(lower[col])) {
+                        continue;
+                    }
+                    limit = Math.max(0.0, (value[col] - lower[col]) / -rate);
+                } else {
+                    if (Double.isInfinite(upper[col])) {
+                        continue;
+                    }
+                    limit = Math.max(0.0, (upper[col] - value[col]) / rate);
+                }
+                boolean better = limit < step - PRIMAL_TOL;
+                boolean tie = !better && limit <= step + PRIMAL_TOL && leaveRow >= 0;
+                if (better || (tie && (bland ? col < basis[leaveRow] : Math.abs(alpha) > bestPivot))) {
+                    step = limit;
+                    leaveRow = i;
+                    bestPivot = Math.abs(alpha);
+                }
+            }
+
+            if (Double.isInfinite(step)) {
+                return Status.UNBOUNDED;
+            }
+            degenerate = step < PRIMAL_TOL ? degenerate + 1 : 0;
+
+            // move along the edge
+            if (step > 0) {
+                for (int i = 0; i < m; i++) {
+                    double alpha = tableau[i][qp];
+                    if (alpha != 0) {
+                        value[basis[i]] -= alpha * dir * step;
+                    }
+                }
+                value[q] += dir * step;
+            }
+
+            if (leaveRow < 0) {
+                // bound flip, the basis does not change
+                value[q] = dir > 0 ? upper[q] : lower[q];
+                continue;
+            }
+
+            int leaving = basis[leaveRow];
+            double leaveAlpha = tableau[leaveRow][qp];
+            // snap leaving variable to the bound it hit
+            value[leaving] = (-leaveAlpha * dir < 0) ? lower[leaving] : upper[leaving];
+            exchange(leaveRow, qp);
+        }
+        return Status.ITERATION_LIMIT;
+    }
+
+    /**
+     * Dual simplex, requires a dual feasible basis. Returns OPTIMAL as soon as the basis is primal feasible.
+     */
+    private Status dualIterate() {
+        int w = active.length;
+        int degenerate = 0;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if (stopRequested(iteration)) {
+                return Status.INTERRUPTED;
+            }
+            boolean bland = degenerate > DEGENERATE_PIVOTS_BEFORE_BLAND;
+            // leaving row: largest bound violation (Bland: violated basic column with the smallest index)
+            int r = -1;
+            double maxViolation = PRIMAL_TOL;
+            for (int i = 0; i < m; i++) {
+                int col = basis[i];
+                double violation = Math.max(lower[col] - value[col], value[col] - upper[col]);
+                if (bland ? violation > PRIMAL_TOL && (r < 0 || col < basis[r]) : violation > maxViolation) {
+                    maxViolation = violation;
+                    r = i;
+                }
+            }
+            if (r < 0) {
+                return Status.OPTIMAL;
+            }
+            int leaving = basis[r];
+            boolean toLower = value[leaving] < lower[leaving];
+            double bound = toLower ? lower[leaving] : upper[leaving];
+
+            // entering column: keeps the reduced costs dual feasible (minimum ratio |d_j| / |alpha_rj|)
+            double[] row = tableau[r];
+            int qp = -1;
+            double bestRatio = Double.POSITIVE_INFINITY;
+            double bestPivot = 0;
+            for (int p = 0; p < w; p++) {
+                int j = active[p];
+                double alpha = row[p];
+                if (basisRow[j] >= 0 || lower[j] == upper[j] || Math.abs(alpha) < PIVOT_TOL) {
+                    continue;
+                }
+                // the basic variable changes by -alpha per unit increase of column j
+                boolean increase = toLower ? alpha < 0 : alpha > 0;
+                if (increase ? value[j] >= upper[j] - PRIMAL_TOL : value[j] <= lower[j] + PRIMAL_TOL) {
+                    continue;
+                }
+                double ratio = Math.abs(reducedCost[p]) / Math.abs(alpha);
+                // columns are visited in increasing index order, so Bland keeps the first of equal ratios
+                if (ratio < bestRatio - DUAL_TOL || (!bland && ratio <= bestRatio + DUAL_TOL
+                        && Math.abs(alpha) > bestPivot)) {
+                    bestRatio = ratio;
+                    bestPivot = Math.abs(alpha);
+                    qp = p;
+                }
+            }
+            if (qp < 0) {
+                // no nonbasic column can move the basic variable back into its bounds
+                return Status.INFEASIBLE;
+            }
+
+            degenerate = bestRatio < DUAL_TOL ? degenerate + 1 : 0;
+
+            int q = active[qp];
+            double step = (value[leaving] - bound) / row[qp];
+            for (int i = 0; i < m; i++) {
+                double alpha = tableau[i][qp];
+                if (alpha != 0) {
+                    value[basis[i]] -= alpha * step;
+                }
+            }
+            value[q] += step;
+            value[leaving] = bound;
+            exchange(r, qp);
+        }
+        return Status.ITERATION_LIMIT;
+    }
+
+    private boolean stopRequested(int iteration) {
+        return iteration > 0 && iteration % PIVOTS_BETWEEN_STOP_CHECKS == 0 && stopCheck.getAsBoolean();
+    }
+
+    private int selectEntering(boolean bland) {
+        int best = -1;
+        double bestValue = DUAL_TOL;
+        for (int p = 0; p < active.length; p++) {
+            int j = active[p];
+            if (basisRow[j] >= 0 || lower[j] == upper[j]) {
+                continue;
+            }
+            double d = reducedCost[p];
+            double score;
+            if (d < -DUAL_TOL && value[j] < upper[j] - PRIMAL_TOL) {
+                score = -d;
+            } else if (d > DUAL_TOL && value[j] > lower[j] + PRIMAL_TOL) {
+                score = d;
+            } else {
+                continue;
+            }
+            if (bland) {
+                return p;
+            }
+            if (score > bestValue) {
+                bestValue = score;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Pivots the column at position qp into the basis at row r.
+     */
+    private void exchange(int r, int qp) {
+        int leaving = basis[r];
+        int q = active[qp];
+        pivot(r, qp);
+        basisRow[leaving] = -1;
+        basis[r] = q;
+        basisRow[q] = r;
+    }
+
+    private void pivot(int r, int qp) {
+        int w = active.length;
+        double[] pivotRow = tableau[r];
+        double pivotValue = pivotRow[qp];
+        for (int p = 0; p < w; p++) {
+            pivotRow[p] /= pivotValue;
+        }
+        pivotRow[qp] = 1.0;
+
+        // the nonzeros of the pivot row are collected once, the row is usually sparse
+        int[] nz = new int[w];
+        int numNz = 0;
+        for (int p = 0; p < w; p++) {
+            if (pivotRow[p] != 0) {
+                nz[numNz++] = p;
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            if (i == r) {
+                continue;
+            }
+            double[] row = tableau[i];
+            double factor = row[qp];
+            if (factor == 0) {
+                continue;
+            }
+            for (int k = 0; k < numNz; k++) {
+                int p = nz[k];
+                row[p] -= factor * pivotRow[p];
+            }
+            row[qp] = 0.0;
+        }
+
+        double factor = reducedCost[qp];
+        if (factor != 0) {
+            for (int k = 0; k < numNz; k++) {
+                int p = nz[k];
+                reducedCost[p] -= factor * pivotRow[p];
+            }
+        }
+        reducedCost[qp] = 0.0;
+    }
+
+    /**
+     * Checks the current point against the original rows, to detect numerical drift of the tableau.
+     */
+    private boolean isFeasible() {
+        for (int j = 0; j < n; j++) {
+            if (value[j] < lower[j] - FEASIBILITY_CHECK_TOL || value[j] > upper[j] + FEASIBILITY_CHECK_TOL) {
+                return false;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            int[] idx = problem.rowIdx.get(i);
+            double[] val = problem.rowVal.get(i);
+            double activity = 0;
+            for (int k = 0; k < idx.length; k++) {
+                activity += val[k] * value[idx[k]];
+            }
+            double rhs = problem.rowRhs.get(i);
+            double tol = FEASIBILITY_CHECK_TOL * (1 + Math.abs(rhs));
+            IlpSense sense = problem.rowSense.get(i);
+            if ((sense != IlpSense.GREATER_EQUAL && activity > rhs + tol)
+                    || (sense != IlpSense.LESS_EQUAL && activity < rhs - tol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,324 @@
+package thesiscode.common.nfv.placement.solver.ilp.bnb;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpCut;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLazyConstraintSeparator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Depth-first branch and bound on top of {@link BoundedSimplex}. Branches on the most fractional integer column and
+ * explores the child closer to the LP value first, so that incumbents are found early. Every node but the root is
+ * re-optimized from the basis of the previously solved node.
+ * <p>
+ * If a lazy constraint separator is set, every integral node solution which would improve the incumbent is separated
+ * first. Violated constraints are added as rows to the problem and the node is solved again from scratch, so the
+ * constraints also apply to all nodes explored afterwards.
+ */
+class BranchAndBound {
+    static final double INT_TOL = 1e-6;
+    private static final double OBJ_TOL = 1e-6;
+    private static final double PERTURBATION = 1e-7;
+    private static final long PERTURBATION_SEED = 42;
+
+    enum Status {
+        OPTIMAL,
+        INFEASIBLE,
+        UNBOUNDED,
+        LIMIT_REACHED
+    }
+
+    private static class Node {
+        final double[] lb;
+        final double[] ub;
+        final double parentBound;
+
+        Node(double[] lb, double[] ub, double parentBound) {
+            this.lb = lb;
+            this.ub = ub;
+            this.parentBound = parentBound;
+        }
+    }
+
+    private final MipProblem problem;
+    private final long deadline;
+    private final long nodeLimit;
+
+    private double mipGap = 0;
+    private Consumer<double[]> incumbentListener;
+    private BooleanSupplier terminated = () -> false;
+    private IlpLazyConstraintSeparator separator;
+
+    private double[] incumbent;
+    private double incumbentObj = Double.POSITIVE_INFINITY;
+    private long nodeCount;
+    private long rootLpSolvedAt = -1; // System.currentTimeMillis() when the root relaxation was solved
+    private double rootBound = Double.NaN;
+
+    /**
+     * @param problem   the problem to solve
+     * @param deadline  point in time (System.currentTimeMillis()) after which the search is stopped
+     * @param nodeLimit maximum number of nodes to explore
+     */
+    BranchAndBound(MipProblem problem, long deadline, long nodeLimit) {
+        this.problem = problem;
+        this.deadline = deadline;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * @param mipGap relative gap between the incumbent and the bound of a node at which the node is pruned
+     */
+    void setMipGap(double mipGap) {
+        this.mipGap = mipGap;
+    }
+
+    /**
+     * @param incumbentListener called with the column values of every incumbent found by the search, may be null
+     */
+    void setIncumbentListener(Consumer<double[]> incumbentListener) {
+        this.incumbentListener = incumbentListener;
+    }
+
+    /**
+     * @param terminated checked before every node and periodically while its LP is solved, the search is stopped with
+     *                   {@link Status#LIMIT_REACHED} once it returns true
+     */
+    void setTerminationCheck(BooleanSupplier terminated) {
+        this.terminated = terminated;
+    }
+
+    /**
+     * @param separator separates the lazy constraints violated by integral node solutions, may be null
+     */
+    void setLazyConstraintSeparator(IlpLazyConstraintSeparator separator) {
+        this.separator = separator;
+    }
+
+    Status solve(double[] cost) {
+        return solve(cost, problem.lb, problem.ub);
+    }
+
+    /**
+     * Solves the problem with the given column bounds instead of the ones of the problem, e.g. to complete a partial
+     * solution by fixing some columns.
+     *
+     * @param cost the cost of the columns, minimized
+     * @param lb   the lower bounds of the columns, not modified
+     * @param ub   the upper bounds of the columns, not modified
+     * @return the status of the search
+     */
+    Status solve(double[] cost, double[] lb, double[] ub) {
+        final boolean integralObjective = isIntegralObjective(cost);
+        BoundedSimplex simplex = new BoundedSimplex(problem);
+        simplex.setStopCheck(this::stopRequested);
+
+        /*
+         * the placement models are highly dual degenerate (most columns have no cost), which lets the dual simplex
+         * stall. The LPs are therefore solved with slightly perturbed costs of the bounded integer columns, the bound of
+         * a node is corrected by the largest possible effect of the perturbation.
+         */
+        double[] lpCost = cost.clone();
+        double correction = 0;
+        Random random = new Random(PERTURBATION_SEED);
+        for (int j = 0; j < problem.numCols; j++) {
+            if (problem.integer[j] && !Double.isInfinite(lb[j]) && !Double.isInfinite(ub[j])) {
+                double delta = PERTURBATION * (1 + random.nextDouble()) * (1 + Math.abs(cost[j]));
+                lpCost[j] += delta;
+                correction += delta * Math.max(Math.abs(lb[j]), Math.abs(ub[j]));
+            }
+        }
+
+        Deque<Node> open = new ArrayDeque<>();
+        open.push(new Node(lb.clone(), ub.clone(), Double.NEGATIVE_INFINITY));
+
+        boolean root = true;
+        boolean cold = true; // no basis to start from, the simplex was just created
+        while (!open.isEmpty()) {
+            if (nodeCount >= nodeLimit || stopRequested()) {
+                return Status.LIMIT_REACHED;
+            }
+            Node node = open.pop();
+            if (node.parentBound >= cutoff()) {
+                // an incumbent found after the node was created already prunes it
+                continue;
+            }
+            nodeCount++;
+
+            BoundedSimplex.Status lpStatus = cold ? simplex.solve(lpCost, node.lb, node.ub) : simplex.resolve(node.lb,
+                    node.ub);
+            if (lpStatus == BoundedSimplex.Status.INTERRUPTED) {
+                return Status.LIMIT_REACHED;
+            }
+            if (lpStatus == BoundedSimplex.Status.UNBOUNDED && root) {
+                return Status.UNBOUNDED;
+            }
+            root = false;
+            cold = false;
+            if (lpStatus != BoundedSimplex.Status.OPTIMAL) {
+                continue;
+            }
+
+            double bound = simplex.getObjective() - correction;
+            if (integralObjective) {
+                bound = Math.ceil(bound - OBJ_TOL);
+            }
+            if (rootLpSolvedAt < 0) {
+                rootLpSolvedAt = System.currentTimeMillis();
+                rootBound = bound;
+            }
+            if (bound >= cutoff()) {
+                continue;
+            }
+
+            double[] x = simplex.getValues();
+            int branchCol = -1;
+            double mostFractional = 0;
+            for (int j = 0; j < problem.numCols; j++) {
+                if (!problem.integer[j]) {
+                    continue;
+                }
+                double fraction = x[j] - Math.floor(x[j]);
+                double distance = Math.min(fraction, 1 - fraction);
+                if (distance > INT_TOL && distance > mostFractional) {
+                    mostFractional = distance;
+                    branchCol = j;
+                }
+            }
+
+            if (branchCol < 0) {
+                for (int j = 0; j < problem.numCols; j++) {
+                    if (problem.integer[j]) {
+                        x[j] = Math.round(x[j]);
+                    }
+                }
+                double objective = 0;
+                for (int j = 0; j < problem.numCols; j++) {
+                    objective += cost[j] * x[j];
+                }
+                if (objective >= incumbentObj - OBJ_TOL) {
+                    continue;
+                }
+                if (addLazyConstraints(x)) {
+                    // the tableau has no room for the new rows
+                    simplex = new BoundedSimplex(problem);
+                    simplex.setStopCheck(this::stopRequested);
+                    cold = true;
+                    open.push(node);
+                    continue;
+                }
+                incumbent = x;
+                incumbentObj = objective;
+                if (incumbentListener != null) {
+                    incumbentListener.accept(x.clone());
+                }
+                continue;
+            }
+
+            double floor = Math.floor(x[branchCol]);
+            double[] downUb = node.ub.clone();
+            downUb[branchCol] = floor;
+            Node down = new Node(node.lb, downUb, bound);
+            double[] upLb = node.lb.clone();
+            upLb[branchCol] = floor + 1;
+            Node up = new Node(upLb, node.ub, bound);
+
+            // the child which is explored first is pushed last
+            if (x[branchCol] - floor > 0.5) {
+                open.push(down);
+                open.push(up);
+            } else {
+                open.push(up);
+                open.push(down);
+            }
+        }
+        return incumbent == null ? Status.INFEASIBLE : Status.OPTIMAL;
+    }
+
+    private boolean stopRequested() {
+        return System.currentTimeMillis() > deadline || terminated.getAsBoolean();
+    }
+
+    /**
+     * Adds the lazy constraints violated by the given solution as rows to the problem.
+     *
+     * @param x the values of all columns
+     * @return true if at least one violated constraint was added
+     */
+    boolean addLazyConstraints(double[] x) {
+        if (separator == null) {
+            return false;
+        }
+        List<IlpCut> cuts = separator.separate(Arrays.copyOf(x, problem.numModelVars), true);
+        for (IlpCut cut : cuts) {
+            problem.addRow(cut.getRow(), cut.getSense(), cut.getRhs());
+        }
+        return !cuts.isEmpty();
+    }
+
+    /**
+     * Sets a known feasible solution as incumbent before solving, all nodes which can not improve on it are pruned.
+     *
+     * @param x         the feasible solution, one value per column
+     * @param objective the objective of the solution w.r.t. the cost the problem is solved with
+     */
+    void setIncumbent(double[] x, double objective) {
+        if (objective < incumbentObj) {
+            incumbent = x.clone();
+            incumbentObj = objective;
+        }
+    }
+
+    /**
+     * @return the bound at or above which nodes can not improve the incumbent by more than the tolerances
+     */
+    private double cutoff() {
+        if (incumbent == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return incumbentObj - Math.max(OBJ_TOL, mipGap * Math.abs(incumbentObj));
+    }
+
+    private boolean isIntegralObjective(double[] cost) {
+        for (int j = 0; j < cost.length; j++) {
+            if (cost[j] == 0) {
+                continue;
+            }
+            if (!problem.integer[j] || cost[j] != Math.rint(cost[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    double[] getIncumbent() {
+        return incumbent;
+    }
+
+    double getIncumbentObj() {
+        return incumbentObj;
+    }
+
+    long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the point in time (System.currentTimeMillis()) at which the root relaxation was solved, -1 if it was not
+     */
+    long getRootLpSolvedAt() {
+        return rootLpSolvedAt;
+    }
+
+    /**
+     * @return the bound of the root relaxation w.r.t. the cost the problem is solved with, NaN if it was not solved
+     */
+    double getRootBound() {
+        return rootBound;
+    }
+}
@@ -0,0 +1,298 @@
+package thesiscode.common.nfv.placement.solver.ilp.bnb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.ilp.IlpBackend;
+import thesiscode.common.nfv.placement.solver.ilp.IlpException;
+import thesiscode.common.nfv.placement.solver.ilp.IlpIncumbentListener;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpObjective;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSolveStats;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pure-Java {@link IlpBackend} (LP based branch and bound). Does not need a Gurobi license, so models can be solved and
+ * benchmarked on every machine. Only suited for small and medium sized instances.
+ * <p>
+ * Multi-objective models are solved hierarchically like Gurobi does: the objectives are optimized in order of
+ * decreasing priority, each optimum is then fixed (within the objective's tolerances) by an additional constraint.
+ * <p>
+ * Start values of the model are completed to a feasible solution which seeds the search of the first level, the
+ * incumbent of a level seeds the search of the next one.
+ * <p>
+ * Lazy constraints of the model are separated for every improving integral solution and added as rows, see
+ * {@link BranchAndBound}.
+ * <p>
+ * The completed start and every improving solution found by the search are reported to the incumbent listener, if one
+ * is set. {@link #terminate()} and the time limit stop the search before the next node and periodically while the LP
+ * of a node is solved, see {@link BoundedSimplex}.
+ * <p>
+ * The {@link IlpSolveStats} contain one pass per priority level, the incumbents of every level with the bound of its
+ * root relaxation (the depth-first search has no better global bound) and the nodes of all searches, including the
+ * completion of the start. The backend has no presolve and does not count simplex iterations.
+ */
+public class JavaMipBackend implements IlpBackend {
+    private static final double LEVEL_TOL = 1e-6;
+    private static final long START_NODE_LIMIT = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private long timeLimitMs = Long.MAX_VALUE;
+    private long nodeLimit = Long.MAX_VALUE;
+    private double mipGap = 0;
+    private IlpIncumbentListener incumbentListener;
+    // whether an optimization is in progress and whether it should be terminated, see terminate()
+    private volatile boolean inProgress;
+    private volatile boolean terminateRequested;
+
+    @Override
+    public void setTimeLimit(long timeLimitMs) {
+        this.timeLimitMs = timeLimitMs;
+    }
+
+    @Override
+    public void setMipGap(double mipGap) {
+        this.mipGap = mipGap;
+    }
+
+    @Override
+    public void setIncumbentListener(IlpIncumbentListener listener) {
+        this.incumbentListener = listener;
+    }
+
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    @Override
+    public void terminate() {
+        if (inProgress) {
+            terminateRequested = true;
+        }
+    }
+
+    @Override
+    public IlpResult optimize(IlpModel model, boolean verbose) throws IlpException {
+        // a terminate() which arrived after the last optimization must not stop this one
+        terminateRequested = false;
+        inProgress = true;
+        try {
+            IlpSolveStats stats = new IlpSolveStats();
+            IlpResult result = optimizeLevels(model, verbose, stats);
+            stats.endPass(result.getRuntime());
+            return result.setStats(stats);
+        } finally {
+            inProgress = false;
+        }
+    }
+
+    private IlpResult optimizeLevels(IlpModel model, boolean verbose, IlpSolveStats stats) throws IlpException {
+        final long start = System.currentTimeMillis();
+        final long deadline = timeLimitMs == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeLimitMs;
+        final double sign = model.getSense() == IlpModel.MAXIMIZE ? -1.0 : 1.0;
+
+        MipProblem problem = new MipProblem(model);
+
+        List<List<IlpObjective>> levels = priorityLevels(model);
+        double[] values = null;
+        IlpStatus status = IlpStatus.OPTIMAL;
+        long nodeCount = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            stats.startPass(levels.get(level).isEmpty() ? 0 : levels.get(level).get(0).getPriority(),
+                    System.currentTimeMillis() - start);
+            double[] cost = new double[problem.numCols];
+            double constant = 0;
+            double tolerance = 0;
+            for (IlpObjective objective : levels.get(level)) {
+                for (int t = 0; t < objective.getExpr().size(); t++) {
+                    cost[objective.getExpr().getVarIndex(t)] += sign * objective.getWeight() * objective.getExpr()
+                                                                                                         .getCoeff(t);
+                }
+                constant += sign * objective.getWeight() * objective.getExpr().getConstant();
+                tolerance = Math.max(tolerance, objective.getAbsTol());
+            }
+            if (levels.get(level).isEmpty()) {
+                // no objective set, use the objective coefficients of the variables
+                for (int j = 0; j < model.getNumVars(); j++) {
+                    cost[j] = sign * model.getObjCoeff(j);
+                }
+            }
+
+            BranchAndBound bnb = new BranchAndBound(problem, deadline, nodeLimit);
+            bnb.setMipGap(mipGap);
+            bnb.setTerminationCheck(() -> terminateRequested);
+            bnb.setLazyConstraintSeparator(model.getLazyConstraintSeparator());
+            final double[] levelCost = cost;
+            final double levelConstant = constant;
+            final IlpIncumbentListener listener = incumbentListener;
+            bnb.setIncumbentListener(x -> {
+                // objective and bound in the sense of the model
+                stats.recordProgress(System.currentTimeMillis() - start,
+                        sign * (evaluate(levelCost, x) + levelConstant), sign * (bnb.getRootBound() + levelConstant),
+                        bnb.getNodeCount());
+                if (listener != null) {
+                    listener.incumbentFound(result(model, IlpStatus.INCUMBENT, x, start));
+                }
+            });
+            double[] seed = null;
+            if (level == 0) {
+                BranchAndBound completion = completeStart(model, problem, cost, deadline);
+                if (completion != null) {
+                    nodeCount += completion.getNodeCount();
+                    seed = completion.getIncumbent();
+                }
+            } else {
+                seed = values;
+            }
+            if (seed != null && bnb.addLazyConstraints(seed)) {
+                log.debug("start violates lazy constraints, ignoring it");
+                seed = null;
+            }
+            if (seed != null) {
+                bnb.setIncumbent(seed, evaluate(cost, seed));
+                stats.recordProgress(System.currentTimeMillis() - start, sign * (evaluate(cost, seed) + constant),
+                        Double.NaN, 0);
+                if (level == 0 && incumbentListener != null) {
+                    incumbentListener.incumbentFound(result(model, IlpStatus.INCUMBENT, seed, start));
+                }
+            }
+            BranchAndBound.Status bnbStatus = bnb.solve(cost);
+            nodeCount += bnb.getNodeCount();
+            stats.setNodeCount(nodeCount);
+            if (bnb.getRootLpSolvedAt() >= 0) {
+                if (level == 0) {
+                    stats.setRootLp(bnb.getRootLpSolvedAt() - start, sign * (bnb.getRootBound() + constant));
+                }
+                // an optimal level is its own bound
+                stats.setBestBound(sign * ((bnbStatus == BranchAndBound.Status.OPTIMAL ? bnb.getIncumbentObj() :
+                                            bnb.getRootBound()) + constant));
+            }
+            if (verbose) {
+                log.info("level {}: status {}, objective {}, {} nodes", level, bnbStatus, bnb.getIncumbentObj() + constant,
+                        bnb.getNodeCount());
+            }
+
+            if (bnbStatus == BranchAndBound.Status.INFEASIBLE) {
+                return result(model, IlpStatus.INFEASIBLE, null, start);
+            } else if (bnbStatus == BranchAndBound.Status.UNBOUNDED) {
+                return result(model, IlpStatus.UNBOUNDED, null, start);
+            }
+            if (bnb.getIncumbent() != null) {
+                values = bnb.getIncumbent();
+            }
+            if (bnbStatus == BranchAndBound.Status.LIMIT_REACHED) {
+                status = terminateRequested ? IlpStatus.INTERRUPTED : IlpStatus.LIMIT_REACHED;
+                break;
+            }
+
+            // fix this level's optimum for the lower priority levels
+            if (level < levels.size() - 1) {
+                double optimum = bnb.getIncumbentObj();
+                for (IlpObjective objective : levels.get(level)) {
+                    tolerance = Math.max(tolerance, objective.getRelTol() * Math.abs(optimum + constant));
+                }
+                List<Integer> idx = new ArrayList<>();
+                List<Double> val = new ArrayList<>();
+                for (int j = 0; j < cost.length; j++) {
+                    if (cost[j] != 0) {
+                        idx.add(j);
+                        val.add(cost[j]);
+                    }
+                }
+                problem.addRow(idx.stream().mapToInt(Integer::intValue).toArray(),
+                        val.stream().mapToDouble(Double::doubleValue).toArray(), IlpSense.LESS_EQUAL,
+                        optimum + tolerance + LEVEL_TOL);
+            }
+        }
+
+        return result(model, status, values, start);
+    }
+
+    /**
+     * Completes the start values of the model to a feasible solution by fixing the integer columns which have a start
+     * value and searching the remaining ones with a node limited branch and bound. If that fails, e.g. because
+     * coefficients changed since the start was computed, only the binary columns are fixed.
+     *
+     * @return the search whose incumbent is the completed solution, null if the model has no start or it could not be
+     * completed
+     */
+    private BranchAndBound completeStart(IlpModel model, MipProblem problem, double[] cost, long deadline) {
+        if (!model.hasStart()) {
+            return null;
+        }
+        for (boolean onlyBinary : new boolean[]{false, true}) {
+            double[] lb = problem.lb.clone();
+            double[] ub = problem.ub.clone();
+            for (int j = 0; j < problem.numModelVars; j++) {
+                double value = model.getStart(j);
+                boolean binary = problem.lb[j] == 0 && problem.ub[j] == 1;
+                if (Double.isNaN(value) || !problem.integer[j] || (onlyBinary && !binary)) {
+                    continue;
+                }
+                value = Math.min(problem.ub[j], Math.max(problem.lb[j], Math.round(value)));
+                lb[j] = value;
+                ub[j] = value;
+            }
+            BranchAndBound completion = new BranchAndBound(problem, deadline, START_NODE_LIMIT);
+            completion.setTerminationCheck(() -> terminateRequested);
+            completion.setLazyConstraintSeparator(model.getLazyConstraintSeparator());
+            completion.solve(cost, lb, ub);
+            if (completion.getIncumbent() != null) {
+                log.debug("completed start with {} nodes", completion.getNodeCount());
+                return completion;
+            }
+        }
+        log.debug("could not complete start, ignoring it");
+        return null;
+    }
+
+    private static double evaluate(double[] cost, double[] x) {
+        double objective = 0;
+        for (int j = 0; j < cost.length; j++) {
+            objective += cost[j] * x[j];
+        }
+        return objective;
+    }
+
+    private IlpResult result(IlpModel model, IlpStatus status, double[] columnValues, long start) {
+        double runtime = System.currentTimeMillis() - start;
+        if (columnValues == null) {
+            return IlpResult.of(model, status, null, runtime);
+        }
+        // the columns of the problem start with the variables of the model
+        return IlpResult.of(model, status, Arrays.copyOf(columnValues, model.getNumVars()), runtime);
+    }
+
+    /**
+     * Groups the objectives by priority, highest priority first. A model without objectives has one empty level.
+     */
+    private static List<List<IlpObjective>> priorityLevels(IlpModel model) {
+        List<IlpObjective> objectives = new ArrayList<>(model.getObjectives());
+        objectives.sort(Comparator.comparingInt(IlpObjective::getPriority).reversed());
+
+        List<List<IlpObjective>> levels = new ArrayList<>();
+        Integer currentPriority = null;
+        for (IlpObjective objective : objectives) {
+            if (currentPriority == null || objective.getPriority() != currentPriority) {
+                levels.add(new ArrayList<>());
+                currentPriority = objective.getPriority();
+            }
+            levels.get(levels.size() - 1).add(objective);
+        }
+        if (levels.isEmpty()) {
+            levels.add(new ArrayList<>());
+        }
+        return levels;
+    }
+
+    @Override
+    public String getName() {
+        return "java-bnb";
+    }
+}
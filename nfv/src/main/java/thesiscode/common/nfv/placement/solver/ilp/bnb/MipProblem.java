@@ -0,0 +1,263 @@
+package thesiscode.common.nfv.placement.solver.ilp.bnb;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpConstraint;
+import thesiscode.common.nfv.placement.solver.ilp.IlpException;
+import thesiscode.common.nfv.placement.solver.ilp.IlpGenConstr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat representation of an {@link IlpModel} as used by the pure-Java solver: bounds and integrality per column and
+ * sparse rows. General constraints (max/min) are linearized with big-M constraints, the big-Ms are derived from the
+ * variable bounds after bound propagation. Columns added by the linearization are appended after the model's
+ * variables.
+ */
+class MipProblem {
+    private static final int PROPAGATION_PASSES = 20;
+
+    int numCols;
+    double[] lb;
+    double[] ub;
+    boolean[] integer;
+
+    final List<int[]> rowIdx = new ArrayList<>();
+    final List<double[]> rowVal = new ArrayList<>();
+    final List<IlpSense> rowSense = new ArrayList<>();
+    final List<Double> rowRhs = new ArrayList<>();
+
+    /**
+     * number of columns of the original model
+     */
+    final int numModelVars;
+
+    MipProblem(IlpModel model) throws IlpException {
+        numModelVars = model.getNumVars();
+        numCols = numModelVars;
+        lb = new double[numCols];
+        ub = new double[numCols];
+        integer = new boolean[numCols];
+        for (int j = 0; j < numCols; j++) {
+            lb[j] = toBound(model.getLowerBound(j));
+            ub[j] = toBound(model.getUpperBound(j));
+            integer[j] = model.getType(j).isIntegral();
+            if (integer[j]) {
+                lb[j] = Math.ceil(lb[j] - BranchAndBound.INT_TOL);
+                ub[j] = Math.floor(ub[j] + BranchAndBound.INT_TOL);
+            }
+        }
+
+        for (IlpConstraint constr : model.getConstraints()) {
+            addRow(constr.getRow(), constr.getSense(), constr.getRhs());
+        }
+
+        if (!model.getGenConstraints().isEmpty()) {
+            propagateBounds();
+            for (IlpGenConstr genConstr : model.getGenConstraints()) {
+                linearize(genConstr);
+            }
+        }
+    }
+
+    private static double toBound(double bound) {
+        if (bound >= IlpModel.INFINITY) {
+            return Double.POSITIVE_INFINITY;
+        } else if (bound <= -IlpModel.INFINITY) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return bound;
+    }
+
+    int numRows() {
+        return rowIdx.size();
+    }
+
+    void addRow(IlpLinExpr row, IlpSense sense, double rhs) {
+        // merge duplicate columns
+        int[] idx = new int[row.size()];
+        double[] val = new double[row.size()];
+        int size = 0;
+        for (int t = 0; t < row.size(); t++) {
+            int col = row.getVarIndex(t);
+            int pos = -1;
+            for (int k = 0; k < size; k++) {
+                if (idx[k] == col) {
+                    pos = k;
+                    break;
+                }
+            }
+            if (pos < 0) {
+                idx[size] = col;
+                val[size] = row.getCoeff(t);
+                size++;
+            } else {
+                val[pos] += row.getCoeff(t);
+            }
+        }
+        addRow(Arrays.copyOf(idx, size), Arrays.copyOf(val, size), sense, rhs);
+    }
+
+    void addRow(int[] idx, double[] val, IlpSense sense, double rhs) {
+        rowIdx.add(idx);
+        rowVal.add(val);
+        rowSense.add(sense);
+        rowRhs.add(rhs);
+    }
+
+    private int addCol(double lb, double ub, boolean integer) {
+        int col = numCols++;
+        this.lb = Arrays.copyOf(this.lb, numCols);
+        this.ub = Arrays.copyOf(this.ub, numCols);
+        this.integer = Arrays.copyOf(this.integer, numCols);
+        this.lb[col] = lb;
+        this.ub[col] = ub;
+        this.integer[col] = integer;
+        return col;
+    }
+
+    /**
+     * Activity based bound tightening. Only used to derive big-Ms, so the tightened bounds are valid implied bounds.
+     */
+    private void propagateBounds() {
+        for (int pass = 0; pass < PROPAGATION_PASSES; pass++) {
+            boolean changed = false;
+            for (int r = 0; r < numRows(); r++) {
+                IlpSense sense = rowSense.get(r);
+                if (sense == IlpSense.LESS_EQUAL || sense == IlpSense.EQUAL) {
+                    changed |= tighten(rowIdx.get(r), rowVal.get(r), rowRhs.get(r), 1.0);
+                }
+                if (sense == IlpSense.GREATER_EQUAL || sense == IlpSense.EQUAL) {
+                    changed |= tighten(rowIdx.get(r), rowVal.get(r), -rowRhs.get(r), -1.0);
+                }
+            }
+            if (!changed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tightens the bounds using the row factor * sum val_k x_k <= rhs.
+     */
+    private boolean tighten(int[] idx, double[] val, double rhs, double factor) {
+        double minActivity = 0;
+        int infiniteCount = 0;
+        int infiniteCol = -1;
+        for (int k = 0; k < idx.length; k++) {
+            double a = factor * val[k];
+            double bound = a > 0 ? lb[idx[k]] : ub[idx[k]];
+            if (Double.isInfinite(bound)) {
+                infiniteCount++;
+                infiniteCol = k;
+            } else {
+                minActivity += a * bound;
+            }
+        }
+        if (infiniteCount > 1) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (int k = 0; k < idx.length; k++) {
+            if (infiniteCount == 1 && k != infiniteCol) {
+                continue;
+            }
+            int col = idx[k];
+            double a = factor * val[k];
+            if (Math.abs(a) < 1e-12) {
+                continue;
+            }
+            double rest = minActivity;
+            if (infiniteCount == 0) {
+                rest -= a * (a > 0 ? lb[col] : ub[col]);
+            }
+            double bound = (rhs - rest) / a;
+            if (a > 0) {
+                if (integer[col]) {
+                    bound = Math.floor(bound + BranchAndBound.INT_TOL);
+                }
+                if (bound < ub[col] - 1e-9) {
+                    ub[col] = bound;
+                    changed = true;
+                }
+            } else {
+                if (integer[col]) {
+                    bound = Math.ceil(bound - BranchAndBound.INT_TOL);
+                }
+                if (bound > lb[col] + 1e-9) {
+                    lb[col] = bound;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void linearize(IlpGenConstr genConstr) throws IlpException {
+        final boolean max = genConstr.getType() == IlpGenConstr.Type.MAX;
+        final int res = genConstr.getResVar().index();
+        final IlpVar[] operands = genConstr.getVars();
+        // a constant of +-infinity is neutral for min/max
+        final boolean useConstant = Math.abs(genConstr.getConstant()) < IlpModel.INFINITY;
+        final double constant = genConstr.getConstant();
+
+        double resLb = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        double resUb = resLb;
+        for (IlpVar operand : operands) {
+            int col = operand.index();
+            resLb = max ? Math.max(resLb, lb[col]) : Math.min(resLb, lb[col]);
+            resUb = max ? Math.max(resUb, ub[col]) : Math.min(resUb, ub[col]);
+        }
+        if (useConstant) {
+            resLb = max ? Math.max(resLb, constant) : Math.min(resLb, constant);
+            resUb = max ? Math.max(resUb, constant) : Math.min(resUb, constant);
+        }
+        lb[res] = Math.max(lb[res], resLb);
+        ub[res] = Math.min(ub[res], resUb);
+
+        // res >= x_i (max) or res <= x_i (min)
+        for (IlpVar operand : operands) {
+            addRow(new int[]{res, operand.index()}, new double[]{1.0, -1.0},
+                    max ? IlpSense.GREATER_EQUAL : IlpSense.LESS_EQUAL, 0.0);
+        }
+
+        // selection binaries: res equals the selected operand
+        int numChoices = operands.length + (useConstant ? 1 : 0);
+        int[] choiceCols = new int[numChoices];
+        double[] ones = new double[numChoices];
+        for (int i = 0; i < numChoices; i++) {
+            choiceCols[i] = addCol(0.0, 1.0, true);
+            ones[i] = 1.0;
+        }
+        addRow(choiceCols, ones, IlpSense.EQUAL, 1.0);
+
+        for (int i = 0; i < numChoices; i++) {
+            final boolean isConstant = i == operands.length;
+            final int col = isConstant ? -1 : operands[i].index();
+            // max: res <= x_i + M(1-z_i) with M = ub(res) - lb(x_i)
+            // min: res >= x_i - M(1-z_i) with M = ub(x_i) - lb(res)
+            final double bigM;
+            if (max) {
+                bigM = ub[res] - (isConstant ? constant : lb[col]);
+            } else {
+                bigM = (isConstant ? constant : ub[col]) - lb[res];
+            }
+            if (Double.isInfinite(bigM) || Double.isNaN(bigM)) {
+                throw new IlpException("cannot linearize general constraint " + genConstr.getName() + ", operands are" +
+                        " unbounded");
+            }
+            if (isConstant) {
+                addRow(new int[]{res, choiceCols[i]}, new double[]{1.0, max ? bigM : -bigM},
+                        max ? IlpSense.LESS_EQUAL : IlpSense.GREATER_EQUAL, max ? constant + bigM : constant - bigM);
+            } else {
+                addRow(new int[]{res, col, choiceCols[i]}, new double[]{1.0, -1.0, max ? bigM : -bigM},
+                        max ? IlpSense.LESS_EQUAL : IlpSense.GREATER_EQUAL, max ? bigM : -bigM);
+            }
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package thesiscode.common.nfv.placement.solver.mfcp.used;
 
 import gurobi.GRBEnv;
-import gurobi.GRBException;
-import gurobi.GRBModel;
 import org.slf4j.Logger;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
 import thesiscode.common.nfv.traffic.NprTraffic;
 
 public class RefSfcPlacementSolver extends SfcPlacementSolver {
@@ -44,17 +43,17 @@ public class RefSfcPlacementSolver extends SfcPlacementSolver {
     }
 
     @Override
-    protected void addTreeVariables(GRBModel model) throws GRBException {
+    protected void addTreeVariables(IlpModel model) {
         // intentionally blank
     }
 
     @Override
-    protected void addMTZConstraints(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    protected void addMTZConstraints(IlpModel model, NprTraffic flow, int flowIndex) {
         // intentionally blank
     }
 
     @Override
-    protected void addInDegreeLessEqualOneConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    protected void addInDegreeLessEqualOneConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
         // intentionally blank
     }
 
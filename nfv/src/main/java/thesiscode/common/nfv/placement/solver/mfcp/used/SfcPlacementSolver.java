@@ -1,6 +1,7 @@
 package thesiscode.common.nfv.placement.solver.mfcp.used;
 
-import gurobi.*;
+import gurobi.GRBEnv;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyVertex;
 import org.slf4j.Logger;
@@ -8,14 +9,23 @@ import thesiscode.common.nfv.placement.solver.AbstractNfvIlpPlacementSolver;
 import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiBackend;
+import thesiscode.common.nfv.placement.solver.ilp.IlpConstraint;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpName;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVarType;
+import thesiscode.common.nfv.placement.solver.presolve.InterchangeableVertices;
 import thesiscode.common.nfv.traffic.NprNfvTypes;
 import thesiscode.common.nfv.traffic.NprResources;
 import thesiscode.common.nfv.traffic.NprTraffic;
-import thesiscode.common.topo.ILinkWeigher;
+import thesiscode.common.topo.CsrTopologyGraph;
 import thesiscode.common.topo.WrappedPoPVertex;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Superclass for the SFC-TPL and SFC-ST formulations. Implements common constraints and adds the tree constraints
@@ -23,11 +33,11 @@ import java.util.stream.Collectors;
  */
 public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
     private NfvPlacementRequest req;
-    private ILinkWeigher linkWeigher;
     private List<NprTraffic> trafficNoSfc;
 
     Set<TopologyEdge> edges;
     Set<TopologyVertex> nodes;
+    CsrTopologyGraph graph;
     List<NprTraffic> trafficSfc;
 
     private OptimizationGoal goal;
@@ -36,48 +46,57 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
 
     /**
-     * here, flows are represented by their index in traffic.
-     * logical nodes are represented by indices in the nested list.
+     * Maps the variable tuples below to offsets in the flat variable arrays. Here, flows are represented by their index
+     * in trafficSfc, destinations by their index in the egress nodes of the flow and vertices/edges by their id in
+     * the graph.
      */
+    SfcVariableIndex index;
+
     /*
      * logical indices: 0=src, 1 to |Psi|=VNFs of SFC
      * this is p_t^k(v).
-     * flow -> logical node -> node -> {0,1}
-     */ List<List<Map<TopologyVertex, GRBVar>>> pPlacedForFlow;
+     * index.vertex(flow, logical node, node) -> {0,1}
+     */
+    IlpVar[] pPlacedForFlow;
 
     /*
      * logical indices: 0=src,1 to |Psi|=VNFs of SFC,|Psi|+1 = dst
      * this is p_{t;d}^k(v).
-     * flow -> logical node -> dst -> node -> {0,1}
+     * index.vertexForDst(flow, logical node, dst, node) -> {0,1}
      */
-    private List<List<Map<TopologyVertex, Map<TopologyVertex, GRBVar>>>> pPlacedForFlowAndDest;
+    private IlpVar[] pPlacedForFlowAndDest;
 
     /*
      * this is p^f(v).
-     * VNF type -> node -> {0,1}
+     * index.type(VNF type, node) -> {0,1}
      */
-    private Map<NprNfvTypes.Type, Map<TopologyVertex, GRBVar>> pTypePlaced;
+    private IlpVar[] pTypePlaced;
 
-    /**
-     * here, flows are represented by their index in traffic.
-     * logical edges are represented by indices in the nested list:
-     * (0=src->Psi_1,...,|Psi|-1=last edge of sfc, |Psi| =last VNF to dest or pseudo dest)
-     */
     /*
+     * logical edges: 0=src->Psi_1,...,|Psi|-1=last edge of sfc, |Psi| =last VNF to dest or pseudo dest
      * this is f_t^{(k,l)}(i,j).
-     * flow -> logical edge -> edge -> {0,1}
-     */ List<List<Map<TopologyEdge, GRBVar>>> fForLogical;
+     * index.edge(flow, logical edge, edge) -> {0,1}
+     */
+    IlpVar[] fForLogical;
 
     /*
      * this is f_{t;d}^{(k,l)}(i,j).
-     * flow -> dst-> logical edge -> physical edge -> {0,1}
+     * index.edgeForDst(flow, dst, logical edge, physical edge) -> {0,1}
      */
-    private List<Map<TopologyVertex, List<Map<TopologyEdge, GRBVar>>>> fForLogicalAndDst;
+    private IlpVar[] fForLogicalAndDst;
+
 
+    private IlpVar[] delaySfc; // delay_t(d), index.dst(flow, dst)
+    private IlpVar[] minDelayPerSfcFlow; // delay_t^{min}, per flow index
+    private IlpVar[] maxDelayPerSfcFlow; // delay_t^{max}, per flow index
 
-    private Map<NprTraffic, Map<TopologyVertex, GRBVar>> delaySfc; // delay_t(d)
-    private Map<NprTraffic, GRBVar> minDelayPerSfcFlow; // delay_t^{min}
-    private Map<NprTraffic, GRBVar> maxDelayPerSfcFlow; // delay_t^{max}
+    /*
+     * constraints whose coefficients or right hand sides depend on link or PoP attributes, kept to update the model
+     * for a request with the same structure
+     */
+    private IlpConstraint[] delayConstrs; // index.dst(flow, dst)
+    private IlpConstraint[] linkCapacityConstrs; // per edge
+    private IlpConstraint[] popCapacityConstrs; // resource ordinal * |V| + vertex, null for non-PoPs
 
     /**
      * for non-sfc flows
@@ -89,6 +108,11 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
     private int loadConstraint = Integer.MAX_VALUE;
     private Logger log;
 
+    private static final int MAX_LEX_LENGTH = 20; // entries of a lexicographic ordering, keeps its weights exact
+    private boolean symmetryBreaking; // flag to indicate whether symmetry breaking constraints are added
+    // the interchangeable vertices the symmetry breaking constraints of the model were built for, null if none were
+    private InterchangeableVertices symmetries;
+
     /**
      * Creates a new SfcPlacementSolver.
      *
@@ -103,7 +127,7 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
         this.alpha = alpha;
         this.loadConstraint = loadConstraint;
         super.verbose = verbose;
-        super.env = env;
+        super.backend = new GurobiBackend(env);
         this.topoSyncPlacementSolver = new TopoSyncPlacementSolver(goal, verbose, env);
     }
 
@@ -121,16 +145,30 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
         this.alpha = alpha;
         this.log = log;
         super.verbose = verbose;
-        super.env = env;
+        super.backend = new GurobiBackend(env);
         this.topoSyncPlacementSolver = new TopoSyncPlacementSolver(goal, verbose, env);
     }
 
     @Override
-    protected void init(NfvPlacementRequest req, GRBModel model) {
+    protected void init(NfvPlacementRequest req, IlpModel model) {
+        setRequest(req);
+
+        /*
+         * create request for non-sfc flows and let the NoSfcPlacementSolver init itself
+         */
+        topoSyncPlacementSolver.init(new NfvPlacementRequest(req, trafficNoSfc), model);
+    }
+
+    /**
+     * Takes over the request and derives everything the formulation needs from it.
+     *
+     * @param req the request
+     */
+    private void setRequest(NfvPlacementRequest req) {
         this.req = req;
         edges = req.getEdges();
         nodes = req.getVertices();
-        linkWeigher = req.getLinkWeigher();
+        graph = req.getGraph();
 
         // subdivide the flow set into T_{SFC} and T_{noSFC}
         List<NprTraffic> traffic = req.getTraffic();
@@ -144,21 +182,93 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
             }
         }
 
-        /*
-         * create request for non-sfc flows and let the NoSfcPlacementSolver init itself
-         */
-        NfvPlacementRequest noSfcReq = new NfvPlacementRequest(nodes, edges, trafficNoSfc, linkWeigher);
-        topoSyncPlacementSolver.init(noSfcReq, model);
-
         // store all VNF types which are used by the flows
         allTypes = new HashSet<>();
         for (NprTraffic flow : traffic) {
             allTypes.addAll(flow.getSfc());
         }
+
+        index = new SfcVariableIndex(trafficSfc, graph);
     }
 
+    /**
+     * The load objective counts every edge used by a flow, so chains must not be contracted for it.
+     */
     @Override
-    protected void addVariables(GRBModel model) throws GRBException {
+    protected boolean canContractChains() {
+        return goal != OptimizationGoal.LOAD_REDUCTION;
+    }
+
+    public boolean isSymmetryBreaking() {
+        return symmetryBreaking;
+    }
+
+    /**
+     * Sets whether constraints are added which order interchangeable PoPs and egress nodes (see
+     * {@link InterchangeableVertices}), so that the solver only explores one of the equivalent solutions. The PoPs of a
+     * class are ordered lexicographically by the VNF types placed on them, the egress nodes of a class by the edges
+     * over which the first SFC flow they belong to reaches them. Start solutions which are not ordered this way are
+     * infeasible and may be ignored by the backend.
+     *
+     * @param symmetryBreaking true if symmetry breaking constraints should be added for the following requests
+     */
+    public void setSymmetryBreaking(boolean symmetryBreaking) {
+        this.symmetryBreaking = symmetryBreaking;
+    }
+
+    /**
+     * Updates the link and VNF delays in the delay constraints as well as the link and PoP capacities. The deployment
+     * costs are part of the objective, which is not updated, so the model is rebuilt if one of them changed. It is also
+     * rebuilt if the changed attributes change which vertices are interchangeable, as the symmetry breaking constraints
+     * depend on them.
+     */
+    @Override
+    protected boolean updateModel(NfvPlacementRequest req, IlpModel model) {
+        if (!Objects.equals(symmetryBreaking ? InterchangeableVertices.of(req) : null, symmetries)) {
+            return false;
+        }
+        CsrTopologyGraph newGraph = req.getGraph();
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            if (!graph.isPoP(v)) {
+                continue;
+            }
+            WrappedPoPVertex oldPoP = (WrappedPoPVertex) graph.getVertex(v);
+            WrappedPoPVertex newPoP = (WrappedPoPVertex) newGraph.getVertex(v);
+            for (NprNfvTypes.Type type : allTypes) {
+                if (oldPoP.getDeploymentCost(type) != newPoP.getDeploymentCost(type)) {
+                    return false;
+                }
+            }
+        }
+
+        setRequest(req);
+        // the rows below only match a model whose non-SFC part was updated as well, the rebuild re-initializes both
+        if (!topoSyncPlacementSolver.updateModel(new NfvPlacementRequest(req, trafficNoSfc), model)) {
+            return false;
+        }
+
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            for (int d = 0; d < index.getNumDsts(t); d++) {
+                model.updateConstr(delayConstrs[index.dst(t, d)], delayExpr(trafficSfc.get(t), t, d),
+                        delaySfc[index.dst(t, d)]);
+            }
+        }
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            model.setRhs(linkCapacityConstrs[e], graph.getBandwidth(e));
+        }
+        for (NprResources resource : NprResources.values()) {
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                if (graph.isPoP(v)) {
+                    model.setRhs(popCapacityConstrs[resource.ordinal() * graph.getNumVertices() + v],
+                            ((WrappedPoPVertex) graph.getVertex(v)).getResourceCapacity(resource));
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void addVariables(IlpModel model) {
         addNonSfcVariables(model);
         addSfcVariables(model);
     }
@@ -167,9 +277,8 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
      * Add the variables for the non-sfc flows. Redirect the work to the noSfcPlacementSolver.
      *
      * @param model the model
-     * @throws GRBException can be thrown by Gurobi
      */
-    private void addNonSfcVariables(GRBModel model) throws GRBException {
+    private void addNonSfcVariables(IlpModel model) {
         topoSyncPlacementSolver.addVariables(model);
     }
 
@@ -177,9 +286,8 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
      * Add the variables for the sfc flows.
      *
      * @param model the model
-     * @throws GRBException can be thrown by Gurobi
      */
-    private void addSfcVariables(GRBModel model) throws GRBException {
+    private void addSfcVariables(IlpModel model) {
         // add the edge decision variables (the f variables) to the model
         addfForLogical(model);
         addfForLogicalAndDst(model);
@@ -201,226 +309,158 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
     }
 
     // template methods for the tree constraints
-    protected abstract void addTreeVariables(GRBModel model) throws GRBException;
+    protected abstract void addTreeVariables(IlpModel model);
 
-    protected abstract void addMTZConstraints(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException;
+    protected abstract void addMTZConstraints(IlpModel model, NprTraffic flow, int flowIndex);
 
-    protected abstract void addInDegreeLessEqualOneConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException;
+    protected abstract void addInDegreeLessEqualOneConstraint(IlpModel model, NprTraffic flow, int flowIndex);
 
-    protected void addDelayVariables(GRBModel model) throws GRBException {
-        delaySfc = new HashMap<>();
-        minDelayPerSfcFlow = new HashMap<>();
-        maxDelayPerSfcFlow = new HashMap<>();
-
-        int flowCnt = 0;
-        for (NprTraffic flow : trafficSfc) {
-            Map<TopologyVertex, GRBVar> dstToVar = new HashMap<>();
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                String name = "delay_" + flowCnt + "_dst=" + dst.toString();
-                dstToVar.put(dst, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER, name));
-            }
-            delaySfc.put(flow, dstToVar);
-            minDelayPerSfcFlow.put(flow, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER,
-                    "minDelaySfc_" + flowCnt));
-            maxDelayPerSfcFlow.put(flow, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER,
-                    "maxDelaySfc_" + flowCnt));
-            flowCnt++;
+    protected void addDelayVariables(IlpModel model) {
+        delaySfc = new IlpVar[index.getDstSize()];
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            IlpVar[] block = model.addVars(index.getNumDsts(t), 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                    d -> "delay_" + flowIndex + "_dst=" + graph.getVertex(index.getDst(flowIndex, d)).toString());
+            System.arraycopy(block, 0, delaySfc, index.dst(t, 0), block.length);
         }
+        minDelayPerSfcFlow = model.addVars(trafficSfc.size(), 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                t -> "minDelaySfc_" + t);
+        maxDelayPerSfcFlow = model.addVars(trafficSfc.size(), 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                t -> "maxDelaySfc_" + t);
     }
 
-    private void addfForLogical(GRBModel model) throws GRBException {
-        fForLogical = new ArrayList<>();
-
-        StringBuilder name;
-        int flowCnt = 0;
-        for (NprTraffic flow : trafficSfc) {
-            List<Map<TopologyEdge, GRBVar>> logicList = new ArrayList<>();
-            Map<TopologyEdge, GRBVar> edgeToUsed;
-            for (int i = 0; i < flow.getSfc().size(); i++) {
-                edgeToUsed = new HashMap<>();
-                for (TopologyEdge edge : edges) {
-                    name = new StringBuilder("f_" + flowCnt + "_log=");
-                    if (i == 0) { // s -> Psi_1
-                        name.append(flow.getIngressNode().toString()).append("->").append(flow.getSfc().get(0));
-                    } else { // Psi_i-1 -> Psi_i
-                        name.append(flow.getSfc().get(i - 1)).append("->").append(flow.getSfc().get(i));
-                    }
-                    name.append("_pyh=").append(edge.src().toString()).append("->").append(edge.dst().toString());
-                    edgeToUsed.put(edge, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name.toString()));
-                }
-                logicList.add(edgeToUsed);
-            }
-
-            // Psi_|Psi| -> dst
-            edgeToUsed = new HashMap<>();
-            for (TopologyEdge edge : edges) {
-                name = new StringBuilder("f_" + flowCnt + "_log=").append(flow.getSfc().get(flow.getSfc().size() - 1))
-                                                                  .append("->")
-                                                                  .append("pseudo-dest")
-                                                                  .append("_phy=")
-                                                                  .append(edge.src().toString())
-                                                                  .append("->")
-                                                                  .append(edge.dst().toString());
-                edgeToUsed.put(edge, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name.toString()));
-            }
-            logicList.add(edgeToUsed);
-
-
-            fForLogical.add(logicList);
-            flowCnt++;
+    /**
+     * @return the human readable name of logical edge j of the flow, the last logical edge leads to dst or, if dst is
+     * null, to the pseudo destination
+     */
+    private String logicalEdgeName(NprTraffic flow, int j, TopologyVertex dst) {
+        List<NprNfvTypes.Type> sfc = flow.getSfc();
+        if (j == 0) { // s -> Psi_1
+            return flow.getIngressNode().toString() + "->" + sfc.get(0);
+        } else if (j < sfc.size()) { // Psi_j-1 -> Psi_j
+            return sfc.get(j - 1) + "->" + sfc.get(j);
+        } else { // Psi_|Psi| -> dst
+            return sfc.get(j - 1) + "->" + (dst == null ? "pseudo-dest" : dst.toString());
         }
     }
 
-    private void addfForLogicalAndDst(GRBModel model) throws GRBException {
-        fForLogicalAndDst = new ArrayList<>();
-
-        StringBuilder name;
-        int flowCnt = 0;
-        for (NprTraffic flow : trafficSfc) {
-            Map<TopologyVertex, List<Map<TopologyEdge, GRBVar>>> dstToListMap = new HashMap<>();
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                List<Map<TopologyEdge, GRBVar>> logicList = new ArrayList<>();
+    private String edgeName(int e) {
+        TopologyEdge edge = graph.getEdge(e);
+        return edge.src().toString() + "->" + edge.dst().toString();
+    }
 
-                // from source to last vnf
-                for (int i = 0; i <= flow.getSfc().size(); i++) {
-                    Map<TopologyEdge, GRBVar> edgeToVar = new HashMap<>();
-                    for (TopologyEdge edge : edges) {
-                        name = new StringBuilder("f_" + flowCnt + "_dst=" + dst.toString() + "_log=");
-                        if (i == 0) { // src -> first VNF
-                            name.append(flow.getIngressNode().toString()).append("->").append(flow.getSfc().get(0));
-                        } else if (i == flow.getSfc().size()) { // last VNF -> dst
-                            name.append(flow.getSfc().get(i - 1)).append("->").append(dst);
-                        } else { // SFC
-                            name.append(flow.getSfc().get(i - 1)).append("->").append(flow.getSfc().get(i));
-                        }
-                        name.append("_pyh=").append(edge.src().toString()).append("->").append(edge.dst().toString());
-                        edgeToVar.put(edge, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name.toString()));
-                    }
-                    logicList.add(edgeToVar);
-                }
+    /*
+     * the variables of one flow are added as a single block per family, the namers decode the position in the block
+     * according to the layout of the SfcVariableIndex and are only called if names are requested
+     */
 
-                dstToListMap.put(dst, logicList);
-            }
-            fForLogicalAndDst.add(dstToListMap);
-            flowCnt++;
+    private void addfForLogical(IlpModel model) {
+        fForLogical = new IlpVar[index.getEdgeSize()];
+        int numEdges = graph.getNumEdges();
+
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            NprTraffic flow = trafficSfc.get(t);
+            // [logical edge][edge]
+            IlpVar[] block = model.addVars((flow.getSfc().size() + 1) * numEdges, 0.0, 1.0, 0.0, IlpVarType.BINARY,
+                    i -> "f_" + flowIndex + "_log=" + logicalEdgeName(flow, i / numEdges, null) + "_phy=" +
+                            edgeName(i % numEdges));
+            System.arraycopy(block, 0, fForLogical, index.edge(t, 0, 0), block.length);
         }
+    }
 
-
+    private void addfForLogicalAndDst(IlpModel model) {
+        fForLogicalAndDst = new IlpVar[index.getEdgeForDstSize()];
+        int numEdges = graph.getNumEdges();
+
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            NprTraffic flow = trafficSfc.get(t);
+            int numLogical = flow.getSfc().size() + 1; // from source to last vnf
+            // [dst][logical edge][edge]
+            IlpVar[] block = model.addVars(index.getNumDsts(t) * numLogical * numEdges, 0.0, 1.0, 0.0,
+                    IlpVarType.BINARY, i -> {
+                        TopologyVertex dst = graph.getVertex(index.getDst(flowIndex, i / (numLogical * numEdges)));
+                        return "f_" + flowIndex + "_dst=" + dst.toString() + "_log=" + logicalEdgeName(flow,
+                                (i / numEdges) % numLogical, dst) + "_phy=" + edgeName(i % numEdges);
+                    });
+            System.arraycopy(block, 0, fForLogicalAndDst, index.edgeForDst(t, 0, 0, 0), block.length);
+        }
     }
 
 
-    private void addpTypePlaced(GRBModel model) throws GRBException {
-        pTypePlaced = new HashMap<>();
+    private void addpTypePlaced(IlpModel model) {
+        pTypePlaced = new IlpVar[index.getTypeSize()];
         for (NprNfvTypes.Type type : allTypes) {
-            Map<TopologyVertex, GRBVar> placedAtVert = new HashMap<>();
-            for (TopologyVertex vert : nodes) {
-                placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY,
-                        "p_" + type.name() + "_" + vert.toString()));
-            }
-            pTypePlaced.put(type, placedAtVert);
+            IlpVar[] block = model.addVars(graph.getNumVertices(), 0.0, 1.0, 0.0, IlpVarType.BINARY,
+                    v -> "p_" + type.name() + "_" + graph.getVertex(v).toString());
+            System.arraycopy(block, 0, pTypePlaced, index.type(type, 0), block.length);
         }
     }
 
-    private void addpPlacedForFlow(GRBModel model) throws GRBException {
-        pPlacedForFlow = new ArrayList<>();
-        int flowCnt = 0;
-        for (NprTraffic flow : trafficSfc) {
-            List<Map<TopologyVertex, GRBVar>> logicalList = new ArrayList<>();
-
-            // src placed at vert?
-            Map<TopologyVertex, GRBVar> placedAtVert = new HashMap<>();
-            for (TopologyVertex vert : nodes) {
-                String name = "p_t_" + flowCnt + "_" + flow.getIngressNode().toString() + "@" + vert.toString() + "?";
-                placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-            }
-            logicalList.add(placedAtVert);
-
-            // VNF placed at vert?
-            for (NprNfvTypes.Type type : flow.getSfc()) {
-                placedAtVert = new HashMap<>();
-                for (TopologyVertex vert : nodes) {
-                    String name = "p_t_" + flowCnt + "_" + type.name() + "@" + vert.toString() + "?";
-                    placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-                }
-                logicalList.add(placedAtVert);
-            }
-
-            flowCnt++;
-            pPlacedForFlow.add(logicalList);
+    private void addpPlacedForFlow(IlpModel model) {
+        pPlacedForFlow = new IlpVar[index.getVertexSize()];
+        int numVertices = graph.getNumVertices();
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            NprTraffic flow = trafficSfc.get(t);
+            // [logical node][vertex], j=0: src placed at vert? j>0: VNF placed at vert?
+            IlpVar[] block = model.addVars((flow.getSfc().size() + 1) * numVertices, 0.0, 1.0, 0.0,
+                    IlpVarType.BINARY, i -> {
+                        int j = i / numVertices;
+                        String what = j == 0 ? flow.getIngressNode().toString() : flow.getSfc().get(j - 1).name();
+                        return "p_t_" + flowIndex + "_" + what + "@" + graph.getVertex(i % numVertices)
+                                                                            .toString() + "?";
+                    });
+            System.arraycopy(block, 0, pPlacedForFlow, index.vertex(t, 0, 0), block.length);
         }
 
     }
 
-    private void addpPlacedForFlowAndDest(GRBModel model) throws GRBException {
-        pPlacedForFlowAndDest = new ArrayList<>();
-        int flowCnt = 0;
-        for (NprTraffic flow : trafficSfc) {
-            List<Map<TopologyVertex, Map<TopologyVertex, GRBVar>>> logicalList = new ArrayList<>();
-
-            // src placed at vert for dst?
-            Map<TopologyVertex, Map<TopologyVertex, GRBVar>> dstToMap = new HashMap<>();
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                Map<TopologyVertex, GRBVar> placedAtVert = new HashMap<>();
-                for (TopologyVertex vert : nodes) {
-                    if (log != null) {
-                        log.info("adding p, vert devId: {}", vert.toString());
-                    }
-                    String name = "p_t_d_" + flowCnt + "_forDst=" + dst.toString() + "_" + flow.getIngressNode()
-                                                                                               .toString() + "@" + vert.toString() + "?";
-
-                    placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-                }
-                dstToMap.put(dst, placedAtVert);
-            }
-            logicalList.add(dstToMap);
-
-            // VNF placed at vert for dst?
-            for (NprNfvTypes.Type type : flow.getSfc()) {
-                dstToMap = new HashMap<>();
-                for (TopologyVertex dst : flow.getEgressNodes()) {
-                    Map<TopologyVertex, GRBVar> placedAtVert = new HashMap<>();
-                    for (TopologyVertex vert : nodes) {
-                        String name =
-                                "p_t_d_" + flowCnt + "_forDst=" + dst.toString() + "_" + type.name() + "@" + vert.toString() + "?";
-                        placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-                    }
-                    dstToMap.put(dst, placedAtVert);
-                }
-                logicalList.add(dstToMap);
-            }
-
-            // dst placed at vert for dst?
-            dstToMap = new HashMap<>();
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                Map<TopologyVertex, GRBVar> placedAtVert = new HashMap<>();
-                for (TopologyVertex vert : nodes) {
-                    String name = "p_t_d_" + flowCnt + "_forDst=" + dst.toString() + "@" + vert.toString() + "?";
-                    placedAtVert.put(vert, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-                }
-                dstToMap.put(dst, placedAtVert);
-            }
-            logicalList.add(dstToMap);
-
-            pPlacedForFlowAndDest.add(logicalList);
-            flowCnt++;
+    private void addpPlacedForFlowAndDest(IlpModel model) {
+        pPlacedForFlowAndDest = new IlpVar[index.getVertexForDstSize()];
+        int numVertices = graph.getNumVertices();
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            NprTraffic flow = trafficSfc.get(t);
+            int numDsts = index.getNumDsts(t);
+            int dstNode = flow.getSfc().size() + 1;
+            // [logical node][dst][vertex]
+            // j=0: src placed at vert for dst? 0<j<dstNode: VNF placed at vert for dst? j=dstNode: dst placed at vert?
+            IlpVar[] block = model.addVars((dstNode + 1) * numDsts * numVertices, 0.0, 1.0, 0.0, IlpVarType.BINARY,
+                    i -> {
+                        int j = i / (numDsts * numVertices);
+                        String what;
+                        if (j == 0) {
+                            what = "_" + flow.getIngressNode().toString();
+                        } else if (j < dstNode) {
+                            what = "_" + flow.getSfc().get(j - 1).name();
+                        } else {
+                            what = "";
+                        }
+                        TopologyVertex dst = graph.getVertex(index.getDst(flowIndex, (i / numVertices) % numDsts));
+                        return "p_t_d_" + flowIndex + "_forDst=" + dst.toString() + what + "@" + graph.getVertex(
+                                i % numVertices).toString() + "?";
+                    });
+            System.arraycopy(block, 0, pPlacedForFlowAndDest, index.vertexForDst(t, 0, 0, 0), block.length);
         }
 
     }
 
     @Override
-    protected void addObjective(GRBModel model) throws GRBException {
+    protected void addObjective(IlpModel model) {
         // sum over all t in T: delay_t^{max}-delay_t^{min}
-        GRBLinExpr deviations = new GRBLinExpr();
-        for (NprTraffic sfcFlow : trafficSfc) {
-            deviations.addTerm(1.0, maxDelayPerSfcFlow.get(sfcFlow));
-            deviations.addTerm(-1.0, minDelayPerSfcFlow.get(sfcFlow));
+        IlpLinExpr deviations = new IlpLinExpr();
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            deviations.addTerm(1.0, maxDelayPerSfcFlow[t]);
+            deviations.addTerm(-1.0, minDelayPerSfcFlow[t]);
         }
         for (NprTraffic noSfcFlow : trafficNoSfc) {
             deviations.addTerm(1.0, topoSyncPlacementSolver.getMaxDelayForFlow(noSfcFlow));
             deviations.addTerm(-1.0, topoSyncPlacementSolver.getMinDelayForFlow(noSfcFlow));
         }
 
-        GRBLinExpr objExpr = new GRBLinExpr();
+        IlpLinExpr objExpr = new IlpLinExpr();
         switch (goal) {
             case LOAD_REDUCTION:
                 /*
@@ -434,13 +474,11 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
                     }
                 }
                 // sfc case
-                for (int i = 0; i < trafficSfc.size(); i++) {
-                    NprTraffic flow = trafficSfc.get(i);
-                    for (TopologyEdge edge : edges) {
-                        for (int j = 0; j < fForLogical.get(i).size(); j++) {
-                            if (j < flow.getSfc().size()) {
-                                objExpr.addTerm(flow.getDemand(), fForLogical.get(i).get(j).get(edge));
-                            }
+                for (int t = 0; t < trafficSfc.size(); t++) {
+                    NprTraffic flow = trafficSfc.get(t);
+                    for (int j = 0; j < flow.getSfc().size(); j++) {
+                        for (int e = 0; e < graph.getNumEdges(); e++) {
+                            objExpr.addTerm(flow.getDemand(), fForLogical[index.edge(t, j, e)]);
                         }
                     }
                 }
@@ -448,23 +486,12 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
                 /*
                  * VNF deployment cost
                  */
-                for (TopologyVertex vert : nodes) {
-                    if (vert instanceof WrappedPoPVertex) {
-                        WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) vert;
-                        for (NprNfvTypes.Type type : allTypes) {
-                            objExpr.addTerm(alpha * wrappedPoPVertex.getDeploymentCost(type), pTypePlaced.get(type)
-                                                                                                         .get(vert));
-                        }
-                    }
-
-                }
-                model.setObjective(objExpr, GRB.MINIMIZE);
+                addDeploymentCost(objExpr);
+                model.setObjective(objExpr, IlpModel.MINIMIZE);
                 break;
             case SPT:
-                for (NprTraffic flow : trafficSfc) { // delay for SFC flows
-                    for (TopologyVertex dst : flow.getEgressNodes()) {
-                        objExpr.addTerm(1.0, delaySfc.get(flow).get(dst));
-                    }
+                for (int i = 0; i < index.getDstSize(); i++) { // delay for SFC flows
+                    objExpr.addTerm(1.0, delaySfc[i]);
                 }
                 for (NprTraffic flow : trafficNoSfc) { // delay for non-SFC flows
                     for (TopologyVertex dst : flow.getEgressNodes()) {
@@ -474,37 +501,20 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
                 /*
                  * VNF deployment cost
                  */
-                for (TopologyVertex vert : nodes) {
-                    if (vert instanceof WrappedPoPVertex) {
-                        WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) vert;
-                        for (NprNfvTypes.Type type : allTypes) {
-                            objExpr.addTerm(alpha * wrappedPoPVertex.getDeploymentCost(type), pTypePlaced.get(type)
-                                                                                                         .get(vert));
-                        }
-                    }
-
-                }
-                model.setObjective(objExpr, GRB.MINIMIZE);
+                addDeploymentCost(objExpr);
+                model.setObjective(objExpr, IlpModel.MINIMIZE);
                 break;
             case MIN_MAX_DELAYSUM_THEN_DEVIATION:
                 // add max delays per sfc flow
-                for (NprTraffic flow : trafficSfc) {
-                    objExpr.addTerm(1.0, maxDelayPerSfcFlow.get(flow));
+                for (int t = 0; t < trafficSfc.size(); t++) {
+                    objExpr.addTerm(1.0, maxDelayPerSfcFlow[t]);
                 }
                 // add max delays for non sfc flows
                 for (NprTraffic flow : trafficNoSfc) {
                     objExpr.addTerm(1.0, topoSyncPlacementSolver.getMaxDelayForFlow(flow));
                 }
                 // add deployment cost
-                for (NprNfvTypes.Type type : allTypes) {
-                    for (TopologyVertex vertex : nodes) {
-                        if (vertex instanceof WrappedPoPVertex) {
-                            WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) vertex;
-                            objExpr.addTerm(alpha * wrappedPoPVertex.getDeploymentCost(type), pTypePlaced.get(type)
-                                                                                                         .get(vertex));
-                        }
-                    }
-                }
+                addDeploymentCost(objExpr);
                 // higher priority objective: minimize sum of delay_t^{max} + alpha * deployment_cost
                 model.setObjectiveN(objExpr, 1, 1, 1, 0, 0, "maxDelayPerFlowSum");
 
@@ -517,8 +527,25 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
         }
     }
 
+    /**
+     * Adds alpha * VNF deployment cost of all PoPs to the expression.
+     *
+     * @param objExpr the objective expression
+     */
+    private void addDeploymentCost(IlpLinExpr objExpr) {
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            if (graph.isPoP(v)) {
+                WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) graph.getVertex(v);
+                for (NprNfvTypes.Type type : allTypes) {
+                    objExpr.addTerm(alpha * wrappedPoPVertex.getDeploymentCost(type), pTypePlaced[index.type(type,
+                            v)]);
+                }
+            }
+        }
+    }
+
     @Override
-    protected void addConstraints(GRBModel model) throws GRBException {
+    protected void addConstraints(IlpModel model) {
         if (loadConstraint != Integer.MAX_VALUE) {
             addLoadConstraint(model);
         }
@@ -544,30 +571,142 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
         addVnfsOnlyPlacedAtPoPsConstraint(model);
 
+        symmetries = symmetryBreaking ? InterchangeableVertices.of(req) : null;
+        if (symmetries != null) {
+            addSymmetryBreakingConstraints(model);
+        }
+
         //  p <= sum of p_t
         for (NprNfvTypes.Type type : allTypes) {
-            for (TopologyVertex vert : nodes) {
-                GRBVar pVar = pTypePlaced.get(type).get(vert);
-
-                GRBLinExpr sumOfPT = new GRBLinExpr();
-                for (int i = 0; i < trafficSfc.size(); i++) {
-                    NprTraffic flow = trafficSfc.get(i);
-                    for (int j = 1; j <= flow.getSfc().size(); j++) {
-                        if (!trafficSfc.get(i).getSfc().get(j - 1).equals(type)) {
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpVar pVar = pTypePlaced[index.type(type, v)];
+
+                IlpLinExpr sumOfPT = new IlpLinExpr();
+                for (int t = 0; t < trafficSfc.size(); t++) {
+                    List<NprNfvTypes.Type> sfc = trafficSfc.get(t).getSfc();
+                    for (int j = 1; j <= sfc.size(); j++) {
+                        if (!sfc.get(j - 1).equals(type)) {
                             continue;
                         }
-                        sumOfPT.addTerm(1.0, pPlacedForFlow.get(i).get(j).get(vert));
+                        sumOfPT.addTerm(1.0, pPlacedForFlow[index.vertex(t, j, v)]);
                     }
                 }
 
-                String name = "constr_p<=sumPt_" + type.name() + "_" + vert.toString();
-                model.addConstr(pVar, GRB.LESS_EQUAL, sumOfPT, name);
+                IlpName name = IlpName.of("constr_p<=sumPt_", type, "_", graph.getVertex(v));
+                model.addConstr(pVar, IlpSense.LESS_EQUAL, sumOfPT, name);
+            }
+        }
+    }
+
+    /**
+     * Orders the vertices of every class of interchangeable vertices lexicographically by a vector of their variables,
+     * which every permutation of the class permutes the same way. Any solution can be permuted into one satisfying the
+     * order. The vectors of different classes must not be changed by permutations of other classes, otherwise the
+     * orders could contradict each other: the one of PoPs only consists of their own placement variables, the one of
+     * egress nodes of the edges from vertices which are not interchangeable.
+     */
+    private void addSymmetryBreakingConstraints(IlpModel model) {
+        for (int[] members : symmetries.getClasses()) {
+            List<IlpVar[]> vectors = graph.isPoP(members[0]) ? placementVectors(members) : inEdgeVectors(members);
+            if (vectors == null) {
+                continue;
+            }
+            for (int m = 0; m + 1 < members.length; m++) {
+                IlpLinExpr lhs = new IlpLinExpr();
+                IlpLinExpr rhs = new IlpLinExpr();
+                IlpVar[] first = vectors.get(m);
+                IlpVar[] second = vectors.get(m + 1);
+                // binary vectors are ordered lexicographically iff their values as binary numbers are
+                for (int i = 0; i < first.length; i++) {
+                    double weight = 1 << (first.length - 1 - i);
+                    lhs.addTerm(weight, first[i]);
+                    rhs.addTerm(weight, second[i]);
+                }
+                IlpName name = IlpName.of("constr_symmetry_", graph.getVertex(members[m]), ">=",
+                        graph.getVertex(members[m + 1]));
+                model.addConstr(lhs, IlpSense.GREATER_EQUAL, rhs, name);
+            }
+        }
+        print("added symmetry breaking constr for " + symmetries);
+    }
+
+    /**
+     * @return per PoP of the class the variables p_type(v) of the used VNF types, in the order of the types
+     */
+    private List<IlpVar[]> placementVectors(int[] members) {
+        List<NprNfvTypes.Type> types = new ArrayList<>();
+        for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+            if (allTypes.contains(type)) {
+                types.add(type);
+            }
+        }
+        if (types.isEmpty()) {
+            return null;
+        }
+        types = types.subList(0, Math.min(types.size(), MAX_LEX_LENGTH));
+        List<IlpVar[]> vectors = new ArrayList<>(members.length);
+        for (int v : members) {
+            IlpVar[] vector = new IlpVar[types.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = pTypePlaced[index.type(types.get(i), v)];
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * @return per egress node of the class the variables f_t^{(|Psi|,|Psi|+1)}(n,v) of the first SFC flow t the class
+     * belongs to, in the order of the in-neighbours n. null if the class is no egress of an SFC flow, an in-neighbour
+     * is interchangeable itself or connected by parallel edges.
+     */
+    private List<IlpVar[]> inEdgeVectors(int[] members) {
+        int flowIndex = -1;
+        for (int t = 0; t < trafficSfc.size() && flowIndex < 0; t++) {
+            for (int d = 0; d < index.getNumDsts(t); d++) {
+                if (index.getDst(t, d) == members[0]) {
+                    flowIndex = t;
+                }
+            }
+        }
+        if (flowIndex < 0 || graph.getInDegree(members[0]) == 0) {
+            return null;
+        }
+        int lastLogicalEdge = trafficSfc.get(flowIndex).getSfc().size();
+
+        // the in-neighbours are the same for all members, ordered by their id
+        int inDegree = Math.min(graph.getInDegree(members[0]), MAX_LEX_LENGTH);
+        int[] neighbours = new int[graph.getInDegree(members[0])];
+        for (int k = 0; k < neighbours.length; k++) {
+            neighbours[k] = graph.getSrc(graph.getInEdge(members[0], k));
+            if (symmetries.isInterchangeable(neighbours[k])) {
+                return null;
+            }
+        }
+        Arrays.sort(neighbours);
+        for (int k = 1; k < neighbours.length; k++) {
+            if (neighbours[k] == neighbours[k - 1]) {
+                return null;
+            }
+        }
+
+        List<IlpVar[]> vectors = new ArrayList<>(members.length);
+        for (int v : members) {
+            IlpVar[] vector = new IlpVar[inDegree];
+            for (int k = 0; k < graph.getInDegree(v); k++) {
+                int e = graph.getInEdge(v, k);
+                int i = Arrays.binarySearch(neighbours, graph.getSrc(e));
+                if (i < inDegree) {
+                    vector[i] = fForLogical[index.edge(flowIndex, lastLogicalEdge, e)];
+                }
             }
+            vectors.add(vector);
         }
+        return vectors;
     }
 
-    protected void addLoadConstraint(GRBModel model) throws GRBException {
-        GRBLinExpr load = new GRBLinExpr();
+    protected void addLoadConstraint(IlpModel model) {
+        IlpLinExpr load = new IlpLinExpr();
         // no sfc
         for (NprTraffic flow : trafficNoSfc) {
             for (TopologyEdge edge : edges) {
@@ -575,76 +714,72 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
             }
         }
         // sfc
-        for (int i = 0; i < trafficSfc.size(); i++) {
-            NprTraffic flow = trafficSfc.get(i);
-            for (TopologyEdge edge : edges) {
-                for (int j = 0; j < fForLogical.get(i).size(); j++) {
-                    load.addTerm(flow.getDemand(), fForLogical.get(i).get(j).get(edge));
-                }
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            NprTraffic flow = trafficSfc.get(t);
+            for (int i = index.edge(t, 0, 0); i < index.edge(t + 1, 0, 0); i++) {
+                load.addTerm(flow.getDemand(), fForLogical[i]);
             }
         }
-        model.addConstr(load, GRB.LESS_EQUAL, loadConstraint, "load_constraint");
+        model.addConstr(load, IlpSense.LESS_EQUAL, loadConstraint, "load_constraint");
     }
 
 
-    private void addVnfsOnlyPlacedAtPoPsConstraint(GRBModel model) throws GRBException {
+    private void addVnfsOnlyPlacedAtPoPsConstraint(IlpModel model) {
         // VNFs only placed at PoPs
         for (NprNfvTypes.Type type : allTypes) {
-            for (TopologyVertex vert : nodes) {
-                int isPoP;
-                if (vert instanceof WrappedPoPVertex) {
-                    isPoP = 1;
-                } else {
-                    isPoP = 0;
-                }
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                int isPoP = graph.isPoP(v) ? 1 : 0;
+                TopologyVertex vert = graph.getVertex(v);
                 if (log != null) {
                     log.info("{} is pop: {}", vert.toString(), isPoP);
                 }
-                model.addConstr(pTypePlaced.get(type)
-                                           .get(vert), GRB.LESS_EQUAL, isPoP,
-                        "constr_only-placed-at-pops_" + type.name() + "_" + vert
-                        .toString());
+                model.addConstr(pTypePlaced[index.type(type, v)], IlpSense.LESS_EQUAL, isPoP,
+                        IlpName.of("constr_only-placed-at-pops_", type, "_", vert));
             }
         }
     }
 
-    private void addPoPCapacityNotExceededConstraint(GRBModel model) throws GRBException {
+    private void addPoPCapacityNotExceededConstraint(IlpModel model) {
         // PoP capacity not exceeded
+        popCapacityConstrs = new IlpConstraint[NprResources.values().length * graph.getNumVertices()];
         for (NprResources resource : NprResources.values()) {
-            for (TopologyVertex vertex : nodes) {
-                if (vertex instanceof WrappedPoPVertex) {
-                    WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) vertex;
-                    GRBLinExpr sum = new GRBLinExpr();
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                if (graph.isPoP(v)) {
+                    WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) graph.getVertex(v);
+                    IlpLinExpr sum = new IlpLinExpr();
                     for (NprNfvTypes.Type type : allTypes) {
-                        sum.addTerm(NprNfvTypes.getRequirements(type).get(resource), pTypePlaced.get(type).get(vertex));
+                        sum.addTerm(NprNfvTypes.getRequirements(type).get(resource), pTypePlaced[index.type(type, v)]);
                     }
-                    model.addConstr(sum, GRB.LESS_EQUAL, wrappedPoPVertex.getResourceCapacity(resource),
-                            "constr_pop_cap_" + resource
-                            .name() + "_" + vertex.toString());
+                    popCapacityConstrs[resource.ordinal() * graph.getNumVertices() + v] = model.addConstr(sum,
+                            IlpSense.LESS_EQUAL, wrappedPoPVertex.getResourceCapacity(resource),
+                            IlpName.of("constr_pop_cap_", resource, "_", wrappedPoPVertex));
                 }
             }
         }
     }
 
-    private void addLinkCapacityNotExceededConstraint(GRBModel model) throws GRBException {
+    private void addLinkCapacityNotExceededConstraint(IlpModel model) {
         // edge capacity not exceeded
-        for (TopologyEdge edge : edges) {
-            GRBLinExpr sum = new GRBLinExpr();
-            for (int flowCnt = 0; flowCnt < trafficSfc.size(); flowCnt++) {
-                NprTraffic sfcFlow = trafficSfc.get(flowCnt);
-                for (int j = 0; j < fForLogical.get(flowCnt).size(); j++) {
-                    sum.addTerm(sfcFlow.getDemand(), fForLogical.get(flowCnt).get(j).get(edge));
+        linkCapacityConstrs = new IlpConstraint[graph.getNumEdges()];
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            TopologyEdge edge = graph.getEdge(e);
+            IlpLinExpr sum = new IlpLinExpr();
+            for (int t = 0; t < trafficSfc.size(); t++) {
+                NprTraffic sfcFlow = trafficSfc.get(t);
+                for (int j = 0; j <= sfcFlow.getSfc().size(); j++) {
+                    sum.addTerm(sfcFlow.getDemand(), fForLogical[index.edge(t, j, e)]);
                 }
             }
             for (NprTraffic noSfcFlow : trafficNoSfc) {
                 sum.addTerm(noSfcFlow.getDemand(), topoSyncPlacementSolver.getIsEdgeUsedAtAllForFlow(noSfcFlow, edge));
             }
-            String name = "constr_edge-cap_" + edge.src().toString() + "->" + edge.dst().toString();
-            model.addConstr(sum, GRB.LESS_EQUAL, linkWeigher.getBandwidth(edge), name);
+            IlpName name = IlpName.of("constr_edge-cap_", edge.src(), "->", edge.dst());
+            linkCapacityConstrs[e] = model.addConstr(sum, IlpSense.LESS_EQUAL, graph.getBandwidth(e), name);
         }
     }
 
-    private void addSfcPerFlowConstraints(GRBModel model) throws GRBException {
+    private void addSfcPerFlowConstraints(IlpModel model) {
+        delayConstrs = new IlpConstraint[index.getDstSize()];
         int flowIndex = 0;
         for (NprTraffic flow : trafficSfc) {
 
@@ -667,66 +802,58 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
         }
     }
 
-    private void addDecisionVariableConnectionConstraints(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    private void addDecisionVariableConnectionConstraints(IlpModel model, NprTraffic flow, int flowIndex) {
+        int numDsts = index.getNumDsts(flowIndex);
+
         // f_{t;d} <= f_t
         for (int j = 0; j <= flow.getSfc().size(); j++) {
-            for (TopologyEdge edge : edges) {
-                for (TopologyVertex dst : flow.getEgressNodes()) {
-                    String name = "constr_f_{" + flowIndex + ";" + dst.toString() + "}^" + j + "(" + edge.src()
-                                                                                                         .toString() + "->" + edge
-                                          .dst()
-                                          .toString() + ")<=f_" + flowIndex + "^" + j + "(" + edge.src()
-                                                                                                  .toString() + "->" + edge
-                                          .dst()
-                                          .toString();
-                    model.addConstr(fForLogicalAndDst.get(flowIndex)
-                                                     .get(dst)
-                                                     .get(j)
-                                                     .get(edge), GRB.LESS_EQUAL, fForLogical.get(flowIndex)
-                                                                                            .get(j)
-                                                                                            .get(edge), name);
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                IlpVar fVar = fForLogical[index.edge(flowIndex, j, e)];
+                TopologyEdge edge = graph.getEdge(e);
+                for (int d = 0; d < numDsts; d++) {
+                    IlpName name = IlpName.of("constr_f_{", flowIndex, ";", graph.getVertex(index.getDst(flowIndex, d)),
+                            "}^", j, "(", edge.src(), "->", edge.dst(), ")<=f_", flowIndex, "^", j, "(", edge.src(), "->",
+                            edge.dst());
+                    model.addConstr(fForLogicalAndDst[index.edgeForDst(flowIndex, d, j, e)], IlpSense.LESS_EQUAL,
+                            fVar, name);
                 }
             }
         }
 
         // f_t <= sum of f_{t;d}
         for (int j = 0; j <= flow.getSfc().size(); j++) {
-            for (TopologyEdge edge : edges) {
-                GRBLinExpr sumOfL = new GRBLinExpr();
-                for (TopologyVertex dst : flow.getEgressNodes()) {
-                    sumOfL.addTerm(1.0, fForLogicalAndDst.get(flowIndex).get(dst).get(j).get(edge));
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                IlpLinExpr sumOfL = new IlpLinExpr(numDsts);
+                for (int d = 0; d < numDsts; d++) {
+                    sumOfL.addTerm(1.0, fForLogicalAndDst[index.edgeForDst(flowIndex, d, j, e)]);
                 }
-                String name = "constr_f_" + flowIndex + "^" + j + "(" + edge.src().toString() + "->" + edge.dst()
-                                                                                                           .toString() + ")<=sumFTD";
-                model.addConstr(fForLogical.get(flowIndex).get(j).get(edge), GRB.LESS_EQUAL, sumOfL, name);
+                TopologyEdge edge = graph.getEdge(e);
+                IlpName name = IlpName.of("constr_f_", flowIndex, "^", j, "(", edge.src(), "->", edge.dst(), ")<=sumFTD");
+                model.addConstr(fForLogical[index.edge(flowIndex, j, e)], IlpSense.LESS_EQUAL, sumOfL, name);
             }
         }
 
 
         // p_t <= p
-        for (NprNfvTypes.Type type : allTypes) {
-            for (TopologyVertex vert : nodes) {
-                GRBVar pVar = pTypePlaced.get(type).get(vert);
-                for (int j = 1; j <= flow.getSfc().size(); j++) {
-                    if (!flow.getSfc().get(j - 1).equals(type)) {
-                        continue;
-                    }
-                    GRBVar pTVar = pPlacedForFlow.get(flowIndex).get(j).get(vert);
-                    String name =
-                            "constr_p_" + flowIndex + "^" + j + "(" + vert.toString() + ")<=p^" + j + "(" + vert.toString() + ")";
-                    model.addConstr(pTVar, GRB.LESS_EQUAL, pVar, name);
-                }
+        for (int j = 1; j <= flow.getSfc().size(); j++) {
+            NprNfvTypes.Type type = flow.getSfc().get(j - 1);
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpVar pVar = pTypePlaced[index.type(type, v)];
+                IlpVar pTVar = pPlacedForFlow[index.vertex(flowIndex, j, v)];
+                TopologyVertex vert = graph.getVertex(v);
+                IlpName name = IlpName.of("constr_p_", flowIndex, "^", j, "(", vert, ")<=p^", j, "(", vert, ")");
+                model.addConstr(pTVar, IlpSense.LESS_EQUAL, pVar, name);
             }
         }
 
         // p_{t;d} <= p_t
         for (int j = 0; j <= flow.getSfc().size(); j++) {
-            for (TopologyVertex vert : nodes) {
-                GRBVar pTVar = pPlacedForFlow.get(flowIndex).get(j).get(vert);
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpVar pTVar = pPlacedForFlow[index.vertex(flowIndex, j, v)];
 
-                for (TopologyVertex dst : flow.getEgressNodes()) {
-                    GRBVar pTDVar = pPlacedForFlowAndDest.get(flowIndex).get(j).get(dst).get(vert);
-                    model.addConstr(pTDVar, GRB.LESS_EQUAL, pTVar, "");
+                for (int d = 0; d < numDsts; d++) {
+                    IlpVar pTDVar = pPlacedForFlowAndDest[index.vertexForDst(flowIndex, j, d, v)];
+                    model.addConstr(pTDVar, IlpSense.LESS_EQUAL, pTVar, "");
                 }
 
             }
@@ -734,167 +861,156 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
         // p_t<=sum of p_{t;d}
         for (int j = 0; j <= flow.getSfc().size(); j++) {
-            for (TopologyVertex vert : nodes) {
-                GRBVar pTVar = pPlacedForFlow.get(flowIndex).get(j).get(vert);
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpVar pTVar = pPlacedForFlow[index.vertex(flowIndex, j, v)];
 
-                GRBLinExpr sumOfPTD = new GRBLinExpr();
+                IlpLinExpr sumOfPTD = new IlpLinExpr(numDsts);
 
-                for (TopologyVertex dst : flow.getEgressNodes()) {
-                    sumOfPTD.addTerm(1.0, pPlacedForFlowAndDest.get(flowIndex).get(j).get(dst).get(vert));
+                for (int d = 0; d < numDsts; d++) {
+                    sumOfPTD.addTerm(1.0, pPlacedForFlowAndDest[index.vertexForDst(flowIndex, j, d, v)]);
                 }
 
-                String name = "constr_p_{" + flowIndex + "}^" + j + "(" + vert.toString() + ")" + "<=" + "sumPTD";
-                model.addConstr(pTVar, GRB.LESS_EQUAL, sumOfPTD, name);
+                IlpName name = IlpName.of("constr_p_{", flowIndex, "}^", j, "(", graph.getVertex(v), ")<=sumPTD");
+                model.addConstr(pTVar, IlpSense.LESS_EQUAL, sumOfPTD, name);
             }
         }
 
 
     }
 
-    private void addFlowConservationConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    private void addFlowConservationConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
         // conservation
         for (int j = 0; j <= flow.getSfc().size(); j++) { // logical edge j (connects logical nodes j and j+1)
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                for (TopologyVertex vert : nodes) {
-                    GRBLinExpr lhs = new GRBLinExpr();
-                    GRBLinExpr in = new GRBLinExpr();
-                    GRBLinExpr out = new GRBLinExpr();
-
-                    for (TopologyEdge edge : edges) {
-                        if (edge.src().equals(vert)) {
-                            out.addTerm(1.0, fForLogicalAndDst.get(flowIndex).get(dst).get(j).get(edge));
-                        } else if (edge.dst().equals(vert)) {
-                            in.addTerm(1.0, fForLogicalAndDst.get(flowIndex).get(dst).get(j).get(edge));
+            for (int d = 0; d < index.getNumDsts(flowIndex); d++) {
+                TopologyVertex dst = graph.getVertex(index.getDst(flowIndex, d));
+                int fBase = index.edgeForDst(flowIndex, d, j, 0);
+                for (int v = 0; v < graph.getNumVertices(); v++) {
+                    IlpLinExpr lhs = new IlpLinExpr();
+
+                    for (int k = 0; k < graph.getOutDegree(v); k++) {
+                        lhs.addTerm(1.0, fForLogicalAndDst[fBase + graph.getOutEdge(v, k)]);
+                    }
+                    for (int k = 0; k < graph.getInDegree(v); k++) {
+                        int e = graph.getInEdge(v, k);
+                        if (graph.getSrc(e) != v) { // self-loops only count as outgoing
+                            lhs.addTerm(-1.0, fForLogicalAndDst[fBase + e]);
                         }
                     }
 
-                    lhs.add(out);
-                    lhs.multAdd(-1.0, in);
-
-                    GRBLinExpr rhs = new GRBLinExpr();
-                    rhs.addTerm(1.0, pPlacedForFlowAndDest.get(flowIndex).get(j).get(dst).get(vert));
-                    rhs.addTerm(-1.0, pPlacedForFlowAndDest.get(flowIndex).get(j + 1).get(dst).get(vert));
+                    IlpLinExpr rhs = new IlpLinExpr(2);
+                    rhs.addTerm(1.0, pPlacedForFlowAndDest[index.vertexForDst(flowIndex, j, d, v)]);
+                    rhs.addTerm(-1.0, pPlacedForFlowAndDest[index.vertexForDst(flowIndex, j + 1, d, v)]);
 
-                    String name =
-                            "constr_cons_" + flowIndex + "vert=" + vert.toString() + ",dst=" + dst.toString() + "log" + "=" + j;
-                    model.addConstr(lhs, GRB.EQUAL, rhs, name);
+                    IlpName name = IlpName.of("constr_cons_", flowIndex, "vert=", graph.getVertex(v), ",dst=", dst,
+                            "log=", j);
+                    model.addConstr(lhs, IlpSense.EQUAL, rhs, name);
                 }
             }
         }
     }
 
 
-    private void addPlacedExactlyOnceConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
-        for (int j = 0; j < pPlacedForFlowAndDest.get(flowIndex).size(); j++) {
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                GRBLinExpr sum = new GRBLinExpr();
-                for (TopologyVertex vert : nodes) {
-                    sum.addTerm(1.0, pPlacedForFlowAndDest.get(flowIndex).get(j).get(dst).get(vert));
+    private void addPlacedExactlyOnceConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
+        for (int j = 0; j <= flow.getSfc().size() + 1; j++) {
+            for (int d = 0; d < index.getNumDsts(flowIndex); d++) {
+                IlpLinExpr sum = new IlpLinExpr(graph.getNumVertices());
+                for (int v = 0; v < graph.getNumVertices(); v++) {
+                    sum.addTerm(1.0, pPlacedForFlowAndDest[index.vertexForDst(flowIndex, j, d, v)]);
                 }
-                String name = "constr_placed-once_" + flowIndex + "," + j + "for=" + dst.toString();
-                model.addConstr(sum, GRB.EQUAL, 1.0, name);
+                IlpName name = IlpName.of("constr_placed-once_", flowIndex, ",", j, "for=", graph.getVertex(
+                        index.getDst(flowIndex, d)));
+                model.addConstr(sum, IlpSense.EQUAL, 1.0, name);
             }
         }
     }
 
-    private void addSourcePlacedConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    private void addSourcePlacedConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
         // source placed
-        for (TopologyVertex dst : flow.getEgressNodes()) {
-            TopologyVertex src = flow.getIngressNode();
-            String name = "constr_src-placed_" + flowIndex + "forDst=" + dst.toString() + ",@" + src.toString();
+        TopologyVertex src = flow.getIngressNode();
+        int srcId = graph.getVertexId(src);
+        for (int d = 0; d < index.getNumDsts(flowIndex); d++) {
+            TopologyVertex dst = graph.getVertex(index.getDst(flowIndex, d));
+            IlpName name = IlpName.of("constr_src-placed_", flowIndex, "forDst=", dst, ",@", src);
             if (log != null) {
                 log.debug("dst: " + dst.toString());
-                log.debug("pPlaced(idx): " + pPlacedForFlowAndDest.get(flowIndex));
-                log.debug("pPlaced(idx,0): " + pPlacedForFlowAndDest.get(flowIndex).get(0));
-                log.debug("pPlaced(idx,0,dst): " + pPlacedForFlowAndDest.get(flowIndex).get(0).get(dst));
                 log.debug("src: " + src.toString());
-                log.debug("keySet: {}", pPlacedForFlowAndDest.get(flowIndex).get(0).get(dst).keySet());
-                log.debug("src contained in keySet: {}", pPlacedForFlowAndDest.get(flowIndex)
-                                                                              .get(0)
-                                                                              .get(dst)
-                                                                              .keySet()
-                                                                              .contains(src));
+                log.debug("src id: {}", srcId);
                 log.debug("src hash code: " + src.hashCode());
-                log.debug("hash codes: {}", pPlacedForFlowAndDest.get(flowIndex)
-                                                                 .get(0)
-                                                                 .get(dst)
-                                                                 .keySet()
-                                                                 .stream()
-                                                                 .map(Object::hashCode)
-                                                                 .collect(Collectors.toSet()));
-                log.debug("pPlaced(full,dst,src): " + pPlacedForFlowAndDest.get(flowIndex).get(0).get(dst).get(src));
             }
-            model.addConstr(pPlacedForFlowAndDest.get(flowIndex).get(0).get(dst).get(src), GRB.EQUAL, 1.0, name);
+            model.addConstr(pPlacedForFlowAndDest[index.vertexForDst(flowIndex, 0, d, srcId)], IlpSense.EQUAL, 1.0,
+                    name);
         }
     }
 
 
-    private void addDestinationPlacedConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    private void addDestinationPlacedConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
         // destinations placed
-        for (TopologyVertex dst : flow.getEgressNodes()) {
-            model.addConstr(pPlacedForFlowAndDest.get(flowIndex)
-                                                 .get(pPlacedForFlowAndDest.get(flowIndex).size() - 1)
-                                                 .get(dst)
-                                                 .get(dst), GRB.EQUAL, 1.0, "");
+        int dstNode = flow.getSfc().size() + 1;
+        for (int d = 0; d < index.getNumDsts(flowIndex); d++) {
+            model.addConstr(pPlacedForFlowAndDest[index.vertexForDst(flowIndex, dstNode, d, index.getDst(flowIndex,
+                    d))], IlpSense.EQUAL, 1.0, "");
 
         }
     }
 
-    private void addDelayConstraints(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    private void addDelayConstraints(IlpModel model, NprTraffic flow, int flowIndex) {
+        int numDsts = index.getNumDsts(flowIndex);
         // delay
-        for (TopologyVertex dst : flow.getEgressNodes()) {
-            GRBLinExpr delaySum = new GRBLinExpr();
-
-            // link delay
-            for (TopologyEdge edge : edges) {
-                for (int j = 0; j < fForLogicalAndDst.get(flowIndex).get(dst).size(); j++) {
-                    delaySum.addTerm(linkWeigher.getDelay(edge), fForLogicalAndDst.get(flowIndex)
-                                                                                  .get(dst)
-                                                                                  .get(j)
-                                                                                  .get(edge));
-                }
-            }
-
-            // VNF delay
-            int vnfCnt = 1;
-            for (NprNfvTypes.Type type : flow.getSfc()) {
-                for (TopologyVertex vert : nodes) {
-                    if (vert instanceof WrappedPoPVertex) {
-                        WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) vert;
-                        delaySum.addTerm(wrappedPoPVertex.getDelay(type), pPlacedForFlowAndDest.get(flowIndex)
-                                                                                               .get(vnfCnt)
-                                                                                               .get(dst)
-                                                                                               .get(vert));
-                    }
-                }
-                vnfCnt++;
-            }
-            model.addConstr(delaySum, GRB.EQUAL, delaySfc.get(flow)
-                                                         .get(dst), "delay_" + flowIndex + "_dst=" + dst.toString());
+        for (int d = 0; d < numDsts; d++) {
+            IlpVar delayVar = delaySfc[index.dst(flowIndex, d)];
+            delayConstrs[index.dst(flowIndex, d)] = model.addConstr(delayExpr(flow, flowIndex, d), IlpSense.EQUAL,
+                    delayVar, IlpName.of("delay_", flowIndex, "_dst=", graph.getVertex(index.getDst(flowIndex, d))));
 
             // the min max delay constrs only work with the objective of TPL and ST
             if (goal == OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION) {
-                model.addConstr(maxDelayPerSfcFlow.get(flow), GRB.GREATER_EQUAL, delaySfc.get(flow).get(dst), "");
-                model.addConstr(minDelayPerSfcFlow.get(flow), GRB.LESS_EQUAL, delaySfc.get(flow).get(dst), "");
+                model.addConstr(maxDelayPerSfcFlow[flowIndex], IlpSense.GREATER_EQUAL, delayVar, "");
+                model.addConstr(minDelayPerSfcFlow[flowIndex], IlpSense.LESS_EQUAL, delayVar, "");
             }
         }
 
         if (goal != OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION) {
-            model.addGenConstrMax(maxDelayPerSfcFlow.get(flow), delaySfc.get(flow)
-                                                                        .values()
-                                                                        .toArray(new GRBVar[0]), 0.0,
-                    "constr_maxDelay_" + flowIndex);
-
-            model.addGenConstrMin(minDelayPerSfcFlow.get(flow), delaySfc.get(flow)
-                                                                        .values()
-                                                                        .toArray(new GRBVar[0]), Double.MAX_VALUE,
+            int from = index.dst(flowIndex, 0);
+            IlpVar[] delays = Arrays.copyOfRange(delaySfc, from, from + numDsts);
+            model.addGenConstrMax(maxDelayPerSfcFlow[flowIndex], delays, 0.0, "constr_maxDelay_" + flowIndex);
+
+            model.addGenConstrMin(minDelayPerSfcFlow[flowIndex], delays, Double.MAX_VALUE,
                     "constr_minDelay_" + flowIndex);
         }
 
 
     }
 
-    private void addNonSfcPerFlowConstraints(GRBModel model) throws GRBException {
+    /**
+     * @return the delay of the flow to destination d, i.e. the delays of the links used for d plus the processing
+     * delays of the VNFs used for d
+     */
+    private IlpLinExpr delayExpr(NprTraffic flow, int flowIndex, int d) {
+        IlpLinExpr delaySum = new IlpLinExpr();
+
+        // link delay, the f_{t;d} variables of all logical edges are contiguous
+        int fBase = index.edgeForDst(flowIndex, d, 0, 0);
+        for (int j = 0; j <= flow.getSfc().size(); j++) {
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                delaySum.addTerm(graph.getDelay(e), fForLogicalAndDst[fBase + j * graph.getNumEdges() + e]);
+            }
+        }
+
+        // VNF delay
+        int vnfCnt = 1;
+        for (NprNfvTypes.Type type : flow.getSfc()) {
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                if (graph.isPoP(v)) {
+                    WrappedPoPVertex wrappedPoPVertex = (WrappedPoPVertex) graph.getVertex(v);
+                    delaySum.addTerm(wrappedPoPVertex.getDelay(type), pPlacedForFlowAndDest[index.vertexForDst(
+                            flowIndex, vnfCnt, d, v)]);
+                }
+            }
+            vnfCnt++;
+        }
+        return delaySum;
+    }
+
+    private void addNonSfcPerFlowConstraints(IlpModel model) {
         topoSyncPlacementSolver.addDecisionVariableConnectionConstraints(model);
         topoSyncPlacementSolver.addSourceFlowConservation(model);
         topoSyncPlacementSolver.addDestinationFlowConservation(model);
@@ -907,18 +1023,23 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
     }
 
     @Override
-    protected NfvPlacementSolution extractSolution(GRBModel model) throws GRBException {
+    protected NfvPlacementSolution extractSolution(IlpResult result) {
         Map<NprTraffic, Map<TopologyVertex, Double>> delays = new HashMap<>();
         print("This is the solution:");
 
+        /*
+         * the variable families of the SFC flows are mostly zero, so the placement and edge variables are decoded from
+         * the non-zero entries of each per-flow block only, everything else is a constant number of values per flow
+         */
+        int numVertices = graph.getNumVertices();
+        int numEdges = graph.getNumEdges();
+
         Map<NprTraffic, Map<NprNfvTypes.Type, Set<TopologyVertex>>> placements = new HashMap<>();
         print("overall VNF placements:");
-        for (TopologyVertex vert : nodes) {
-            for (NprNfvTypes.Type type : allTypes) {
-                if (pTypePlaced.get(type).get(vert).get(GRB.DoubleAttr.X) != 0) {
-                    print("  " + type.name() + "@" + vert.toString());
-
-                }
+        if (verbose) {
+            NprNfvTypes.Type[] types = NprNfvTypes.Type.values();
+            for (int i : result.getNonZeroPositions(pTypePlaced, 0, pTypePlaced.length)) {
+                print("  " + types[i / numVertices].name() + "@" + graph.getVertex(i % numVertices).toString());
             }
         }
 
@@ -934,14 +1055,12 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
         for (NprTraffic noSfcFlow : trafficNoSfc) {
             print(noSfcFlow.toString());
-            print("max delay:" + topoSyncPlacementSolver.getMaxDelayForFlow(noSfcFlow).get(GRB.DoubleAttr.X));
-            print("min delay:" + topoSyncPlacementSolver.getMinDelayForFlow(noSfcFlow).get(GRB.DoubleAttr.X));
+            print("max delay:" + result.getValue(topoSyncPlacementSolver.getMaxDelayForFlow(noSfcFlow)));
+            print("min delay:" + result.getValue(topoSyncPlacementSolver.getMinDelayForFlow(noSfcFlow)));
 
 
-            double maxDelayOfFlow = Math.round(topoSyncPlacementSolver.getMaxDelayForFlow(noSfcFlow)
-                                                                      .get(GRB.DoubleAttr.X));
-            double minDelayOfFlow = Math.round(topoSyncPlacementSolver.getMinDelayForFlow(noSfcFlow)
-                                                                      .get(GRB.DoubleAttr.X));
+            double maxDelayOfFlow = Math.round(result.getValue(topoSyncPlacementSolver.getMaxDelayForFlow(noSfcFlow)));
+            double minDelayOfFlow = Math.round(result.getValue(topoSyncPlacementSolver.getMinDelayForFlow(noSfcFlow)));
             maxDelayPerFlow.put(noSfcFlow, maxDelayOfFlow);
             deviationPerFlow.put(noSfcFlow, maxDelayOfFlow - minDelayOfFlow);
             deviationSum += maxDelayOfFlow;
@@ -952,17 +1071,16 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
             delays.put(noSfcFlow, new HashMap<>());
             for (TopologyVertex dst : noSfcFlow.getEgressNodes()) {
-                final double delay = topoSyncPlacementSolver.getDelayForFlowAndDestination(noSfcFlow, dst)
-                                                            .get(GRB.DoubleAttr.X);
+                final double delay = result.getValue(topoSyncPlacementSolver.getDelayForFlowAndDestination(noSfcFlow, dst));
                 delays.get(noSfcFlow).put(dst, delay);
                 print("delay for " + dst.toString() + ":" + delay);
             }
             Set<TopologyEdge> edgesForTraffic = new HashSet<>();
             for (TopologyEdge edge : edges) {
-                GRBVar var = topoSyncPlacementSolver.getIsEdgeUsedAtAllForFlow(noSfcFlow, edge);
-                double varValue = Math.round(var.get(GRB.DoubleAttr.X));
+                IlpVar var = topoSyncPlacementSolver.getIsEdgeUsedAtAllForFlow(noSfcFlow, edge);
+                double varValue = Math.round(result.getValue(var));
                 if (varValue != 0) {
-                    print("    " + var.get(GRB.StringAttr.VarName) + "=" + varValue);
+                    print("    " + result.getModel().getVarName(var) + "=" + varValue);
                     edgesForTraffic.add(edge);
                     networkLoad += noSfcFlow.getDemand() * varValue;
                 }
@@ -972,14 +1090,15 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
         Map<NprTraffic, List<Set<TopologyEdge>>> logicalToRealEdgesForTraffics = new HashMap<>();
 
-        int flowCnt = 0;
-        for (NprTraffic sfcFlow : trafficSfc) {
-            delays.put(sfcFlow, new HashMap<>());
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            NprTraffic sfcFlow = trafficSfc.get(t);
+            int sfcLength = sfcFlow.getSfc().size();
+            int numDsts = index.getNumDsts(t);
 
             print(sfcFlow.toString());
 
-            double maxDelayOfFlow = Math.round(maxDelayPerSfcFlow.get(sfcFlow).get(GRB.DoubleAttr.X));
-            double minDelayOfFlow = Math.round(minDelayPerSfcFlow.get(sfcFlow).get(GRB.DoubleAttr.X));
+            double maxDelayOfFlow = Math.round(result.getValue(maxDelayPerSfcFlow[t]));
+            double minDelayOfFlow = Math.round(result.getValue(minDelayPerSfcFlow[t]));
 
             maxDelayPerFlow.put(sfcFlow, maxDelayOfFlow);
             deviationPerFlow.put(sfcFlow, maxDelayOfFlow - minDelayOfFlow);
@@ -992,98 +1111,80 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
             delaySum += maxDelayOfFlow;
 
-            for (TopologyVertex dst : sfcFlow.getEgressNodes()) {
-                final double delay = delaySfc.get(sfcFlow).get(dst).get(GRB.DoubleAttr.X);
-                delays.get(sfcFlow).put(dst, delay);
+            Map<TopologyVertex, Double> delaysOfFlow = new HashMap<>();
+            for (int d = 0; d < numDsts; d++) {
+                TopologyVertex dst = graph.getVertex(index.getDst(t, d));
+                final double delay = result.getValue(delaySfc[index.dst(t, d)]);
+                delaysOfFlow.put(dst, delay);
                 print("delay for " + dst.toString() + ":" + delay);
             }
-            placements.computeIfAbsent(sfcFlow, k -> new HashMap<>());
-            solutionEdges.computeIfAbsent(sfcFlow, k -> new HashSet<>());
-            // placements
+            delays.put(sfcFlow, delaysOfFlow);
+
+            // placements, logical node 0 is the source, so the VNFs start at logical node 1
             print("placements:");
-            for (int j = 0; j < pPlacedForFlow.get(flowCnt).size(); j++) {
-                for (TopologyVertex vert : nodes) {
-                    if (Math.round(pPlacedForFlow.get(flowCnt).get(j).get(vert).get(GRB.DoubleAttr.X)) != 0) {
-                        if (j > 0 && j <= sfcFlow.getSfc().size()) {
-                            NprNfvTypes.Type type = sfcFlow.getSfc().get(j - 1);
-                            placements.get(sfcFlow).computeIfAbsent(type, k -> new HashSet<>());
-                            placements.get(sfcFlow).get(type).add(vert);
-
-                            StringBuilder toPrint = new StringBuilder("  " + type.name() + "@" + vert.toString() + ","
-                                                                      + " for: {");
-                            for (TopologyVertex dst : sfcFlow.getEgressNodes()) {
-                                if (pPlacedForFlowAndDest.get(flowCnt)
-                                                         .get(j)
-                                                         .get(dst)
-                                                         .get(vert)
-                                                         .get(GRB.DoubleAttr.X) != 0) {
-                                    toPrint.append(dst.toString()).append(",");
-                                }
-                            }
-                            toPrint.append("}");
-                            print(toPrint.toString());
+            Map<NprNfvTypes.Type, Set<TopologyVertex>> placementsOfFlow = new HashMap<>();
+            int pFrom = index.vertex(t, 0, 0);
+            int pTo = pFrom + (sfcLength + 1) * numVertices;
+            for (int i : result.getNonZeroPositions(pPlacedForFlow, index.vertex(t, 1, 0), pTo)) {
+                if (Math.round(result.getValue(pPlacedForFlow[i])) == 0) {
+                    continue;
+                }
+                int j = (i - pFrom) / numVertices;
+                int v = (i - pFrom) % numVertices;
+                TopologyVertex vert = graph.getVertex(v);
+                NprNfvTypes.Type type = sfcFlow.getSfc().get(j - 1);
+                placementsOfFlow.computeIfAbsent(type, k -> new HashSet<>()).add(vert);
+
+                if (verbose) {
+                    StringBuilder toPrint = new StringBuilder("  " + type.name() + "@" + vert.toString() + ","
+                                                              + " for: {");
+                    for (int d = 0; d < numDsts; d++) {
+                        if (result.getValue(pPlacedForFlowAndDest[index.vertexForDst(t, j, d, v)]) != 0) {
+                            toPrint.append(graph.getVertex(index.getDst(t, d)).toString()).append(",");
                         }
                     }
+                    toPrint.append("}");
+                    print(toPrint.toString());
                 }
             }
-
-            List<Set<TopologyEdge>> logicalToRealEdges = new ArrayList<>();
+            placements.put(sfcFlow, placementsOfFlow);
 
             // edges
             print("edges:");
-            for (int jl = 0; jl < fForLogical.get(flowCnt).size(); jl++) {
-                Set<TopologyEdge> edgesPerLogical = new HashSet<>();
-
-
-                if (jl == 0) {
-                    print(" " + sfcFlow.getIngressNode().toString() + "->" + sfcFlow.getSfc().get(0) + ":");
-                    for (TopologyEdge edge : edges) {
-                        if (Math.round(fForLogical.get(flowCnt).get(jl).get(edge).get(GRB.DoubleAttr.X)) != 0) {
-                            edgesPerLogical.add(edge);
-                            solutionEdges.get(sfcFlow).add(edge);
-                            networkLoad += Math.round(fForLogical.get(flowCnt)
-                                                                 .get(jl)
-                                                                 .get(edge)
-                                                                 .get(GRB.DoubleAttr.X)) * sfcFlow.getDemand();
-                            print("  " + edge.src().toString() + "->" + edge.dst().toString());
-                        }
-                    }
-                } else if (jl < sfcFlow.getSfc().size()) {
-                    print(" " + sfcFlow.getSfc().get(jl - 1).name() + "->" + sfcFlow.getSfc().get(jl).name() + ":");
-                    for (TopologyEdge edge : edges) {
-                        if (Math.round(fForLogical.get(flowCnt).get(jl).get(edge).get(GRB.DoubleAttr.X)) != 0) {
-                            edgesPerLogical.add(edge);
-                            solutionEdges.get(sfcFlow).add(edge);
-                            networkLoad += Math.round(fForLogical.get(flowCnt)
-                                                                 .get(jl)
-                                                                 .get(edge)
-                                                                 .get(GRB.DoubleAttr.X)) * sfcFlow.getDemand();
-                            print("  " + edge.src().toString() + "->" + edge.dst().toString());
-                        }
-                    }
-                } else {
-                    print(" " + sfcFlow.getSfc().get(sfcFlow.getSfc().size() - 1).name() + "-> pseudo-dest:");
-                    for (TopologyEdge edge : edges) {
-                        if (Math.round(fForLogical.get(flowCnt).get(jl).get(edge).get(GRB.DoubleAttr.X)) != 0) {
-                            edgesPerLogical.add(edge);
-                            solutionEdges.get(sfcFlow).add(edge);
-                            networkLoad += Math.round(fForLogical.get(flowCnt)
-                                                                 .get(jl)
-                                                                 .get(edge)
-                                                                 .get(GRB.DoubleAttr.X)) * sfcFlow.getDemand();
-                            print("  " + edge.src().toString() + "->" + edge.dst().toString());
-                        }
+            List<Set<TopologyEdge>> logicalToRealEdges = new ArrayList<>(sfcLength + 1);
+            for (int jl = 0; jl <= sfcLength; jl++) {
+                logicalToRealEdges.add(new HashSet<>());
+            }
+            Set<TopologyEdge> edgesOfFlow = new HashSet<>();
+            int fFrom = index.edge(t, 0, 0);
+            int fTo = fFrom + (sfcLength + 1) * numEdges;
+            int lastLogical = -1;
+            for (int i : result.getNonZeroPositions(fForLogical, fFrom, fTo)) {
+                long value = Math.round(result.getValue(fForLogical[i]));
+                if (value == 0) {
+                    continue;
+                }
+                int jl = (i - fFrom) / numEdges;
+                int e = (i - fFrom) % numEdges;
+                if (verbose) {
+                    if (jl != lastLogical) {
+                        print(" " + logicalEdgeName(sfcFlow, jl, null) + ":");
+                        lastLogical = jl;
                     }
+                    print("  " + edgeName(e));
                 }
-                logicalToRealEdges.add(edgesPerLogical);
+                TopologyEdge edge = graph.getEdge(e);
+                logicalToRealEdges.get(jl).add(edge);
+                edgesOfFlow.add(edge);
+                networkLoad += value * sfcFlow.getDemand();
             }
+            solutionEdges.put(sfcFlow, edgesOfFlow);
             logicalToRealEdgesForTraffics.put(sfcFlow, logicalToRealEdges);
-            flowCnt++;
         }
 
 
         NfvPlacementSolution sol = new NfvPlacementSolution(solutionEdges, placements, req, goal,
-                model.get(GRB.DoubleAttr.ObjVal), deviationSum, delaySum, networkLoad, deviationPerFlow,
+                result.getObjVal(), deviationSum, delaySum, networkLoad, deviationPerFlow,
                 maxDelayPerFlow, getType());
         for (NprTraffic flow : logicalToRealEdgesForTraffics.keySet()) {
             sol.setLogicalEdgesForTraffic(flow, logicalToRealEdgesForTraffics.get(flow));
@@ -1094,6 +1195,94 @@ public abstract class SfcPlacementSolver extends AbstractNfvIlpPlacementSolver {
         return sol;
     }
 
+    /**
+     * Maps the previous solution onto the placement (p), edge (f) and delay variables of the SFC flows. The variables
+     * of a logical node or edge only get start values if all of its previous vertices or edges still exist; the
+     * per-destination variables are left to the backend. The non-SFC flows are handled by the topoSyncPlacementSolver.
+     */
+    @Override
+    protected void addStart(NfvPlacementSolution start, IlpModel model) {
+        topoSyncPlacementSolver.addStart(start, model);
+
+        int numVertices = graph.getNumVertices();
+        int numEdges = graph.getNumEdges();
+
+        Map<NprNfvTypes.Type, Set<TopologyVertex>> sharedPlacements = start.getSharedPlacements();
+        for (NprNfvTypes.Type type : allTypes) {
+            int[] placed = graph.mapVertices(sharedPlacements.getOrDefault(type, Collections.emptySet()));
+            setStart(model, pTypePlaced, index.type(type, 0), numVertices, placed);
+        }
+
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            NprTraffic flow = trafficSfc.get(t);
+            NprTraffic previous = findPreviousFlow(start, flow);
+            if (previous == null) {
+                continue;
+            }
+            int sfcLength = flow.getSfc().size();
+
+            // logical node 0 is the source, which is the same for the matched flows
+            setStart(model, pPlacedForFlow, index.vertex(t, 0, 0), numVertices,
+                    new int[]{graph.getVertexId(flow.getIngressNode())});
+            Map<NprNfvTypes.Type, Set<TopologyVertex>> placements = start.getPlacementsForTraffic(previous);
+            if (placements != null) {
+                for (int j = 1; j <= sfcLength; j++) {
+                    setStart(model, pPlacedForFlow, index.vertex(t, j, 0), numVertices,
+                            graph.mapVertices(placements.get(flow.getSfc().get(j - 1))));
+                }
+            }
+
+            List<Set<TopologyEdge>> logicalEdges = start.getLogicalEdgesPerTraffic().get(previous);
+            if (logicalEdges != null && logicalEdges.size() == sfcLength + 1) {
+                for (int j = 0; j <= sfcLength; j++) {
+                    setStart(model, fForLogical, index.edge(t, j, 0), numEdges, graph.mapEdges(logicalEdges.get(j)));
+                }
+            }
+
+            Map<TopologyVertex, Double> delays = start.getDelaysOfFlow(previous);
+            if (delays == null) {
+                continue;
+            }
+            Map<DeviceId, Double> delayPerDevice = new HashMap<>();
+            for (Map.Entry<TopologyVertex, Double> entry : delays.entrySet()) {
+                delayPerDevice.put(entry.getKey().deviceId(), entry.getValue());
+            }
+            boolean allDsts = true;
+            double minDelay = Double.POSITIVE_INFINITY;
+            double maxDelay = Double.NEGATIVE_INFINITY;
+            for (int d = 0; d < index.getNumDsts(t); d++) {
+                Double delay = delayPerDevice.get(graph.getVertex(index.getDst(t, d)).deviceId());
+                if (delay == null) {
+                    allDsts = false;
+                    continue;
+                }
+                model.setStart(delaySfc[index.dst(t, d)], delay);
+                minDelay = Math.min(minDelay, delay);
+                maxDelay = Math.max(maxDelay, delay);
+            }
+            if (allDsts && index.getNumDsts(t) > 0) {
+                model.setStart(minDelayPerSfcFlow[t], minDelay);
+                model.setStart(maxDelayPerSfcFlow[t], maxDelay);
+            }
+        }
+    }
+
+    /**
+     * Sets the start values of a contiguous block of binary variables: 1 for the given offsets in the block, 0 for all
+     * others. Does nothing if ones is null, i.e. if the previous solution could not be mapped.
+     */
+    private static void setStart(IlpModel model, IlpVar[] vars, int from, int count, int[] ones) {
+        if (ones == null) {
+            return;
+        }
+        for (int i = from; i < from + count; i++) {
+            model.setStart(vars[i], 0.0);
+        }
+        for (int one : ones) {
+            model.setStart(vars[from + one], 1.0);
+        }
+    }
+
     protected abstract NfvPlacementSolution.SolutionType getType();
 
     @Override
@@ -0,0 +1,162 @@
+package thesiscode.common.nfv.placement.solver.mfcp.used;
+
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+
+import java.util.List;
+
+/**
+ * Maps the (flow, logical node/edge, destination, vertex/edge) tuples of the SFC formulation to offsets into flat
+ * variable arrays. Flows are represented by their index in the SFC traffic list, destinations by their position in the
+ * egress node set of the flow and vertices/edges by their id in the {@link CsrTopologyGraph}. Every family is laid out
+ * flow after flow, the per-flow blocks are row-major with the physical vertex/edge as the innermost dimension, so that
+ * all variables of one logical node/edge (and destination) are contiguous.
+ * <p>
+ * Logical indices follow the conventions of {@link SfcPlacementSolver}: logical node 0 is the source, 1 to |Psi| are
+ * the VNFs of the SFC and |Psi|+1 is the destination. Logical edge j connects logical nodes j and j+1.
+ */
+final class SfcVariableIndex {
+    private final int numVertices;
+    private final int numEdges;
+    private final int numTypes;
+
+    private final int[] sfcLength; // |Psi| per flow
+    private final int[][] dsts; // flow -> destination index -> vertex id
+
+    // per-flow base offsets of the families, the entry at index |T| is the size of the family
+    private final int[] edgeBase; // f_t^{(k,l)}(i,j): [logical edge][edge]
+    private final int[] edgeForDstBase; // f_{t;d}^{(k,l)}(i,j): [dst][logical edge][edge]
+    private final int[] vertexBase; // p_t^k(v): [logical node without dst][vertex]
+    private final int[] vertexForDstBase; // p_{t;d}^k(v): [logical node][dst][vertex]
+    private final int[] dstBase; // delay_t(d): [dst]
+
+    SfcVariableIndex(List<NprTraffic> trafficSfc, CsrTopologyGraph graph) {
+        this.numVertices = graph.getNumVertices();
+        this.numEdges = graph.getNumEdges();
+        this.numTypes = NprNfvTypes.Type.values().length;
+
+        int numFlows = trafficSfc.size();
+        sfcLength = new int[numFlows];
+        dsts = new int[numFlows][];
+        edgeBase = new int[numFlows + 1];
+        edgeForDstBase = new int[numFlows + 1];
+        vertexBase = new int[numFlows + 1];
+        vertexForDstBase = new int[numFlows + 1];
+        dstBase = new int[numFlows + 1];
+
+        for (int t = 0; t < numFlows; t++) {
+            NprTraffic flow = trafficSfc.get(t);
+            sfcLength[t] = flow.getSfc().size();
+
+            dsts[t] = new int[flow.getEgressNodes().size()];
+            int d = 0;
+            for (TopologyVertex dst : flow.getEgressNodes()) {
+                int id = graph.getVertexId(dst);
+                if (id < 0) {
+                    throw new IllegalArgumentException("destination " + dst + " of flow " + t + " is not part of the graph");
+                }
+                dsts[t][d++] = id;
+            }
+
+            int numLogical = sfcLength[t] + 1; // logical edges == logical nodes without the destination
+            int numDsts = dsts[t].length;
+            edgeBase[t + 1] = edgeBase[t] + numLogical * numEdges;
+            edgeForDstBase[t + 1] = edgeForDstBase[t] + numDsts * numLogical * numEdges;
+            vertexBase[t + 1] = vertexBase[t] + numLogical * numVertices;
+            vertexForDstBase[t + 1] = vertexForDstBase[t] + (numLogical + 1) * numDsts * numVertices;
+            dstBase[t + 1] = dstBase[t] + numDsts;
+        }
+    }
+
+    int getNumFlows() {
+        return sfcLength.length;
+    }
+
+    int getSfcLength(int flow) {
+        return sfcLength[flow];
+    }
+
+    int getNumDsts(int flow) {
+        return dsts[flow].length;
+    }
+
+    /**
+     * @param flow the flow index
+     * @param dst  the destination index
+     * @return the vertex id of the destination
+     */
+    int getDst(int flow, int dst) {
+        return dsts[flow][dst];
+    }
+
+    /**
+     * @return offset of f_t^{(k,l)}(i,j) for logical edge j and physical edge e
+     */
+    int edge(int flow, int logicalEdge, int edge) {
+        return edgeBase[flow] + logicalEdge * numEdges + edge;
+    }
+
+    /**
+     * @return offset of f_{t;d}^{(k,l)}(i,j) for destination d, logical edge j and physical edge e
+     */
+    int edgeForDst(int flow, int dst, int logicalEdge, int edge) {
+        return edgeForDstBase[flow] + (dst * (sfcLength[flow] + 1) + logicalEdge) * numEdges + edge;
+    }
+
+    /**
+     * Offset of p_t^k(v). Logical nodes range from the source to the last VNF, which is the same count as the logical
+     * edges, so the layout can also be used for other per logical edge and vertex variables.
+     *
+     * @return offset of p_t^k(v) for logical node k and vertex v
+     */
+    int vertex(int flow, int logicalNode, int vertex) {
+        return vertexBase[flow] + logicalNode * numVertices + vertex;
+    }
+
+    /**
+     * @return offset of p_{t;d}^k(v) for logical node k (including the destination), destination d and vertex v
+     */
+    int vertexForDst(int flow, int logicalNode, int dst, int vertex) {
+        return vertexForDstBase[flow] + (logicalNode * dsts[flow].length + dst) * numVertices + vertex;
+    }
+
+    /**
+     * @return offset of delay_t(d) for destination d
+     */
+    int dst(int flow, int dst) {
+        return dstBase[flow] + dst;
+    }
+
+    /**
+     * @return offset of p^f(v) for VNF type f and vertex v
+     */
+    int type(NprNfvTypes.Type type, int vertex) {
+        return type.ordinal() * numVertices + vertex;
+    }
+
+    int getEdgeSize() {
+        return edgeBase[edgeBase.length - 1];
+    }
+
+    int getEdgeForDstSize() {
+        return edgeForDstBase[edgeForDstBase.length - 1];
+    }
+
+    int getVertexSize() {
+        return vertexBase[vertexBase.length - 1];
+    }
+
+    int getVertexForDstSize() {
+        return vertexForDstBase[vertexForDstBase.length - 1];
+    }
+
+    int getDstSize() {
+        return dstBase[dstBase.length - 1];
+    }
+
+    int getTypeSize() {
+        return numTypes * numVertices;
+    }
+}
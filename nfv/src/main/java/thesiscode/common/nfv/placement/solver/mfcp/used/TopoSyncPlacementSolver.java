@@ -1,6 +1,6 @@
 package thesiscode.common.nfv.placement.solver.mfcp.used;
 
-import gurobi.*;
+import gurobi.GRBEnv;
 import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyVertex;
 import org.slf4j.Logger;
@@ -9,7 +9,17 @@ import thesiscode.common.nfv.placement.solver.AbstractNfvIlpPlacementSolver;
 import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiBackend;
+import thesiscode.common.nfv.placement.solver.ilp.IlpConstraint;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpName;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVarType;
 import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
 import thesiscode.common.topo.ILinkWeigher;
 
 import java.util.*;
@@ -22,20 +32,25 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
     private Set<TopologyVertex> nodes;
     private Set<TopologyEdge> edges;
+    private CsrTopologyGraph graph;
     private ILinkWeigher linkWeigher;
     private List<NprTraffic> traffic;
     private NfvPlacementRequest req;
 
-    private Map<NprTraffic, Map<TopologyVertex, GRBVar>> u; // u_t(v) for MTZ constraints
+    private Map<NprTraffic, Map<TopologyVertex, IlpVar>> u; // u_t(v) for MTZ constraints
 
     // flow -> edge -> {0,1}
-    private Map<NprTraffic, Map<TopologyEdge, GRBVar>> lEdgeUsedAtAll; // l_t(i,j)
+    private Map<NprTraffic, Map<TopologyEdge, IlpVar>> lEdgeUsedAtAll; // l_t(i,j)
 
     // flow -> destination -> edge ->  {0,1}
-    private Map<NprTraffic, Map<TopologyVertex, Map<TopologyEdge, GRBVar>>> lEdgeUsedForDestination; // l_t^{(s,d)}(i,j)
-    private Map<NprTraffic, Map<TopologyVertex, GRBVar>> delay;
-    private Map<NprTraffic, GRBVar> minDelayPerFlow;
-    private Map<NprTraffic, GRBVar> maxDelayPerFlow;
+    private Map<NprTraffic, Map<TopologyVertex, Map<TopologyEdge, IlpVar>>> lEdgeUsedForDestination; // l_t^{(s,d)}(i,j)
+    private Map<NprTraffic, Map<TopologyVertex, IlpVar>> delay;
+    private Map<NprTraffic, IlpVar> minDelayPerFlow;
+    private Map<NprTraffic, IlpVar> maxDelayPerFlow;
+
+    // constraints depending on link attributes, in the order they were added, kept to update the model
+    private List<IlpConstraint> delayConstrs = new ArrayList<>();
+    private List<IlpConstraint> capacityConstrs = new ArrayList<>();
 
     private OptimizationGoal goal;
 
@@ -49,15 +64,16 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
     public TopoSyncPlacementSolver(OptimizationGoal goal, boolean verbose, GRBEnv env) {
         this.goal = goal;
         super.verbose = verbose;
-        super.env = env;
+        super.backend = new GurobiBackend(env);
     }
 
 
     @Override
-    protected void init(NfvPlacementRequest req, GRBModel model) {
+    protected void init(NfvPlacementRequest req, IlpModel model) {
         this.req = req;
         edges = req.getEdges();
         nodes = req.getVertices();
+        graph = req.getGraph();
         linkWeigher = req.getLinkWeigher();
         traffic = req.getTraffic();
 
@@ -68,8 +84,70 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
         }
     }
 
+    /**
+     * Re-keys the variable maps, which are keyed by the flows, vertices and edges of the previous request, and updates
+     * the link delays in the delay constraints as well as the link capacities.
+     */
+    @Override
+    protected boolean updateModel(NfvPlacementRequest req, IlpModel model) {
+        List<NprTraffic> oldTraffic = traffic;
+        CsrTopologyGraph oldGraph = graph;
+        init(req, model);
+
+        for (int t = 0; t < traffic.size(); t++) {
+            NprTraffic oldFlow = oldTraffic.get(t);
+            NprTraffic flow = traffic.get(t);
+            u.put(flow, rekeyVertices(u.remove(oldFlow)));
+            lEdgeUsedAtAll.put(flow, rekeyEdges(lEdgeUsedAtAll.remove(oldFlow), oldGraph));
+            Map<TopologyVertex, Map<TopologyEdge, IlpVar>> dstToEdge = new HashMap<>();
+            for (Map.Entry<TopologyVertex, Map<TopologyEdge, IlpVar>> entry : lEdgeUsedForDestination.remove(oldFlow)
+                                                                                                    .entrySet()) {
+                dstToEdge.put(graph.getVertex(graph.getVertexId(entry.getKey().deviceId())), rekeyEdges(entry
+                        .getValue(), oldGraph));
+            }
+            lEdgeUsedForDestination.put(flow, dstToEdge);
+            delay.put(flow, rekeyVertices(delay.remove(oldFlow)));
+            minDelayPerFlow.put(flow, minDelayPerFlow.remove(oldFlow));
+            maxDelayPerFlow.put(flow, maxDelayPerFlow.remove(oldFlow));
+        }
+
+        Iterator<IlpConstraint> delayConstr = delayConstrs.iterator();
+        for (NprTraffic flow : traffic) {
+            for (TopologyVertex dst : flow.getEgressNodes()) {
+                model.updateConstr(delayConstr.next(), delay.get(flow).get(dst), delayExpr(flow, dst));
+            }
+        }
+        Iterator<IlpConstraint> capacityConstr = capacityConstrs.iterator();
+        for (int e = 0; capacityConstr.hasNext(); e++) {
+            model.setRhs(capacityConstr.next(), graph.getBandwidth(e));
+        }
+        return true;
+    }
+
+    /**
+     * @return a map with the same variables, keyed by the vertices of the current graph with the same devices
+     */
+    private Map<TopologyVertex, IlpVar> rekeyVertices(Map<TopologyVertex, IlpVar> vertToVar) {
+        Map<TopologyVertex, IlpVar> rekeyed = new HashMap<>(2 * vertToVar.size());
+        for (Map.Entry<TopologyVertex, IlpVar> entry : vertToVar.entrySet()) {
+            rekeyed.put(graph.getVertex(graph.getVertexId(entry.getKey().deviceId())), entry.getValue());
+        }
+        return rekeyed;
+    }
+
+    /**
+     * @return a map with the same variables, keyed by the edges of the current graph with the same ids
+     */
+    private Map<TopologyEdge, IlpVar> rekeyEdges(Map<TopologyEdge, IlpVar> edgeToVar, CsrTopologyGraph oldGraph) {
+        Map<TopologyEdge, IlpVar> rekeyed = new HashMap<>(2 * edgeToVar.size());
+        for (Map.Entry<TopologyEdge, IlpVar> entry : edgeToVar.entrySet()) {
+            rekeyed.put(graph.getEdge(oldGraph.getEdgeId(entry.getKey())), entry.getValue());
+        }
+        return rekeyed;
+    }
+
     @Override
-    protected void addVariables(GRBModel model) throws GRBException {
+    protected void addVariables(IlpModel model) {
         addLEdgeUsedForDestination(model);
         addLEdgeUsedAtAll(model);
         addU(model);
@@ -78,115 +156,125 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
         addMaxDelayPerFlow(model);
     }
 
-    private void addMaxDelayPerFlow(GRBModel model) throws GRBException {
+    private void addMaxDelayPerFlow(IlpModel model) {
         maxDelayPerFlow = new HashMap<>();
-        int flowCnt = 0;
-        for (NprTraffic flow : traffic) {
-            maxDelayPerFlow.put(flow, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER, "maxDelay_" + flowCnt));
-            flowCnt++;
+        IlpVar[] block = model.addVars(traffic.size(), 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                t -> "maxDelay_" + t);
+        for (int t = 0; t < traffic.size(); t++) {
+            maxDelayPerFlow.put(traffic.get(t), block[t]);
         }
 
     }
 
-    private void addMinDelayPerFlow(GRBModel model) throws GRBException {
+    private void addMinDelayPerFlow(IlpModel model) {
         minDelayPerFlow = new HashMap<>();
-        int flowCnt = 0;
-        for (NprTraffic flow : traffic) {
-            minDelayPerFlow.put(flow, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER, "minDelay_" + flowCnt));
-            flowCnt++;
+        IlpVar[] block = model.addVars(traffic.size(), 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                t -> "minDelay_" + t);
+        for (int t = 0; t < traffic.size(); t++) {
+            minDelayPerFlow.put(traffic.get(t), block[t]);
         }
     }
 
-    private void addDelay(GRBModel model) throws GRBException {
+    private void addDelay(IlpModel model) {
         delay = new HashMap<>();
-        int trafficCnt = 0;
-        for (NprTraffic flow : traffic) {
-            Map<TopologyVertex, GRBVar> dstToVar = new HashMap<>();
-            for (TopologyVertex dst : flow.getEgressNodes()) {
-                String name = "delay_" + trafficCnt + "_dst=" + dst.toString();
-                dstToVar.put(dst, model.addVar(0.0, Double.MAX_VALUE, 0.0, GRB.INTEGER, name));
+        for (int t = 0; t < traffic.size(); t++) {
+            final int trafficCnt = t;
+            NprTraffic flow = traffic.get(t);
+            TopologyVertex[] dsts = flow.getEgressNodes().toArray(new TopologyVertex[0]);
+            IlpVar[] block = model.addVars(dsts.length, 0.0, Double.MAX_VALUE, 0.0, IlpVarType.INTEGER,
+                    d -> "delay_" + trafficCnt + "_dst=" + dsts[d].toString());
+            Map<TopologyVertex, IlpVar> dstToVar = new HashMap<>();
+            for (int d = 0; d < dsts.length; d++) {
+                dstToVar.put(dsts[d], block[d]);
             }
             delay.put(flow, dstToVar);
-            trafficCnt++;
         }
     }
 
-    private void addU(GRBModel model) throws GRBException {
+    private void addU(IlpModel model) {
         u = new HashMap<>();
-        int flowCnt = 0;
-        for (NprTraffic flow : traffic) {
-            Map<TopologyVertex, GRBVar> vertToVar = new HashMap<>();
-            for (TopologyVertex vertex : nodes) {
-                vertToVar.put(vertex, model.addVar(0.0, nodes.size() - 1, 0.0, GRB.INTEGER,
-                        "u_" + flowCnt + "_vert=" + vertex
-                        .toString()));
+        for (int t = 0; t < traffic.size(); t++) {
+            final int flowCnt = t;
+            IlpVar[] block = model.addVars(graph.getNumVertices(), 0.0, nodes.size() - 1, 0.0, IlpVarType.INTEGER,
+                    v -> "u_" + flowCnt + "_vert=" + graph.getVertex(v).toString());
+            Map<TopologyVertex, IlpVar> vertToVar = new HashMap<>();
+            for (int v = 0; v < block.length; v++) {
+                vertToVar.put(graph.getVertex(v), block[v]);
             }
-            u.put(flow, vertToVar);
-            flowCnt++;
+            u.put(traffic.get(t), vertToVar);
         }
     }
 
-    private void addLEdgeUsedForDestination(GRBModel model) throws GRBException {
+    private void addLEdgeUsedForDestination(IlpModel model) {
         lEdgeUsedForDestination = new HashMap<>();
-        int trafficCnt = 0;
-        for (NprTraffic flow : traffic) {
-            Map<TopologyVertex, Map<TopologyEdge, GRBVar>> dstToEdge = new HashMap<>();
+        for (int t = 0; t < traffic.size(); t++) {
+            final int trafficCnt = t;
+            NprTraffic flow = traffic.get(t);
+            Map<TopologyVertex, Map<TopologyEdge, IlpVar>> dstToEdge = new HashMap<>();
             for (TopologyVertex dst : flow.getEgressNodes()) { // logical edge s->dst
-                Map<TopologyEdge, GRBVar> edgeToVar = new HashMap<>();
-                for (TopologyEdge edge : edges) {
-                    String name = "l_" + trafficCnt + '_' + dst.deviceId().toString() + '_' + edge.src()
-                                                                                                  .deviceId()
-                                                                                                  .toString() + "->" + edge
-                                          .dst()
-                                          .deviceId()
-                                          .toString();
-                    edgeToVar.put(edge, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-                }
-                dstToEdge.put(dst, edgeToVar);
+                IlpVar[] block = model.addVars(graph.getNumEdges(), 0.0, 1.0, 0.0, IlpVarType.BINARY, e -> {
+                    TopologyEdge edge = graph.getEdge(e);
+                    return "l_" + trafficCnt + '_' + dst.deviceId().toString() + '_' + edge.src()
+                                                                                           .deviceId()
+                                                                                           .toString() + "->" + edge
+                            .dst()
+                            .deviceId()
+                            .toString();
+                });
+                dstToEdge.put(dst, toEdgeMap(block));
             }
             lEdgeUsedForDestination.put(flow, dstToEdge);
-            trafficCnt++;
         }
     }
 
-    public GRBVar getIsEdgeUsedAtAllForFlow(NprTraffic flow, TopologyEdge edge) {
+    /**
+     * @param block variables indexed by the edge ids of the graph
+     * @return edge -> variable
+     */
+    private Map<TopologyEdge, IlpVar> toEdgeMap(IlpVar[] block) {
+        Map<TopologyEdge, IlpVar> edgeToVar = new HashMap<>(2 * block.length);
+        for (int e = 0; e < block.length; e++) {
+            edgeToVar.put(graph.getEdge(e), block[e]);
+        }
+        return edgeToVar;
+    }
+
+    public IlpVar getIsEdgeUsedAtAllForFlow(NprTraffic flow, TopologyEdge edge) {
         return lEdgeUsedAtAll.get(flow).get(edge);
     }
 
-    public GRBVar getMaxDelayForFlow(NprTraffic flow) {
+    public IlpVar getMaxDelayForFlow(NprTraffic flow) {
         return maxDelayPerFlow.get(flow);
     }
 
-    public GRBVar getMinDelayForFlow(NprTraffic flow) {
+    public IlpVar getMinDelayForFlow(NprTraffic flow) {
         return minDelayPerFlow.get(flow);
     }
 
-    public GRBVar getDelayForFlowAndDestination(NprTraffic flow, TopologyVertex dst) {
+    public IlpVar getDelayForFlowAndDestination(NprTraffic flow, TopologyVertex dst) {
         return delay.get(flow).get(dst);
     }
 
-    public void addLEdgeUsedAtAll(GRBModel model) throws GRBException {
+    public void addLEdgeUsedAtAll(IlpModel model) {
         lEdgeUsedAtAll = new HashMap<>();
-        int trafficCnt = 0;
-        for (NprTraffic flow : traffic) {
-            Map<TopologyEdge, GRBVar> edgeToVar = new HashMap<>();
-            for (TopologyEdge edge : edges) {
-                String name = "lAtAll_" + trafficCnt + '_' + edge.src().deviceId().toString() + "->" + edge.dst()
-                                                                                                           .deviceId()
-                                                                                                           .toString();
-                edgeToVar.put(edge, model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name));
-            }
-            lEdgeUsedAtAll.put(flow, edgeToVar);
-            trafficCnt++;
+        for (int t = 0; t < traffic.size(); t++) {
+            final int trafficCnt = t;
+            IlpVar[] block = model.addVars(graph.getNumEdges(), 0.0, 1.0, 0.0, IlpVarType.BINARY, e -> {
+                TopologyEdge edge = graph.getEdge(e);
+                return "lAtAll_" + trafficCnt + '_' + edge.src().deviceId().toString() + "->" + edge.dst()
+                                                                                                    .deviceId()
+                                                                                                    .toString();
+            });
+            lEdgeUsedAtAll.put(traffic.get(t), toEdgeMap(block));
         }
     }
 
     @Override
-    protected void addObjective(GRBModel model) throws GRBException {
-        GRBLinExpr objExpr = new GRBLinExpr();
+    protected void addObjective(IlpModel model) {
+        IlpLinExpr objExpr = new IlpLinExpr();
 
 
-        GRBLinExpr deviations = new GRBLinExpr();
+        IlpLinExpr deviations = new IlpLinExpr();
         for (NprTraffic flow : traffic) {
             deviations.addTerm(1.0, maxDelayPerFlow.get(flow));
             deviations.addTerm(-1.0, minDelayPerFlow.get(flow));
@@ -199,7 +287,7 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
                         objExpr.addTerm(1.0, delay.get(flow).get(dst));
                     }
                 }
-                model.setObjective(objExpr, GRB.MINIMIZE);
+                model.setObjective(objExpr, IlpModel.MINIMIZE);
                 break;
             case DELAY_REDUCTION_PER_DST_SUM_MULTI:
                 for (NprTraffic flow : traffic) {
@@ -225,7 +313,7 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
     }
 
     @Override
-    protected void addConstraints(GRBModel model) throws GRBException {
+    protected void addConstraints(IlpModel model) {
 
         // ensure tree construction
         addInDegreeLessEqualOneConstraint(model);
@@ -248,70 +336,65 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
 
     }
 
-    public void addInDegreeLessEqualOneConstraint(GRBModel model) throws GRBException {
+    public void addInDegreeLessEqualOneConstraint(IlpModel model) {
         // tree is build (in-degree <= 1)
         for (NprTraffic flow : traffic) {
-            for (TopologyVertex vert : nodes) {
-                GRBLinExpr lSum = new GRBLinExpr();
-                for (TopologyEdge edge : edges) {
-                    if (edge.dst().equals(vert)) {
-                        lSum.addTerm(1.0, lEdgeUsedAtAll.get(flow).get(edge));
-                    }
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpLinExpr lSum = new IlpLinExpr();
+                for (int k = 0; k < graph.getInDegree(v); k++) {
+                    lSum.addTerm(1.0, lEdgeUsedAtAll.get(flow).get(graph.getEdge(graph.getInEdge(v, k))));
                 }
-                model.addConstr(lSum, GRB.LESS_EQUAL, 1, "");
+                model.addConstr(lSum, IlpSense.LESS_EQUAL, 1, "");
             }
         }
     }
 
-    public void addMTZConstraints(GRBModel model) throws GRBException {
+    public void addMTZConstraints(IlpModel model) {
         // MTZ -> avoid (disconnected) cycles
         for (NprTraffic flow : traffic) {
             for (TopologyVertex vertex : nodes) {
                 if (vertex.equals(flow.getIngressNode())) {
-                    model.addConstr(u.get(flow).get(flow.getIngressNode()), GRB.EQUAL, 0.0, "");
+                    model.addConstr(u.get(flow).get(flow.getIngressNode()), IlpSense.EQUAL, 0.0, "");
 
                 } else {
-                    model.addConstr(u.get(flow).get(vertex), GRB.LESS_EQUAL, nodes.size() - 1, "");
-                    model.addConstr(u.get(flow).get(vertex), GRB.GREATER_EQUAL, 1.0, "");
+                    model.addConstr(u.get(flow).get(vertex), IlpSense.LESS_EQUAL, nodes.size() - 1, "");
+                    model.addConstr(u.get(flow).get(vertex), IlpSense.GREATER_EQUAL, 1.0, "");
                 }
 
             }
 
             for (TopologyEdge edge : edges) {
-                GRBLinExpr lhs = new GRBLinExpr();
+                IlpLinExpr lhs = new IlpLinExpr();
                 lhs.addTerm(1.0, u.get(flow).get(edge.src()));
                 lhs.addTerm(-1.0, u.get(flow).get(edge.dst()));
                 lhs.addConstant(1.0);
 
-                GRBLinExpr rhsWithoutMul = new GRBLinExpr();
+                IlpLinExpr rhsWithoutMul = new IlpLinExpr();
                 rhsWithoutMul.addConstant(1.0);
                 rhsWithoutMul.addTerm(-1.0, lEdgeUsedAtAll.get(flow).get(edge));
 
-                GRBLinExpr rhs = new GRBLinExpr();
+                IlpLinExpr rhs = new IlpLinExpr();
                 rhs.multAdd(nodes.size(), rhsWithoutMul);
 
-                model.addConstr(lhs, GRB.LESS_EQUAL, rhs, "lel");
+                model.addConstr(lhs, IlpSense.LESS_EQUAL, rhs, "lel");
             }
         }
     }
 
-    public void addDelayConstraints(GRBModel model) throws GRBException {
+    public void addDelayConstraints(IlpModel model) {
         // delay stuff
+        delayConstrs.clear();
         int flowCnt = 0;
         for (NprTraffic flow : traffic) {
             // delay per dst
             for (TopologyVertex dst : flow.getEgressNodes()) {
-                GRBLinExpr sum = new GRBLinExpr();
-                for (TopologyEdge edge : edges) {
-                    sum.addTerm(linkWeigher.getDelay(edge), lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                }
-                String name = "constr_delay_" + flowCnt + "_dst=" + dst.toString();
-                model.addConstr(delay.get(flow).get(dst), GRB.EQUAL, sum, name);
+                IlpName name = IlpName.of("constr_delay_", flowCnt, "_dst=", dst);
+                delayConstrs.add(model.addConstr(delay.get(flow).get(dst), IlpSense.EQUAL, delayExpr(flow, dst), name));
                 // min max delay constr only work with this goal
                 if (goal == OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION) {
-                    model.addConstr(maxDelayPerFlow.get(flow), GRB.GREATER_EQUAL, delay.get(flow).get(dst), "");
+                    model.addConstr(maxDelayPerFlow.get(flow), IlpSense.GREATER_EQUAL, delay.get(flow).get(dst), "");
 
-                    model.addConstr(minDelayPerFlow.get(flow), GRB.LESS_EQUAL, delay.get(flow).get(dst), "");
+                    model.addConstr(minDelayPerFlow.get(flow), IlpSense.LESS_EQUAL, delay.get(flow).get(dst), "");
                 }
 
             }
@@ -320,14 +403,14 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
                 //max delay
                 model.addGenConstrMax(maxDelayPerFlow.get(flow), delay.get(flow)
                                                                       .values()
-                                                                      .toArray(new GRBVar[0]), 0.0,
+                                                                      .toArray(new IlpVar[0]), 0.0,
                         "constr_maxDelay" + flowCnt);
 
 
                 // min delay
                 model.addGenConstrMin(minDelayPerFlow.get(flow), delay.get(flow)
                                                                       .values()
-                                                                      .toArray(new GRBVar[0]), Double.MAX_VALUE,
+                                                                      .toArray(new IlpVar[0]), Double.MAX_VALUE,
                         "constr_minDelay" + flowCnt);
             }
 
@@ -336,108 +419,104 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
         }
     }
 
-    public void addDecisionVariableConnectionConstraints(GRBModel model) throws GRBException {
+    /**
+     * @return the delay of the flow to dst, i.e. the delays of the links used for dst
+     */
+    private IlpLinExpr delayExpr(NprTraffic flow, TopologyVertex dst) {
+        IlpLinExpr sum = new IlpLinExpr();
+        for (TopologyEdge edge : edges) {
+            sum.addTerm(linkWeigher.getDelay(edge), lEdgeUsedForDestination.get(flow).get(dst).get(edge));
+        }
+        return sum;
+    }
+
+    public void addDecisionVariableConnectionConstraints(IlpModel model) {
         int flowCnt = 0;
         for (NprTraffic flow : traffic) {
             for (TopologyEdge edge : edges) {
                 // l_t <= l_{t;d}
                 for (TopologyVertex dst : flow.getEgressNodes()) {
-                    GRBLinExpr lExpr = new GRBLinExpr();
+                    IlpLinExpr lExpr = new IlpLinExpr();
                     lExpr.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                    String name = "constr_l_{t;d}<=l_t" + flowCnt + '_' + edge.src().deviceId().toString() + "->" + edge
-                            .dst()
-                            .deviceId()
-                            .toString();
+                    IlpName name = IlpName.of("constr_l_{t;d}<=l_t", flowCnt, '_', edge.src().deviceId(), "->",
+                            edge.dst().deviceId());
 
-                    model.addConstr(lExpr, GRB.LESS_EQUAL, lEdgeUsedAtAll.get(flow).get(edge), name);
+                    model.addConstr(lExpr, IlpSense.LESS_EQUAL, lEdgeUsedAtAll.get(flow).get(edge), name);
                 }
 
                 // l <= sumL_d
-                GRBLinExpr lSum = new GRBLinExpr();
+                IlpLinExpr lSum = new IlpLinExpr();
                 for (TopologyVertex dst : flow.getEgressNodes()) {
                     lSum.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
                 }
 
-                String name = "constr_l_{t;d}<=sum_l_t_" + flowCnt + '_' + edge.src()
-                                                                               .deviceId()
-                                                                               .toString() + "->" + edge.dst()
-                                                                                                        .deviceId()
-                                                                                                        .toString();
+                IlpName name = IlpName.of("constr_l_{t;d}<=sum_l_t_", flowCnt, '_', edge.src().deviceId(), "->",
+                        edge.dst().deviceId());
 
-                model.addConstr(lEdgeUsedAtAll.get(flow).get(edge), GRB.LESS_EQUAL, lSum, name);
+                model.addConstr(lEdgeUsedAtAll.get(flow).get(edge), IlpSense.LESS_EQUAL, lSum, name);
             }
             flowCnt++;
         }
     }
 
-    public void addLinkCapacityConstraint(GRBModel model) throws GRBException {
+    public void addLinkCapacityConstraint(IlpModel model) {
         // link capacity not exceeded
+        capacityConstrs.clear();
         for (TopologyEdge edge : edges) {
-            GRBLinExpr expr = new GRBLinExpr();
+            IlpLinExpr expr = new IlpLinExpr();
             for (NprTraffic flow : traffic) {
                 expr.addTerm(flow.getDemand(), lEdgeUsedAtAll.get(flow).get(edge));
             }
-            String name = "constr_cap_not_exc_" + edge.src().deviceId().toString() + "->" + edge.dst()
-                                                                                                .deviceId()
-                                                                                                .toString();
-            model.addConstr(expr, GRB.LESS_EQUAL, linkWeigher.getBandwidth(edge), name);
+            IlpName name = IlpName.of("constr_cap_not_exc_", edge.src().deviceId(), "->", edge.dst().deviceId());
+            capacityConstrs.add(model.addConstr(expr, IlpSense.LESS_EQUAL, linkWeigher.getBandwidth(edge), name));
         }
     }
 
-    public void addSourceFlowConservation(GRBModel model) throws GRBException {
+    public void addSourceFlowConservation(IlpModel model) {
         //  source flow conservation
         int flowCnt = 0;
         for (NprTraffic flow : traffic) {
+            int ingress = graph.getVertexId(flow.getIngressNode());
             for (TopologyVertex dst : flow.getEgressNodes()) {
-                GRBLinExpr fromIngress = new GRBLinExpr();
-                GRBLinExpr toIngress = new GRBLinExpr();
-                for (TopologyEdge edge : edges) {
-                    if (edge.src().equals(flow.getIngressNode())) {
-                        fromIngress.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                    } else if (edge.dst().equals(flow.getIngressNode())) {
-                        toIngress.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                    }
-                }
+                IlpLinExpr fromIngress = new IlpLinExpr();
+                IlpLinExpr toIngress = new IlpLinExpr();
+                addIncidentEdges(fromIngress, toIngress, ingress, lEdgeUsedForDestination.get(flow).get(dst));
 
-                GRBLinExpr minusExpr = new GRBLinExpr();
+                IlpLinExpr minusExpr = new IlpLinExpr();
                 minusExpr.add(fromIngress);
                 minusExpr.multAdd(-1.0, toIngress);
-                String name = "constr_src_cons_" + flowCnt + '_' + dst.deviceId().toString();
-                model.addConstr(minusExpr, GRB.EQUAL, 1.0, name);
+                IlpName name = IlpName.of("constr_src_cons_", flowCnt, '_', dst.deviceId());
+                model.addConstr(minusExpr, IlpSense.EQUAL, 1.0, name);
             }
             flowCnt++;
         }
     }
 
-    public void addDestinationFlowConservation(GRBModel model) throws GRBException {
+    public void addDestinationFlowConservation(IlpModel model) {
         int flowCnt = 0;
         for (NprTraffic flow : traffic) {
             for (TopologyVertex dst : flow.getEgressNodes()) {
-                GRBLinExpr fromDst = new GRBLinExpr();
-                GRBLinExpr toDst = new GRBLinExpr();
-                for (TopologyEdge edge : edges) {
-                    if (edge.src().equals(dst)) {
-                        fromDst.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                    } else if (edge.dst().equals(dst)) {
-                        toDst.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                    }
-                }
+                IlpLinExpr fromDst = new IlpLinExpr();
+                IlpLinExpr toDst = new IlpLinExpr();
+                addIncidentEdges(fromDst, toDst, graph.getVertexId(dst), lEdgeUsedForDestination.get(flow).get(dst));
 
-                GRBLinExpr minusExpr = new GRBLinExpr();
+                IlpLinExpr minusExpr = new IlpLinExpr();
                 minusExpr.add(toDst);
                 minusExpr.multAdd(-1.0, fromDst);
-                String name = "constr_dst_cons_" + flowCnt + '_' + dst.deviceId().toString();
-                model.addConstr(minusExpr, GRB.EQUAL, 1.0, name);
+                IlpName name = IlpName.of("constr_dst_cons_", flowCnt, '_', dst.deviceId());
+                model.addConstr(minusExpr, IlpSense.EQUAL, 1.0, name);
             }
         }
     }
 
-    public void addTransitFlowConservation(GRBModel model) throws GRBException {
+    public void addTransitFlowConservation(IlpModel model) {
         // transit node flow conservation
         int flowCnt = 0;
         for (NprTraffic flow : traffic) {
             for (TopologyVertex dst : flow.getEgressNodes()) {
-                for (TopologyVertex vert : nodes) {
+                Map<TopologyEdge, IlpVar> lForDst = lEdgeUsedForDestination.get(flow).get(dst);
+                for (int v = 0; v < graph.getNumVertices(); v++) {
+                    TopologyVertex vert = graph.getVertex(v);
                     // source node is no transit node
                     if (flow.getIngressNode().equals(vert)) {
                         continue;
@@ -447,21 +526,14 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
                         continue;
                     }
 
-                    GRBLinExpr toVert = new GRBLinExpr();
-                    GRBLinExpr fromVert = new GRBLinExpr();
+                    IlpLinExpr toVert = new IlpLinExpr();
+                    IlpLinExpr fromVert = new IlpLinExpr();
 
-                    for (TopologyEdge edge : edges) {
-                        if (edge.dst().equals(vert)) {
-                            toVert.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                        } else if (edge.src().equals(vert)) {
-                            fromVert.addTerm(1.0, lEdgeUsedForDestination.get(flow).get(dst).get(edge));
-                        }
-                    }
+                    addIncidentEdges(fromVert, toVert, v, lForDst);
 
-                    String name = "constr_dupl_" + flowCnt + "dst=" + dst.deviceId()
-                                                                         .toString() + "vert=" + vert.deviceId()
-                                                                                                     .toString();
-                    model.addConstr(fromVert, GRB.EQUAL, toVert, name);
+                    IlpName name = IlpName.of("constr_dupl_", flowCnt, "dst=", dst.deviceId(), "vert=",
+                            vert.deviceId());
+                    model.addConstr(fromVert, IlpSense.EQUAL, toVert, name);
 
                 }
             }
@@ -469,13 +541,71 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
         }
     }
 
+    /**
+     * Adds the variables of all edges leaving the vertex to out and the variables of all edges entering it to in. Only
+     * the adjacency of the vertex is visited, self-loops are counted as outgoing edges.
+     *
+     * @param out      expression for the outgoing edges
+     * @param in       expression for the incoming edges
+     * @param vertexId the id of the vertex in the graph of the request
+     * @param edgeVars the edge variables
+     */
+    private void addIncidentEdges(IlpLinExpr out, IlpLinExpr in, int vertexId, Map<TopologyEdge, IlpVar> edgeVars) {
+        for (int k = 0; k < graph.getOutDegree(vertexId); k++) {
+            out.addTerm(1.0, edgeVars.get(graph.getEdge(graph.getOutEdge(vertexId, k))));
+        }
+        for (int k = 0; k < graph.getInDegree(vertexId); k++) {
+            int edgeId = graph.getInEdge(vertexId, k);
+            if (graph.getSrc(edgeId) != vertexId) {
+                in.addTerm(1.0, edgeVars.get(graph.getEdge(edgeId)));
+            }
+        }
+    }
+
+    /**
+     * Maps the previous solution onto the edge (l) and delay variables. The edge variables of a flow only get start
+     * values if all of its previous edges still exist.
+     */
+    @Override
+    protected void addStart(NfvPlacementSolution start, IlpModel model) {
+        for (NprTraffic flow : traffic) {
+            NprTraffic previous = findPreviousFlow(start, flow);
+            if (previous == null) {
+                continue;
+            }
+
+            int[] usedEdges = graph.mapEdges(start.getSolutionEdgesByTraffic(previous));
+            if (usedEdges != null) {
+                Map<TopologyEdge, IlpVar> lForFlow = lEdgeUsedAtAll.get(flow);
+                for (IlpVar var : lForFlow.values()) {
+                    model.setStart(var, 0.0);
+                }
+                for (int e : usedEdges) {
+                    model.setStart(lForFlow.get(graph.getEdge(e)), 1.0);
+                }
+            }
+
+            Map<TopologyVertex, Double> delays = start.getDelaysOfFlow(previous);
+            if (delays == null) {
+                continue;
+            }
+            for (Map.Entry<TopologyVertex, Double> entry : delays.entrySet()) {
+                int v = graph.getVertexId(entry.getKey().deviceId());
+                IlpVar var = v < 0 ? null : delay.get(flow).get(graph.getVertex(v));
+                if (var != null) {
+                    model.setStart(var, entry.getValue());
+                }
+            }
+        }
+    }
+
     @Override
-    protected NfvPlacementSolution extractSolution(GRBModel model) throws GRBException {
+    protected NfvPlacementSolution extractSolution(IlpResult result) {
         print("\nThis is the solution.");
-        print("value: " + model.get(GRB.DoubleAttr.ObjVal));
+        print("value: " + result.getObjVal());
 
         double varValue;
-        GRBVar var;
+        IlpVar var;
         int deviationSum = 0;
         int delaySum = 0;
         int networkLoad = 0;
@@ -486,11 +616,11 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
             print(flow.toString());
 
             for (TopologyVertex dst : flow.getEgressNodes()) {
-                delaySum += Math.round(delay.get(flow).get(dst).get(GRB.DoubleAttr.X));
+                delaySum += Math.round(result.getValue(delay.get(flow).get(dst)));
             }
 
-            double minDelayOfFlow = Math.round(minDelayPerFlow.get(flow).get(GRB.DoubleAttr.X));
-            double maxDelayOfFlow = Math.round(maxDelayPerFlow.get(flow).get(GRB.DoubleAttr.X));
+            double minDelayOfFlow = Math.round(result.getValue(minDelayPerFlow.get(flow)));
+            double maxDelayOfFlow = Math.round(result.getValue(maxDelayPerFlow.get(flow)));
             maxDelayMap.put(flow, maxDelayOfFlow);
 
             deviationSum -= minDelayOfFlow;
@@ -501,7 +631,7 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
             print("  maxDelay:" + maxDelayOfFlow);
 
             for (TopologyVertex vert : flow.getEgressNodes()) {
-                print("  delay for " + vert.toString() + "=" + delay.get(flow).get(vert).get(GRB.DoubleAttr.X));
+                print("  delay for " + vert.toString() + "=" + result.getValue(delay.get(flow).get(vert)));
             }
 
 
@@ -510,9 +640,9 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
             print("  f:");
             for (TopologyEdge edge : edges) {
                 var = lEdgeUsedAtAll.get(flow).get(edge);
-                varValue = Math.round(var.get(GRB.DoubleAttr.X));
+                varValue = Math.round(result.getValue(var));
                 if (varValue != 0) {
-                    print("    " + var.get(GRB.StringAttr.VarName) + "=" + varValue);
+                    print("    " + result.getModel().getVarName(var) + "=" + varValue);
                     edgesForTraffic.add(edge);
                     networkLoad += flow.getDemand() * varValue;
                 }
@@ -523,15 +653,15 @@ public class TopoSyncPlacementSolver extends AbstractNfvIlpPlacementSolver {
             for (TopologyVertex dst : flow.getEgressNodes()) {
                 for (TopologyEdge edge : edges) {
                     var = lEdgeUsedForDestination.get(flow).get(dst).get(edge);
-                    varValue = Math.round(var.get(GRB.DoubleAttr.X));
+                    varValue = Math.round(result.getValue(var));
                     if (varValue != 0) {
-                        print("    " + var.get(GRB.StringAttr.VarName) + "=" + varValue);
+                        print("    " + result.getModel().getVarName(var) + "=" + varValue);
                     }
                 }
             }
         }
 
-        return new NfvPlacementSolution(solutionEdges, new HashMap<>(), req, goal, model.get(GRB.DoubleAttr.ObjNVal),
+        return new NfvPlacementSolution(solutionEdges, new HashMap<>(), req, goal, result.getObjVal(),
                 deviationSum, delaySum, networkLoad, deviationMap, maxDelayMap,
                 NfvPlacementSolution.SolutionType.TOPOSYNC);
     }
@@ -1,27 +1,46 @@
 package thesiscode.common.nfv.placement.solver.mfcp.used;
 
-import gurobi.*;
-import org.onosproject.net.topology.TopologyEdge;
-import org.onosproject.net.topology.TopologyVertex;
+import gurobi.GRBEnv;
 import org.slf4j.Logger;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpName;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVarType;
 import thesiscode.common.nfv.traffic.NprTraffic;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
- * The implementation of TopoSyncSFC. Ensures that a tree is constructed per logical edge.
+ * The implementation of TopoSyncSFC. Ensures that a tree is constructed per logical edge, either by MTZ constraints or
+ * by lazily separated subtour elimination constraints, see {@link TreeMode}.
  */
 public class TopoSyncSFCPlacementSolver extends SfcPlacementSolver {
+    /**
+     * How the SFC flows are forced to use trees.
+     */
+    public enum TreeMode {
+        /**
+         * Miller-Tucker-Zemlin ordering variables and constraints, the trees are enforced by the model itself.
+         */
+        MTZ,
+        /**
+         * No ordering variables. Cycles are cut off by subtour elimination constraints which are only added once an
+         * incumbent or a node relaxation contains them, see {@link TreeCycleSeparator}.
+         */
+        LAZY
+    }
+
+    private TreeMode treeMode = TreeMode.MTZ;
+    private TreeMode builtTreeMode; // the mode the current model was built with
+
     /*
      * MTZ variables
      */
-    // flow -> logical edge -> node -> node number
-    private List<List<Map<TopologyVertex, GRBVar>>> u;
+    // index.vertex(flow, logical edge, node) -> node number
+    private IlpVar[] u;
 
     /**
      * Creates a new TPLSfcPlacementSolver.
@@ -61,83 +80,109 @@ public class TopoSyncSFCPlacementSolver extends SfcPlacementSolver {
     }
 
 
+    public TreeMode getTreeMode() {
+        return treeMode;
+    }
+
+    /**
+     * Sets how the trees are enforced for the following requests. A kept model built with another mode is rebuilt.
+     *
+     * @param treeMode the tree mode, {@link TreeMode#MTZ} by default
+     */
+    public void setTreeMode(TreeMode treeMode) {
+        this.treeMode = treeMode;
+    }
+
     @Override
-    protected void addTreeVariables(GRBModel model) throws GRBException {
-        u = new ArrayList<>();
-        for (int i = 0; i < trafficSfc.size(); i++) {
-            NprTraffic flow = trafficSfc.get(i);
+    protected boolean updateModel(NfvPlacementRequest req, IlpModel model) {
+        return builtTreeMode == treeMode && super.updateModel(req, model);
+    }
 
-            ArrayList<Map<TopologyVertex, GRBVar>> logicalEdgeToMap = new ArrayList<>();
-            for (int j = 0; j <= flow.getSfc().size(); j++) {
-                Map<TopologyVertex, GRBVar> vertToNumber = new HashMap<>();
-                for (TopologyVertex vert : nodes) {
-                    vertToNumber.put(vert, model.addVar(0.0, nodes.size() - 1, 0.0, GRB.INTEGER,
-                            "u_" + i + "_" + j + "_vert=" + vert
-                            .toString()));
-                }
-                logicalEdgeToMap.add(vertToNumber);
-            }
-            u.add(logicalEdgeToMap);
+    @Override
+    protected void addTreeVariables(IlpModel model) {
+        builtTreeMode = treeMode;
+        if (treeMode == TreeMode.LAZY) {
+            u = null;
+            model.setLazyConstraintSeparator(new TreeCycleSeparator(graph, index, fForLogical));
+            return;
+        }
+        // there are as many logical edges as logical nodes without the destination, so u shares the layout of p_t^k(v)
+        u = new IlpVar[index.getVertexSize()];
+        int numVertices = graph.getNumVertices();
+        for (int t = 0; t < trafficSfc.size(); t++) {
+            final int flowIndex = t;
+            NprTraffic flow = trafficSfc.get(t);
+            // [logical edge][vertex]
+            IlpVar[] block = model.addVars((flow.getSfc().size() + 1) * numVertices, 0.0, nodes.size() - 1, 0.0,
+                    IlpVarType.INTEGER, i -> "u_" + flowIndex + "_" + (i / numVertices) + "_vert=" + graph.getVertex(
+                            i % numVertices).toString());
+            System.arraycopy(block, 0, u, index.vertex(t, 0, 0), block.length);
         }
     }
 
     @Override
-    protected void addMTZConstraints(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    protected void addMTZConstraints(IlpModel model, NprTraffic flow, int flowIndex) {
+        if (treeMode == TreeMode.LAZY) {
+            // separated by the TreeCycleSeparator
+            return;
+        }
         // MTZ
-        for (int j = 0; j < u.get(flowIndex).size(); j++) {
-            for (TopologyVertex vertex : nodes) {
-                GRBLinExpr rhsSource = new GRBLinExpr(); // (|V|-1)*(1-p_t^k(v))
+        for (int j = 0; j <= flow.getSfc().size(); j++) {
+            for (int v = 0; v < graph.getNumVertices(); v++) {
+                IlpVar uVar = u[index.vertex(flowIndex, j, v)];
 
-                GRBLinExpr rhsWithoutMult = new GRBLinExpr(); // (1-p_t^k(v))
-                rhsWithoutMult.addTerm(-1.0, pPlacedForFlow.get(flowIndex).get(j).get(vertex));
+                IlpLinExpr rhsSource = new IlpLinExpr(); // (|V|-1)*(1-p_t^k(v))
+
+                IlpLinExpr rhsWithoutMult = new IlpLinExpr(); // (1-p_t^k(v))
+                rhsWithoutMult.addTerm(-1.0, pPlacedForFlow[index.vertex(flowIndex, j, v)]);
                 rhsWithoutMult.addConstant(1.0);
 
                 rhsSource.multAdd(nodes.size() - 1, rhsWithoutMult);
 
 
-                model.addConstr(u.get(flowIndex)
-                                 .get(j)
-                                 .get(vertex), GRB.LESS_EQUAL, rhsSource,
-                        "u_t^{(k,l)}(v)<=(|V|-1)*(1-p_t^k(v))_" + flowIndex + "_" + j + "_vert=" + vertex
-                        .toString());
+                model.addConstr(uVar, IlpSense.LESS_EQUAL, rhsSource,
+                        IlpName.of("u_t^{(k,l)}(v)<=(|V|-1)*(1-p_t^k(v))_", flowIndex, "_", j, "_vert=",
+                                graph.getVertex(v)));
 
 
-                model.addConstr(u.get(flowIndex).get(j).get(vertex), GRB.LESS_EQUAL, nodes.size() - 1, "eho");
-                model.addConstr(u.get(flowIndex).get(j).get(vertex), GRB.GREATER_EQUAL, rhsWithoutMult, "oha");
+                model.addConstr(uVar, IlpSense.LESS_EQUAL, nodes.size() - 1, "eho");
+                model.addConstr(uVar, IlpSense.GREATER_EQUAL, rhsWithoutMult, "oha");
 
             }
 
-            for (TopologyEdge edge : edges) {
-                GRBLinExpr lhs = new GRBLinExpr();
-                lhs.addTerm(1.0, u.get(flowIndex).get(j).get(edge.src()));
-                lhs.addTerm(-1.0, u.get(flowIndex).get(j).get(edge.dst()));
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                IlpLinExpr lhs = new IlpLinExpr();
+                lhs.addTerm(1.0, u[index.vertex(flowIndex, j, graph.getSrc(e))]);
+                lhs.addTerm(-1.0, u[index.vertex(flowIndex, j, graph.getDst(e))]);
                 lhs.addConstant(1.0);
 
-                GRBLinExpr rhsWithoutMul = new GRBLinExpr();
+                IlpLinExpr rhsWithoutMul = new IlpLinExpr();
                 rhsWithoutMul.addConstant(1.0);
-                rhsWithoutMul.addTerm(-1.0, fForLogical.get(flowIndex).get(j).get(edge));
+                rhsWithoutMul.addTerm(-1.0, fForLogical[index.edge(flowIndex, j, e)]);
 
-                GRBLinExpr rhs = new GRBLinExpr();
+                IlpLinExpr rhs = new IlpLinExpr();
                 rhs.multAdd(nodes.size(), rhsWithoutMul);
 
-                model.addConstr(lhs, GRB.LESS_EQUAL, rhs, "");
+                model.addConstr(lhs, IlpSense.LESS_EQUAL, rhs, "");
             }
         }
     }
 
     @Override
-    protected void addInDegreeLessEqualOneConstraint(GRBModel model, NprTraffic flow, int flowIndex) throws GRBException {
+    protected void addInDegreeLessEqualOneConstraint(IlpModel model, NprTraffic flow, int flowIndex) {
         // in-degree <= 1
-        for (TopologyVertex vert : nodes) {
+        for (int v = 0; v < graph.getNumVertices(); v++) {
             // logical edges
             for (int j = 0; j <= flow.getSfc().size(); j++) {
-                GRBLinExpr sum = new GRBLinExpr();
-                for (TopologyEdge edge : edges) {
-                    if (edge.dst().equals(vert)) {
-                        sum.addTerm(1.0, fForLogical.get(flowIndex).get(j).get(edge));
-                    }
+                IlpLinExpr sum = new IlpLinExpr();
+                for (int k = 0; k < graph.getInDegree(v); k++) {
+                    sum.addTerm(1.0, fForLogical[index.edge(flowIndex, j, graph.getInEdge(v, k))]);
+                }
+                if (treeMode == TreeMode.LAZY) {
+                    // the root of the tree has in-degree 0, which the MTZ constraints imply
+                    sum.addTerm(1.0, pPlacedForFlow[index.vertex(flowIndex, j, v)]);
                 }
-                model.addConstr(sum, GRB.LESS_EQUAL, 1.0, "");
+                model.addConstr(sum, IlpSense.LESS_EQUAL, 1.0, "");
             }
         }
     }
@@ -0,0 +1,162 @@
+package thesiscode.common.nfv.placement.solver.mfcp.used;
+
+import thesiscode.common.nfv.placement.solver.ilp.IlpCut;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLazyConstraintSeparator;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+import thesiscode.common.topo.CsrTopologyGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Separates the subtour elimination constraints of the trees of the SFC formulation, used instead of the MTZ
+ * constraints by {@link TopoSyncSFCPlacementSolver.TreeMode#LAZY}.
+ * <p>
+ * For every flow t and logical edge j, the edges with f_t^j(e) > 0 form the support graph of the tree. Every strongly
+ * connected component S of it violates sum_{e in S x S} f_t^j(e) <= |S| - 1 if the values of its edges sum up to more
+ * than |S| - 1. In an integral solution (with in-degree <= 1) the components with more than one vertex are exactly the
+ * cycles, so every cycle is cut off. For fractional solutions the components only give a heuristic separation.
+ */
+class TreeCycleSeparator implements IlpLazyConstraintSeparator {
+    private static final double SUPPORT_TOL = 1e-6;
+    private static final double VIOLATION_TOL = 1e-4;
+
+    private final CsrTopologyGraph graph;
+    private final SfcVariableIndex index;
+    private final IlpVar[] fForLogical;
+
+    // Tarjan's algorithm, reused for every support graph
+    private final int[] order;
+    private final int[] lowLink;
+    private final boolean[] onStack;
+    private final int[] stack;
+    private final int[] callStack;
+    private final int[] nextOut;
+    private final int[] component;
+
+    /**
+     * @param graph       the graph of the request
+     * @param index       the variable index of the request
+     * @param fForLogical the variables f_t^{(k,l)}(i,j), laid out by the index
+     */
+    TreeCycleSeparator(CsrTopologyGraph graph, SfcVariableIndex index, IlpVar[] fForLogical) {
+        this.graph = graph;
+        this.index = index;
+        this.fForLogical = fForLogical;
+
+        int numVertices = graph.getNumVertices();
+        order = new int[numVertices];
+        lowLink = new int[numVertices];
+        onStack = new boolean[numVertices];
+        stack = new int[numVertices];
+        callStack = new int[numVertices];
+        nextOut = new int[numVertices];
+        component = new int[numVertices];
+    }
+
+    @Override
+    public List<IlpCut> separate(double[] values, boolean integral) {
+        List<IlpCut> cuts = new ArrayList<>();
+        for (int t = 0; t < index.getNumFlows(); t++) {
+            for (int j = 0; j <= index.getSfcLength(t); j++) {
+                separate(values, t, j, cuts);
+            }
+        }
+        return cuts;
+    }
+
+    private void separate(double[] values, int t, int j, List<IlpCut> cuts) {
+        int numComponents = findComponents(values, t, j);
+
+        // sum of the edge values inside every component and its size
+        double[] inside = new double[numComponents];
+        int[] size = new int[numComponents];
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            size[component[v]]++;
+        }
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            int c = component[graph.getSrc(e)];
+            if (c == component[graph.getDst(e)]) {
+                inside[c] += values[fForLogical[index.edge(t, j, e)].index()];
+            }
+        }
+
+        for (int c = 0; c < numComponents; c++) {
+            if (inside[c] <= size[c] - 1 + VIOLATION_TOL) {
+                continue;
+            }
+            IlpLinExpr lhs = new IlpLinExpr();
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                if (component[graph.getSrc(e)] == c && component[graph.getDst(e)] == c) {
+                    lhs.addTerm(1.0, fForLogical[index.edge(t, j, e)]);
+                }
+            }
+            cuts.add(new IlpCut(lhs, IlpSense.LESS_EQUAL, size[c] - 1));
+        }
+    }
+
+    /**
+     * Iterative version of Tarjan's algorithm on the support graph of flow t and logical edge j.
+     *
+     * @return the number of components, the component of every vertex is stored in {@link #component}
+     */
+    private int findComponents(double[] values, int t, int j) {
+        Arrays.fill(order, -1);
+        int counter = 0;
+        int stackSize = 0;
+        int numComponents = 0;
+
+        for (int root = 0; root < graph.getNumVertices(); root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            order[root] = lowLink[root] = counter++;
+            nextOut[root] = 0;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextOut[v] < graph.getOutDegree(v)) {
+                    int e = graph.getOutEdge(v, nextOut[v]++);
+                    if (values[fForLogical[index.edge(t, j, e)].index()] <= SUPPORT_TOL) {
+                        continue;
+                    }
+                    int w = graph.getDst(e);
+                    if (order[w] < 0) {
+                        order[w] = lowLink[w] = counter++;
+                        nextOut[w] = 0;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], order[w]);
+                    }
+                    continue;
+                }
+
+                // all out edges of v are explored
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == order[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = numComponents;
+                    } while (w != v);
+                    numComponents++;
+                }
+            }
+        }
+        return numComponents;
+    }
+}
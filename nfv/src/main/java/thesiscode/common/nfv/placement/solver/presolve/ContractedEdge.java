@@ -0,0 +1,55 @@
+package thesiscode.common.nfv.placement.solver.presolve;
+
+import org.onosproject.net.Link;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Edge of a reduced request which replaces a chain of edges of the original request, see {@link ReducedRequest}. It
+ * has no link of its own; its delay is the sum and its bandwidth the minimum of the replaced edges. Compared by
+ * identity.
+ */
+public final class ContractedEdge implements TopologyEdge {
+    private final TopologyVertex src;
+    private final TopologyVertex dst;
+    private final List<TopologyEdge> edges;
+
+    /**
+     * @param edges the replaced edges, in order from the source to the destination
+     */
+    ContractedEdge(List<TopologyEdge> edges) {
+        this.src = edges.get(0).src();
+        this.dst = edges.get(edges.size() - 1).dst();
+        this.edges = Collections.unmodifiableList(edges);
+    }
+
+    @Override
+    public TopologyVertex src() {
+        return src;
+    }
+
+    @Override
+    public TopologyVertex dst() {
+        return dst;
+    }
+
+    @Override
+    public Link link() {
+        return null;
+    }
+
+    /**
+     * @return the replaced edges of the original request, in order from the source to the destination
+     */
+    public List<TopologyEdge> getEdges() {
+        return edges;
+    }
+
+    @Override
+    public String toString() {
+        return "ContractedEdge{" + src.deviceId() + "->" + dst.deviceId() + ", " + edges.size() + " edges}";
+    }
+}
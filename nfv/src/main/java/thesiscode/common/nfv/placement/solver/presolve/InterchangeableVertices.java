@@ -0,0 +1,234 @@
+package thesiscode.common.nfv.placement.solver.presolve;
+
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.WrappedPoPVertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects vertices of a request which are interchangeable: swapping any two vertices of a class is an automorphism of
+ * the request, i.e. it maps the graph with all link and PoP attributes and the flows onto themselves. Every solution
+ * can therefore be mapped onto a solution of the same value by permuting the vertices of a class, which lets a solver
+ * restrict the search to one solution per permutation, see
+ * {@link thesiscode.common.nfv.placement.solver.mfcp.used.SfcPlacementSolver#setSymmetryBreaking(boolean)}.
+ * <p>
+ * Only twins are detected: vertices without self-loops which have the same out-neighbours and in-neighbours with edges
+ * of the same delay and bandwidth, the same PoP attributes (deployment costs, VNF delays and resource capacities for
+ * all VNF types used by the flows) and which are egress node of the same flows. Ingress nodes are never
+ * interchangeable. Twins are never adjacent, so any permutation of a class is an automorphism. This covers the PoPs
+ * with identical attributes and the receivers attached to the same switches, but not symmetries of larger subgraphs.
+ */
+public final class InterchangeableVertices {
+    private final List<int[]> classes;
+    // the class of every vertex, -1 if it is not interchangeable
+    private final int[] classOf;
+
+    private InterchangeableVertices(List<int[]> classes, int numVertices) {
+        this.classes = Collections.unmodifiableList(classes);
+        this.classOf = new int[numVertices];
+        Arrays.fill(classOf, -1);
+        for (int c = 0; c < classes.size(); c++) {
+            for (int v : classes.get(c)) {
+                classOf[v] = c;
+            }
+        }
+    }
+
+    /**
+     * Detects the interchangeable vertices of a request.
+     *
+     * @param req the request
+     * @return the classes of interchangeable vertices of the request
+     */
+    public static InterchangeableVertices of(NfvPlacementRequest req) {
+        CsrTopologyGraph graph = req.getGraph();
+        List<NprTraffic> traffic = req.getTraffic();
+        Set<NprNfvTypes.Type> types = EnumSet.noneOf(NprNfvTypes.Type.class);
+        BitSet ingress = new BitSet(graph.getNumVertices());
+        BitSet[] egressOf = new BitSet[graph.getNumVertices()];
+        for (int v = 0; v < egressOf.length; v++) {
+            egressOf[v] = new BitSet(traffic.size());
+        }
+        for (int t = 0; t < traffic.size(); t++) {
+            NprTraffic flow = traffic.get(t);
+            types.addAll(flow.getSfc());
+            ingress.set(graph.getVertexId(flow.getIngressNode()));
+            for (TopologyVertex egress : flow.getEgressNodes()) {
+                egressOf[graph.getVertexId(egress)].set(t);
+            }
+        }
+
+        // vertices with equal signatures are twins, the classes are ordered by their smallest vertex
+        Map<Signature, List<Integer>> twins = new LinkedHashMap<>();
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            if (!ingress.get(v) && !hasSelfLoop(graph, v)) {
+                twins.computeIfAbsent(new Signature(graph, v, types, egressOf[v]), s -> new ArrayList<>()).add(v);
+            }
+        }
+        List<int[]> classes = new ArrayList<>();
+        for (List<Integer> members : twins.values()) {
+            if (members.size() > 1) {
+                classes.add(members.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return new InterchangeableVertices(classes, graph.getNumVertices());
+    }
+
+    private static boolean hasSelfLoop(CsrTopologyGraph graph, int v) {
+        for (int k = 0; k < graph.getOutDegree(v); k++) {
+            if (graph.getDst(graph.getOutEdge(v, k)) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the classes with at least two vertices, every class as ascending vertex ids of the request's graph
+     */
+    public List<int[]> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @param vertexId the id of a vertex in the request's graph
+     * @return true if the vertex belongs to a class, i.e. it is interchangeable with at least one other vertex
+     */
+    public boolean isInterchangeable(int vertexId) {
+        return classOf[vertexId] >= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InterchangeableVertices)) {
+            return false;
+        }
+        InterchangeableVertices other = (InterchangeableVertices) o;
+        if (classes.size() != other.classes.size()) {
+            return false;
+        }
+        for (int c = 0; c < classes.size(); c++) {
+            if (!Arrays.equals(classes.get(c), other.classes.get(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int[] members : classes) {
+            hash = 31 * hash + Arrays.hashCode(members);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("InterchangeableVertices{");
+        for (int[] members : classes) {
+            builder.append(Arrays.toString(members));
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Everything a vertex is identified by, apart from its id.
+     */
+    private static final class Signature {
+        private final long[] out; // (dst, delay, bandwidth) per out edge, sorted
+        private final long[] in; // (src, delay, bandwidth) per in edge, sorted
+        private final double[] pop; // PoP attributes, null for switches
+        private final BitSet egressOf;
+
+        Signature(CsrTopologyGraph graph, int v, Set<NprNfvTypes.Type> types, BitSet egressOf) {
+            out = new long[graph.getOutDegree(v) * 3];
+            for (int k = 0; k < graph.getOutDegree(v); k++) {
+                int e = graph.getOutEdge(v, k);
+                out[3 * k] = graph.getDst(e);
+                out[3 * k + 1] = graph.getDelay(e);
+                out[3 * k + 2] = graph.getBandwidth(e);
+            }
+            sortTriples(out);
+            in = new long[graph.getInDegree(v) * 3];
+            for (int k = 0; k < graph.getInDegree(v); k++) {
+                int e = graph.getInEdge(v, k);
+                in[3 * k] = graph.getSrc(e);
+                in[3 * k + 1] = graph.getDelay(e);
+                in[3 * k + 2] = graph.getBandwidth(e);
+            }
+            sortTriples(in);
+
+            if (graph.isPoP(v)) {
+                WrappedPoPVertex popVertex = (WrappedPoPVertex) graph.getVertex(v);
+                List<Double> attributes = new ArrayList<>();
+                for (NprNfvTypes.Type type : types) {
+                    attributes.add((double) popVertex.getDeploymentCost(type));
+                    attributes.add(popVertex.getDelay(type));
+                }
+                for (NprResources resource : NprResources.values()) {
+                    attributes.add((double) popVertex.getResourceCapacity(resource));
+                }
+                pop = attributes.stream().mapToDouble(Double::doubleValue).toArray();
+            } else {
+                pop = null;
+            }
+            this.egressOf = egressOf;
+        }
+
+        /**
+         * Sorts the consecutive triples of the array lexicographically.
+         */
+        private static void sortTriples(long[] triples) {
+            long[][] rows = new long[triples.length / 3][];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = Arrays.copyOfRange(triples, 3 * i, 3 * i + 3);
+            }
+            Arrays.sort(rows, (a, b) -> {
+                for (int i = 0; i < 3; i++) {
+                    int cmp = Long.compare(a[i], b[i]);
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                }
+                return 0;
+            });
+            for (int i = 0; i < rows.length; i++) {
+                System.arraycopy(rows[i], 0, triples, 3 * i, 3);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return Arrays.equals(out, other.out) && Arrays.equals(in, other.in) && Arrays.equals(pop, other.pop) &&
+                   egressOf.equals(other.egressOf);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * Arrays.hashCode(out) + Arrays.hashCode(in)) + Arrays.hashCode(pop)) +
+                   egressOf.hashCode();
+        }
+    }
+}
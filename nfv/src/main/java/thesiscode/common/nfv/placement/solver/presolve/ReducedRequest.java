@@ -0,0 +1,503 @@
+package thesiscode.common.nfv.placement.solver.presolve;
+
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.CsrTopologyGraph;
+import thesiscode.common.topo.ILinkWeigher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Presolve which reduces the topology of a request before a model is built for it. The reduced request contains the
+ * same vertex and flow objects as the original one, but only the part of the topology which can lie on a route of a
+ * flow:
+ * <ol>
+ * <li>vertices which can not be reached from an ingress node or from which no egress node can be reached are removed,
+ * as are switches which are connected to at most one other vertex (they can only be left the way they were entered),
+ * repeatedly</li>
+ * <li>parallel edges with the same delay are merged into the one with the highest bandwidth if it can carry the demand
+ * of all flows, an SFC flow counted once per logical edge as it may cross an edge once per logical edge</li>
+ * <li>chains of switches which are connected to exactly two other vertices are contracted into
+ * {@link ContractedEdge}s</li>
+ * </ol>
+ * Ingress nodes, egress nodes and PoPs are never removed or contracted. All reductions keep every simple path between
+ * them with its delay and its bottleneck bandwidth, so the optimum of a delay based objective does not change. The
+ * contraction changes the number of edges of a path and is therefore only done if the objective does not count edges.
+ * <p>
+ * Solutions of the reduced request are mapped back onto the edges of the original request by
+ * {@link #expand(NfvPlacementSolution)}, solutions of the original topology (e.g. the installed one) onto the reduced
+ * request by {@link #reduce(NfvPlacementSolution)}.
+ */
+public final class ReducedRequest {
+    private final NfvPlacementRequest original;
+    private final NfvPlacementRequest reduced;
+    // the reduced edge of every edge of the original request, null if the edge was removed
+    private final TopologyEdge[] reducedEdges;
+
+    private ReducedRequest(NfvPlacementRequest original, NfvPlacementRequest reduced, TopologyEdge[] reducedEdges) {
+        this.original = original;
+        this.reduced = reduced;
+        this.reducedEdges = reducedEdges;
+    }
+
+    /**
+     * Reduces the topology of a request.
+     *
+     * @param req            the request
+     * @param contractChains whether chains of switches are contracted, must be false if the objective depends on the
+     *                       number of used edges
+     * @return the reduction of the request
+     */
+    public static ReducedRequest of(NfvPlacementRequest req, boolean contractChains) {
+        return new Reducer(req).reduce(contractChains);
+    }
+
+    public NfvPlacementRequest getOriginal() {
+        return original;
+    }
+
+    public NfvPlacementRequest getReduced() {
+        return reduced;
+    }
+
+    /**
+     * Maps a solution of the reduced request onto the original request, contracted edges are replaced by the edges of
+     * their chains.
+     *
+     * @param solution a solution of the reduced request
+     * @return the same solution for the original request
+     */
+    public NfvPlacementSolution expand(NfvPlacementSolution solution) {
+        return solution.mapEdges(original, edge -> edge instanceof ContractedEdge ? ((ContractedEdge) edge).getEdges()
+                : Collections.singletonList(edge));
+    }
+
+    /**
+     * Maps a solution of a topology like the original one onto the reduced request, e.g. to use it as start. Edges are
+     * matched by the devices they connect; edges which were removed are dropped, edges of a contracted chain are
+     * replaced by the contracted edge.
+     *
+     * @param solution a solution of a request with the same devices as the original one
+     * @return the solution with the edges of the reduced request
+     */
+    public NfvPlacementSolution reduce(NfvPlacementSolution solution) {
+        CsrTopologyGraph graph = original.getGraph();
+        return solution.mapEdges(solution.getRequest(), edge -> {
+            int e = graph.getEdgeId(edge.src().deviceId(), edge.dst().deviceId());
+            if (e < 0 || reducedEdges[e] == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(reducedEdges[e]);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "ReducedRequest{vertices=" + original.getVertices().size() + "->" + reduced.getVertices().size() +
+               ", edges=" + original.getEdges().size() + "->" + reduced.getEdges().size() + "}";
+    }
+
+    /**
+     * The delay of a contracted edge is the sum, its bandwidth the minimum of the edges of its chain.
+     */
+    private static class ReducedLinkWeigher implements ILinkWeigher {
+        private final ILinkWeigher linkWeigher;
+
+        ReducedLinkWeigher(ILinkWeigher linkWeigher) {
+            this.linkWeigher = linkWeigher;
+        }
+
+        @Override
+        public int getBandwidth(TopologyEdge edge) {
+            if (!(edge instanceof ContractedEdge)) {
+                return linkWeigher.getBandwidth(edge);
+            }
+            int bandwidth = Integer.MAX_VALUE;
+            for (TopologyEdge chainEdge : ((ContractedEdge) edge).getEdges()) {
+                bandwidth = Math.min(bandwidth, linkWeigher.getBandwidth(chainEdge));
+            }
+            return bandwidth;
+        }
+
+        @Override
+        public int getDelay(TopologyEdge edge) {
+            if (!(edge instanceof ContractedEdge)) {
+                return linkWeigher.getDelay(edge);
+            }
+            int delay = 0;
+            for (TopologyEdge chainEdge : ((ContractedEdge) edge).getEdges()) {
+                delay += linkWeigher.getDelay(chainEdge);
+            }
+            return delay;
+        }
+    }
+
+    /**
+     * Performs the reductions on the compact graph of the request. Vertices and edges are identified by their ids in
+     * that graph.
+     */
+    private static class Reducer {
+        private final NfvPlacementRequest req;
+        private final CsrTopologyGraph graph;
+        private final BitSet terminals;
+        private final BitSet aliveVertices;
+        private final BitSet aliveEdges;
+        // the edge an edge was merged into, the edge itself if it was not merged
+        private final int[] mergedInto;
+        // the contracted edge which replaces an edge, null if the edge is not part of a contracted chain
+        private final ContractedEdge[] contractedInto;
+
+        Reducer(NfvPlacementRequest req) {
+            this.req = req;
+            this.graph = req.getGraph();
+            this.terminals = graph.getPoPs();
+            this.aliveVertices = new BitSet(graph.getNumVertices());
+            this.aliveEdges = new BitSet(graph.getNumEdges());
+            this.mergedInto = new int[graph.getNumEdges()];
+            this.contractedInto = new ContractedEdge[graph.getNumEdges()];
+        }
+
+        ReducedRequest reduce(boolean contractChains) {
+            removeUnreachable();
+            removeLeaves();
+            mergeParallelEdges();
+            if (contractChains) {
+                contractChains();
+            }
+
+            // keep the order of the original request, a contracted edge takes the place of the first edge of its chain
+            Set<TopologyVertex> vertices = new LinkedHashSet<>();
+            for (int v = aliveVertices.nextSetBit(0); v >= 0; v = aliveVertices.nextSetBit(v + 1)) {
+                vertices.add(graph.getVertex(v));
+            }
+            Set<TopologyEdge> edges = new LinkedHashSet<>();
+            TopologyEdge[] reducedEdges = new TopologyEdge[graph.getNumEdges()];
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                if (contractedInto[e] != null) {
+                    reducedEdges[e] = contractedInto[e];
+                    edges.add(contractedInto[e]);
+                } else if (aliveEdges.get(e)) {
+                    reducedEdges[e] = graph.getEdge(e);
+                    edges.add(graph.getEdge(e));
+                }
+            }
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                if (mergedInto[e] != e) {
+                    reducedEdges[e] = reducedEdges[mergedInto[e]];
+                }
+            }
+
+            NfvPlacementRequest reduced = new NfvPlacementRequest(vertices, edges, req.getTraffic(),
+                    new ReducedLinkWeigher(req.getLinkWeigher()));
+            return new ReducedRequest(req, reduced, reducedEdges);
+        }
+
+        /**
+         * Keeps the vertices which can be reached from an ingress node and from which an egress node can be reached,
+         * as well as all ingress and egress nodes.
+         */
+        private void removeUnreachable() {
+            BitSet ingress = new BitSet(graph.getNumVertices());
+            BitSet egress = new BitSet(graph.getNumVertices());
+            for (NprTraffic flow : req.getTraffic()) {
+                ingress.set(graph.getVertexId(flow.getIngressNode()));
+                for (TopologyVertex dst : flow.getEgressNodes()) {
+                    egress.set(graph.getVertexId(dst));
+                }
+            }
+            terminals.or(ingress);
+            terminals.or(egress);
+
+            aliveVertices.or(reachable(ingress, true));
+            aliveVertices.and(reachable(egress, false));
+            aliveVertices.or(ingress);
+            aliveVertices.or(egress);
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                mergedInto[e] = e;
+                if (aliveVertices.get(graph.getSrc(e)) && aliveVertices.get(graph.getDst(e))) {
+                    aliveEdges.set(e);
+                }
+            }
+        }
+
+        private BitSet reachable(BitSet from, boolean forward) {
+            BitSet reached = (BitSet) from.clone();
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int v = from.nextSetBit(0); v >= 0; v = from.nextSetBit(v + 1)) {
+                queue.add(v);
+            }
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                int degree = forward ? graph.getOutDegree(v) : graph.getInDegree(v);
+                for (int k = 0; k < degree; k++) {
+                    int e = forward ? graph.getOutEdge(v, k) : graph.getInEdge(v, k);
+                    int next = forward ? graph.getDst(e) : graph.getSrc(e);
+                    if (!reached.get(next)) {
+                        reached.set(next);
+                        queue.add(next);
+                    }
+                }
+            }
+            return reached;
+        }
+
+        /**
+         * Repeatedly removes switches which are connected to at most one other vertex.
+         */
+        private void removeLeaves() {
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int v = aliveVertices.nextSetBit(0); v >= 0; v = aliveVertices.nextSetBit(v + 1)) {
+                queue.add(v);
+            }
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                if (!aliveVertices.get(v) || terminals.get(v)) {
+                    continue;
+                }
+                int[] neighbours = neighbours(v);
+                if (neighbours.length <= 1) {
+                    removeVertex(v);
+                    for (int neighbour : neighbours) {
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Merges parallel edges with the same delay into the one with the highest bandwidth if it can carry the
+         * demand of all flows, so that a route over one of them can always be moved onto it. An SFC flow may use an
+         * edge once for every logical edge from its source over its VNFs to its destinations, so its demand is counted
+         * sfc.size() + 1 times.
+         */
+        private void mergeParallelEdges() {
+            double totalDemand = 0;
+            for (NprTraffic flow : req.getTraffic()) {
+                totalDemand += flow.getDemand() * (flow.getSfc().size() + 1);
+            }
+            for (int v = aliveVertices.nextSetBit(0); v >= 0; v = aliveVertices.nextSetBit(v + 1)) {
+                for (int k = 0; k < graph.getOutDegree(v); k++) {
+                    int e = graph.getOutEdge(v, k);
+                    if (!aliveEdges.get(e)) {
+                        continue;
+                    }
+                    // find the best edge of the parallel edges with the same delay which come after e
+                    int best = e;
+                    for (int l = k + 1; l < graph.getOutDegree(v); l++) {
+                        int other = graph.getOutEdge(v, l);
+                        if (aliveEdges.get(other) && graph.getDst(other) == graph.getDst(e) &&
+                                graph.getDelay(other) == graph.getDelay(e) &&
+                                graph.getBandwidth(other) > graph.getBandwidth(best)) {
+                            best = other;
+                        }
+                    }
+                    if (graph.getBandwidth(best) < totalDemand) {
+                        continue;
+                    }
+                    for (int l = k; l < graph.getOutDegree(v); l++) {
+                        int other = graph.getOutEdge(v, l);
+                        if (other != best && aliveEdges.get(other) && graph.getDst(other) == graph.getDst(e) &&
+                                graph.getDelay(other) == graph.getDelay(e)) {
+                            aliveEdges.clear(other);
+                            mergedInto[other] = best;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Contracts every maximal chain of contractible switches into one edge per direction. A chain which starts
+         * and ends at the same vertex is never part of a simple path and is removed. Whether a vertex is contractible
+         * is decided before anything is contracted, the chains are removed afterwards.
+         */
+        private void contractChains() {
+            BitSet contractible = new BitSet(graph.getNumVertices());
+            for (int v = aliveVertices.nextSetBit(0); v >= 0; v = aliveVertices.nextSetBit(v + 1)) {
+                if (isContractible(v)) {
+                    contractible.set(v);
+                }
+            }
+
+            List<Integer> removed = new ArrayList<>();
+            BitSet visited = new BitSet(graph.getNumVertices());
+            for (int v = contractible.nextSetBit(0); v >= 0; v = contractible.nextSetBit(v + 1)) {
+                if (visited.get(v)) {
+                    continue;
+                }
+                // extend the chain from v to both sides until a vertex is reached which is not contractible
+                Deque<Integer> chain = new ArrayDeque<>();
+                chain.add(v);
+                visited.set(v);
+                boolean cycle = false;
+                int[] neighbours = neighbours(v);
+                for (int side = 0; side < 2 && !cycle; side++) {
+                    int previous = v;
+                    int current = neighbours[side];
+                    while (current != v && contractible.get(current)) {
+                        addToChain(chain, current, side);
+                        visited.set(current);
+                        int[] next = neighbours(current);
+                        int following = next[0] == previous ? next[1] : next[0];
+                        previous = current;
+                        current = following;
+                    }
+                    if (current == v) {
+                        cycle = true;
+                    } else {
+                        addToChain(chain, current, side);
+                    }
+                }
+
+                List<Integer> vertices = new ArrayList<>(chain);
+                if (cycle) {
+                    removed.addAll(vertices);
+                    continue;
+                }
+                List<Integer> inner = vertices.subList(1, vertices.size() - 1);
+                if (!vertices.get(0).equals(vertices.get(vertices.size() - 1))) {
+                    contract(vertices);
+                }
+                removed.addAll(inner);
+            }
+            for (int v : removed) {
+                removeVertex(v);
+            }
+        }
+
+        private static void addToChain(Deque<Integer> chain, int vertex, int side) {
+            if (side == 0) {
+                chain.addFirst(vertex);
+            } else {
+                chain.addLast(vertex);
+            }
+        }
+
+        /**
+         * Replaces the chain by a contracted edge per direction in which all edges of the chain exist. The inner
+         * vertices of the chain and all of its edges have to be removed afterwards.
+         *
+         * @param vertices the vertices of the chain, the first and the last one are not contractible
+         */
+        private void contract(List<Integer> vertices) {
+            List<Integer> forward = chainEdges(vertices);
+            List<Integer> reversed = new ArrayList<>(vertices);
+            Collections.reverse(reversed);
+            List<Integer> backward = chainEdges(reversed);
+            for (List<Integer> edges : Arrays.asList(forward, backward)) {
+                if (edges == null) {
+                    continue;
+                }
+                List<TopologyEdge> chainEdges = new ArrayList<>(edges.size());
+                for (int e : edges) {
+                    chainEdges.add(graph.getEdge(e));
+                }
+                ContractedEdge contracted = new ContractedEdge(chainEdges);
+                for (int e : edges) {
+                    contractedInto[e] = contracted;
+                }
+            }
+        }
+
+        /**
+         * @return the edges from each vertex of the chain to the next one or null if one of them does not exist
+         */
+        private List<Integer> chainEdges(List<Integer> vertices) {
+            List<Integer> edges = new ArrayList<>(vertices.size() - 1);
+            for (int i = 0; i < vertices.size() - 1; i++) {
+                int e = aliveEdge(vertices.get(i), vertices.get(i + 1));
+                if (e < 0) {
+                    return null;
+                }
+                edges.add(e);
+            }
+            return edges;
+        }
+
+        private void removeVertex(int v) {
+            aliveVertices.clear(v);
+            for (int k = 0; k < graph.getOutDegree(v); k++) {
+                aliveEdges.clear(graph.getOutEdge(v, k));
+            }
+            for (int k = 0; k < graph.getInDegree(v); k++) {
+                aliveEdges.clear(graph.getInEdge(v, k));
+            }
+        }
+
+        /**
+         * A vertex is contractible if it is an alive switch without self-loop which is connected to exactly two other
+         * vertices by at most one edge per direction.
+         */
+        private boolean isContractible(int v) {
+            if (!aliveVertices.get(v) || terminals.get(v)) {
+                return false;
+            }
+            int[] neighbours = neighbours(v);
+            if (neighbours.length != 2) {
+                return false;
+            }
+            int[] outEdges = new int[2];
+            int[] inEdges = new int[2];
+            for (int k = 0; k < graph.getOutDegree(v); k++) {
+                int e = graph.getOutEdge(v, k);
+                if (aliveEdges.get(e)) {
+                    int dst = graph.getDst(e);
+                    if (dst == v || ++outEdges[dst == neighbours[0] ? 0 : 1] > 1) {
+                        return false;
+                    }
+                }
+            }
+            for (int k = 0; k < graph.getInDegree(v); k++) {
+                int e = graph.getInEdge(v, k);
+                if (aliveEdges.get(e) && ++inEdges[graph.getSrc(e) == neighbours[0] ? 0 : 1] > 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the distinct vertices other than v which are connected to v by an alive edge of either direction
+         */
+        private int[] neighbours(int v) {
+            BitSet neighbours = new BitSet();
+            for (int k = 0; k < graph.getOutDegree(v); k++) {
+                int e = graph.getOutEdge(v, k);
+                if (aliveEdges.get(e) && graph.getDst(e) != v) {
+                    neighbours.set(graph.getDst(e));
+                }
+            }
+            for (int k = 0; k < graph.getInDegree(v); k++) {
+                int e = graph.getInEdge(v, k);
+                if (aliveEdges.get(e) && graph.getSrc(e) != v) {
+                    neighbours.set(graph.getSrc(e));
+                }
+            }
+            return neighbours.stream().toArray();
+        }
+
+        /**
+         * @return the first alive edge from src to dst or -1 if there is none
+         */
+        private int aliveEdge(int src, int dst) {
+            for (int k = 0; k < graph.getOutDegree(src); k++) {
+                int e = graph.getOutEdge(src, k);
+                if (aliveEdges.get(e) && graph.getDst(e) == dst) {
+                    return e;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package thesiscode.common.nfv.placement.deploy;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the requests of the instantiator against a stand-in for the VNF manager, which answers every request after a
+ * delay.
+ */
+public class NfvInstantiatorTest {
+    private static final NprNfvTypes.Type TYPE = NprNfvTypes.Type.TRANSCODER;
+    private static final int VNF_PORT = 7;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // counted down by every request which reaches the stand-in
+    private final CountDownLatch firstTwoRequests = new CountDownLatch(2);
+    private volatile long delayMs = 200;
+    private volatile int putStatus = 200;
+    private volatile int deleteStatus = 200;
+
+    private NfvInstantiator instantiator;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+            firstTwoRequests.countDown();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            boolean put = exchange.getRequestMethod().equals("PUT");
+            int status = put ? putStatus : deleteStatus;
+            byte[] body = put && status == 200 ? Integer.toString(VNF_PORT).getBytes() : new byte[0];
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        if (instantiator != null) {
+            instantiator.shutdown();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static DeviceId device(int i) {
+        return DeviceId.deviceId(String.format("of:%016x", i));
+    }
+
+    @Test
+    public void instantiationsRunConcurrentlyUpToTheLimit() throws Exception {
+        instantiator = new NfvInstantiator(baseUrl(), 2, 1000, 5000, 3);
+        List<CompletableFuture<ConnectPoint>> instantiations = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            instantiations.add(instantiator.instantiate(TYPE, device(i), false));
+        }
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(new ConnectPoint(device(i), PortNumber.portNumber(VNF_PORT)),
+                    instantiations.get(i - 1).get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, maxInFlight.get());
+        assertTrue(requests.contains("PUT /" + String.format("%016x", 1) + "/" + TYPE));
+    }
+
+    @Test
+    public void failedPutIsNotSentAgain() throws Exception {
+        putStatus = 500;
+        instantiator = new NfvInstantiator(baseUrl(), 4, 1000, 5000, 3);
+
+        assertFails(instantiator.instantiate(TYPE, device(1), false));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void failedDeleteIsSentAgain() throws Exception {
+        deleteStatus = 500;
+        instantiator = new NfvInstantiator(baseUrl(), 4, 1000, 5000, 3);
+
+        assertFails(instantiator.remove(TYPE, device(1), false));
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void unreachableManagerIsRetried() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        instantiator = new NfvInstantiator("http://localhost:" + closedPort, 4, 500, 500, 3) {
+            @Override
+            HttpURLConnection openConnection(URL url) throws IOException {
+                attempts.incrementAndGet();
+                return super.openConnection(url);
+            }
+        };
+
+        assertFails(instantiator.instantiate(TYPE, device(1), false));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void slowResponseTimesOut() throws Exception {
+        delayMs = 2000;
+        instantiator = new NfvInstantiator(baseUrl(), 4, 1000, 200, 3);
+
+        // without the timeout the response would arrive well within the wait of assertFails and succeed
+        assertFails(instantiator.instantiate(TYPE, device(1), false));
+    }
+
+    @Test
+    public void abortFailsInstantiationsButNotRemovals() throws Exception {
+        delayMs = 2000;
+        instantiator = new NfvInstantiator(baseUrl(), 2, 1000, 5000, 3);
+        CompletableFuture<ConnectPoint> inFlightInstantiation = instantiator.instantiate(TYPE, device(1), false);
+        CompletableFuture<Void> removal = instantiator.remove(TYPE, device(2), false);
+        CompletableFuture<ConnectPoint> queuedInstantiation = instantiator.instantiate(TYPE, device(3), false);
+        // the first PUT and the DELETE are in flight
+        assertTrue(firstTwoRequests.await(5, TimeUnit.SECONDS));
+
+        instantiator.abortInstantiations();
+        // without the abort both instantiations would succeed
+        assertFails(inFlightInstantiation);
+        assertFails(queuedInstantiation);
+
+        removal.get(5, TimeUnit.SECONDS);
+        assertFalse(removal.isCompletedExceptionally());
+        // the queued instantiation was never sent
+        assertEquals(2, requests.size());
+    }
+
+    private static void assertFails(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("request succeeded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InstantiationException);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package thesiscode.common.nfv.placement.solver.ilp.bnb;
+
+import org.junit.Test;
+import thesiscode.common.nfv.placement.solver.ilp.IlpLinExpr;
+import thesiscode.common.nfv.placement.solver.ilp.IlpModel;
+import thesiscode.common.nfv.placement.solver.ilp.IlpResult;
+import thesiscode.common.nfv.placement.solver.ilp.IlpSense;
+import thesiscode.common.nfv.placement.solver.ilp.IlpStatus;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVar;
+import thesiscode.common.nfv.placement.solver.ilp.IlpVarType;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks the pure-Java backend against models with known optima.
+ */
+public class JavaMipBackendTest {
+    private static final double TOL = 1e-6;
+
+    private static IlpLinExpr expr(double[] coeffs, IlpVar... vars) {
+        IlpLinExpr expr = new IlpLinExpr();
+        for (int i = 0; i < vars.length; i++) {
+            expr.addTerm(coeffs[i], vars[i]);
+        }
+        return expr;
+    }
+
+    @Test
+    public void linearProgram() throws Exception {
+        // max 3x + 5y s.t. x <= 4, 2y <= 12, 3x + 2y <= 18, optimum 36 at (2, 6)
+        IlpModel model = new IlpModel();
+        IlpVar x = model.addVar(0, IlpModel.INFINITY, 0, IlpVarType.CONTINUOUS, "x");
+        IlpVar y = model.addVar(0, IlpModel.INFINITY, 0, IlpVarType.CONTINUOUS, "y");
+        model.addConstr(x, IlpSense.LESS_EQUAL, 4, "c0");
+        model.addConstr(expr(new double[]{2}, y), IlpSense.LESS_EQUAL, 12, "c1");
+        model.addConstr(expr(new double[]{3, 2}, x, y), IlpSense.LESS_EQUAL, 18, "c2");
+        model.setObjective(expr(new double[]{3, 5}, x, y), IlpModel.MAXIMIZE);
+
+        IlpResult result = new JavaMipBackend().optimize(model, false);
+
+        assertEquals(IlpStatus.OPTIMAL, result.getStatus());
+        assertEquals(36, result.getObjVal(), TOL);
+        assertEquals(2, result.getValue(x), TOL);
+        assertEquals(6, result.getValue(y), TOL);
+    }
+
+    @Test
+    public void knapsack() throws Exception {
+        // values 60, 100, 120, weights 10, 20, 30, capacity 50: optimum 220 with the last two items
+        IlpModel model = new IlpModel();
+        IlpVar[] items = model.addVars(3, 0, 1, 0, IlpVarType.BINARY, i -> "item" + i);
+        model.addConstr(expr(new double[]{10, 20, 30}, items), IlpSense.LESS_EQUAL, 50, "capacity");
+        model.setObjective(expr(new double[]{60, 100, 120}, items), IlpModel.MAXIMIZE);
+
+        IlpResult result = new JavaMipBackend().optimize(model, false);
+
+        assertEquals(IlpStatus.OPTIMAL, result.getStatus());
+        assertEquals(220, result.getObjVal(), TOL);
+        assertEquals(0, result.getValue(items[0]), TOL);
+        assertEquals(1, result.getValue(items[1]), TOL);
+        assertEquals(1, result.getValue(items[2]), TOL);
+    }
+
+    @Test
+    public void integerOptimumBelowFractionalRelaxation() throws Exception {
+        // max y s.t. -x + y <= 1, 3x + 2y <= 12, 2x + 3y <= 12: the relaxation has y = 2.4, the integer optimum is 2
+        IlpModel model = new IlpModel();
+        IlpVar x = model.addVar(0, IlpModel.INFINITY, 0, IlpVarType.INTEGER, "x");
+        IlpVar y = model.addVar(0, IlpModel.INFINITY, 0, IlpVarType.INTEGER, "y");
+        model.addConstr(expr(new double[]{-1, 1}, x, y), IlpSense.LESS_EQUAL, 1, "c0");
+        model.addConstr(expr(new double[]{3, 2}, x, y), IlpSense.LESS_EQUAL, 12, "c1");
+        model.addConstr(expr(new double[]{2, 3}, x, y), IlpSense.LESS_EQUAL, 12, "c2");
+        model.setObjective(expr(new double[]{1}, y), IlpModel.MAXIMIZE);
+
+        IlpResult result = new JavaMipBackend().optimize(model, false);
+
+        assertEquals(IlpStatus.OPTIMAL, result.getStatus());
+        assertEquals(2, result.getObjVal(), TOL);
+    }
+
+    @Test
+    public void infeasible() throws Exception {
+        IlpModel model = new IlpModel();
+        IlpVar x = model.addVar(0, 10, 1, IlpVarType.INTEGER, "x");
+        IlpVar y = model.addVar(0, 10, 1, IlpVarType.INTEGER, "y");
+        model.addConstr(expr(new double[]{1, 1}, x, y), IlpSense.GREATER_EQUAL, 3, "c0");
+        model.addConstr(expr(new double[]{1, 1}, x, y), IlpSense.LESS_EQUAL, 2, "c1");
+
+        assertEquals(IlpStatus.INFEASIBLE, new JavaMipBackend().optimize(model, false).getStatus());
+    }
+
+    @Test
+    public void hierarchicalObjectives() throws Exception {
+        // first minimize x + y subject to x + y >= 3, then maximize x within that optimum: (3, 0)
+        IlpModel model = new IlpModel();
+        IlpVar x = model.addVar(0, 10, 0, IlpVarType.INTEGER, "x");
+        IlpVar y = model.addVar(0, 10, 0, IlpVarType.INTEGER, "y");
+        model.addConstr(expr(new double[]{1, 1}, x, y), IlpSense.GREATER_EQUAL, 3, "c0");
+        model.setObjectiveN(expr(new double[]{1, 1}, x, y), 0, 2, 1.0, 0, 0, "sum");
+        model.setObjectiveN(expr(new double[]{-1}, x), 1, 1, 1.0, 0, 0, "x");
+
+        IlpResult result = new JavaMipBackend().optimize(model, false);
+
+        assertEquals(IlpStatus.OPTIMAL, result.getStatus());
+        assertEquals(3, result.getValue(x), TOL);
+        assertEquals(0, result.getValue(y), TOL);
+    }
+
+    @Test
+    public void simplexStopsWhenRequested() throws Exception {
+        MipProblem problem = new MipProblem(assignment(30, 7));
+        double[] cost = costs(problem, 7);
+
+        BoundedSimplex unstopped = new BoundedSimplex(problem);
+        assertEquals(BoundedSimplex.Status.OPTIMAL, unstopped.solve(cost, problem.lb, problem.ub));
+
+        BoundedSimplex stopped = new BoundedSimplex(problem);
+        stopped.setStopCheck(() -> true);
+        assertEquals(BoundedSimplex.Status.INTERRUPTED, stopped.solve(cost, problem.lb, problem.ub));
+    }
+
+    @Test
+    public void terminationStopsTheRootLp() throws Exception {
+        // the root LP takes more than 200 pivots, the check first passes before the root node and then stops the LP
+        MipProblem problem = new MipProblem(assignment(100, 11));
+        BranchAndBound bnb = new BranchAndBound(problem, Long.MAX_VALUE, Long.MAX_VALUE);
+        AtomicInteger checks = new AtomicInteger();
+        bnb.setTerminationCheck(() -> checks.incrementAndGet() > 1);
+
+        assertEquals(BranchAndBound.Status.LIMIT_REACHED, bnb.solve(costs(problem, 11)));
+        assertEquals(-1, bnb.getRootLpSolvedAt());
+    }
+
+    @Test
+    public void timeLimitedOptimizationReturns() throws Exception {
+        JavaMipBackend backend = new JavaMipBackend();
+        backend.setTimeLimit(20);
+
+        assertNotNull(backend.optimize(assignment(100, 11), false));
+    }
+
+    @Test
+    public void terminateBetweenOptimizationsIsIgnored() throws Exception {
+        JavaMipBackend backend = new JavaMipBackend();
+        backend.terminate();
+        assertEquals(IlpStatus.OPTIMAL, backend.optimize(assignment(10, 3), false).getStatus());
+        backend.terminate();
+        assertEquals(IlpStatus.OPTIMAL, backend.optimize(assignment(10, 5), false).getStatus());
+    }
+
+    /**
+     * assignment problem with random costs. Phase 1 of the simplex has to pivot out one artificial per row, i.e. it
+     * takes more than 2 * size pivots
+     */
+    private static IlpModel assignment(int size, long seed) {
+        Random random = new Random(seed);
+        IlpModel model = new IlpModel();
+        IlpVar[] x = model.addVars(size * size, 0, 1, 0, IlpVarType.BINARY, i -> "x" + i);
+        IlpLinExpr objective = new IlpLinExpr();
+        for (int i = 0; i < size; i++) {
+            IlpLinExpr row = new IlpLinExpr();
+            IlpLinExpr col = new IlpLinExpr();
+            for (int j = 0; j < size; j++) {
+                row.addTerm(1, x[i * size + j]);
+                col.addTerm(1, x[j * size + i]);
+                objective.addTerm(1 + random.nextInt(100), x[i * size + j]);
+            }
+            model.addConstr(row, IlpSense.EQUAL, 1, "row" + i);
+            model.addConstr(col, IlpSense.EQUAL, 1, "col" + i);
+        }
+        model.setObjective(objective, IlpModel.MINIMIZE);
+        return model;
+    }
+
+    private static double[] costs(MipProblem problem, long seed) {
+        Random random = new Random(seed);
+        double[] cost = new double[problem.numCols];
+        for (int j = 0; j < cost.length; j++) {
+            cost[j] = 1 + random.nextInt(100);
+        }
+        return cost;
+    }
+}
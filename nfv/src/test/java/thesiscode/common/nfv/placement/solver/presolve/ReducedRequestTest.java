@@ -0,0 +1,117 @@
+package thesiscode.common.nfv.placement.solver.presolve;
+
+import org.junit.Test;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultLink;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Link;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.provider.ProviderId;
+import org.onosproject.net.topology.DefaultTopologyEdge;
+import org.onosproject.net.topology.DefaultTopologyVertex;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyVertex;
+import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.ilp.bnb.JavaMipBackend;
+import thesiscode.common.nfv.placement.solver.mfcp.used.TopoSyncSFCPlacementSolver;
+import thesiscode.common.nfv.traffic.NprNfvTypes;
+import thesiscode.common.nfv.traffic.NprResources;
+import thesiscode.common.nfv.traffic.NprTraffic;
+import thesiscode.common.topo.MapLinkWeigher;
+import thesiscode.common.topo.WrappedPoPVertex;
+import thesiscode.common.topo.WrappedVertex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the presolve does not change the optimum of a request.
+ */
+public class ReducedRequestTest {
+    private static final ProviderId PROVIDER_ID = new ProviderId("of", "thesiscode.test");
+
+    private final Set<TopologyEdge> edges = new LinkedHashSet<>();
+    private final Map<Link, Integer> bandwidths = new HashMap<>();
+    private final Map<Link, Integer> delays = new HashMap<>();
+    private int nextPort = 0;
+
+    private static TopologyVertex vertex(int i) {
+        return new WrappedVertex(new DefaultTopologyVertex(DeviceId.deviceId(String.format("of:%016x", i))));
+    }
+
+    private static TopologyVertex pop(int i) {
+        Map<NprNfvTypes.Type, Integer> deploymentCost = new HashMap<>();
+        Map<NprNfvTypes.Type, Double> hwAccelFactors = new HashMap<>();
+        for (NprNfvTypes.Type type : NprNfvTypes.Type.values()) {
+            deploymentCost.put(type, 40);
+            hwAccelFactors.put(type, 1.0);
+        }
+        Map<NprResources, Integer> resourceCapacity = new HashMap<>();
+        resourceCapacity.put(NprResources.CPU_CORES, 6);
+        resourceCapacity.put(NprResources.RAM_IN_GB, 2);
+        return new WrappedPoPVertex(new DefaultTopologyVertex(DeviceId.deviceId(String.format("of:%016x", i))),
+                deploymentCost, hwAccelFactors, resourceCapacity);
+    }
+
+    private void edge(TopologyVertex src, TopologyVertex dst, int bandwidth) {
+        Link link = DefaultLink.builder()
+                               .providerId(PROVIDER_ID)
+                               .src(new ConnectPoint(src.deviceId(), PortNumber.portNumber(++nextPort)))
+                               .dst(new ConnectPoint(dst.deviceId(), PortNumber.portNumber(++nextPort)))
+                               .type(Link.Type.DIRECT)
+                               .build();
+        edges.add(new DefaultTopologyEdge(src, dst, link));
+        bandwidths.put(link, bandwidth);
+        delays.put(link, 1);
+    }
+
+    private static NfvPlacementSolution solve(NfvPlacementRequest req, boolean presolve) {
+        TopoSyncSFCPlacementSolver solver = new TopoSyncSFCPlacementSolver(
+                OptimizationGoal.DELAY_REDUCTION_PER_DST_SUM, false, null, 1.0);
+        solver.setBackend(new JavaMipBackend());
+        solver.setPresolve(presolve);
+        return solver.solve(req);
+    }
+
+    @Test
+    public void parallelEdgesCrossedByEveryLogicalEdgeAreKept() throws Exception {
+        /*
+         * the PoP p is only reachable over x->y and only left towards x, so the SFC flow crosses x->y from its source
+         * to its VNF and again from its VNF to its destination. neither of the parallel edges x->y carries the demand
+         * twice, so they must not be merged into the wider one although it carries the demand once
+         */
+        TopologyVertex a = vertex(1);
+        TopologyVertex x = vertex(2);
+        TopologyVertex y = vertex(3);
+        TopologyVertex p = pop(4);
+        TopologyVertex d = vertex(5);
+        edge(a, x, 10);
+        edge(x, y, 5);
+        edge(x, y, 4);
+        edge(y, p, 10);
+        edge(p, x, 10);
+        edge(y, d, 10);
+        NprTraffic flow = new NprTraffic(Collections.singletonList(NprNfvTypes.Type.FIREWALL), a,
+                Collections.singleton(d), 4);
+        Set<TopologyVertex> vertices = new LinkedHashSet<>();
+        Collections.addAll(vertices, a, x, y, p, d);
+        NfvPlacementRequest req = new NfvPlacementRequest(vertices, edges, Collections.singletonList(flow),
+                new MapLinkWeigher(bandwidths, delays));
+
+        assertEquals(edges.size(), ReducedRequest.of(req, true).getReduced().getEdges().size());
+
+        NfvPlacementSolution withoutPresolve = solve(req, false);
+        NfvPlacementSolution withPresolve = solve(req, true);
+        assertNotNull(withoutPresolve);
+        assertNotNull(withPresolve);
+        assertEquals(withoutPresolve.getValue(), withPresolve.getValue(), 1e-6);
+    }
+}
@@ -70,7 +70,7 @@ public class RequestGenerator {
                                                                                        .location()
                                                                                        .deviceId(), vertices));
 
-        Set<TopologyVertex> clients = new HashSet<>();
+        Set<TopologyVertex> clients = new LinkedHashSet<>();
         clients.add(client1);
         clients.add(client2);
 
@@ -123,7 +123,8 @@ public class RequestGenerator {
     }
 
     private Set<TopologyVertex> wrapVertices(Set<TopologyVertex> vertices, Map<DeviceId, Map<NprNfvTypes.Type, Integer>> vnfDeploymentCost, Map<DeviceId, Map<NprNfvTypes.Type, Double>> hwAccelFactors, Map<DeviceId, Map<NprResources, Integer>> resourceCapacity) {
-        Set<TopologyVertex> wrappedVertices = new HashSet<>();
+        // the wrappers are hashed by identity, keep the order of the topology so that equal topologies give equal requests
+        Set<TopologyVertex> wrappedVertices = new LinkedHashSet<>();
         for (TopologyVertex vert : vertices) {
             DeviceId deviceId = vert.deviceId();
             if (deviceId.toString().startsWith("of:0") || deviceId.toString().startsWith("of:1")) {
@@ -137,7 +138,7 @@ public class RequestGenerator {
     }
 
     private Set<TopologyEdge> wrapEdges(Set<TopologyVertex> wrappedVertices, Set<TopologyEdge> edges) {
-        Set<TopologyEdge> wrappedEdges = new HashSet<>();
+        Set<TopologyEdge> wrappedEdges = new LinkedHashSet<>();
         for (TopologyEdge edge : graph.getEdges()) {
             wrappedEdges.add(new DefaultTopologyEdge(findByDevId(edge.src()
                                                                      .deviceId(), wrappedVertices), findByDevId(edge.dst()
@@ -5,8 +5,9 @@ import gurobi.GRBEnv;
 import gurobi.GRBException;
 import main.rest.RESTDispatcher;
 import main.rest.SolutionInstaller;
-import main.rest.SolutionInvalidator;
+import main.rest.TopologyChangePipeline;
 import main.rest.TreeComputation;
+import main.rest.TreeJobs;
 import main.rest.provide.TreeProvider;
 import main.view.ProgressWindow;
 import org.apache.felix.scr.annotations.*;
@@ -29,14 +30,27 @@ import org.slf4j.LoggerFactory;
 import thesiscode.common.flow.BidirectionalNfvTreeFlowPusher;
 import thesiscode.common.flow.INfvTreeFlowPusher;
 import thesiscode.common.nfv.placement.deploy.NfvInstantiator;
+import thesiscode.common.nfv.placement.solver.SolutionCache;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiEnvPool;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component(immediate = true)
 public class TopoSyncMain implements PacketProcessor {
+    private static final int SOLUTION_CACHE_SIZE = 16;
+    private static final long SOLUTION_CACHE_MAX_AGE_MS = 10 * 60 * 1000;
+    private static final int PORTFOLIO_SIZE = 4; // number of concurrently running solver configurations
+    // threads handling HTTP requests, clients waiting for a tree computation occupy one each
+    private static final int REST_THREADS = 4;
+    // topology events within this time after the first one are handled together
+    private static final long TOPOLOGY_CHANGE_WINDOW_MS = 500;
+    private static final String GUROBI_LOG_FILE = "/home/felix/toposync_gurobi.log";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -60,12 +74,17 @@ public class TopoSyncMain implements PacketProcessor {
     public static ApplicationId appId;
 
     private GRBEnv env;
+    private GurobiEnvPool envPool;
 
     private ClientServerLocator clientServerLocator;
 
     private HttpServer serverREST;
+    private ExecutorService restExecutor;
 
-    private SolutionInvalidator solutionInvalidator;
+    private TopologyChangePipeline topologyChangePipeline;
+    private TreeComputation treeComputation;
+    private TreeJobs treeJobs;
+    private NfvInstantiator instantiator;
 
     @Activate
     protected void activate() throws GRBException {
@@ -79,7 +98,7 @@ public class TopoSyncMain implements PacketProcessor {
         setUpGurobi();
         setUpRESTServer();
 
-        topoService.addListener(solutionInvalidator);
+        topoService.addListener(topologyChangePipeline);
     }
 
     private void setUpClientServerLocator() {
@@ -89,25 +108,34 @@ public class TopoSyncMain implements PacketProcessor {
 
     private void setUpGurobi() throws GRBException {
         log.info("Creating GRB Environment.");
-        env = new GRBEnv("/home/felix/toposync_gurobi.log");
+        env = new GRBEnv(GUROBI_LOG_FILE);
         log.info("Created GRB Environment: {}", env);
+        // the configurations which keep their model run on the environment above
+        envPool = new GurobiEnvPool(PORTFOLIO_SIZE - 1, GUROBI_LOG_FILE);
+        log.info("Created pool of {} GRB Environments for the solver portfolio", envPool.size());
     }
 
     private void setUpRESTServer() {
         ProgressMonitor progressMonitor = new ProgressWindow();
         RequestGenerator requestGenerator = new RequestGenerator(clientServerLocator, topoService);
         INfvTreeFlowPusher pusher = new BidirectionalNfvTreeFlowPusher(appId, flowRuleService);
-        NfvInstantiator instantiator = new NfvInstantiator();
+        instantiator = new NfvInstantiator();
         SolutionInstaller installer = new SolutionInstaller(pusher, instantiator, deviceService, hostService,
                 progressMonitor);
 
         try {
             serverREST = HttpServer.create(new InetSocketAddress("localhost", 9355), 0);
+            restExecutor = Executors.newFixedThreadPool(REST_THREADS);
+            serverREST.setExecutor(restExecutor);
 
-            TreeComputation treeComputation = new TreeComputation(requestGenerator, env, installer, progressMonitor);
+            SolutionCache solutionCache = new SolutionCache(SOLUTION_CACHE_SIZE, SOLUTION_CACHE_MAX_AGE_MS);
             TreeProvider provider = new TreeProvider();
-            solutionInvalidator = new SolutionInvalidator(provider, installer);
-            serverREST.createContext("/tree", new RESTDispatcher(treeComputation, provider, installer));
+            treeComputation = new TreeComputation(requestGenerator, env, envPool, installer, provider,
+                    progressMonitor, solutionCache);
+            treeJobs = new TreeJobs(treeComputation, provider);
+            topologyChangePipeline = new TopologyChangePipeline(TOPOLOGY_CHANGE_WINDOW_MS, provider, installer,
+                    solutionCache, treeJobs);
+            serverREST.createContext("/tree", new RESTDispatcher(treeJobs, provider, installer));
             serverREST.start();
             log.info("Set up server..");
         } catch (IOException e) {
@@ -119,12 +147,28 @@ public class TopoSyncMain implements PacketProcessor {
     protected void deactivate() throws GRBException {
         log.info("Stopping server..");
         serverREST.stop(1);
+        if (restExecutor != null) {
+            restExecutor.shutdownNow();
+        }
 
         log.info("Removing listeners..");
         hostService.removeListener(clientServerLocator);
-        topoService.removeListener(solutionInvalidator);
+        topoService.removeListener(topologyChangePipeline);
+        if (topologyChangePipeline != null) {
+            topologyChangePipeline.dispose();
+        }
 
         log.info("Deactivating GRBEnv");
+        if (treeJobs != null) {
+            treeJobs.shutdown();
+        }
+        if (treeComputation != null) {
+            treeComputation.dispose();
+        }
+        if (instantiator != null) {
+            instantiator.shutdown();
+        }
+        envPool.dispose();
         env.dispose();
 
         log.info("Removing ourself from packet processing.");
@@ -10,16 +10,33 @@ import org.slf4j.LoggerFactory;
 import thesiscode.common.nfv.placement.deploy.InstantiationException;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Handles the requests to /tree:
+ * <ul>
+ * <li>POST /tree/toposync-sfc and /tree/shortest-path-sfc submit the computation of a tree and answer 202 with the
+ * state of its {@link TreeJob} and its location /tree/jobs/{id}, or 503 if too many computations are waiting</li>
+ * <li>GET /tree/jobs/{id}?wait={ms} answers 200 with the solution or 500 with the error once the job is finished,
+ * 409 with the reason if a newer POST superseded it and 202 with its state while it is not finished. With wait, the
+ * answer is delayed until the job is finished, at most by the given time</li>
+ * <li>GET /tree answers with the installed solution, see {@link TreeProvider}</li>
+ * <li>DELETE /tree uninstalls the installed solution</li>
+ * </ul>
+ */
 public class RESTDispatcher implements HttpHandler {
+    private static final long MAX_WAIT_MS = 30 * 1000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private TreeComputation treeComputation;
+    private TreeJobs treeJobs;
     private SolutionInstaller installer;
     private main.rest.provide.TreeProvider treeProvider;
 
-    public RESTDispatcher(TreeComputation treeComputation, TreeProvider provider, SolutionInstaller installer) {
-        this.treeComputation = treeComputation;
+    public RESTDispatcher(TreeJobs treeJobs, TreeProvider provider, SolutionInstaller installer) {
+        this.treeJobs = treeJobs;
         this.treeProvider = provider;
         this.installer = installer;
     }
@@ -30,33 +47,104 @@ public class RESTDispatcher implements HttpHandler {
             handleInternal(httpExchange);
         } catch (Exception e) { // added here because this is called from another thread
             logger.info("Exception while handling HTTP request", e);
+        } finally {
+            httpExchange.close();
         }
     }
 
-    private void handleInternal(HttpExchange httpExchange) throws IOException, InstantiationException {
+    private void handleInternal(HttpExchange httpExchange) throws IOException, InstantiationException,
+            InterruptedException {
         final String method = httpExchange.getRequestMethod();
-        logger.info("received HTTP request: {}", method);
+        final String path = httpExchange.getRequestURI().getPath().toLowerCase();
+        logger.info("received HTTP request: {} {}", method, path);
 
         if (method.equals("POST")) {
-            String solutionJson = treeComputation.handlePOST(httpExchange);
-            treeProvider.setLastSolution(solutionJson);
+            handlePOST(httpExchange, path);
+        } else if (method.equals("GET") && path.startsWith(TreeJobs.JOBS_URI)) {
+            handleJobGET(httpExchange, path.substring(TreeJobs.JOBS_URI.length()));
         } else if (method.equals("GET")) {
             treeProvider.handleGET(httpExchange);
         } else if (method.equals("DELETE")) {
+            // not while a computation installs its solution
+            synchronized (installer) {
+                ProgressMonitor tmp = installer.getProgressMonitor();
+                DeleteProgressWindow deleteProgressWindow = new DeleteProgressWindow();
+                deleteProgressWindow.init(true, "");
+                installer.setProgressMonitor(deleteProgressWindow);
 
-            ProgressMonitor tmp = installer.getProgressMonitor();
-            DeleteProgressWindow deleteProgressWindow = new DeleteProgressWindow();
-            deleteProgressWindow.init(true, "");
-            installer.setProgressMonitor(deleteProgressWindow);
-
-            installer.uninstallOldSolution();
-            installer.invalidateSolution();
-            treeProvider.setLastSolution(null);
-            httpExchange.sendResponseHeaders(200, -1);
+                installer.uninstallOldSolution();
+                installer.invalidateSolution();
+                treeProvider.setLastSolution(null);
+                httpExchange.sendResponseHeaders(200, -1);
 
-            installer.setProgressMonitor(tmp);
+                installer.setProgressMonitor(tmp);
+            }
         } else {
             logger.warn("unexpected HTTP method: {}", method);
         }
     }
+
+    private void handlePOST(HttpExchange httpExchange, String path) throws IOException {
+        if (!TreeComputation.isRequestURI(path)) {
+            logger.warn("unexpected request URI: {}", path);
+            httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            return;
+        }
+
+        TreeJob job;
+        try {
+            job = treeJobs.submit(path);
+        } catch (RejectedExecutionException e) {
+            sendResponse(httpExchange, HttpURLConnection.HTTP_UNAVAILABLE, "Too many tree computations are waiting");
+            return;
+        }
+        sendJob(httpExchange, job);
+    }
+
+    private void handleJobGET(HttpExchange httpExchange, String id) throws IOException, InterruptedException {
+        TreeJob job = treeJobs.get(id);
+        if (job == null) {
+            httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            return;
+        }
+
+        String query = httpExchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("wait=")) {
+                    try {
+                        job.await(Math.min(MAX_WAIT_MS, Long.parseLong(param.substring("wait=".length()))));
+                    } catch (NumberFormatException e) {
+                        sendResponse(httpExchange, HttpURLConnection.HTTP_BAD_REQUEST, "Invalid wait: " + param);
+                        return;
+                    }
+                }
+            }
+        }
+        sendJob(httpExchange, job);
+    }
+
+    private void sendJob(HttpExchange httpExchange, TreeJob job) throws IOException {
+        switch (job.getState()) {
+            case SUCCEEDED:
+                sendResponse(httpExchange, HttpURLConnection.HTTP_OK, job.getSolutionJson());
+                break;
+            case FAILED:
+                sendResponse(httpExchange, HttpURLConnection.HTTP_INTERNAL_ERROR, job.getError());
+                break;
+            case CANCELLED:
+                sendResponse(httpExchange, HttpURLConnection.HTTP_CONFLICT, job.getError());
+                break;
+            default:
+                httpExchange.getResponseHeaders().set("Location", TreeJobs.JOBS_URI + job.getId());
+                sendResponse(httpExchange, HttpURLConnection.HTTP_ACCEPTED, job.toJson());
+        }
+    }
+
+    private void sendResponse(HttpExchange httpExchange, int code, String body) throws IOException {
+        httpExchange.sendResponseHeaders(code, body.getBytes().length);
+        OutputStream os = httpExchange.getResponseBody();
+        os.write(body.getBytes());
+        os.close();
+    }
 }
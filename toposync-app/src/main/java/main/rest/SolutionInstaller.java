@@ -4,6 +4,7 @@ import main.ClientServerLocator;
 import main.ProgressMonitor;
 import org.onlab.packet.Ip4Address;
 import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Link;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.host.HostService;
@@ -12,6 +13,7 @@ import org.onosproject.net.topology.TopologyVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import thesiscode.common.flow.INfvTreeFlowPusher;
+import thesiscode.common.flow.TreeUpdate;
 import thesiscode.common.group.AbstractMulticastGroup;
 import thesiscode.common.group.IGroupMember;
 import thesiscode.common.group.WrappedHost;
@@ -22,16 +24,23 @@ import thesiscode.common.nfv.placement.deploy.NfvInstantiator;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.traffic.NprNfvTypes;
 import thesiscode.common.nfv.traffic.NprTraffic;
-import thesiscode.common.topo.WrappedPoPVertex;
 import thesiscode.common.tree.NFVPerSourceTree;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 public class SolutionInstaller {
     public static final String GROUP_IP = "224.2.3.4";
+    private static final long FLOW_CONFIRMATION_TIMEOUT_MS = 10 * 1000;
     private final Logger log = LoggerFactory.getLogger(getClass());
     private NfvPlacementSolution solution;
+    // the connect points of the VNFs of the installed solution per type
+    private Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfConnectPoints;
     private INfvTreeFlowPusher flowPusher;
     private NfvInstantiator instantiator;
 
@@ -57,29 +66,190 @@ public class SolutionInstaller {
         this.progressMonitor = progressMonitor;
     }
 
-    public void installSolution(NfvPlacementSolution solution) throws InstantiationException {
-        log.info("uninstalling old solution...");
-        uninstallOldSolution();
-        this.solution = solution;
+    public void installSolution(NfvPlacementSolution solution) throws InstantiationException, SwitchOverException {
+        installSolution(solution, () -> false);
+    }
+
+    /**
+     * Installs the solution unless the installation is cancelled. If a solution is installed, the new one is installed
+     * make-before-break, see {@link #installDelta(NfvPlacementSolution, BooleanSupplier)}. Cancellation is checked
+     * before the installation starts, after the VNFs are instantiated and before the flows are pushed. If the
+     * installation is cancelled, the VNFs instantiated so far are removed again and the solution installed before, if
+     * any, stays installed.
+     *
+     * @param solution  the solution to install
+     * @param cancelled whether the installation is cancelled, e.g. because a newer solution is about to be installed
+     * @return true if the solution was installed, false if the installation was cancelled
+     * @throws SwitchOverException if the flow rules of the new solution could not replace the installed ones
+     */
+    public boolean installSolution(NfvPlacementSolution solution, BooleanSupplier cancelled)
+            throws InstantiationException, SwitchOverException {
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        if (this.solution != null) {
+            return installDelta(solution, cancelled);
+        }
 
         log.info("placing VNFs..");
         long beforeTs = System.currentTimeMillis();
-        Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfConnectPoints = placeVNFs();
+        Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfConnectPoints = placeVNFs(solution.getSharedPlacements(),
+                cancelled);
+        if (vnfConnectPoints == null || cancelled.getAsBoolean()) {
+            log.info("installation cancelled, removing placed VNFs");
+            if (vnfConnectPoints != null) {
+                removeVNFs(solution.getSharedPlacements());
+            }
+            return false;
+        }
         long taskTime = System.currentTimeMillis() - beforeTs;
         progressMonitor.vnfPlaced(taskTime);
 
+        this.solution = solution;
+        this.vnfConnectPoints = vnfConnectPoints;
+
         log.info("pushing flows..");
         beforeTs = System.currentTimeMillis();
-        pushFlows(vnfConnectPoints);
+        awaitFlows(flowPusher.pushTree(buildTree(solution, vnfConnectPoints)), "pushing flows");
         taskTime = System.currentTimeMillis() - beforeTs;
         progressMonitor.flowsInstalled(taskTime);
+        return true;
+    }
+
+    /**
+     * Replaces the installed solution make-before-break, so that the packets never lack a path:
+     * <ol>
+     * <li>the VNFs the new solution places at another PoP are instantiated, the VNFs both solutions place at the same
+     * PoP stay untouched</li>
+     * <li>the flow rules of the new solution which differ from the installed ones are installed under a new version
+     * and the ingress switches the packets over to them, see {@link INfvTreeFlowPusher#updateTree(NFVPerSourceTree)}.
+     * The stale flow rules are removed afterwards</li>
+     * <li>the VNFs which are not used anymore are removed</li>
+     * </ol>
+     * If the packets could not be switched over, the new VNFs are removed again and the installed solution stays. The
+     * reconfiguration time and the packets at risk during the switch-over are logged.
+     */
+    private boolean installDelta(NfvPlacementSolution newSolution, BooleanSupplier cancelled)
+            throws InstantiationException, SwitchOverException {
+        long beforeReconfiguration = System.currentTimeMillis();
+        Map<NprNfvTypes.Type, Set<TopologyVertex>> toInstantiate = new HashMap<>();
+        Map<NprNfvTypes.Type, Set<ConnectPoint>> newVnfConnectPoints = new HashMap<>();
+        int kept = 0;
+        for (Map.Entry<NprNfvTypes.Type, Set<TopologyVertex>> entry : newSolution.getSharedPlacements().entrySet()) {
+            Set<ConnectPoint> cpsForType = newVnfConnectPoints.computeIfAbsent(entry.getKey(), k -> new HashSet<>());
+            for (TopologyVertex vert : entry.getValue()) {
+                ConnectPoint installed = installedVnf(entry.getKey(), vert.deviceId());
+                if (installed != null) {
+                    cpsForType.add(installed);
+                    kept++;
+                } else {
+                    toInstantiate.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).add(vert);
+                }
+            }
+        }
+        Map<NprNfvTypes.Type, Set<TopologyVertex>> stale = new HashMap<>();
+        for (Map.Entry<NprNfvTypes.Type, Set<TopologyVertex>> entry : solution.getSharedPlacements().entrySet()) {
+            Set<TopologyVertex> newPlacements = newSolution.getSharedPlacements()
+                                                           .getOrDefault(entry.getKey(), Collections.emptySet());
+            for (TopologyVertex vert : entry.getValue()) {
+                if (newPlacements.stream().noneMatch(v -> v.deviceId().equals(vert.deviceId()))) {
+                    stale.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).add(vert);
+                }
+            }
+        }
+
+        log.info("placing new VNFs {}, keeping {} VNFs..", toInstantiate, kept);
+        long beforeTs = System.currentTimeMillis();
+        Map<NprNfvTypes.Type, Set<ConnectPoint>> placed = placeVNFs(toInstantiate, cancelled);
+        if (placed == null || cancelled.getAsBoolean()) {
+            log.info("installation cancelled, removing placed VNFs, the old solution stays installed");
+            if (placed != null) {
+                removeVNFs(toInstantiate);
+            }
+            return false;
+        }
+        for (Map.Entry<NprNfvTypes.Type, Set<ConnectPoint>> entry : placed.entrySet()) {
+            newVnfConnectPoints.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+        }
+        long taskTime = System.currentTimeMillis() - beforeTs;
+        progressMonitor.vnfPlaced(taskTime);
+
+        log.info("switching flows over..");
+        beforeTs = System.currentTimeMillis();
+        TreeUpdate update = flowPusher.updateTree(buildTree(newSolution, newVnfConnectPoints));
+        taskTime = System.currentTimeMillis() - beforeTs;
+        progressMonitor.flowsInstalled(taskTime);
+        if (!update.isSwitchedOver()) {
+            log.warn("switching flows over failed, removing new VNFs, the old solution stays installed: {}", update);
+            removeVNFs(toInstantiate);
+            throw new SwitchOverException("Switching the flows over to the new solution failed");
+        }
+        this.solution = newSolution;
+        this.vnfConnectPoints = newVnfConnectPoints;
+
+        log.info("removing stale VNFs {}..", stale);
+        beforeTs = System.currentTimeMillis();
+        removeVNFs(stale);
+        taskTime = System.currentTimeMillis() - beforeTs;
+        progressMonitor.oldSolutionUninstalled(taskTime);
+
+        log.info("reconfigured in {} ms: {} VNFs kept, {} instantiated, {} removed, {}",
+                System.currentTimeMillis() - beforeReconfiguration, kept, count(toInstantiate), count(stale), update);
+        return true;
+    }
+
+    /**
+     * @return the connect point of the installed VNF of the type at the device, null if there is none
+     */
+    private ConnectPoint installedVnf(NprNfvTypes.Type type, DeviceId device) {
+        for (ConnectPoint cp : vnfConnectPoints.getOrDefault(type, Collections.emptySet())) {
+            if (cp.deviceId().equals(device)) {
+                return cp;
+            }
+        }
+        return null;
+    }
+
+    private static int count(Map<NprNfvTypes.Type, Set<TopologyVertex>> placements) {
+        return placements.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Replaces the installed solution by a repair of it, e.g. after a link failure. The repair has to keep the VNF
+     * placements, so the VNFs stay and only the flow rules which differ are applied and removed, see
+     * {@link INfvTreeFlowPusher#updateTree(NFVPerSourceTree)}.
+     *
+     * @param repaired the repaired solution
+     * @throws IllegalStateException if no solution is installed or the repair changed the VNF placements
+     * @throws SwitchOverException   if the flow rules of the repair could not replace the installed ones
+     */
+    public void installRepair(NfvPlacementSolution repaired) throws SwitchOverException {
+        if (solution == null || !solution.getSharedPlacements().equals(repaired.getSharedPlacements())) {
+            throw new IllegalStateException("Repair does not keep the placements of the installed solution");
+        }
+
+        log.info("pushing changed flows of repaired solution..");
+        TreeUpdate update = flowPusher.updateTree(buildTree(repaired, vnfConnectPoints));
+        if (!update.isSwitchedOver()) {
+            throw new SwitchOverException("Switching the flows over to the repaired solution failed");
+        }
+        this.solution = repaired;
+        log.info("installed repair: {}", update);
+    }
+
+    /**
+     * Aborts the VNF instantiations in flight, see {@link NfvInstantiator#abortInstantiations()}. May be called from
+     * any thread, a cancelled installation then fails over to its rollback without waiting for them.
+     */
+    public void abortInstantiations() {
+        instantiator.abortInstantiations();
     }
 
     protected void uninstallOldSolution() throws InstantiationException {
         if (solution != null) {
             log.info("deleting old flow rules");
             long beforeTs = System.currentTimeMillis();
-            flowPusher.deleteFlows();
+            awaitFlows(flowPusher.deleteFlows(), "deleting old flow rules");
             log.info("removing old VNF instances");
             removeVNFs();
             long taskTime = System.currentTimeMillis() - beforeTs;
@@ -87,44 +257,94 @@ public class SolutionInstaller {
         }
     }
 
+    /**
+     * Waits until the devices confirmed the flow rule operations. Failures are logged only, the flow rules of the
+     * devices which confirmed them stay applied either way.
+     */
+    private void awaitFlows(CompletableFuture<Boolean> confirmed, String operation) {
+        try {
+            if (!confirmed.get(FLOW_CONFIRMATION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("{} failed at some devices", operation);
+            }
+        } catch (TimeoutException e) {
+            log.warn("{} was not confirmed within {} ms", operation, FLOW_CONFIRMATION_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("{} failed", operation, e.getCause());
+        }
+    }
+
     private void removeVNFs() throws InstantiationException {
-        for (Map.Entry<NprNfvTypes.Type, Set<TopologyVertex>> entry : solution.getSharedPlacements().entrySet()) {
-            NprNfvTypes.Type vnfType = entry.getKey();
-            Set<TopologyVertex> placementSwitches = entry.getValue();
+        try {
+            await(instantiator.removeAll(solution.getSharedPlacements()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstantiationException("Interrupted while removing VNFs");
+        }
+    }
 
-            for (TopologyVertex placementSwitch : placementSwitches) {
-                boolean hwAccelerated = ((WrappedPoPVertex) placementSwitch).hwAccelerationOffered(vnfType);
-                instantiator.remove(vnfType, deviceService.getDevice(placementSwitch.deviceId()), hwAccelerated);
+    /**
+     * Instantiates the VNFs concurrently, see {@link NfvInstantiator#instantiateAll(Map)}. If any instantiation fails
+     * or the placement is cancelled, all VNFs to instantiate are removed again.
+     *
+     * @return the connect points of the VNFs per type, null if the placement was cancelled, then the VNFs instantiated
+     * so far were removed again
+     */
+    private Map<NprNfvTypes.Type, Set<ConnectPoint>> placeVNFs(Map<NprNfvTypes.Type, Set<TopologyVertex>> toInstantiate,
+                                                               BooleanSupplier cancelled)
+            throws InstantiationException {
+        Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfCps;
+        try {
+            vnfCps = await(instantiator.instantiateAll(toInstantiate));
+        } catch (InstantiationException e) {
+            removeVNFs(toInstantiate);
+            if (cancelled.getAsBoolean()) {
+                return null;
             }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            removeVNFs(toInstantiate);
+            return null;
         }
+        if (cancelled.getAsBoolean()) {
+            removeVNFs(toInstantiate);
+            return null;
+        }
+        return vnfCps;
     }
 
-    private Map<NprNfvTypes.Type, Set<ConnectPoint>> placeVNFs() throws InstantiationException {
-        Map<NprNfvTypes.Type, Set<TopologyVertex>> toInstantiate = solution.getSharedPlacements();
-        Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfCps = new HashMap<>();
+    /**
+     * Removes the VNFs of a cancelled placement or the stale VNFs of a replaced solution. Failed removals are ignored:
+     * an aborted instantiation may or may not have instantiated its VNF, and a stale VNF must not fail the
+     * installation of the solution which replaced it.
+     */
+    private void removeVNFs(Map<NprNfvTypes.Type, Set<TopologyVertex>> placed) {
+        try {
+            await(instantiator.removeAll(placed));
+        } catch (InstantiationException e) {
+            log.info("could not remove all VNFs of {}: {}", placed, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        for (NprNfvTypes.Type type : toInstantiate.keySet()) {
-            Set<ConnectPoint> cpsForType = new HashSet<>();
-            vnfCps.put(type, cpsForType);
-            for (TopologyVertex vert : toInstantiate.get(type)) {
-                if (vert instanceof WrappedPoPVertex) {
-                    WrappedPoPVertex wrapped = (WrappedPoPVertex) vert;
-                    if (wrapped.hwAccelerationOffered(type)) {
-                        cpsForType.add(instantiator.instantiate(type, deviceService.getDevice(vert.deviceId()), true));
-                    } else {
-                        cpsForType.add(instantiator.instantiate(type, deviceService.getDevice(vert.deviceId()), false));
-                    }
-                } else {
-                    throw new IllegalStateException("Trying to instantiate VNF at vert which is not a PoP (" + type.name() + "@" + vert
-                            .deviceId()
-                            .toString() + ")");
-                }
+    /**
+     * Waits for the VNF manager, a failure is unwrapped to its {@link InstantiationException}.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws InstantiationException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InstantiationException) {
+                throw (InstantiationException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
         }
-        return vnfCps;
     }
 
-    private void pushFlows(Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfCps) {
+    private NFVPerSourceTree buildTree(NfvPlacementSolution solution, Map<NprNfvTypes.Type, Set<ConnectPoint>> vnfCps) {
         IGroupMember src = new WrappedHost(hostService.getHostsByIp(ClientServerLocator.SERVER_ADDRESS)
                                                       .iterator()
                                                       .next());
@@ -152,8 +372,7 @@ public class SolutionInstaller {
         }
 
         AbstractMulticastGroup group = new IgmpMulticastGroup(new IgmpGroupIdentifier(Ip4Address.valueOf(GROUP_IP)));
-        NFVPerSourceTree nfvTree = new NFVPerSourceTree(src, solutionLinks, dsts, solutionVnfCps, group);
-        flowPusher.pushTree(nfvTree);
+        return new NFVPerSourceTree(src, solutionLinks, dsts, solutionVnfCps, group);
     }
 
     public void setProgressMonitor(ProgressMonitor progressMonitor) {
@@ -0,0 +1,11 @@
+package main.rest;
+
+/**
+ * Thrown by the {@link SolutionInstaller} if the packets could not be switched over to the flow rules of a new
+ * solution. The solution installed before stays installed.
+ */
+public class SwitchOverException extends Exception {
+    public SwitchOverException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,400 @@
+package main.rest;
+
+import main.rest.provide.TreeProvider;
+import org.onosproject.event.Event;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.LinkKey;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.link.LinkEvent;
+import org.onosproject.net.topology.TopologyEdge;
+import org.onosproject.net.topology.TopologyEvent;
+import org.onosproject.net.topology.TopologyListener;
+import org.onosproject.net.topology.TopologyVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
+import thesiscode.common.nfv.placement.solver.SolutionCache;
+import thesiscode.common.nfv.placement.solver.heuristic.TreeRepair;
+import thesiscode.common.nfv.traffic.NprTraffic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reacts to topology changes. Every {@link TopologyEvent} clears the {@link SolutionCache} at once, as the cached
+ * solutions were computed for the old topology. The reasons of the events are classified and queued, and the changes
+ * of a burst of events, i.e. of all events within the window starting with the first of them, are handled together at
+ * the end of the window:
+ * <ul>
+ * <li>the flows of the installed solution whose trees use a removed device, a removed link or an updated link are
+ * affected. A removed device also invalidates the installed solution, as its flow rules and VNFs can not be removed
+ * anymore</li>
+ * <li>if the trees are only affected by removed links, they are repaired locally with the VNF placements kept, see
+ * {@link TreeRepair}, and only the flow rules which changed are pushed. This takes milliseconds instead of the time
+ * of a full computation</li>
+ * <li>if a tree is affected and could not be repaired, or a computation was active during a removal or update and may
+ * have built its request before, a single job computes the tree for the changed topology, see
+ * {@link TreeJobs#recompute(String)}</li>
+ * </ul>
+ * Added devices and links and updated devices do not affect the installed trees, the next computation takes them into
+ * account.
+ * <p>
+ * The number of queued changes (the queue depth), the number of events per window (the coalescing ratio) and the
+ * times of the repairs are recorded.
+ */
+public class TopologyChangePipeline implements TopologyListener {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final long windowMs;
+    private final TreeProvider treeProvider;
+    private final SolutionInstaller installer;
+    private final SolutionCache solutionCache;
+    private final TreeJobs treeJobs;
+    private final TreeRepair treeRepair = new TreeRepair();
+    private final SolutionJsonEncoder solutionJsonEncoder = new SolutionJsonEncoder();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "topology-changes"));
+
+    // changes of the current window, guarded by this
+    private final List<TopologyChange> pending = new ArrayList<>();
+    private int pendingEvents;
+    private boolean jobActiveInWindow;
+    private boolean flushScheduled;
+
+    /*
+     * the links removed since the installed solution was computed, it may still route over them, and the installed
+     * solution the last flush saw or installed by a repair, used by flush only
+     */
+    private final Set<LinkKey> removedSinceComputed = new HashSet<>();
+    private NfvPlacementSolution lastInstalled;
+
+    // statistics, guarded by this
+    private long events;
+    private long windows;
+    private long recomputations;
+    private int maxQueueDepth;
+    private long repairs;
+    private double totalRepairMs;
+
+    /**
+     * A classified reason of a topology event.
+     */
+    static final class TopologyChange {
+        enum Kind {
+            DEVICE_ADDED, DEVICE_REMOVED, DEVICE_UPDATED, LINK_ADDED, LINK_REMOVED, LINK_UPDATED, OTHER
+        }
+
+        final Kind kind;
+        final DeviceId device; // of device changes
+        final LinkKey link; // of link changes
+
+        TopologyChange(Kind kind, DeviceId device, LinkKey link) {
+            this.kind = kind;
+            this.device = device;
+            this.link = link;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "(" + (link != null ? link : device) + ")";
+        }
+    }
+
+    /**
+     * @param windowMs      the length of the window in which the changes of a burst of events are collected in ms
+     * @param treeProvider  the provider of the installed solution
+     * @param installer     the installer of the solutions
+     * @param solutionCache the cache of the solutions
+     * @param treeJobs      the jobs recomputing the trees
+     */
+    public TopologyChangePipeline(long windowMs, TreeProvider treeProvider, SolutionInstaller installer,
+                                  SolutionCache solutionCache, TreeJobs treeJobs) {
+        this.windowMs = windowMs;
+        this.treeProvider = treeProvider;
+        this.installer = installer;
+        this.solutionCache = solutionCache;
+        this.treeJobs = treeJobs;
+    }
+
+    @Override
+    public void event(TopologyEvent topologyEvent) {
+        solutionCache.invalidate();
+
+        List<TopologyChange> changes = classify(topologyEvent);
+        boolean jobActive = treeJobs.hasActiveJob();
+        synchronized (this) {
+            events++;
+            pendingEvents++;
+            pending.addAll(changes);
+            maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+            jobActiveInWindow |= jobActive;
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops handling the queued changes.
+     */
+    public void dispose() {
+        scheduler.shutdownNow();
+    }
+
+    static List<TopologyChange> classify(TopologyEvent topologyEvent) {
+        List<Event> reasons = topologyEvent.reasons();
+        if (reasons == null || reasons.isEmpty()) {
+            return Collections.singletonList(new TopologyChange(TopologyChange.Kind.OTHER, null, null));
+        }
+        List<TopologyChange> changes = new ArrayList<>(reasons.size());
+        for (Event reason : reasons) {
+            if (reason instanceof DeviceEvent) {
+                DeviceEvent event = (DeviceEvent) reason;
+                TopologyChange.Kind kind;
+                switch (event.type()) {
+                    case DEVICE_ADDED:
+                        kind = TopologyChange.Kind.DEVICE_ADDED;
+                        break;
+                    case DEVICE_REMOVED:
+                        kind = TopologyChange.Kind.DEVICE_REMOVED;
+                        break;
+                    default:
+                        kind = TopologyChange.Kind.DEVICE_UPDATED;
+                }
+                changes.add(new TopologyChange(kind, event.subject().id(), null));
+            } else if (reason instanceof LinkEvent) {
+                LinkEvent event = (LinkEvent) reason;
+                TopologyChange.Kind kind;
+                switch (event.type()) {
+                    case LINK_ADDED:
+                        kind = TopologyChange.Kind.LINK_ADDED;
+                        break;
+                    case LINK_REMOVED:
+                        kind = TopologyChange.Kind.LINK_REMOVED;
+                        break;
+                    default:
+                        kind = TopologyChange.Kind.LINK_UPDATED;
+                }
+                changes.add(new TopologyChange(kind, null, LinkKey.linkKey(event.subject())));
+            } else {
+                changes.add(new TopologyChange(TopologyChange.Kind.OTHER, null, null));
+            }
+        }
+        return changes;
+    }
+
+    private void flush() {
+        List<TopologyChange> changes;
+        int windowEvents;
+        boolean jobActive;
+        synchronized (this) {
+            changes = new ArrayList<>(pending);
+            windowEvents = pendingEvents;
+            jobActive = jobActiveInWindow;
+            pending.clear();
+            pendingEvents = 0;
+            jobActiveInWindow = false;
+            flushScheduled = false;
+            windows++;
+        }
+
+        Set<DeviceId> removedDevices = new HashSet<>();
+        Set<LinkKey> removedLinks = new HashSet<>();
+        Set<LinkKey> updatedLinks = new HashSet<>();
+        Map<LinkKey, Boolean> linkRemoved = new HashMap<>(); // the last state of the added and removed links
+        for (TopologyChange change : changes) {
+            if (change.kind == TopologyChange.Kind.DEVICE_REMOVED) {
+                removedDevices.add(change.device);
+            } else if (change.kind == TopologyChange.Kind.LINK_REMOVED) {
+                removedLinks.add(change.link);
+                linkRemoved.put(change.link, true);
+            } else if (change.kind == TopologyChange.Kind.LINK_UPDATED) {
+                updatedLinks.add(change.link);
+            } else if (change.kind == TopologyChange.Kind.LINK_ADDED) {
+                linkRemoved.put(change.link, false);
+            }
+        }
+        Set<LinkKey> changedLinks = new HashSet<>(removedLinks);
+        changedLinks.addAll(updatedLinks);
+        boolean destructive = !removedDevices.isEmpty() || !changedLinks.isEmpty();
+
+        Set<NprTraffic> affected = Collections.emptySet();
+        String installedURI = null;
+        double repairMs = Double.NaN;
+        synchronized (installer) {
+            NfvPlacementSolution installed = installer.getInstalledSolution();
+            if (installed != lastInstalled) {
+                // a new solution was computed for the topology after the links removed so far
+                removedSinceComputed.clear();
+            }
+            lastInstalled = installed;
+            for (Map.Entry<LinkKey, Boolean> entry : linkRemoved.entrySet()) {
+                if (entry.getValue()) {
+                    removedSinceComputed.add(entry.getKey());
+                } else {
+                    removedSinceComputed.remove(entry.getKey());
+                }
+            }
+
+            if (installed != null && destructive) {
+                affected = affectedFlows(installed, removedDevices, changedLinks);
+                installedURI = TreeComputation.requestURIOf(installed);
+                if (!affected.isEmpty() && !Collections.disjoint(devicesOf(installed), removedDevices)) {
+                    treeProvider.setLastSolution(null);
+                    installer.invalidateSolution();
+                } else if (!affected.isEmpty() &&
+                        affectedFlows(installed, Collections.emptySet(), updatedLinks).isEmpty()) {
+                    repairMs = repair(installed);
+                    if (!Double.isNaN(repairMs)) {
+                        affected = Collections.emptySet();
+                    }
+                }
+            }
+        }
+
+        TreeJob job = null;
+        if (!affected.isEmpty() || (destructive && jobActive)) {
+            try {
+                job = treeJobs.recompute(affected.isEmpty() ? null : installedURI);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Could not recompute tree after topology change: {}", e.getMessage());
+            }
+        }
+
+        synchronized (this) {
+            if (job != null) {
+                recomputations++;
+            }
+            if (!Double.isNaN(repairMs)) {
+                repairs++;
+                totalRepairMs += repairMs;
+            }
+            logger.info("{} topology events within {} ms: {}, affected flows: {}, repaired in: {} ms, recomputed by: " +
+                        "{} (queue depth {}, max {}, {} events per window, {} recomputations, {} repairs)",
+                    windowEvents, windowMs, changes, affected, repairMs, job, pending.size(), maxQueueDepth,
+                    getCoalescingRatio(), recomputations, repairs);
+        }
+    }
+
+    /**
+     * Repairs the trees of the installed solution around the removed links and installs the repair. Has to be called
+     * while holding the lock of the installer.
+     *
+     * @return the time of the repair and its installation in ms, NaN if the trees could not be repaired
+     */
+    private double repair(NfvPlacementSolution installed) {
+        long before = System.nanoTime();
+        NfvPlacementSolution repaired = treeRepair.repair(installed, removedSinceComputed);
+        if (repaired == null) {
+            logger.info("Could not repair the installed trees around {}", removedSinceComputed);
+            return Double.NaN;
+        }
+        try {
+            installer.installRepair(repaired);
+        } catch (SwitchOverException | RuntimeException e) {
+            logger.warn("Could not install the repaired trees", e);
+            return Double.NaN;
+        }
+        lastInstalled = repaired;
+        treeProvider.setLastSolution(solutionJsonEncoder.toJson(repaired));
+        double repairMs = (System.nanoTime() - before) / 1e6;
+        logger.info("Repaired the installed trees around {} in {} ms (solved in {} ms): {}", removedSinceComputed,
+                repairMs, treeRepair.getLastRuntime(), repaired);
+        return repairMs;
+    }
+
+    /**
+     * @return the flows whose trees use a removed device or a changed link, including the VNF placements of the flows
+     */
+    private static Set<NprTraffic> affectedFlows(NfvPlacementSolution solution, Set<DeviceId> removedDevices,
+                                                 Set<LinkKey> changedLinks) {
+        Set<NprTraffic> affected = new LinkedHashSet<>();
+        for (Map.Entry<NprTraffic, Set<TopologyEdge>> entry : solution.getSolutionEdges().entrySet()) {
+            for (TopologyEdge edge : entry.getValue()) {
+                if (removedDevices.contains(edge.src().deviceId()) || removedDevices.contains(edge.dst().deviceId()) ||
+                        (edge.link() != null && changedLinks.contains(LinkKey.linkKey(edge.link())))) {
+                    affected.add(entry.getKey());
+                    break;
+                }
+            }
+            for (Set<TopologyVertex> placements : solution.getPlacementsForTraffic(entry.getKey()).values()) {
+                for (TopologyVertex placement : placements) {
+                    if (removedDevices.contains(placement.deviceId())) {
+                        affected.add(entry.getKey());
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static Set<DeviceId> devicesOf(NfvPlacementSolution solution) {
+        Set<DeviceId> devices = new HashSet<>();
+        for (Set<TopologyEdge> edges : solution.getSolutionEdges().values()) {
+            for (TopologyEdge edge : edges) {
+                devices.add(edge.src().deviceId());
+                devices.add(edge.dst().deviceId());
+            }
+        }
+        for (Set<TopologyVertex> placements : solution.getSharedPlacements().values()) {
+            for (TopologyVertex placement : placements) {
+                devices.add(placement.deviceId());
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * @return the number of changes waiting for the end of the current window
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return the maximum number of changes which waited for the end of a window
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return the number of events per handled window, NaN if no window was handled yet
+     */
+    public synchronized double getCoalescingRatio() {
+        return windows == 0 ? Double.NaN : (double) (events - pendingEvents) / windows;
+    }
+
+    /**
+     * @return the number of installed solutions which were repaired after link removals
+     */
+    public synchronized long getRepairs() {
+        return repairs;
+    }
+
+    /**
+     * @return the mean time of a repair including the installation of the changed flow rules in ms, NaN if no
+     * solution was repaired yet
+     */
+    public synchronized double getMeanRepairMs() {
+        return repairs == 0 ? Double.NaN : totalRepairMs / repairs;
+    }
+
+    /**
+     * @return the number of jobs started or joined to recompute trees after topology changes
+     */
+    public synchronized long getRecomputations() {
+        return recomputations;
+    }
+}
@@ -1,51 +1,216 @@
 package main.rest;
 
-import com.sun.net.httpserver.HttpExchange;
+import gurobi.GRB;
 import gurobi.GRBEnv;
 import main.ProgressMonitor;
 import main.RequestGenerator;
+import main.rest.provide.TreeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import thesiscode.common.nfv.placement.deploy.InstantiationException;
 import thesiscode.common.nfv.placement.solver.NfvPlacementRequest;
 import thesiscode.common.nfv.placement.solver.NfvPlacementSolution;
 import thesiscode.common.nfv.placement.solver.OptimizationGoal;
+import thesiscode.common.nfv.placement.solver.PortfolioPlacementSolver;
+import thesiscode.common.nfv.placement.solver.RequestFingerprint;
+import thesiscode.common.nfv.placement.solver.SolutionCache;
+import thesiscode.common.nfv.placement.solver.heuristic.SfcHeuristicPlacementSolver;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiBackend;
+import thesiscode.common.nfv.placement.solver.ilp.GurobiEnvPool;
 import thesiscode.common.nfv.placement.solver.mfcp.used.RefSfcPlacementSolver;
 import thesiscode.common.nfv.placement.solver.mfcp.used.SfcPlacementSolver;
 import thesiscode.common.nfv.placement.solver.mfcp.used.TopoSyncSFCPlacementSolver;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public class TreeComputation {
     public static final String TOPOSYNC_REQUEST_URI = "/tree/toposync-sfc";
     private static final String REF_REQUEST_URI = "/tree/shortest-path-sfc";
     private static final double ALPHA = 1.0;
+    private static final long SLA_MS = 200; // time after which the best solution found so far is returned
+    private static final long SOLVER_TIME_LIMIT_MS = 30 * 1000;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private RequestGenerator requestGenerator;
     private GRBEnv env;
+    private GurobiEnvPool envPool;
     private SolutionInstaller installer;
+    // publishes the installed solution at GET /tree
+    private TreeProvider treeProvider;
     private SolutionJsonEncoder solutionJsonEncoder;
     private ProgressMonitor progressMonitor;
+    private SolutionCache solutionCache;
 
-    public TreeComputation(RequestGenerator requestGenerator, GRBEnv env, SolutionInstaller installer,
-                           ProgressMonitor progressMonitor) {
+    /*
+     * the solvers keep their models, so that a request for an unchanged topology and traffic only updates the
+     * coefficients of the model built for the previous request
+     */
+    private SfcPlacementSolver topoSyncSolver;
+    private SfcPlacementSolver refSolver;
+
+    /*
+     * the portfolios race the kept solvers against fresh solvers tuned for finding feasible solutions and for proving
+     * optimality, the TopoSync portfolio also against a fresh solver enforcing the trees by lazy constraints. The first
+     * proven optimal solution wins
+     */
+    private PortfolioPlacementSolver topoSyncPortfolio;
+    private PortfolioPlacementSolver refPortfolio;
+    // runs the configurations of a portfolio, one thread per environment of the pool
+    private final ExecutorService portfolioExecutor;
+
+    /*
+     * the heuristics give the start solution of the ILPs if no solution is installed yet and the fallback if the ILPs
+     * find no solution
+     */
+    private SfcHeuristicPlacementSolver topoSyncHeuristic;
+    private SfcHeuristicPlacementSolver refHeuristic;
+
+    // runs the portfolio solves one after another, a solve which exceeds the SLA keeps improving its solution here
+    private final ExecutorService solverExecutor = Executors.newSingleThreadExecutor();
+    // set if the last computation exceeded the SLA, called with the returned solution once it is installed
+    private Consumer<NfvPlacementSolution> pendingImprovement;
+    /*
+     * the solve of the last computation and its portfolio. A solve which exceeded the SLA is terminated when the next
+     * computation starts, as the solve of the next computation would otherwise wait for it on the solver thread
+     */
+    private CompletableFuture<NfvPlacementSolution> lastSolve;
+    private PortfolioPlacementSolver lastSolvePortfolio;
+    private AtomicBoolean lastSolveSuperseded;
+
+    public TreeComputation(RequestGenerator requestGenerator, GRBEnv env, GurobiEnvPool envPool,
+                           SolutionInstaller installer, TreeProvider treeProvider, ProgressMonitor progressMonitor,
+                           SolutionCache solutionCache) {
         this.requestGenerator = requestGenerator;
         this.env = env;
+        this.envPool = envPool;
         this.solutionJsonEncoder = new SolutionJsonEncoder();
         this.installer = installer;
+        this.treeProvider = treeProvider;
         this.progressMonitor = progressMonitor;
+        this.solutionCache = solutionCache;
+
+        this.topoSyncSolver = new TopoSyncSFCPlacementSolver(OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, true,
+                env, ALPHA);
+        this.topoSyncSolver.setKeepModel(true);
+        this.topoSyncSolver.setTimeLimit(SOLVER_TIME_LIMIT_MS);
+        this.topoSyncSolver.setPresolve(true);
+        this.refSolver = new RefSfcPlacementSolver(true, env, ALPHA, logger);
+        this.refSolver.setKeepModel(true);
+        this.refSolver.setTimeLimit(SOLVER_TIME_LIMIT_MS);
+        this.refSolver.setPresolve(true);
+        this.topoSyncHeuristic = new SfcHeuristicPlacementSolver(OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION,
+                ALPHA);
+        this.refHeuristic = new SfcHeuristicPlacementSolver(OptimizationGoal.SPT, ALPHA);
+
+        // the kept-model configurations run on the main environment, the others on environments of the pool
+        this.portfolioExecutor = Executors.newFixedThreadPool(envPool.size() + 1);
+        this.topoSyncPortfolio = new PortfolioPlacementSolver(Arrays.asList(
+                PortfolioPlacementSolver.Configuration.withoutEnv("kept-model", () -> topoSyncSolver),
+                new PortfolioPlacementSolver.Configuration("mip-focus-feasibility",
+                        poolEnv -> tuned(new TopoSyncSFCPlacementSolver(
+                                OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, false, poolEnv, ALPHA), poolEnv, 1)),
+                new PortfolioPlacementSolver.Configuration("mip-focus-optimality",
+                        poolEnv -> tuned(new TopoSyncSFCPlacementSolver(
+                                OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, false, poolEnv, ALPHA), poolEnv, 2)),
+                new PortfolioPlacementSolver.Configuration("lazy-tree", poolEnv -> {
+                    TopoSyncSFCPlacementSolver solver = new TopoSyncSFCPlacementSolver(
+                            OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, false, poolEnv, ALPHA);
+                    solver.setTreeMode(TopoSyncSFCPlacementSolver.TreeMode.LAZY);
+                    return tuned(solver, poolEnv, 0);
+                })),
+                portfolioExecutor, envPool, SOLVER_TIME_LIMIT_MS);
+        this.refPortfolio = new PortfolioPlacementSolver(Arrays.asList(
+                PortfolioPlacementSolver.Configuration.withoutEnv("kept-model", () -> refSolver),
+                new PortfolioPlacementSolver.Configuration("mip-focus-feasibility",
+                        poolEnv -> tuned(new RefSfcPlacementSolver(false, poolEnv, ALPHA), poolEnv, 1)),
+                new PortfolioPlacementSolver.Configuration("mip-focus-optimality",
+                        poolEnv -> tuned(new RefSfcPlacementSolver(false, poolEnv, ALPHA), poolEnv, 2))),
+                portfolioExecutor, envPool, SOLVER_TIME_LIMIT_MS);
+    }
+
+    /**
+     * Configures a fresh solver of a portfolio like the kept one, but with the given MIPFocus (0 is Gurobi's default).
+     */
+    private static SfcPlacementSolver tuned(SfcPlacementSolver solver, GRBEnv env, int mipFocus) {
+        GurobiBackend backend = new GurobiBackend(env);
+        backend.setParam(GRB.IntParam.MIPFocus, mipFocus);
+        solver.setBackend(backend);
+        solver.setTimeLimit(SOLVER_TIME_LIMIT_MS);
+        solver.setPresolve(true);
+        return solver;
+    }
+
+    /**
+     * Waits for a running solve and releases the models kept by the solvers. Has to be called before the environments
+     * are disposed.
+     */
+    public void dispose() {
+        solverExecutor.execute(() -> {
+            topoSyncSolver.setKeepModel(false);
+            refSolver.setKeepModel(false);
+        });
+        solverExecutor.shutdown();
+        try {
+            if (!solverExecutor.awaitTermination(SOLVER_TIME_LIMIT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Solver did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        portfolioExecutor.shutdownNow();
+    }
+
+    /**
+     * @return true if a tree is computed for POSTs to the given URI
+     */
+    public static boolean isRequestURI(String requestURI) {
+        return requestURI.equals(TOPOSYNC_REQUEST_URI) || requestURI.equals(REF_REQUEST_URI);
     }
 
-    protected String handlePOST(HttpExchange httpExchange) throws IOException {
-        String requestURI = httpExchange.getRequestURI().toString().toLowerCase();
-        NfvPlacementSolution solution = null;
+    /**
+     * @return the URI at which the kind of tree of the solution is computed, null if it is no kind the app computes
+     */
+    public static String requestURIOf(NfvPlacementSolution solution) {
+        switch (solution.getSolutionType()) {
+            case TOPOSYNC_SFC:
+                return TOPOSYNC_REQUEST_URI;
+            case SPT:
+                return REF_REQUEST_URI;
+            default:
+                return null;
+        }
+    }
 
+    /**
+     * Computes the tree for the current topology, installs it and publishes it at GET /tree. Called by the
+     * {@link TreeJobs} one after another.
+     * <p>
+     * The computation can be cancelled: it checks the given cancellation after solving and while installing (see
+     * {@link SolutionInstaller#installSolution(NfvPlacementSolution, BooleanSupplier)}). {@link #abort()} makes it
+     * reach these checks early.
+     *
+     * @param requestURI the URI the computation was requested at, see {@link #isRequestURI(String)}
+     * @param cancelled  whether the computation is cancelled
+     * @return the installed solution as JSON, null if the computation was cancelled before its solution was installed
+     * @throws TreeComputationException if no solution was found or it could not be installed
+     */
+    String computeTree(String requestURI, BooleanSupplier cancelled) throws TreeComputationException {
+        NfvPlacementSolution solution;
 
         final boolean oldSolutionIsInstalled = (installer.getInstalledSolution() != null);
+        pendingImprovement = null;
+        terminateLastSolve();
 
         long beforeTs = System.currentTimeMillis();
         if (requestURI.equals(TOPOSYNC_REQUEST_URI)) {
@@ -57,62 +222,201 @@ public class TreeComputation {
             progressMonitor.init(oldSolutionIsInstalled, "Shortest-Path-SFC");
             solution = computeRefTree();
         } else {
-            logger.warn("unexpected request URI: {}", requestURI);
-            throw new IllegalStateException();
+            throw new IllegalArgumentException("unexpected request URI: " + requestURI);
         }
 
         long taskTime = System.currentTimeMillis() - beforeTs;
         progressMonitor.solutionCalculated(taskTime);
 
-        String solutionJson = null;
-
-        if (solution != null) {
-            try {
-                installer.installSolution(solution);
-                solutionJson = solutionJsonEncoder.toJson(solution);
-                sendSolution(httpExchange, solutionJson);
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-                sendErrorResponse(httpExchange, "VNF instantiation/removal was not possible");
+        if (cancelled.getAsBoolean()) {
+            logger.info("Computation of {} cancelled after solving", requestURI);
+            return null;
+        }
+        if (solution == null) {
+            throw new TreeComputationException("Model was infeasible, solution == null");
+        }
+        String solutionJson = solutionJsonEncoder.toJson(solution);
+        try {
+            synchronized (installer) {
+                if (!installer.installSolution(solution, cancelled)) {
+                    logger.info("Computation of {} cancelled while installing", requestURI);
+                    return null;
+                }
+                // published under the lock, so that an improvement installed later is never overwritten by it
+                treeProvider.setLastSolution(solutionJson);
+                if (pendingImprovement != null) {
+                    pendingImprovement.accept(solution);
+                }
             }
-        } else {
-            sendErrorResponse(httpExchange, "Model was infeasible, solution == null");
+        } catch (InstantiationException e) {
+            throw new TreeComputationException("VNF instantiation/removal was not possible", e);
+        } catch (SwitchOverException e) {
+            throw new TreeComputationException(e.getMessage() + ", the previous solution stays installed", e);
         }
-
         return solutionJson;
     }
 
-    private void sendErrorResponse(HttpExchange httpExchange, String error) throws IOException {
-        httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, error.getBytes().length);
-        OutputStream os = httpExchange.getResponseBody();
-        os.write(error.getBytes());
-        os.close();
+    /**
+     * Makes a cancelled computation stop as soon as possible: terminates the ILP solves, including one which keeps
+     * improving the solution of an earlier computation in the background, and aborts the VNF instantiations in flight.
+     * May be called from any thread.
+     */
+    void abort() {
+        topoSyncPortfolio.terminate();
+        refPortfolio.terminate();
+        installer.abortInstantiations();
     }
 
-    private NfvPlacementSolution computeTopoSyncTree() {
+    /**
+     * Terminates the solve of the last computation if it is still improving its solution in the background. Its
+     * solution is neither cached nor installed then.
+     */
+    private void terminateLastSolve() {
+        if (lastSolve != null && !lastSolve.isDone()) {
+            logger.info("Terminating the background solve of the last computation");
+            lastSolveSuperseded.set(true);
+            lastSolvePortfolio.terminate();
+        }
+    }
+
+    /**
+     * @return true if a solution is installed
+     */
+    boolean isSolutionInstalled() {
+        return installer.getInstalledSolution() != null;
+    }
+
+    private NfvPlacementSolution computeTopoSyncTree() throws TreeComputationException {
         NfvPlacementRequest request = requestGenerator.createRequest();
+        RequestFingerprint fingerprint = RequestFingerprint.of(request,
+                OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION, ALPHA);
+        NfvPlacementSolution cached = solutionCache.get(fingerprint);
+        if (cached != null) {
+            logger.info("Returning cached TopoSync-SFC solution {}, {}", fingerprint, solutionCache);
+            return cached;
+        }
 
-        SfcPlacementSolver solver = new TopoSyncSFCPlacementSolver(OptimizationGoal.MIN_MAX_DELAYSUM_THEN_DEVIATION,
-                true, env, ALPHA);
+        NfvPlacementSolution heuristicSolution = topoSyncHeuristic.solve(request);
+        logger.info("Finished calculating heuristic TopoSync-SFC solution in {} ms: {}",
+                topoSyncHeuristic.getLastRuntime(), heuristicSolution);
 
-        NfvPlacementSolution solution = solver.solve(request);
-        logger.info("Finished calculating TopoSync-SFC solution: {}", solution);
-        return solution;
+        return solveWithinSla("TopoSync-SFC", topoSyncPortfolio, request, fingerprint, heuristicSolution);
     }
 
-    private NfvPlacementSolution computeRefTree() {
+    private NfvPlacementSolution computeRefTree() throws TreeComputationException {
         NfvPlacementRequest request = requestGenerator.createRequest();
+        RequestFingerprint fingerprint = RequestFingerprint.of(request, OptimizationGoal.SPT, ALPHA);
+        NfvPlacementSolution cached = solutionCache.get(fingerprint);
+        if (cached != null) {
+            logger.info("Returning cached REF solution {}, {}", fingerprint, solutionCache);
+            return cached;
+        }
+
+        NfvPlacementSolution heuristicSolution = refHeuristic.solve(request);
+        logger.info("Finished calculating heuristic REF solution in {} ms: {}", refHeuristic.getLastRuntime(),
+                heuristicSolution);
+
+        return solveWithinSla("REF", refPortfolio, request, fingerprint, heuristicSolution);
+    }
+
+    /**
+     * Solves the request with the ILP portfolio on the solver thread. If the portfolio finishes within the SLA, its
+     * solution is returned (or the heuristic solution if the portfolio found none). Otherwise the best solution found
+     * so far is returned and the portfolio keeps improving it in the background until it finishes or the next
+     * computation starts. Its final solution is cached and, once the returned solution was installed, installed if the
+     * returned solution is still installed and the final one is better.
+     *
+     * @param name              the name of the solver for logging
+     * @param portfolio         the ILP portfolio
+     * @param request           the request to solve
+     * @param fingerprint       the fingerprint of the request under which the final solution is cached
+     * @param heuristicSolution the heuristic solution of the request, may be null
+     * @return the solution or null if the request is infeasible
+     * @throws TreeComputationException if the SLA expired before any solution was found
+     */
+    private NfvPlacementSolution solveWithinSla(String name, PortfolioPlacementSolver portfolio,
+                                                NfvPlacementRequest request, RequestFingerprint fingerprint,
+                                                NfvPlacementSolution heuristicSolution)
+            throws TreeComputationException {
+        AtomicReference<NfvPlacementSolution> bestSoFar = new AtomicReference<>(heuristicSolution);
+        NfvPlacementSolution installed = installer.getInstalledSolution();
+        AtomicBoolean superseded = new AtomicBoolean();
 
-        SfcPlacementSolver solver = new RefSfcPlacementSolver(true, env, ALPHA, logger);
-        NfvPlacementSolution solution = solver.solve(request);
-        logger.info("Finished calculating REF solution: {}", solution);
-        return solution;
+        CompletableFuture<NfvPlacementSolution> ilp = CompletableFuture.supplyAsync(() -> {
+            if (superseded.get()) {
+                // superseded before it started
+                return null;
+            }
+            // the installed solution usually fits the new request largely, it gives the solver an early incumbent
+            portfolio.setStartSolution(installed != null ? installed : heuristicSolution);
+            // incumbents of a multi-objective model improve a lower priority objective at the same value
+            portfolio.setIncumbentListener(incumbent -> bestSoFar.accumulateAndGet(incumbent,
+                    (best, next) -> best == null || next.getValue() <= best.getValue() ? next : best));
+            NfvPlacementSolution solution = portfolio.solve(request);
+            logger.info("Finished calculating {} solution in {} ms (winner: {}): {}", name,
+                    portfolio.getLastRuntime(), portfolio.getLastWinner(), solution);
+            if (portfolio.getLastWinner() != null) {
+                logger.info("Telemetry of the {} solve: {}", name,
+                        portfolio.getLastTelemetry().get(portfolio.getLastWinner()));
+            }
+            // the solution of a terminated solve is not the one the portfolio would have found for the request
+            if (solution != null && !portfolio.wasLastTerminated()) {
+                solutionCache.put(fingerprint, solution);
+            }
+            return solution;
+        }, solverExecutor);
+        lastSolve = ilp;
+        lastSolvePortfolio = portfolio;
+        lastSolveSuperseded = superseded;
+
+        try {
+            NfvPlacementSolution solution = ilp.get(SLA_MS, TimeUnit.MILLISECONDS);
+            if (solution == null && heuristicSolution != null) {
+                logger.warn("No {} solution found, falling back to the heuristic solution", name);
+                return heuristicSolution;
+            }
+            return solution;
+        } catch (TimeoutException e) {
+            NfvPlacementSolution solution = bestSoFar.get();
+            if (solution == null) {
+                // the ILP keeps running and is cached once it finishes, a retry may find its solution
+                throw new TreeComputationException("No " + name + " solution found within the SLA of " + SLA_MS +
+                        " ms");
+            }
+            logger.info("{} ILP not finished within {} ms, returning best solution so far: {}", name, SLA_MS,
+                    solution);
+            pendingImprovement = returned -> ilp.thenAccept(improved -> {
+                if (!superseded.get()) {
+                    installImproved(name, returned, improved);
+                }
+            });
+            return solution;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return bestSoFar.get();
+        } catch (ExecutionException e) {
+            logger.error("{} ILP failed", name, e.getCause());
+            return heuristicSolution;
+        }
     }
 
-    private void sendSolution(HttpExchange exchange, String solutionJson) throws IOException {
-        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, solutionJson.getBytes().length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(solutionJson.getBytes());
-        os.close();
+    /**
+     * Installs the final solution of an ILP which exceeded the SLA if the solution returned instead is still
+     * installed and the final one is better, and publishes it at GET /tree.
+     */
+    private void installImproved(String name, NfvPlacementSolution returned, NfvPlacementSolution improved) {
+        synchronized (installer) {
+            if (improved == null || installer.getInstalledSolution() != returned ||
+                    improved.getValue() >= returned.getValue()) {
+                return;
+            }
+            try {
+                logger.info("Installing improved {} solution: {}", name, improved);
+                installer.installSolution(improved);
+                treeProvider.setLastSolution(solutionJsonEncoder.toJson(improved));
+            } catch (InstantiationException | SwitchOverException e) {
+                logger.error("Could not install improved {} solution", name, e);
+            }
+        }
     }
 }
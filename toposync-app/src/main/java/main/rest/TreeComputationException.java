@@ -0,0 +1,15 @@
+package main.rest;
+
+/**
+ * Thrown by the {@link TreeComputation} if no tree was found or it could not be installed. The message is sent to the
+ * client.
+ */
+public class TreeComputationException extends Exception {
+    public TreeComputationException(String message) {
+        super(message);
+    }
+
+    public TreeComputationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,169 @@
+package main.rest;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A tree computation requested by a POST, run by the {@link TreeJobs}. Clients poll its state or wait until it is
+ * finished; a succeeded job carries the installed solution as JSON, a failed or cancelled one the error message.
+ * <p>
+ * A job is cancelled if it is superseded by a newer one before its solution is installed. A queued job is cancelled
+ * immediately, a running one once its computation notices the cancellation; the time in between is its cancellation
+ * latency.
+ */
+public class TreeJob {
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final String requestURI;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private State state = State.QUEUED;
+    private String solutionJson;
+    private String error;
+    private volatile long cancelRequestedAt; // System.nanoTime(), 0 if no cancellation was requested
+    private String cancelReason;
+    private double cancelLatencyMs = Double.NaN;
+
+    TreeJob(String id, String requestURI) {
+        this.id = id;
+        this.requestURI = requestURI;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the URI the job was posted to, i.e. the kind of tree it computes
+     */
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the installed solution as JSON if the job succeeded, null otherwise
+     */
+    public synchronized String getSolutionJson() {
+        return solutionJson;
+    }
+
+    /**
+     * @return the error message if the job failed or was cancelled, null otherwise
+     */
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * @return true if the cancellation of the job was requested, it may have finished nevertheless
+     */
+    public boolean isCancelRequested() {
+        return cancelRequestedAt != 0;
+    }
+
+    /**
+     * @return the time from the cancellation request until the job stopped in ms, NaN if it was not cancelled
+     */
+    public synchronized double getCancelLatencyMs() {
+        return cancelLatencyMs;
+    }
+
+    /**
+     * Waits until the job is finished.
+     *
+     * @param timeoutMs the maximum time to wait in ms
+     * @return true if the job is finished
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if the job was queued and is running now, false if it was failed in the meantime
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        return true;
+    }
+
+    synchronized void succeed(String solutionJson) {
+        this.solutionJson = solutionJson;
+        finish(State.SUCCEEDED);
+    }
+
+    synchronized void fail(String error) {
+        this.error = error;
+        finish(State.FAILED);
+    }
+
+    /**
+     * Requests the cancellation of the job. A queued job is cancelled at once, a running one has to stop itself by
+     * {@link #cancelled()}.
+     *
+     * @param reason the error message of the cancelled job
+     * @return the state of the job when the cancellation was requested
+     */
+    synchronized State requestCancel(String reason) {
+        if (isFinished() || isCancelRequested()) {
+            return state;
+        }
+        cancelRequestedAt = System.nanoTime();
+        cancelReason = reason;
+        State before = state;
+        if (state == State.QUEUED) {
+            cancelled();
+        }
+        return before;
+    }
+
+    /**
+     * Finishes the job as cancelled after its computation stopped, its cancellation has to be requested.
+     */
+    synchronized void cancelled() {
+        this.error = cancelReason;
+        cancelLatencyMs = (System.nanoTime() - cancelRequestedAt) / 1_000_000.0;
+        finish(State.CANCELLED);
+    }
+
+    private void finish(State state) {
+        this.state = state;
+        finished.countDown();
+    }
+
+    /**
+     * @return the state of the job as JSON, without the solution
+     */
+    public synchronized String toJson() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("uri", requestURI);
+        json.put("state", state.name());
+        if (error != null) {
+            json.put("error", error);
+        }
+        if (!Double.isNaN(cancelLatencyMs)) {
+            json.put("cancelLatencyMs", cancelLatencyMs);
+        }
+        return json.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TreeJob{id=" + id + ", uri=" + requestURI + ", state=" + getState() + "}";
+    }
+}
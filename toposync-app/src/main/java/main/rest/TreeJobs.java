@@ -0,0 +1,262 @@
+package main.rest;
+
+import main.rest.provide.TreeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tree computations requested by POSTs as {@link TreeJob}s, so that the HTTP threads only submit them and
+ * stay free for other requests. The jobs run one after another on a dedicated thread, as every computation replaces
+ * the installed solution. A POST for a kind of tree which is already queued or computed joins that job instead of
+ * computing the same tree again.
+ * <p>
+ * All trees are computed for the same multicast group, so only the latest intent counts: a POST for another kind of
+ * tree supersedes the queued and running jobs. They are cancelled, the queued ones are removed from the queue, the
+ * running one is aborted (see {@link TreeComputation#abort()}) and stops at its next cancellation check, before or
+ * while installing its solution. The cancellation latencies are recorded; a latency above
+ * {@value #CANCEL_LATENCY_WARN_MS} ms is logged as a warning.
+ * <p>
+ * At most {@value #MAX_QUEUED_JOBS} jobs wait, further ones are rejected. The last {@value #MAX_FINISHED_JOBS}
+ * finished jobs are kept for clients which poll them.
+ */
+public class TreeJobs {
+    public static final String JOBS_URI = "/tree/jobs/";
+    private static final int MAX_QUEUED_JOBS = 4;
+    private static final int MAX_FINISHED_JOBS = 32;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30 * 1000;
+    private static final long CANCEL_LATENCY_WARN_MS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final TreeComputation treeComputation;
+    private final TreeProvider treeProvider;
+    private final ThreadPoolExecutor executor;
+
+    // job ID -> job in the order of submission, guarded by this
+    private final Map<String, TreeJob> jobs = new LinkedHashMap<>();
+    // request URI -> queued or running job, guarded by this
+    private final Map<String, TreeJob> activeJobs = new HashMap<>();
+    // queued job -> its task in the queue of the executor, guarded by this
+    private final Map<TreeJob, Runnable> queuedTasks = new HashMap<>();
+    private long nextId = 1;
+    // latencies of the cancelled running jobs, guarded by this
+    private int cancelledRunningJobs;
+    private double totalCancelLatencyMs;
+    private double maxCancelLatencyMs;
+
+    public TreeJobs(TreeComputation treeComputation, TreeProvider treeProvider) {
+        this.treeComputation = treeComputation;
+        this.treeProvider = treeProvider;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS), runnable -> new Thread(runnable, "tree-computation"));
+    }
+
+    /**
+     * Submits the computation of a tree or returns the queued or running job computing the same kind of tree. The
+     * jobs computing other kinds of trees are cancelled.
+     *
+     * @param requestURI the URI of the tree, see {@link TreeComputation#isRequestURI(String)}
+     * @return the job computing the tree
+     * @throws RejectedExecutionException if too many jobs are waiting or the jobs are shut down
+     */
+    public synchronized TreeJob submit(String requestURI) {
+        TreeJob active = activeJobs.get(requestURI);
+        if (active != null) {
+            logger.info("Joining {} with {}", active, requestURI);
+            return active;
+        }
+        return submitNew(requestURI);
+    }
+
+    /**
+     * Recomputes the tree after the topology changed. A queued job computes its tree for the changed topology anyway.
+     * A running job may have built its request before the change, it is superseded by a new job of the same kind.
+     * Otherwise the installed kind of tree is recomputed.
+     *
+     * @param installedURI the URI of the installed tree, null if none is installed
+     * @return the job computing the tree for the changed topology, null if there is nothing to compute
+     * @throws RejectedExecutionException if too many jobs are waiting or the jobs are shut down
+     */
+    public synchronized TreeJob recompute(String installedURI) {
+        // there is at most one active job, as every new job supersedes the others
+        TreeJob active = activeJobs.isEmpty() ? null : activeJobs.values().iterator().next();
+        if (active != null && active.getState() == TreeJob.State.QUEUED) {
+            return active;
+        } else if (active != null) {
+            return submitNew(active.getRequestURI());
+        }
+        return installedURI == null ? null : submitNew(installedURI);
+    }
+
+    /**
+     * @return true if a job is queued or running
+     */
+    public synchronized boolean hasActiveJob() {
+        return !activeJobs.isEmpty();
+    }
+
+    private TreeJob submitNew(String requestURI) {
+        TreeJob job = new TreeJob(Long.toString(nextId++), requestURI);
+        Runnable task = () -> run(job);
+        executor.execute(task);
+        queuedTasks.put(job, task);
+        supersede(job);
+        activeJobs.put(requestURI, job);
+        jobs.put(job.getId(), job);
+        removeFinished();
+        logger.info("Submitted {}", job);
+        return job;
+    }
+
+    private void supersede(TreeJob newJob) {
+        Iterator<TreeJob> it = activeJobs.values().iterator();
+        while (it.hasNext()) {
+            TreeJob job = it.next();
+            TreeJob.State state = job.requestCancel("Superseded by job " + newJob.getId());
+            it.remove();
+            logger.info("{} supersedes {}", newJob, job);
+            if (state == TreeJob.State.QUEUED) {
+                // a cancelled job would not run anyway, it must not take the place of a new one in the queue
+                Runnable task = queuedTasks.remove(job);
+                if (task != null) {
+                    executor.remove(task);
+                }
+            } else if (state == TreeJob.State.RUNNING) {
+                treeComputation.abort();
+            }
+        }
+    }
+
+    /**
+     * @return the job with the given ID, null if there is none or it was removed already
+     */
+    public synchronized TreeJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Fails the waiting jobs and waits for the running one.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            executor.shutdown();
+            executor.getQueue().clear();
+            queuedTasks.clear();
+            for (TreeJob job : activeJobs.values()) {
+                if (job.getState() == TreeJob.State.QUEUED) {
+                    job.fail("The server is shutting down");
+                }
+            }
+            activeJobs.clear();
+        }
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Tree computation did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(TreeJob job) {
+        synchronized (this) {
+            queuedTasks.remove(job);
+        }
+        if (!job.start()) {
+            return;
+        }
+        logger.info("Running {}", job);
+
+        String solutionJson = null;
+        String error = null;
+        try {
+            solutionJson = treeComputation.computeTree(job.getRequestURI(), job::isCancelRequested);
+        } catch (TreeComputationException e) {
+            logger.warn("{} failed: {}", job, e.getMessage(), e.getCause());
+            error = e.getMessage();
+        } catch (RuntimeException e) {
+            logger.error("{} failed", job, e);
+            error = "Tree computation failed: " + e;
+        }
+        // a failure caused by the abort of a cancelled job does not matter anymore
+        boolean cancelled = solutionJson == null && job.isCancelRequested();
+        // an installed solution was published by the tree computation
+        if (solutionJson == null && !treeComputation.isSolutionInstalled()) {
+            // failed or cancelled before the first solution was installed, otherwise the previous one still forwards
+            treeProvider.setLastSolution(null);
+        }
+
+        synchronized (this) {
+            // a POST after the job finished has to start a new one
+            activeJobs.remove(job.getRequestURI(), job);
+            if (cancelled) {
+                job.cancelled();
+                recordCancelLatency(job);
+            }
+        }
+        if (!cancelled && error != null) {
+            job.fail(error);
+        } else if (!cancelled) {
+            job.succeed(solutionJson);
+        }
+        logger.info("Finished {}", job);
+    }
+
+    private void recordCancelLatency(TreeJob job) {
+        double latencyMs = job.getCancelLatencyMs();
+        cancelledRunningJobs++;
+        totalCancelLatencyMs += latencyMs;
+        maxCancelLatencyMs = Math.max(maxCancelLatencyMs, latencyMs);
+        if (latencyMs > CANCEL_LATENCY_WARN_MS) {
+            logger.warn("Cancelling {} took {} ms", job, latencyMs);
+        }
+        logger.info("Cancelled {} after {} ms (mean {} ms, max {} ms over {} cancelled running jobs)", job, latencyMs,
+                getMeanCancelLatencyMs(), maxCancelLatencyMs, cancelledRunningJobs);
+    }
+
+    /**
+     * @return the number of running jobs which were cancelled
+     */
+    public synchronized int getCancelledRunningJobs() {
+        return cancelledRunningJobs;
+    }
+
+    /**
+     * @return the mean time from the cancellation of a running job until it stopped in ms, NaN if none was cancelled
+     */
+    public synchronized double getMeanCancelLatencyMs() {
+        return cancelledRunningJobs == 0 ? Double.NaN : totalCancelLatencyMs / cancelledRunningJobs;
+    }
+
+    /**
+     * @return the maximum time from the cancellation of a running job until it stopped in ms, 0 if none was cancelled
+     */
+    public synchronized double getMaxCancelLatencyMs() {
+        return maxCancelLatencyMs;
+    }
+
+    private void removeFinished() {
+        int finished = 0;
+        for (TreeJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<TreeJob> it = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+}
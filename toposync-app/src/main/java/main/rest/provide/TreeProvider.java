@@ -12,7 +12,8 @@ public class TreeProvider {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private String lastSolutionJson;
+    // set by the tree computation thread, read by the HTTP threads
+    private volatile String lastSolutionJson;
 
 
     public void handleGET(HttpExchange httpExchange) throws IOException {
@@ -30,17 +31,18 @@ public class TreeProvider {
     }
 
     private void sendResponse(HttpExchange httpExchange) throws IOException {
-        if (lastSolutionJson != null) {
-            sendLastSolution(httpExchange);
+        final String solutionJson = lastSolutionJson;
+        if (solutionJson != null) {
+            sendLastSolution(httpExchange, solutionJson);
         } else {
             httpExchange.sendResponseHeaders(404, -1);
         }
     }
 
-    private void sendLastSolution(HttpExchange httpExchange) throws IOException {
-        httpExchange.sendResponseHeaders(200, lastSolutionJson.getBytes().length);
+    private void sendLastSolution(HttpExchange httpExchange, String solutionJson) throws IOException {
+        httpExchange.sendResponseHeaders(200, solutionJson.getBytes().length);
         OutputStream os = httpExchange.getResponseBody();
-        os.write(lastSolutionJson.getBytes());
+        os.write(solutionJson.getBytes());
         os.close();
     }
 }
@@ -48,12 +48,6 @@ public class ProgressWindow extends JFrame implements ProgressMonitor {
         setFontSize(calcSol);
         add(calcSol);
 
-        if (oldSolutionExists) {
-            uninstall = new JLabel("Uninstalling previous tree.", JLabel.CENTER);
-            setFontSize(uninstall);
-            add(uninstall);
-        }
-
         placeVNF = new JLabel("Placing transcoder VNF.", JLabel.CENTER);
         setFontSize(placeVNF);
         add(placeVNF);
@@ -62,6 +56,12 @@ public class ProgressWindow extends JFrame implements ProgressMonitor {
         setFontSize(flowRules);
         add(flowRules);
 
+        if (oldSolutionExists) {
+            uninstall = new JLabel("Removing stale parts of previous tree.", JLabel.CENTER);
+            setFontSize(uninstall);
+            add(uninstall);
+        }
+
         pack();
         setLocationRelativeTo(null);
         setVisible(true);
@@ -70,18 +70,12 @@ public class ProgressWindow extends JFrame implements ProgressMonitor {
     @Override
     public void solutionCalculated(long durationMs) {
         done(calcSol, durationMs);
-
-        if (oldSolutionExists) {
-            setLoading(uninstall);
-        } else {
-            setLoading(placeVNF);
-        }
+        setLoading(placeVNF);
     }
 
     @Override
     public void oldSolutionUninstalled(long durationMs) {
         done(uninstall, durationMs);
-        setLoading(placeVNF);
     }
 
     @Override
@@ -93,6 +87,10 @@ public class ProgressWindow extends JFrame implements ProgressMonitor {
     @Override
     public void flowsInstalled(long durationMs) {
         done(flowRules, durationMs);
+
+        if (oldSolutionExists) {
+            setLoading(uninstall);
+        }
     }
 
     void setLoading(JLabel label) {
@@ -140,10 +138,10 @@ public class ProgressWindow extends JFrame implements ProgressMonitor {
         Thread.sleep(2000);
         pm.solutionCalculated(500);
         Thread.sleep(2000);
-        pm.oldSolutionUninstalled(700);
-        Thread.sleep(2000);
         pm.vnfPlaced(2000);
         Thread.sleep(2000);
         pm.flowsInstalled(53);
+        Thread.sleep(2000);
+        pm.oldSolutionUninstalled(700);
     }
 }
@@ -61,6 +61,9 @@ public class Controller {
     public void fetchTopoSyncTree() {
         try {
             Graph tree = treeFetcher.fetchTopoSync();
+            if (tree == null) {
+                return; // failed or superseded by another computation
+            }
             logger.info("Fetched toposync solution with {} nodes, {} edges", tree.getNodeCount(), tree.getEdgeCount());
             state.setSolution(tree);
             gui.topoSyncFetched();
@@ -73,6 +76,9 @@ public class Controller {
     public void fetchShortestPathTree() {
         try {
             Graph tree = treeFetcher.fetchShortestPath();
+            if (tree == null) {
+                return; // failed or superseded by another computation
+            }
             logger.info("Fetched spt solution with {} nodes, {} edges", tree.getNodeCount(), tree.getEdgeCount());
             state.setSolution(tree);
             gui.shortestPathFetched();
@@ -22,6 +22,7 @@ public class OnosTreeFetcher implements TreeFetcher {
     private static final URI SHORTEST_PATH_REQUEST_URI = URI.create("http://127.0.0.1:9355/tree/shortest-path-sfc");
     private static final URI TOPOSYNC_REQUEST_URI = URI.create("http://127.0.0.1:9355/tree/toposync-sfc");
     private static final URI GET_CURRENT_TREE_URI = URI.create("http://127.0.0.1:9355/tree");
+    private static final long JOB_WAIT_MS = 10 * 1000;
     private Logger logger = LoggerFactory.getLogger(getClass());
     private HttpClient solutionClient;
     private HttpRequest topoSyncRequest;
@@ -63,9 +64,24 @@ public class OnosTreeFetcher implements TreeFetcher {
 
     private Graph sendRequest(HttpRequest request) throws IOException, InterruptedException {
         HttpResponse<String> resp = solutionClient.send(request, HttpResponse.BodyHandlers.ofString());
+        while (resp.statusCode() == HttpURLConnection.HTTP_ACCEPTED) {
+            resp = solutionClient.send(jobRequest(resp), HttpResponse.BodyHandlers.ofString());
+        }
         return handleResponse(resp);
     }
 
+    /**
+     * The server computes trees as jobs: it answers a POST with the location of the job, which answers with the
+     * solution once the job is finished.
+     */
+    private HttpRequest jobRequest(HttpResponse<String> accepted) {
+        logger.info("202: Waiting for job: {}", accepted.body());
+        final String location = accepted.headers()
+                                         .firstValue("Location")
+                                         .orElseThrow(() -> new IllegalStateException("Job without location"));
+        return HttpRequest.newBuilder().uri(accepted.uri().resolve(location + "?wait=" + JOB_WAIT_MS)).GET().build();
+    }
+
     private Graph handleResponse(HttpResponse<String> response) {
         logger.info("Handling response: {}", response);
         final int respCode = response.statusCode();
@@ -79,6 +95,13 @@ public class OnosTreeFetcher implements TreeFetcher {
                 JSONObject respJson = new JSONObject(response.body());
                 logger.info("solution json: {}", respJson);
                 return solutionJsonToGraph(respJson);
+            case HttpURLConnection.HTTP_CONFLICT:
+                logger.info("409: Computation was superseded by a newer one: {}", response.body());
+                return null;
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+                logger.info("503: Too many computations waiting..");
+                gui.showError(response.body());
+                return null;
             case HttpURLConnection.HTTP_NOT_FOUND:
                 logger.info("404: No solution currently installed!");
                 return null;